@@ -5,24 +5,83 @@ use prod;
 create table parking(
 PARKING_NUMBER int PRIMARY KEY,
 AVAILABLE bool NOT NULL,
-TYPE varchar(10) NOT NULL
+TYPE varchar(10) NOT NULL,
+LOT int NOT NULL DEFAULT 0,
+LEVEL int NOT NULL DEFAULT 0,
+ZONE int NOT NULL DEFAULT 0
 );
 
 create table ticket(
  ID int PRIMARY KEY AUTO_INCREMENT,
  PARKING_NUMBER int NOT NULL,
  VEHICLE_REG_NUMBER varchar(10) NOT NULL,
- PRICE double,
+ PRICE decimal(10,2),
  IN_TIME DATETIME NOT NULL,
  OUT_TIME DATETIME,
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+/* Exact prices - to migrate an existing database run: alter table ticket modify PRICE decimal(10,2); */
+
+/* Indexes - also run these two lines alone to migrate an existing database */
+create index TICKET_VEHICLE_OUT_IN on ticket(VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME);
+create index PARKING_TYPE_AVAILABLE_NUMBER on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+
+/* Lots, levels and zones - to migrate an existing database, where every spot goes to lot 0, run:
+   alter table parking add LOT int NOT NULL DEFAULT 0, add LEVEL int NOT NULL DEFAULT 0, add ZONE int NOT NULL DEFAULT 0;
+   and the index below */
+create index PARKING_LOT_TYPE_AVAILABLE_LEVEL on parking(LOT, TYPE, AVAILABLE, LEVEL, ZONE, PARKING_NUMBER);
+
+/* Ticket archive - closed tickets moved out of ticket by the TicketArchivalService, one partition per IN_TIME month.
+   No foreign key, MySQL has none on partitioned tables. Each archival run splits the months up to next month off the
+   last partition, pfuture, e.g.:
+   alter table ticket_archive reorganize partition pfuture into (partition p202701 values less than ('2027-02-01'), partition pfuture values less than (maxvalue));
+   so the partitions below only need to reach the month the table is created in. Past the retention of the history,
+   drop the month: alter table ticket_archive drop partition p202601; */
+create table ticket_archive(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE decimal(10,2),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, IN_TIME))
+ ROW_FORMAT=COMPRESSED
+ PARTITION BY RANGE COLUMNS(IN_TIME) (
+ partition pold values less than ('2026-01-01'),
+ partition p202601 values less than ('2026-02-01'),
+ partition p202602 values less than ('2026-03-01'),
+ partition p202603 values less than ('2026-04-01'),
+ partition p202604 values less than ('2026-05-01'),
+ partition p202605 values less than ('2026-06-01'),
+ partition p202606 values less than ('2026-07-01'),
+ partition p202607 values less than ('2026-08-01'),
+ partition p202608 values less than ('2026-09-01'),
+ partition p202609 values less than ('2026-10-01'),
+ partition p202610 values less than ('2026-11-01'),
+ partition p202611 values less than ('2026-12-01'),
+ partition p202612 values less than ('2027-01-01'),
+ partition pfuture values less than (maxvalue));
+create index TICKET_ARCHIVE_VEHICLE_OUT on ticket_archive(VEHICLE_REG_NUMBER, OUT_TIME);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(4,true,'BIKE');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(5,true,'BIKE');
+
+/* Tariff - RULE is HOURLY_RATE, DURATION_TIER, FREE_MINUTES or DAILY_CAP, see TariffRule. Reloaded every minute by the app */
+create table tariff(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ LOT int NOT NULL DEFAULT 0,
+ TYPE varchar(10) NOT NULL,
+ RULE varchar(20) NOT NULL,
+ START_MINUTE int NOT NULL DEFAULT 0,
+ END_MINUTE int NOT NULL DEFAULT 0,
+ AMOUNT int NOT NULL);
+
+insert into tariff(TYPE,RULE,START_MINUTE,END_MINUTE,AMOUNT) values('CAR','HOURLY_RATE',0,1440,150);
+insert into tariff(TYPE,RULE,START_MINUTE,END_MINUTE,AMOUNT) values('BIKE','HOURLY_RATE',0,1440,100);
 commit;
 
 /* Setting up TEST DB */
@@ -32,22 +91,81 @@ use test;
 create table parking(
 PARKING_NUMBER int PRIMARY KEY,
 AVAILABLE bool NOT NULL,
-TYPE varchar(10) NOT NULL
+TYPE varchar(10) NOT NULL,
+LOT int NOT NULL DEFAULT 0,
+LEVEL int NOT NULL DEFAULT 0,
+ZONE int NOT NULL DEFAULT 0
 );
 
 create table ticket(
  ID int PRIMARY KEY AUTO_INCREMENT,
  PARKING_NUMBER int NOT NULL,
  VEHICLE_REG_NUMBER varchar(10) NOT NULL,
- PRICE double,
+ PRICE decimal(10,2),
  IN_TIME DATETIME NOT NULL,
  OUT_TIME DATETIME,
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+/* Exact prices - to migrate an existing database run: alter table ticket modify PRICE decimal(10,2); */
+
+/* Indexes - also run these two lines alone to migrate an existing database */
+create index TICKET_VEHICLE_OUT_IN on ticket(VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME);
+create index PARKING_TYPE_AVAILABLE_NUMBER on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+
+/* Lots, levels and zones - to migrate an existing database, where every spot goes to lot 0, run:
+   alter table parking add LOT int NOT NULL DEFAULT 0, add LEVEL int NOT NULL DEFAULT 0, add ZONE int NOT NULL DEFAULT 0;
+   and the index below */
+create index PARKING_LOT_TYPE_AVAILABLE_LEVEL on parking(LOT, TYPE, AVAILABLE, LEVEL, ZONE, PARKING_NUMBER);
+
+/* Ticket archive - closed tickets moved out of ticket by the TicketArchivalService, one partition per IN_TIME month.
+   No foreign key, MySQL has none on partitioned tables. Each archival run splits the months up to next month off the
+   last partition, pfuture, e.g.:
+   alter table ticket_archive reorganize partition pfuture into (partition p202701 values less than ('2027-02-01'), partition pfuture values less than (maxvalue));
+   so the partitions below only need to reach the month the table is created in. Past the retention of the history,
+   drop the month: alter table ticket_archive drop partition p202601; */
+create table ticket_archive(
+ ID int NOT NULL,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE decimal(10,2),
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL,
+ PRIMARY KEY (ID, IN_TIME))
+ ROW_FORMAT=COMPRESSED
+ PARTITION BY RANGE COLUMNS(IN_TIME) (
+ partition pold values less than ('2026-01-01'),
+ partition p202601 values less than ('2026-02-01'),
+ partition p202602 values less than ('2026-03-01'),
+ partition p202603 values less than ('2026-04-01'),
+ partition p202604 values less than ('2026-05-01'),
+ partition p202605 values less than ('2026-06-01'),
+ partition p202606 values less than ('2026-07-01'),
+ partition p202607 values less than ('2026-08-01'),
+ partition p202608 values less than ('2026-09-01'),
+ partition p202609 values less than ('2026-10-01'),
+ partition p202610 values less than ('2026-11-01'),
+ partition p202611 values less than ('2026-12-01'),
+ partition p202612 values less than ('2027-01-01'),
+ partition pfuture values less than (maxvalue));
+create index TICKET_ARCHIVE_VEHICLE_OUT on ticket_archive(VEHICLE_REG_NUMBER, OUT_TIME);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(4,true,'BIKE');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(5,true,'BIKE');
+
+/* Tariff - RULE is HOURLY_RATE, DURATION_TIER, FREE_MINUTES or DAILY_CAP, see TariffRule. Reloaded every minute by the app */
+create table tariff(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ LOT int NOT NULL DEFAULT 0,
+ TYPE varchar(10) NOT NULL,
+ RULE varchar(20) NOT NULL,
+ START_MINUTE int NOT NULL DEFAULT 0,
+ END_MINUTE int NOT NULL DEFAULT 0,
+ AMOUNT int NOT NULL);
+
+insert into tariff(TYPE,RULE,START_MINUTE,END_MINUTE,AMOUNT) values('CAR','HOURLY_RATE',0,1440,150);
+insert into tariff(TYPE,RULE,START_MINUTE,END_MINUTE,AMOUNT) values('BIKE','HOURLY_RATE',0,1440,100);
 commit;
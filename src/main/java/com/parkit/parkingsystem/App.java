@@ -1,13 +1,49 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.GateHttpServer;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.SpotProvisioningService;
+import com.parkit.parkingsystem.service.TicketReportService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
-    public static void main(String args[]){
+    private static final int DEFAULT_HTTP_PORT = 8080;
+
+    /**
+     * Starts the interactive shell, or with "http [port]" the gate HTTP server, or with
+     * "provision layout.csv" imports the parking spots of a layout file, or with
+     * "report 2022-09-01 2022-10-01 output" writes the reports of a period, to output.json
+     * if it ends with .json, else as CSV files in the output directory.
+     */
+    public static void main(String args[]) throws Exception {
         logger.info("Initializing Parking System");
-        InteractiveShell.loadInterface();
+        if(args.length > 0 && "http".equals(args[0])){
+            GateHttpServer.launch(args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HTTP_PORT);
+        }else if(args.length > 1 && "provision".equals(args[0])){
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            new SpotProvisioningService(parkingSpotDAO).importLayout(Paths.get(args[1]));
+            parkingSpotDAO.dataBaseConfig.closeConnectionPool();
+        }else if(args.length > 3 && "report".equals(args[0])){
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            TicketDAO ticketDAO = new TicketDAO();
+            TicketReportService.Report report = new TicketReportService(parkingSpotDAO, ticketDAO)
+                    .generate(LocalDate.parse(args[1]).atStartOfDay(), LocalDate.parse(args[2]).atStartOfDay());
+            if(args[3].endsWith(".json")){
+                report.writeJson(Paths.get(args[3]));
+            }else{
+                report.writeCsv(Paths.get(args[3]));
+            }
+            parkingSpotDAO.dataBaseConfig.closeConnectionPool();
+            ticketDAO.dataBaseConfig.closeConnectionPool();
+        }else{
+            InteractiveShell.loadInterface();
+        }
     }
 }
@@ -0,0 +1,452 @@
+package com.parkit.parkingsystem.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+
+/**
+ * Bounded JDBC connection pool. Borrowed connections are proxies: closing
+ * them hands the physical connection back to the pool, along with the
+ * statements prepared on it that were left open. Each physical connection
+ * keeps up to statementCacheSize prepared statements open, see
+ * {@link StatementCache}.
+ */
+public class ConnectionPool {
+
+	private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final ConnectionPoolSettings settings;
+
+	// most recently used connections are kept at the head
+	private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+	private final Semaphore leases;
+	private final AtomicInteger totalConnections = new AtomicInteger();
+	private final AtomicInteger activeConnections = new AtomicInteger();
+
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong statementCacheHits = new AtomicLong();
+	private final AtomicLong preparedStatements = new AtomicLong();
+
+	private final String metricsName;
+	private final Timer acquireTimer;
+
+	private final ScheduledExecutorService evictor;
+	private volatile boolean closed;
+
+	public ConnectionPool(String url, String user, String password, ConnectionPoolSettings settings) {
+		settings.validate();
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.settings = settings;
+		this.leases = new Semaphore(settings.getMaxSize(), true);
+		this.metricsName = metricsName(url);
+		this.acquireTimer = registerMetrics();
+		this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "connection-pool-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		evictor.scheduleWithFixedDelay(this::evictIdleConnections, 0, settings.getEvictionIntervalMillis(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	public Connection getConnection() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool is closed");
+		}
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.getMaxWaitMillis());
+		try {
+			if (!leases.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+				acquireTimer.recordError();
+				throw new SQLTimeoutException(
+						"Timed out after " + settings.getMaxWaitMillis() + " ms waiting for a DB connection");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			acquireTimer.recordError();
+			throw new SQLException("Interrupted while waiting for a DB connection", e);
+		}
+
+		PooledConnection pooled;
+		try {
+			pooled = takeConnection(deadline);
+		} catch (SQLException | RuntimeException e) {
+			leases.release();
+			acquireTimer.recordError();
+			throw e;
+		}
+		activeConnections.incrementAndGet();
+		recordWait(System.nanoTime() - start);
+		acquireTimer.recordSince(start);
+		return pooled.lease();
+	}
+
+	private Timer registerMetrics() {
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		metrics.gauge("parkingsystem_connection_pool_active", "Connections lent out", this::getActiveConnections,
+				"pool", metricsName);
+		metrics.gauge("parkingsystem_connection_pool_idle", "Connections waiting in the pool", this::getIdleConnections,
+				"pool", metricsName);
+		metrics.gauge("parkingsystem_connection_pool_awaiting", "Threads waiting for a connection",
+				this::getThreadsAwaitingConnection, "pool", metricsName);
+		metrics.counter("parkingsystem_statements_prepared_total", "Statements prepared by the database",
+				this::getPreparedStatements, "pool", metricsName);
+		metrics.counter("parkingsystem_statement_cache_hits_total", "Prepared statements reused from the cache",
+				this::getStatementCacheHits, "pool", metricsName);
+		return metrics.timer("parkingsystem_connection_acquire", "Borrowing a connection from the pool", "pool",
+				metricsName);
+	}
+
+	// the URL without its parameters, which may hold credentials
+	private static String metricsName(String url) {
+		int end = url.length();
+		for (char separator : new char[] { '?', ';' }) {
+			int index = url.indexOf(separator);
+			if (index >= 0) {
+				end = Math.min(end, index);
+			}
+		}
+		return url.substring(0, end);
+	}
+
+	private PooledConnection takeConnection(long deadline) throws SQLException {
+		while (true) {
+			PooledConnection pooled = idleConnections.pollFirst();
+			if (pooled == null) {
+				if (reserveSlot(settings.getMaxSize())) {
+					return openConnection();
+				}
+				// a slot is being filled by the evictor, wait for it to show up
+				try {
+					pooled = idleConnections.pollFirst(Math.max(0, deadline - System.nanoTime()),
+							TimeUnit.NANOSECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting for a DB connection", e);
+				}
+				if (pooled == null) {
+					throw new SQLTimeoutException(
+							"Timed out after " + settings.getMaxWaitMillis() + " ms waiting for a DB connection");
+				}
+			}
+			if (isValid(pooled)) {
+				return pooled;
+			}
+			logger.warn("Discarding broken DB connection");
+			destroy(pooled);
+		}
+	}
+
+	private boolean isValid(PooledConnection pooled) {
+		if (System.currentTimeMillis() - pooled.lastUsed < settings.getValidationIntervalMillis()) {
+			return true;
+		}
+		try {
+			return pooled.physical.isValid(settings.getValidationTimeoutSeconds());
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private boolean reserveSlot(int limit) {
+		while (true) {
+			int total = totalConnections.get();
+			if (total >= limit) {
+				return false;
+			}
+			if (totalConnections.compareAndSet(total, total + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private PooledConnection openConnection() throws SQLException {
+		try {
+			Connection physical = createPhysicalConnection();
+			logger.debug("Opened physical DB connection ({} total)", totalConnections.get());
+			return new PooledConnection(physical);
+		} catch (SQLException | RuntimeException e) {
+			totalConnections.decrementAndGet();
+			throw e;
+		}
+	}
+
+	protected Connection createPhysicalConnection() throws SQLException {
+		return DriverManager.getConnection(url, user, password);
+	}
+
+	private void release(PooledConnection pooled) {
+		activeConnections.decrementAndGet();
+		try {
+			if (!closed && resetForReuse(pooled.physical)) {
+				pooled.lastUsed = System.currentTimeMillis();
+				idleConnections.offerFirst(pooled);
+			} else {
+				destroy(pooled);
+			}
+		} finally {
+			leases.release();
+		}
+	}
+
+	private boolean resetForReuse(Connection physical) {
+		try {
+			if (physical.isClosed()) {
+				return false;
+			}
+			if (!physical.getAutoCommit()) {
+				physical.rollback();
+				physical.setAutoCommit(true);
+			}
+			return true;
+		} catch (SQLException e) {
+			logger.warn("Unable to reset DB connection, discarding it", e);
+			return false;
+		}
+	}
+
+	private void destroy(PooledConnection pooled) {
+		totalConnections.decrementAndGet();
+		if (pooled.statementCache != null) {
+			pooled.statementCache.close();
+		}
+		try {
+			pooled.physical.close();
+		} catch (SQLException e) {
+			logger.debug("Error while closing physical DB connection", e);
+		}
+	}
+
+	/**
+	 * Closes connections idle for longer than the idle timeout (never going
+	 * below the minimum size) and tops the pool back up to its minimum size.
+	 * Runs periodically on the evictor thread.
+	 */
+	public void evictIdleConnections() {
+		if (closed) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		Iterator<PooledConnection> oldestFirst = idleConnections.descendingIterator();
+		while (oldestFirst.hasNext() && totalConnections.get() > settings.getMinSize()) {
+			PooledConnection pooled = oldestFirst.next();
+			if (now - pooled.lastUsed > settings.getIdleTimeoutMillis() && idleConnections.remove(pooled)) {
+				destroy(pooled);
+			}
+		}
+		try {
+			while (reserveSlot(settings.getMinSize())) {
+				idleConnections.offerLast(openConnection());
+			}
+		} catch (SQLException | RuntimeException e) {
+			logger.error("Unable to fill connection pool up to its minimum size", e);
+		}
+	}
+
+	public void close() {
+		closed = true;
+		evictor.shutdownNow();
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		metrics.remove("parkingsystem_connection_pool_active", "pool", metricsName);
+		metrics.remove("parkingsystem_connection_pool_idle", "pool", metricsName);
+		metrics.remove("parkingsystem_connection_pool_awaiting", "pool", metricsName);
+		metrics.remove("parkingsystem_statements_prepared_total", "pool", metricsName);
+		metrics.remove("parkingsystem_statement_cache_hits_total", "pool", metricsName);
+		PooledConnection pooled;
+		while ((pooled = idleConnections.pollFirst()) != null) {
+			destroy(pooled);
+		}
+	}
+
+	private void recordWait(long waitNanos) {
+		borrowCount.incrementAndGet();
+		totalWaitNanos.addAndGet(waitNanos);
+		long max = maxWaitNanos.get();
+		while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+			max = maxWaitNanos.get();
+		}
+	}
+
+	public int getActiveConnections() {
+		return activeConnections.get();
+	}
+
+	public int getIdleConnections() {
+		return idleConnections.size();
+	}
+
+	public int getTotalConnections() {
+		return totalConnections.get();
+	}
+
+	public int getThreadsAwaitingConnection() {
+		return leases.getQueueLength();
+	}
+
+	public long getBorrowCount() {
+		return borrowCount.get();
+	}
+
+	public double getAverageWaitMillis() {
+		long count = borrowCount.get();
+		return count == 0 ? 0.0 : totalWaitNanos.get() / (count * 1_000_000.0);
+	}
+
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1_000_000.0;
+	}
+
+	/**
+	 * @return the number of statements prepared on the physical connections,
+	 *         cached or not
+	 */
+	public long getPreparedStatements() {
+		return preparedStatements.get();
+	}
+
+	public long getStatementCacheHits() {
+		return statementCacheHits.get();
+	}
+
+	public ConnectionPoolSettings getSettings() {
+		return settings;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPool[active=" + getActiveConnections() + ", idle=" + getIdleConnections() + ", waiting="
+				+ getThreadsAwaitingConnection() + ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis())
+				+ ", maxWaitMs=" + String.format("%.3f", getMaxWaitMillis()) + "]";
+	}
+
+	private final class PooledConnection {
+		private final Connection physical;
+		private final StatementCache statementCache;
+		private volatile long lastUsed;
+
+		private PooledConnection(Connection physical) {
+			this.physical = physical;
+			this.statementCache = settings.getStatementCacheSize() == 0 ? null
+					: new StatementCache(physical, settings.getStatementCacheSize(), statementCacheHits,
+							preparedStatements);
+			this.lastUsed = System.currentTimeMillis();
+		}
+
+		private Connection lease() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new LeaseHandler(this));
+		}
+	}
+
+	private final class LeaseHandler implements InvocationHandler {
+		private final PooledConnection pooled;
+		// statements not from the statement cache, closed with the lease
+		private final List<Statement> statements = new ArrayList<>();
+		private boolean returned;
+
+		private LeaseHandler(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!returned) {
+					returned = true;
+					closeStatements();
+					release(pooled);
+				}
+				return null;
+			case "isClosed":
+				return returned || pooled.physical.isClosed();
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "PooledConnection[" + pooled.physical + "]";
+			default:
+				if (returned) {
+					throw new SQLException("Connection has already been returned to the pool");
+				}
+				if (method.getName().equals("prepareStatement")) {
+					PreparedStatement cached = prepareCached(proxy, method, args);
+					if (cached != null) {
+						return cached;
+					}
+					preparedStatements.incrementAndGet();
+				}
+				Object result;
+				try {
+					result = method.invoke(pooled.physical, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+				if (result instanceof Statement) {
+					statements.add((Statement) result);
+				}
+				return result;
+			}
+		}
+
+		// prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) only
+		private PreparedStatement prepareCached(Object proxy, Method method, Object[] args) throws SQLException {
+			if (pooled.statementCache == null) {
+				return null;
+			}
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			if (parameterTypes.length == 1) {
+				return pooled.statementCache.prepare((String) args[0], -1, (Connection) proxy);
+			}
+			if (parameterTypes.length == 2 && parameterTypes[1] == int.class) {
+				return pooled.statementCache.prepare((String) args[0], (Integer) args[1], (Connection) proxy);
+			}
+			return null;
+		}
+
+		private void closeStatements() {
+			if (pooled.statementCache != null) {
+				pooled.statementCache.checkInAll();
+			}
+			for (Statement statement : statements) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					logger.debug("Error while closing statement", e);
+				}
+			}
+			statements.clear();
+		}
+	}
+}
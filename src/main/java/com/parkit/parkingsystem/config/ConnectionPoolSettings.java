@@ -0,0 +1,119 @@
+package com.parkit.parkingsystem.config;
+
+public class ConnectionPoolSettings {
+
+	public static final String PROPERTY_PREFIX = "parkingsystem.pool.";
+
+	private int minSize = 2;
+	private int maxSize = 10;
+	private long idleTimeoutMillis = 10 * 60 * 1000L;
+	private long maxWaitMillis = 30 * 1000L;
+	private long evictionIntervalMillis = 30 * 1000L;
+	private long validationIntervalMillis = 1000L;
+	private int validationTimeoutSeconds = 2;
+	private int statementCacheSize = 64;
+
+	/**
+	 * Defaults overridden by any "parkingsystem.pool.*" system property, e.g.
+	 * -Dparkingsystem.pool.maxSize=20
+	 */
+	public static ConnectionPoolSettings fromSystemProperties() {
+		ConnectionPoolSettings settings = new ConnectionPoolSettings();
+		settings.setMinSize(Integer.getInteger(PROPERTY_PREFIX + "minSize", settings.getMinSize()));
+		settings.setMaxSize(Integer.getInteger(PROPERTY_PREFIX + "maxSize", settings.getMaxSize()));
+		settings.setIdleTimeoutMillis(
+				Long.getLong(PROPERTY_PREFIX + "idleTimeoutMillis", settings.getIdleTimeoutMillis()));
+		settings.setMaxWaitMillis(Long.getLong(PROPERTY_PREFIX + "maxWaitMillis", settings.getMaxWaitMillis()));
+		settings.setEvictionIntervalMillis(
+				Long.getLong(PROPERTY_PREFIX + "evictionIntervalMillis", settings.getEvictionIntervalMillis()));
+		settings.setValidationIntervalMillis(
+				Long.getLong(PROPERTY_PREFIX + "validationIntervalMillis", settings.getValidationIntervalMillis()));
+		settings.setValidationTimeoutSeconds(
+				Integer.getInteger(PROPERTY_PREFIX + "validationTimeoutSeconds", settings.getValidationTimeoutSeconds()));
+		settings.setStatementCacheSize(
+				Integer.getInteger(PROPERTY_PREFIX + "statementCacheSize", settings.getStatementCacheSize()));
+		return settings;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	public long getEvictionIntervalMillis() {
+		return evictionIntervalMillis;
+	}
+
+	public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+		this.evictionIntervalMillis = evictionIntervalMillis;
+	}
+
+	public long getValidationIntervalMillis() {
+		return validationIntervalMillis;
+	}
+
+	/**
+	 * A connection idle for less than this is handed out without a validation
+	 * round trip.
+	 */
+	public void setValidationIntervalMillis(long validationIntervalMillis) {
+		this.validationIntervalMillis = validationIntervalMillis;
+	}
+
+	public int getValidationTimeoutSeconds() {
+		return validationTimeoutSeconds;
+	}
+
+	public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+	}
+
+	/**
+	 * @return the number of prepared statements kept open per connection, 0 to
+	 *         close them when the DAO does
+	 */
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	public void setStatementCacheSize(int statementCacheSize) {
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	public void validate() {
+		if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+			throw new IllegalArgumentException(
+					"Invalid pool size: minSize=" + minSize + ", maxSize=" + maxSize);
+		}
+		if (statementCacheSize < 0) {
+			throw new IllegalArgumentException("Invalid statement cache size: " + statementCacheSize);
+		}
+	}
+}
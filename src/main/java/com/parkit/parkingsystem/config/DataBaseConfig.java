@@ -2,25 +2,96 @@ package com.parkit.parkingsystem.config;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import com.parkit.parkingsystem.util.LogSampler;
 
 import java.sql.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataBaseConfig {
 
 	private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+	// connections and statements are opened and closed several times per vehicle
+	private static final LogSampler openConnectionLog = LogSampler.fromSystemProperties();
+	private static final LogSampler closeConnectionLog = LogSampler.fromSystemProperties();
+	private static final LogSampler closePreparedStatementLog = LogSampler.fromSystemProperties();
+	private static final LogSampler closeResultSetLog = LogSampler.fromSystemProperties();
+
+	// one pool per database URL, shared by every DAO pointing at that database
+	private static final Map<String, ConnectionPool> connectionPools = new ConcurrentHashMap<>();
+
 	public Connection getConnection() throws ClassNotFoundException, SQLException {
-		logger.info("Create DB connection");
-		Class.forName("com.mysql.cj.jdbc.Driver");
-		return DriverManager.getConnection(
-				"jdbc:mysql://localhost:3306/prod?useSSL=false&serverTimezone=UTC", "root", "Admin67!");
+		if (logger.isDebugEnabled() && openConnectionLog.sample()) {
+			logger.debug("Create DB connection (1 in {} logged)", Unbox.box(openConnectionLog.getRate()));
+		}
+		UnitOfWork unitOfWork = UnitOfWork.current();
+		if (unitOfWork != null) {
+			return unitOfWork.getConnection(getConnectionPool());
+		}
+		return getConnectionPool().getConnection();
+	}
+
+	public ConnectionPool getConnectionPool() throws ClassNotFoundException {
+		ConnectionPool pool = connectionPools.get(getUrl());
+		if (pool == null) {
+			Class.forName(getDriverClassName());
+			pool = connectionPools.computeIfAbsent(getUrl(),
+					url -> new ConnectionPool(url, getUser(), getPassword(), getConnectionPoolSettings()));
+		}
+		return pool;
+	}
+
+	public void closeConnectionPool() {
+		ConnectionPool pool = connectionPools.remove(getUrl());
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
+	protected String getDriverClassName() {
+		return "com.mysql.cj.jdbc.Driver";
+	}
+
+	/**
+	 * Server-side prepared statements, so that the statements the pool keeps
+	 * open are parsed and planned once by MySQL, and the driver's own cache of
+	 * them for the statements the pool does not keep. Cursor fetch, so that a
+	 * statement's fetch size is honoured: without it the driver reads whole
+	 * result sets into memory unless the fetch size is Integer.MIN_VALUE.
+	 */
+	protected String getUrl() {
+		return "jdbc:mysql://localhost:3306/prod?useSSL=false&serverTimezone=UTC"
+				+ "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=64&prepStmtCacheSqlLimit=2048"
+				+ "&useCursorFetch=true";
+	}
+
+	protected String getUser() {
+		return "root";
+	}
+
+	protected String getPassword() {
+		return "Admin67!";
+	}
+
+	protected ConnectionPoolSettings getConnectionPoolSettings() {
+		return ConnectionPoolSettings.fromSystemProperties();
 	}
 
 	public void closeConnection(Connection con) {
+		UnitOfWork unitOfWork = UnitOfWork.current();
+		if (unitOfWork != null && unitOfWork.isEnlisted(con)) {
+			// closed when the unit of work ends
+			return;
+		}
 		if (con != null) {
 			try {
 				con.close();
-				logger.info("Closing DB connection");
+				if (logger.isDebugEnabled() && closeConnectionLog.sample()) {
+					logger.debug("Closing DB connection (1 in {} logged)", Unbox.box(closeConnectionLog.getRate()));
+				}
 			} catch (SQLException e) {
 				logger.error("Error while closing connection", e);
 			}
@@ -31,7 +102,9 @@ public class DataBaseConfig {
 		if (ps != null) {
 			try {
 				ps.close();
-				logger.info("Closing Prepared Statement");
+				if (logger.isDebugEnabled() && closePreparedStatementLog.sample()) {
+					logger.debug("Closing Prepared Statement (1 in {} logged)", Unbox.box(closePreparedStatementLog.getRate()));
+				}
 			} catch (SQLException e) {
 				logger.error("Error while closing prepared statement", e);
 			}
@@ -42,7 +115,9 @@ public class DataBaseConfig {
 		if (rs != null) {
 			try {
 				rs.close();
-				logger.info("Closing Result Set");
+				if (logger.isDebugEnabled() && closeResultSetLog.sample()) {
+					logger.debug("Closing Result Set (1 in {} logged)", Unbox.box(closeResultSetLog.getRate()));
+				}
 			} catch (SQLException e) {
 				logger.error("Error while closing result set", e);
 			}
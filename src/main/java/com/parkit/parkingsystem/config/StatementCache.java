@@ -0,0 +1,209 @@
+package com.parkit.parkingsystem.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Prepared statements of one pooled connection, by SQL, so that preparing a
+ * query the connection already prepared gets back the statement the database
+ * parsed and planned then. Statements handed out are proxies: closing one
+ * closes its result sets, clears its parameters and puts it back in the
+ * cache. Beyond maxSize, the least recently used statements are closed.
+ * <p>
+ * Only used by the thread holding the connection. The DAOs set parameters and
+ * fetch sizes on each use; other statement settings are not reset.
+ */
+final class StatementCache {
+
+	private static final Logger logger = LogManager.getLogger("StatementCache");
+
+	private final Connection physical;
+	private final int maxSize;
+	private final AtomicLong hits;
+	private final AtomicLong prepares;
+	// in access order, least recently used first
+	private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+	private boolean hasBrokenStatements;
+
+	StatementCache(Connection physical, int maxSize, AtomicLong hits, AtomicLong prepares) {
+		this.physical = physical;
+		this.maxSize = maxSize;
+		this.hits = hits;
+		this.prepares = prepares;
+	}
+
+	/**
+	 * @param autoGeneratedKeys a Statement constant, or -1 for
+	 *                          prepareStatement(sql)
+	 * @param lease             the connection getConnection() of the statement
+	 *                          returns
+	 * @return null if the cached statement of that query is in use, for the
+	 *         caller to prepare one of its own
+	 */
+	PreparedStatement prepare(String sql, int autoGeneratedKeys, Connection lease) throws SQLException {
+		String key = autoGeneratedKeys < 0 ? sql : autoGeneratedKeys + ":" + sql;
+		CachedStatement cached = statements.get(key);
+		if (cached != null) {
+			if (cached.inUse) {
+				return null;
+			}
+			hits.incrementAndGet();
+			return cached.checkOut(lease);
+		}
+		PreparedStatement statement = autoGeneratedKeys < 0 ? physical.prepareStatement(sql)
+				: physical.prepareStatement(sql, autoGeneratedKeys);
+		prepares.incrementAndGet();
+		cached = new CachedStatement(statement);
+		statements.put(key, cached);
+		evict();
+		return cached.checkOut(lease);
+	}
+
+	/**
+	 * Puts back the statements still checked out, when the connection returns
+	 * to the pool.
+	 */
+	void checkInAll() {
+		for (CachedStatement cached : statements.values()) {
+			if (cached.inUse) {
+				cached.checkIn();
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Closes every statement, when the physical connection is closed.
+	 */
+	void close() {
+		for (CachedStatement cached : statements.values()) {
+			cached.closePhysical();
+		}
+		statements.clear();
+	}
+
+	int size() {
+		return statements.size();
+	}
+
+	private void evict() {
+		int excess = statements.size() - maxSize;
+		if (excess <= 0 && !hasBrokenStatements) {
+			return;
+		}
+		Iterator<CachedStatement> leastRecentlyUsedFirst = statements.values().iterator();
+		while (leastRecentlyUsedFirst.hasNext()) {
+			CachedStatement cached = leastRecentlyUsedFirst.next();
+			if (!cached.inUse && (cached.broken || excess > 0)) {
+				leastRecentlyUsedFirst.remove();
+				cached.closePhysical();
+				excess--;
+			}
+		}
+		hasBrokenStatements = false;
+	}
+
+	private final class CachedStatement implements InvocationHandler {
+		private final PreparedStatement statement;
+		private final PreparedStatement proxy;
+		private final List<ResultSet> resultSets = new ArrayList<>(1);
+		private Connection lease;
+		private boolean inUse;
+		private boolean batched;
+		private boolean broken;
+
+		private CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, this);
+		}
+
+		private PreparedStatement checkOut(Connection lease) {
+			this.lease = lease;
+			inUse = true;
+			return proxy;
+		}
+
+		private void checkIn() {
+			inUse = false;
+			lease = null;
+			try {
+				for (ResultSet resultSet : resultSets) {
+					resultSet.close();
+				}
+				statement.clearParameters();
+				if (batched) {
+					statement.clearBatch();
+					batched = false;
+				}
+			} catch (SQLException e) {
+				logger.warn("Unable to reset cached prepared statement, closing it", e);
+				broken = true;
+				hasBrokenStatements = true;
+			} finally {
+				resultSets.clear();
+			}
+		}
+
+		private void closePhysical() {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				logger.debug("Error while closing cached prepared statement", e);
+			}
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (inUse) {
+					checkIn();
+					evict();
+				}
+				return null;
+			case "isClosed":
+				return !inUse || statement.isClosed();
+			case "getConnection":
+				return lease;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "CachedStatement[" + statement + "]";
+			default:
+				if (!inUse) {
+					throw new SQLException("Prepared statement is closed");
+				}
+				if (method.getName().equals("addBatch")) {
+					batched = true;
+				}
+				Object result;
+				try {
+					result = method.invoke(statement, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+				if (result instanceof ResultSet) {
+					resultSets.add((ResultSet) result);
+				}
+				return result;
+			}
+		}
+	}
+}
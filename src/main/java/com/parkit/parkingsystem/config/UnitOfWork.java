@@ -0,0 +1,174 @@
+package com.parkit.parkingsystem.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs a piece of work as a single DB transaction. While it is active on the
+ * current thread, DataBaseConfig hands out the same connection to every DAO
+ * call (one per pool) and closing it is deferred to the end of the work.
+ */
+public class UnitOfWork {
+
+	private static final Logger logger = LogManager.getLogger("UnitOfWork");
+
+	private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+	private final Map<ConnectionPool, Connection> connections = new IdentityHashMap<>();
+	private final List<Runnable> afterCommit = new ArrayList<>();
+	private final List<Runnable> afterRollback = new ArrayList<>();
+	private boolean rollbackOnly;
+
+	private UnitOfWork() {
+	}
+
+	/**
+	 * Runs the work in a transaction, committed when it returns and rolled back
+	 * when it throws or calls {@link #setRollbackOnly()}. Joins the enclosing
+	 * unit of work if there is one.
+	 */
+	public static <T> T execute(Supplier<T> work) {
+		if (current.get() != null) {
+			return work.get();
+		}
+		UnitOfWork unitOfWork = new UnitOfWork();
+		current.set(unitOfWork);
+		try {
+			T result;
+			try {
+				result = work.get();
+			} catch (RuntimeException | Error e) {
+				unitOfWork.rollback();
+				throw e;
+			}
+			if (unitOfWork.rollbackOnly) {
+				unitOfWork.rollback();
+			} else {
+				unitOfWork.commit();
+			}
+			return result;
+		} finally {
+			current.remove();
+		}
+	}
+
+	public static void run(Runnable work) {
+		execute(() -> {
+			work.run();
+			return null;
+		});
+	}
+
+	public static UnitOfWork current() {
+		return current.get();
+	}
+
+	/**
+	 * Marks the current unit of work so that it is rolled back instead of
+	 * committed.
+	 */
+	public static void setRollbackOnly() {
+		UnitOfWork unitOfWork = current.get();
+		if (unitOfWork != null) {
+			unitOfWork.rollbackOnly = true;
+		}
+	}
+
+	/**
+	 * Runs the action once the current unit of work has committed, or right
+	 * away when there is none.
+	 */
+	public static void afterCommit(Runnable action) {
+		UnitOfWork unitOfWork = current.get();
+		if (unitOfWork == null) {
+			action.run();
+		} else {
+			unitOfWork.afterCommit.add(action);
+		}
+	}
+
+	/**
+	 * Runs the action if the current unit of work is rolled back. Does nothing
+	 * when there is none.
+	 */
+	public static void afterRollback(Runnable action) {
+		UnitOfWork unitOfWork = current.get();
+		if (unitOfWork != null) {
+			unitOfWork.afterRollback.add(action);
+		}
+	}
+
+	Connection getConnection(ConnectionPool pool) throws SQLException {
+		Connection connection = connections.get(pool);
+		if (connection == null) {
+			connection = pool.getConnection();
+			try {
+				connection.setAutoCommit(false);
+			} catch (SQLException e) {
+				connection.close();
+				throw e;
+			}
+			connections.put(pool, connection);
+		}
+		return connection;
+	}
+
+	boolean isEnlisted(Connection connection) {
+		return connections.containsValue(connection);
+	}
+
+	private void commit() {
+		try {
+			for (Connection connection : connections.values()) {
+				connection.commit();
+			}
+		} catch (SQLException e) {
+			rollback();
+			throw new RuntimeException("Unable to commit unit of work", e);
+		}
+		closeConnections();
+		runAll(afterCommit);
+	}
+
+	private void rollback() {
+		for (Connection connection : connections.values()) {
+			try {
+				connection.rollback();
+			} catch (SQLException e) {
+				logger.error("Error while rolling back unit of work", e);
+			}
+		}
+		closeConnections();
+		runAll(afterRollback);
+	}
+
+	private void closeConnections() {
+		for (Connection connection : connections.values()) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				logger.error("Error while closing connection", e);
+			}
+		}
+		connections.clear();
+	}
+
+	private void runAll(List<Runnable> actions) {
+		for (Runnable action : actions) {
+			try {
+				action.run();
+			} catch (RuntimeException e) {
+				logger.error("Error in unit of work callback", e);
+			}
+		}
+		actions.clear();
+	}
+}
@@ -3,9 +3,62 @@ package com.parkit.parkingsystem.constants;
 public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String COUNT_AVAILABLE_PARKING_SPOTS = "select count(*) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String COUNT_AVAILABLE_PARKING_SPOTS_IN_LOT = "select count(*) from parking where LOT = ? and AVAILABLE = true and TYPE = ?";
+    // nearest level first, the lower one on a tie, then the given zone first and the next ones
+    public static final String GET_NEAREST_PARKING_SPOT = "select PARKING_NUMBER from parking where LOT = ? and AVAILABLE = true and TYPE = ? order by abs(LEVEL - ?), LEVEL, ZONE < ?, ZONE, PARKING_NUMBER limit 1";
+    // locking reads for claims without the availability index: they see the spots other gates claimed and committed
+    // since the claiming transaction started, which a consistent read under REPEATABLE READ would keep offering
+    public static final String LOCK_NEXT_PARKING_SPOT = "select PARKING_NUMBER from parking where AVAILABLE = true and TYPE = ? order by PARKING_NUMBER limit 1 for update";
+    public static final String LOCK_NEAREST_PARKING_SPOT = GET_NEAREST_PARKING_SPOT + " for update";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE, LOT, LEVEL, ZONE from parking";
+    public static final String GET_PARKING_SPOT_LOCATION = "select LOT, LEVEL, ZONE from parking where PARKING_NUMBER = ?";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set AVAILABLE = false where PARKING_NUMBER = ? and AVAILABLE = true";
+    // one row per spot between prefix and suffix; spots already there keep their availability
+    public static final String UPSERT_PARKING_SPOTS_PREFIX = "insert into parking(PARKING_NUMBER,AVAILABLE,TYPE,LOT,LEVEL,ZONE) values ";
+    public static final String UPSERT_PARKING_SPOTS_ROW = "(?,true,?,?,?,?)";
+    public static final String UPSERT_PARKING_SPOTS_SUFFIX = " on duplicate key update TYPE=values(TYPE), LOT=values(LOT), LEVEL=values(LEVEL), ZONE=values(ZONE)";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
     public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME  limit 1";
+    // journaled tickets are identified by vehicle and in-time, so that replaying one twice writes it once
+    public static final String SAVE_JOURNALED_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ?,?,?,?,? from dual where not exists (select 1 from ticket where VEHICLE_REG_NUMBER = ? and IN_TIME = ?)";
+    public static final String CLOSE_JOURNALED_TICKET = "update ticket set PRICE=?, OUT_TIME=? where VEHICLE_REG_NUMBER=? and IN_TIME=?";
+    // both answered from the TICKET_VEHICLE_OUT_IN index without sorting the vehicle's history
+    public static final String GET_OPEN_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? and t.OUT_TIME is null order by t.IN_TIME desc limit 1";
+    // the open ticket if any, else the last closed one: the union itself has no defined order
+    public static final String GET_LATEST_TICKET = "select * from ((" + GET_OPEN_TICKET + ") union all (select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? and t.OUT_TIME is not null order by t.OUT_TIME desc limit 1)) latest order by OUT_TIME is null desc, IN_TIME desc limit 1";
+    // RECURRING: the vehicle has an earlier ticket, so this one got the recurring user discount
+    public static final String GET_CLOSED_TICKETS_AFTER = "select t.ID, t.IN_TIME, t.OUT_TIME, p.TYPE, t.PRICE, exists(select 1 from ticket e where e.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and e.ID < t.ID) or exists(select 1 from ticket_archive a where a.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER and a.ID < t.ID) as RECURRING, p.LOT from ticket t,parking p where p.parking_number = t.parking_number and t.ID > ? and t.OUT_TIME is not null order by t.ID";
+    public static final String UPDATE_TICKET_PRICE = "update ticket set PRICE=? where ID=?";
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, t.VEHICLE_REG_NUMBER from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME is null";
+
+    // read from the TICKET_VEHICLE_OUT_IN index, already grouped by vehicle
+    public static final String GET_VISIT_COUNTS = "select VEHICLE_REG_NUMBER, count(*) from ticket group by VEHICLE_REG_NUMBER";
+    public static final String COUNT_VEHICLES = "select count(distinct VEHICLE_REG_NUMBER) from ticket";
+    public static final String GET_ARCHIVED_VISIT_COUNTS = "select VEHICLE_REG_NUMBER, count(*) from ticket_archive group by VEHICLE_REG_NUMBER";
+
+    // ticket_archive holds the tickets closed before the archival cutoff, moved out of ticket a chunk at a time
+    public static final String GET_LATEST_ARCHIVED_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket_archive t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.OUT_TIME desc limit 1";
+    // found without locks, then locked, copied and deleted by primary key: a locking scan of the ID range would also
+    // lock the open tickets in it, the gaps between them and the end of the table, where the gates insert
+    public static final String GET_ARCHIVABLE_TICKETS = "select ID from ticket where ID > ? and OUT_TIME < ? order by ID limit ?";
+    // one ? per ticket ID between prefix and suffix
+    public static final String LOCK_ARCHIVABLE_TICKETS_PREFIX = "select ID from ticket where OUT_TIME < ? and ID in (";
+    public static final String LOCK_ARCHIVABLE_TICKETS_SUFFIX = ") for update";
+    public static final String ARCHIVE_TICKETS_PREFIX = "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME from ticket where OUT_TIME < ? and ID in (";
+    public static final String DELETE_ARCHIVED_TICKETS_PREFIX = "delete from ticket where OUT_TIME < ? and ID in (";
+    public static final String TICKET_IDS_SUFFIX = ")";
+    // MySQL only: the month partitions pYYYYMM of ticket_archive, and pfuture split into the next ones between prefix and suffix
+    public static final String GET_ARCHIVE_PARTITIONS = "select PARTITION_NAME from information_schema.PARTITIONS where TABLE_SCHEMA = database() and TABLE_NAME = 'ticket_archive' and PARTITION_NAME is not null";
+    public static final String ADD_ARCHIVE_PARTITIONS_PREFIX = "alter table ticket_archive reorganize partition pfuture into (";
+    public static final String ADD_ARCHIVE_PARTITIONS_SUFFIX = "partition pfuture values less than (maxvalue))";
+
+    // reports read both tables, whose ticket IDs do not overlap, without a join to parking: the spot types are loaded once
+    public static final String GET_TICKET_ID_RANGE = "select (select min(ID) from ticket), (select max(ID) from ticket), (select min(ID) from ticket_archive), (select max(ID) from ticket_archive)";
+    public static final String GET_REPORT_TICKETS = "select VEHICLE_REG_NUMBER, PARKING_NUMBER, IN_TIME, OUT_TIME, PRICE from ticket where ID > ? and ID <= ? and IN_TIME < ? and (OUT_TIME is null or OUT_TIME >= ?)"
+            + " union all select VEHICLE_REG_NUMBER, PARKING_NUMBER, IN_TIME, OUT_TIME, PRICE from ticket_archive where ID > ? and ID <= ? and IN_TIME < ? and OUT_TIME >= ?";
+
+    public static final String GET_TARIFF_RULES = "select LOT, TYPE, RULE, START_MINUTE, END_MINUTE, AMOUNT from tariff order by ID";
 }
@@ -0,0 +1,283 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.PlateCodec;
+import com.parkit.parkingsystem.util.TimeUtil;
+
+/**
+ * Tickets of the vehicles currently in the parking, keyed by registration
+ * number. Its size is bounded by the number of parking spots, whatever the
+ * size of the ticket history.
+ * <p>
+ * Tickets are stored column by column in primitive arrays of an
+ * open-addressing table keyed by {@link PlateCodec} longs: about 35 to 70
+ * bytes a ticket and no object per ticket. A Ticket is only built when one is
+ * asked for, so callers can not alter the cached state. Open tickets have no
+ * price, and times are kept to the millisecond.
+ */
+public class OpenTicketCache {
+
+	private static final int MIN_CAPACITY = 16;
+	private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+
+	private final StampedLock lock = new StampedLock();
+
+	private Table table;
+	private int size;
+	// tickets of registration numbers PlateCodec cannot pack, stored as copies
+	private final Map<String, Ticket> unpackedTickets = new HashMap<>();
+
+	public OpenTicketCache(List<Ticket> tickets) {
+		this(tickets.size());
+		for (Ticket ticket : tickets) {
+			put(ticket);
+		}
+	}
+
+	public OpenTicketCache(int expectedTickets) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < expectedTickets) {
+			capacity <<= 1;
+		}
+		table = new Table(capacity);
+	}
+
+	/**
+	 * @return a copy of the open ticket of that vehicle, null if it is not in the parking
+	 */
+	public Ticket get(String vehicleRegNumber) {
+		long plate = PlateCodec.encode(vehicleRegNumber);
+		if (!PlateCodec.isPacked(plate)) {
+			long stamp = lock.readLock();
+			try {
+				Ticket ticket = unpackedTickets.get(vehicleRegNumber);
+				return (ticket == null) ? null : copy(ticket);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		long stamp = lock.tryOptimisticRead();
+		Table current = table;
+		int slot = current.find(plate);
+		int ticketId = 0;
+		int parkingNumber = 0;
+		byte parkingType = 0;
+		long inEpochMillis = 0;
+		if (slot >= 0) {
+			ticketId = current.ticketIds[slot];
+			parkingNumber = current.parkingNumbers[slot];
+			parkingType = current.parkingTypes[slot];
+			inEpochMillis = current.inEpochMillis[slot];
+		}
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				current = table;
+				slot = current.find(plate);
+				if (slot >= 0) {
+					ticketId = current.ticketIds[slot];
+					parkingNumber = current.parkingNumbers[slot];
+					parkingType = current.parkingTypes[slot];
+					inEpochMillis = current.inEpochMillis[slot];
+				}
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		if (slot < 0) {
+			return null;
+		}
+		Ticket ticket = new Ticket();
+		ticket.setId(ticketId);
+		ticket.setParkingSpot(new ParkingSpot(parkingNumber, PARKING_TYPES[parkingType], false));
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(TimeUtil.toLocalDateTime(inEpochMillis));
+		return ticket;
+	}
+
+	public void put(Ticket ticket) {
+		String vehicleRegNumber = ticket.getVehicleRegNumber();
+		if (!PlateCodec.isPacked(PlateCodec.encode(vehicleRegNumber))) {
+			long stamp = lock.writeLock();
+			try {
+				unpackedTickets.put(vehicleRegNumber, copy(ticket));
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+			return;
+		}
+		ParkingSpot parkingSpot = ticket.getParkingSpot();
+		put(vehicleRegNumber, ticket.getId(), parkingSpot.getId(), parkingSpot.getParkingType(),
+				TimeUtil.toEpochMillis(ticket.getInTime()));
+	}
+
+	/**
+	 * Same as {@link #put(Ticket)}, without building a Ticket.
+	 */
+	public void put(String vehicleRegNumber, int ticketId, int parkingNumber, ParkingType parkingType,
+			long inEpochMillis) {
+		long plate = PlateCodec.encode(vehicleRegNumber);
+		if (!PlateCodec.isPacked(plate)) {
+			Ticket ticket = new Ticket();
+			ticket.setId(ticketId);
+			ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+			ticket.setVehicleRegNumber(vehicleRegNumber);
+			ticket.setInTime(TimeUtil.toLocalDateTime(inEpochMillis));
+			put(ticket);
+			return;
+		}
+		long stamp = lock.writeLock();
+		try {
+			int slot = table.find(plate);
+			if (slot < 0) {
+				if ((size + 1) * 4 > table.plates.length * 3) {
+					table = table.resize();
+				}
+				slot = table.insert(plate);
+				size++;
+			}
+			table.ticketIds[slot] = ticketId;
+			table.parkingNumbers[slot] = parkingNumber;
+			table.parkingTypes[slot] = (byte) parkingType.ordinal();
+			table.inEpochMillis[slot] = inEpochMillis;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public void remove(String vehicleRegNumber, int ticketId) {
+		long plate = PlateCodec.encode(vehicleRegNumber);
+		long stamp = lock.writeLock();
+		try {
+			if (!PlateCodec.isPacked(plate)) {
+				unpackedTickets.computeIfPresent(vehicleRegNumber,
+						(key, ticket) -> (ticket.getId() == ticketId) ? null : ticket);
+				return;
+			}
+			int slot = table.find(plate);
+			if (slot >= 0 && table.ticketIds[slot] == ticketId) {
+				table.delete(slot);
+				size--;
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return size + unpackedTickets.size();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private static Ticket copy(Ticket ticket) {
+		Ticket copy = new Ticket();
+		copy.setId(ticket.getId());
+		ParkingSpot parkingSpot = ticket.getParkingSpot();
+		copy.setParkingSpot(new ParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable()));
+		copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+		copy.setInTime(ticket.getInTime());
+		return copy;
+	}
+
+	/**
+	 * All columns in one object, so that a lookup racing with a resize reads
+	 * arrays of the same length.
+	 */
+	private static final class Table {
+		// 0 marks a free slot, PlateCodec never returns it
+		final long[] plates;
+		final int[] ticketIds;
+		final int[] parkingNumbers;
+		final byte[] parkingTypes;
+		final long[] inEpochMillis;
+
+		Table(int capacity) {
+			plates = new long[capacity];
+			ticketIds = new int[capacity];
+			parkingNumbers = new int[capacity];
+			parkingTypes = new byte[capacity];
+			inEpochMillis = new long[capacity];
+		}
+
+		/**
+		 * @return the slot of the plate, -1 if it is not in the table
+		 */
+		int find(long plate) {
+			int mask = plates.length - 1;
+			int slot = PlateCodec.slot(plate, mask);
+			// a concurrent write can make this read stale, never endless
+			for (int probes = 0; probes < plates.length; probes++) {
+				long slotPlate = plates[slot];
+				if (slotPlate == plate) {
+					return slot;
+				}
+				if (slotPlate == 0) {
+					return -1;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		// with room left for the plate
+		int insert(long plate) {
+			int mask = plates.length - 1;
+			int slot = PlateCodec.slot(plate, mask);
+			while (plates[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			plates[slot] = plate;
+			return slot;
+		}
+
+		/**
+		 * Frees the slot and moves back the entries probed past it, so lookups
+		 * never need tombstones.
+		 */
+		void delete(int slot) {
+			int mask = plates.length - 1;
+			int hole = slot;
+			for (int next = (hole + 1) & mask; plates[next] != 0; next = (next + 1) & mask) {
+				int home = PlateCodec.slot(plates[next], mask);
+				if (((next - home) & mask) >= ((next - hole) & mask)) {
+					move(next, hole);
+					hole = next;
+				}
+			}
+			plates[hole] = 0;
+		}
+
+		private void move(int from, int to) {
+			plates[to] = plates[from];
+			ticketIds[to] = ticketIds[from];
+			parkingNumbers[to] = parkingNumbers[from];
+			parkingTypes[to] = parkingTypes[from];
+			inEpochMillis[to] = inEpochMillis[from];
+		}
+
+		Table resize() {
+			Table resized = new Table(plates.length * 2);
+			for (int i = 0; i < plates.length; i++) {
+				if (plates[i] != 0) {
+					int slot = resized.insert(plates[i]);
+					resized.ticketIds[slot] = ticketIds[i];
+					resized.parkingNumbers[slot] = parkingNumbers[i];
+					resized.parkingTypes[slot] = parkingTypes[i];
+					resized.inEpochMillis[slot] = inEpochMillis[i];
+				}
+			}
+			return resized;
+		}
+	}
+}
@@ -1,8 +1,11 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,18 +13,50 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
 
 public class ParkingSpotDAO {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    // only the methods reading or writing the parking table, index lookups are not timed
+    private static final Timer GET_NEXT_AVAILABLE_SLOT_TIMER = daoTimer("getNextAvailableSlot");
+    private static final Timer GET_NEAREST_AVAILABLE_SLOT_TIMER = daoTimer("getNearestAvailableSlot");
+    private static final Timer COUNT_AVAILABLE_SLOTS_TIMER = daoTimer("countAvailableSlots");
+    private static final Timer UPDATE_PARKING_TIMER = daoTimer("updateParking");
+    private static final Timer CLAIM_SLOT_TIMER = daoTimer("claimSlot");
+    private static final Timer WRITE_AVAILABILITY_TIMER = daoTimer("writeAvailability");
+    private static final Timer GET_PARKING_SPOTS_TIMER = daoTimer("getParkingSpots");
+    private static final Timer LOCATE_TIMER = daoTimer("locate");
+    private static final Timer SAVE_PARKING_SPOTS_TIMER = daoTimer("saveParkingSpots");
+
+    private static final int MAX_UNINDEXED_CLAIM_ATTEMPTS = 16;
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    private volatile SpotAvailabilityIndex availabilityIndex;
+    private ScheduledExecutorService reconciliationScheduler;
+
     public int getNextAvailableSlot(ParkingType parkingType){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        if(index != null){
+            return index.lowestAvailable(parkingType);
+        }
+        return queryNextAvailableSlot(DBConstants.GET_NEXT_PARKING_SPOT, parkingType);
+    }
+
+    private int queryNextAvailableSlot(String query, ParkingType parkingType){
+        long start = System.nanoTime();
         Connection con = null;
         int result=-1;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+            PreparedStatement ps = con.prepareStatement(query);
             ps.setString(1, parkingType.toString());
             ResultSet rs = ps.executeQuery();
             if(rs.next()){
@@ -30,15 +65,110 @@ public class ParkingSpotDAO {
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
         }catch (Exception ex){
+            GET_NEXT_AVAILABLE_SLOT_TIMER.recordError();
             logger.error("Error fetching next available slot",ex);
         }finally {
             dataBaseConfig.closeConnection(con);
+            GET_NEXT_AVAILABLE_SLOT_TIMER.recordSince(start);
+        }
+        return result;
+    }
+
+    /**
+     * @return the spot {@link SpotAvailabilityIndex#claimNearest} would claim, without claiming it,
+     * -1 if the lot has none or on error
+     */
+    public int getNearestAvailableSlot(int lot, int level, int zone, ParkingType parkingType){
+        return queryNearestAvailableSlot(DBConstants.GET_NEAREST_PARKING_SPOT, lot, level, zone, parkingType);
+    }
+
+    private int queryNearestAvailableSlot(String query, int lot, int level, int zone, ParkingType parkingType){
+        long start = System.nanoTime();
+        Connection con = null;
+        int result=-1;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(query);
+            ps.setInt(1, lot);
+            ps.setString(2, parkingType.toString());
+            ps.setInt(3, level);
+            ps.setInt(4, zone);
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                result = rs.getInt(1);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            GET_NEAREST_AVAILABLE_SLOT_TIMER.recordError();
+            logger.error("Error fetching nearest available slot",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            GET_NEAREST_AVAILABLE_SLOT_TIMER.recordSince(start);
+        }
+        return result;
+    }
+
+    public int countAvailableSlots(ParkingType parkingType){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        if(index != null){
+            return index.countAvailable(parkingType);
+        }
+        long start = System.nanoTime();
+        Connection con = null;
+        int result=-1;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS);
+            ps.setString(1, parkingType.toString());
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                result = rs.getInt(1);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            COUNT_AVAILABLE_SLOTS_TIMER.recordError();
+            logger.error("Error counting available slots",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            COUNT_AVAILABLE_SLOTS_TIMER.recordSince(start);
+        }
+        return result;
+    }
+
+    public int countAvailableSlots(int lot, ParkingType parkingType){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        if(index != null){
+            return index.countAvailable(lot, parkingType);
+        }
+        long start = System.nanoTime();
+        Connection con = null;
+        int result=-1;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_AVAILABLE_PARKING_SPOTS_IN_LOT);
+            ps.setInt(1, lot);
+            ps.setString(2, parkingType.toString());
+            ResultSet rs = ps.executeQuery();
+            if(rs.next()){
+                result = rs.getInt(1);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }catch (Exception ex){
+            COUNT_AVAILABLE_SLOTS_TIMER.recordError();
+            logger.error("Error counting available slots",ex);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            COUNT_AVAILABLE_SLOTS_TIMER.recordSince(start);
         }
         return result;
     }
 
     public boolean updateParking(ParkingSpot parkingSpot){
         //update the availability fo that parking slot
+        long start = System.nanoTime();
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
@@ -47,13 +177,326 @@ public class ParkingSpotDAO {
             ps.setInt(2, parkingSpot.getId());
             int updateRowCount = ps.executeUpdate();
             dataBaseConfig.closePreparedStatement(ps);
+            SpotAvailabilityIndex index = availabilityIndex;
+            if(updateRowCount == 1 && index != null){
+                ParkingType parkingType = parkingSpot.getParkingType();
+                int parkingNumber = parkingSpot.getId();
+                if(parkingSpot.isAvailable()){
+                    UnitOfWork.afterCommit(() -> index.markAvailable(parkingType, parkingNumber));
+                }else{
+                    UnitOfWork.afterCommit(() -> index.markUnavailable(parkingType, parkingNumber));
+                }
+            }
             return (updateRowCount == 1);
         }catch (Exception ex){
+            UPDATE_PARKING_TIMER.recordError();
             logger.error("Error updating parking info",ex);
             return false;
         }finally {
             dataBaseConfig.closeConnection(con);
+            UPDATE_PARKING_TIMER.recordSince(start);
         }
     }
 
+    /**
+     * Claims the lowest free spot of the given type and marks it unavailable in one step.
+     * The DB update only succeeds if the spot is still available, so concurrent gates,
+     * even in other processes, never get the same spot. Without the availability index,
+     * the spot is picked with a locking read, so concurrent claims wait for each other.
+     *
+     * @return the claimed spot number, -1 if the parking is full or on error
+     */
+    public int claimNextAvailableSlot(ParkingType parkingType){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        return claimSlot(parkingType, index, () -> (index != null) ? index.claimLowest(parkingType)
+                : queryNextAvailableSlot(DBConstants.LOCK_NEXT_PARKING_SPOT, parkingType));
+    }
+
+    /**
+     * Same as {@link #claimNextAvailableSlot(ParkingType)} within one lot, on the nearest level
+     * to the given one that has a free spot, starting with the given zone. Gates of different
+     * lots, levels or zones claim from different shards of the availability index and
+     * different rows.
+     *
+     * @return the claimed spot number, -1 if the lot is full or on error
+     */
+    public int claimNearestAvailableSlot(int lot, int level, int zone, ParkingType parkingType){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        return claimSlot(parkingType, index, () -> (index != null) ? index.claimNearest(lot, level, zone, parkingType)
+                : queryNearestAvailableSlot(DBConstants.LOCK_NEAREST_PARKING_SPOT, lot, level, zone, parkingType));
+    }
+
+    private int claimSlot(ParkingType parkingType, SpotAvailabilityIndex index, IntSupplier nextSlot){
+        // each lost claim takes a spot out of the index, the table offers the same one again if it is stale
+        for(int attempts = 1; ; attempts++){
+            if(index == null && attempts > MAX_UNINDEXED_CLAIM_ATTEMPTS){
+                CLAIM_SLOT_TIMER.recordError();
+                logger.error("Unable to claim a {} spot after {} attempts", parkingType, MAX_UNINDEXED_CLAIM_ATTEMPTS);
+                return -1;
+            }
+            int parkingNumber = nextSlot.getAsInt();
+            if(parkingNumber <= 0){
+                return -1;
+            }
+            try {
+                if(claimParkingSpot(parkingNumber)){
+                    if(index != null){
+                        int claimed = parkingNumber;
+                        UnitOfWork.afterRollback(() -> index.markAvailable(parkingType, claimed));
+                    }
+                    return parkingNumber;
+                }
+                // taken by someone else since the index was loaded, it is already out of the index
+            }catch (Exception ex){
+                CLAIM_SLOT_TIMER.recordError();
+                logger.error("Error claiming parking spot {}", parkingNumber, ex);
+                if(index != null){
+                    index.markAvailable(parkingType, parkingNumber);
+                }
+                return -1;
+            }
+        }
+    }
+
+    private boolean claimParkingSpot(int parkingNumber) throws ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+            ps.setInt(1, parkingNumber);
+            int updateRowCount = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            return (updateRowCount == 1);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            CLAIM_SLOT_TIMER.recordSince(start);
+        }
+    }
+
+    /**
+     * Takes the lowest free spot of the given type out of the availability index only, for
+     * journaled gates: the parking table is updated when the journal is replayed.
+     *
+     * @return the reserved spot number, -1 if the parking is full or the index cannot be loaded
+     */
+    public int reserveNextAvailableSlot(ParkingType parkingType){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        return (index != null) ? index.claimLowest(parkingType) : -1;
+    }
+
+    /**
+     * Same as {@link #reserveNextAvailableSlot(ParkingType)}, picking the spot as
+     * {@link #claimNearestAvailableSlot(int, int, int, ParkingType)} does.
+     */
+    public int reserveNearestAvailableSlot(int lot, int level, int zone, ParkingType parkingType){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        return (index != null) ? index.claimNearest(lot, level, zone, parkingType) : -1;
+    }
+
+    /**
+     * Gives a reserved spot back to the availability index only.
+     */
+    public void releaseSlot(ParkingType parkingType, int parkingNumber){
+        SpotAvailabilityIndex index = availabilityIndex;
+        if(index != null){
+            index.markAvailable(parkingType, parkingNumber);
+        }
+    }
+
+    /**
+     * Sets the availability of the spot in the parking table only, leaving the index alone.
+     */
+    public void writeAvailability(int parkingNumber, boolean available) throws ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            ps.setBoolean(1, available);
+            ps.setInt(2, parkingNumber);
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            WRITE_AVAILABILITY_TIMER.recordSince(start);
+        }
+    }
+
+    /**
+     * Inserts the first count spots, available, in one multi-row statement, or sets the type, lot, level and zone
+     * of those already in the parking table, leaving their availability alone. The availability index is not
+     * updated, reload it once every spot is saved.
+     */
+    public void saveParkingSpots(int count, int[] parkingNumbers, ParkingType[] parkingTypes, int[] lots,
+            int[] levels, int[] zones) throws ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(upsertParkingSpots(count));
+            int parameter = 0;
+            for(int i = 0; i < count; i++){
+                ps.setInt(++parameter, parkingNumbers[i]);
+                ps.setString(++parameter, parkingTypes[i].toString());
+                ps.setInt(++parameter, lots[i]);
+                ps.setInt(++parameter, levels[i]);
+                ps.setInt(++parameter, zones[i]);
+            }
+            ps.executeUpdate();
+        }catch (SQLException ex){
+            SAVE_PARKING_SPOTS_TIMER.recordError();
+            throw ex;
+        }finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            SAVE_PARKING_SPOTS_TIMER.recordSince(start);
+        }
+    }
+
+    private static String upsertParkingSpots(int rows){
+        StringBuilder sql = new StringBuilder(DBConstants.UPSERT_PARKING_SPOTS_PREFIX.length()
+                + rows * (DBConstants.UPSERT_PARKING_SPOTS_ROW.length() + 1) + DBConstants.UPSERT_PARKING_SPOTS_SUFFIX.length());
+        sql.append(DBConstants.UPSERT_PARKING_SPOTS_PREFIX);
+        for(int i = 0; i < rows; i++){
+            if(i > 0){
+                sql.append(',');
+            }
+            sql.append(DBConstants.UPSERT_PARKING_SPOTS_ROW);
+        }
+        return sql.append(DBConstants.UPSERT_PARKING_SPOTS_SUFFIX).toString();
+    }
+
+    public List<ParkingSpot> getParkingSpots() throws ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        Connection con = null;
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            while(rs.next()){
+                parkingSpots.add(new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2),
+                        rs.getInt(4), rs.getInt(5), rs.getInt(6)));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            GET_PARKING_SPOTS_TIMER.recordSince(start);
+        }
+        return parkingSpots;
+    }
+
+    /**
+     * Sets the lot, level and zone of the spot, from the availability index or else the parking table.
+     *
+     * @return false if the spot is unknown or on error
+     */
+    public boolean locate(ParkingSpot parkingSpot){
+        SpotAvailabilityIndex index = getAvailabilityIndex();
+        if(index != null && index.locate(parkingSpot)){
+            return true;
+        }
+        long start = System.nanoTime();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOT_LOCATION);
+            ps.setInt(1, parkingSpot.getId());
+            ResultSet rs = ps.executeQuery();
+            boolean found = rs.next();
+            if(found){
+                parkingSpot.setLot(rs.getInt(1));
+                parkingSpot.setLevel(rs.getInt(2));
+                parkingSpot.setZone(rs.getInt(3));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            return found;
+        }catch (Exception ex){
+            LOCATE_TIMER.recordError();
+            logger.error("Error fetching parking spot location",ex);
+            return false;
+        }finally {
+            dataBaseConfig.closeConnection(con);
+            LOCATE_TIMER.recordSince(start);
+        }
+    }
+
+    /**
+     * Loads the availability index from the parking table on first use.
+     * Returns null (callers then query the table) if it cannot be loaded.
+     */
+    public SpotAvailabilityIndex getAvailabilityIndex(){
+        SpotAvailabilityIndex index = availabilityIndex;
+        if(index == null){
+            synchronized (this){
+                if(availabilityIndex == null){
+                    reloadAvailabilityIndex();
+                }
+                index = availabilityIndex;
+            }
+        }
+        return index;
+    }
+
+    public synchronized void reloadAvailabilityIndex(){
+        try {
+            availabilityIndex = new SpotAvailabilityIndex(getParkingSpots());
+        }catch (Exception ex){
+            logger.error("Error loading parking availability index",ex);
+        }
+    }
+
+    /**
+     * @return the number of spots whose availability had drifted from the parking table
+     */
+    public int reconcileAvailabilityIndex(){
+        SpotAvailabilityIndex index = availabilityIndex;
+        if(index == null){
+            return 0;
+        }
+        try {
+            List<ParkingSpot> parkingSpots = getParkingSpots();
+            for(ParkingSpot parkingSpot : parkingSpots){
+                if(!index.covers(parkingSpot)){
+                    logger.warn("New or moved parking spots found, reloading availability index");
+                    reloadAvailabilityIndex();
+                    return 0;
+                }
+            }
+            int drift = index.reconcile(parkingSpots);
+            if(drift > 0){
+                logger.warn("Parking availability index had drifted on {} spot(s), corrected from DB", drift);
+            }
+            return drift;
+        }catch (Exception ex){
+            logger.error("Error reconciling parking availability index",ex);
+            return 0;
+        }
+    }
+
+    public synchronized void startAvailabilityReconciliation(long period, TimeUnit unit){
+        if(reconciliationScheduler == null){
+            reconciliationScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "parking-availability-reconciliation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reconciliationScheduler.scheduleWithFixedDelay(this::reconcileAvailabilityIndex, period, period, unit);
+        }
+    }
+
+    public synchronized void stopAvailabilityReconciliation(){
+        if(reconciliationScheduler != null){
+            reconciliationScheduler.shutdownNow();
+            reconciliationScheduler = null;
+        }
+    }
+
+    private static Timer daoTimer(String method){
+        return MetricsRegistry.getDefault().daoTimer("ParkingSpotDAO." + method);
+    }
 }
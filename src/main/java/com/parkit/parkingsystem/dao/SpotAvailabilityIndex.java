@@ -0,0 +1,467 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * In-memory view of the free spots of the parking table, one lock-free
+ * two-level bitset per shard: the spots of one type in one zone of one level
+ * of one lot. Gates allocating in different lots, levels or zones never touch
+ * the same bitset. The parking table stays the source of truth: the index is
+ * loaded from it and can be reconciled against it.
+ */
+public class SpotAvailabilityIndex {
+
+	private static final Comparator<ParkingSpot> TOPOLOGY_ORDER = Comparator.comparingInt(ParkingSpot::getLot)
+			.thenComparingInt(ParkingSpot::getLevel).thenComparingInt(ParkingSpot::getZone)
+			.thenComparing(ParkingSpot::getParkingType).thenComparingInt(ParkingSpot::getId);
+
+	// in topology order: lot, level, zone, then type
+	private final Shard[] shards;
+	// shard index + 1 of each spot number, 0 where there is no spot
+	private final char[] shardByNumber;
+	private final Map<ParkingType, Shard[]> shardsByType = new EnumMap<>(ParkingType.class);
+	// levels of each lot, per type, in level order
+	private final Map<Integer, Map<ParkingType, Level[]>> levelsByLot = new HashMap<>();
+	private final int capacity;
+
+	// spots found out of sync during the previous reconciliation pass
+	private Set<Integer> suspectedDrift = new HashSet<>();
+
+	public SpotAvailabilityIndex(List<ParkingSpot> parkingSpots) {
+		List<ParkingSpot> sorted = new ArrayList<>(parkingSpots.size());
+		for (ParkingSpot parkingSpot : parkingSpots) {
+			if (parkingSpot.getId() > 0) {
+				sorted.add(parkingSpot);
+			}
+		}
+		sorted.sort(TOPOLOGY_ORDER);
+		int maxNumber = 0;
+		for (ParkingSpot parkingSpot : sorted) {
+			maxNumber = Math.max(maxNumber, parkingSpot.getId());
+		}
+		capacity = maxNumber + 1;
+		shardByNumber = new char[capacity];
+
+		List<Shard> shardList = new ArrayList<>();
+		int first = 0;
+		for (int i = 1; i <= sorted.size(); i++) {
+			if (i < sorted.size() && sameShard(sorted.get(first), sorted.get(i))) {
+				continue;
+			}
+			if (shardList.size() == Character.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many lot, level, zone and type combinations");
+			}
+			List<ParkingSpot> shardSpots = sorted.subList(first, i);
+			shardList.add(new Shard(shardSpots));
+			for (ParkingSpot parkingSpot : shardSpots) {
+				shardByNumber[parkingSpot.getId()] = (char) shardList.size();
+			}
+			first = i;
+		}
+		shards = shardList.toArray(new Shard[0]);
+
+		Map<ParkingType, List<Shard>> typeShards = new EnumMap<>(ParkingType.class);
+		Map<Integer, Map<ParkingType, TreeMap<Integer, List<Shard>>>> lotShards = new HashMap<>();
+		for (ParkingType parkingType : ParkingType.values()) {
+			typeShards.put(parkingType, new ArrayList<>());
+		}
+		for (Shard shard : shards) {
+			typeShards.get(shard.parkingType).add(shard);
+			lotShards.computeIfAbsent(shard.lot, lot -> new EnumMap<>(ParkingType.class))
+					.computeIfAbsent(shard.parkingType, parkingType -> new TreeMap<>())
+					.computeIfAbsent(shard.level, level -> new ArrayList<>()).add(shard);
+		}
+		for (Map.Entry<ParkingType, List<Shard>> entry : typeShards.entrySet()) {
+			shardsByType.put(entry.getKey(), entry.getValue().toArray(new Shard[0]));
+		}
+		for (Map.Entry<Integer, Map<ParkingType, TreeMap<Integer, List<Shard>>>> lot : lotShards.entrySet()) {
+			Map<ParkingType, Level[]> levels = new EnumMap<>(ParkingType.class);
+			for (Map.Entry<ParkingType, TreeMap<Integer, List<Shard>>> type : lot.getValue().entrySet()) {
+				List<Level> typeLevels = new ArrayList<>();
+				for (Map.Entry<Integer, List<Shard>> level : type.getValue().entrySet()) {
+					typeLevels.add(new Level(level.getKey(), level.getValue().toArray(new Shard[0])));
+				}
+				levels.put(type.getKey(), typeLevels.toArray(new Level[0]));
+			}
+			levelsByLot.put(lot.getKey(), levels);
+		}
+
+		for (ParkingSpot parkingSpot : sorted) {
+			if (parkingSpot.isAvailable()) {
+				markAvailable(parkingSpot.getParkingType(), parkingSpot.getId());
+			}
+		}
+	}
+
+	private static boolean sameShard(ParkingSpot a, ParkingSpot b) {
+		return a.getLot() == b.getLot() && a.getLevel() == b.getLevel() && a.getZone() == b.getZone()
+				&& a.getParkingType() == b.getParkingType();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the lowest free spot number of the given type in the first lot,
+	 *         level and zone that has one, -1 if there is none
+	 */
+	public int lowestAvailable(ParkingType parkingType) {
+		for (Shard shard : shardsByType.get(parkingType)) {
+			int parkingNumber = shard.lowest();
+			if (parkingNumber > 0) {
+				return parkingNumber;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Atomically takes the spot {@link #lowestAvailable(ParkingType)} would
+	 * return out of the index. Concurrent callers always get distinct spots.
+	 *
+	 * @return the claimed spot number, -1 if there is none
+	 */
+	public int claimLowest(ParkingType parkingType) {
+		for (Shard shard : shardsByType.get(parkingType)) {
+			int parkingNumber = shard.claimLowest();
+			if (parkingNumber > 0) {
+				return parkingNumber;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Atomically takes a free spot of the given type out of the index, in the
+	 * given lot only, on the nearest level to the given one that has a free
+	 * spot (the lower level on a tie). Within a level, the given zone is tried
+	 * first, then the next ones.
+	 *
+	 * @return the claimed spot number, -1 if the lot has none
+	 */
+	public int claimNearest(int lot, int level, int zone, ParkingType parkingType) {
+		Map<ParkingType, Level[]> lotLevels = levelsByLot.get(lot);
+		Level[] levels = (lotLevels == null) ? null : lotLevels.get(parkingType);
+		if (levels == null) {
+			return -1;
+		}
+		int above = 0;
+		while (above < levels.length && levels[above].level < level) {
+			above++;
+		}
+		int below = above - 1;
+		while (below >= 0 || above < levels.length) {
+			Level next;
+			if (above >= levels.length
+					|| (below >= 0 && level - levels[below].level <= levels[above].level - level)) {
+				next = levels[below--];
+			} else {
+				next = levels[above++];
+			}
+			int parkingNumber = next.claim(zone);
+			if (parkingNumber > 0) {
+				return parkingNumber;
+			}
+		}
+		return -1;
+	}
+
+	public boolean isAvailable(ParkingType parkingType, int parkingNumber) {
+		Shard shard = shardOf(parkingNumber);
+		return shard != null && shard.parkingType == parkingType && shard.get(parkingNumber);
+	}
+
+	public int countAvailable(ParkingType parkingType) {
+		int count = 0;
+		for (Shard shard : shardsByType.get(parkingType)) {
+			count += shard.count();
+		}
+		return count;
+	}
+
+	public int countAvailable(int lot, ParkingType parkingType) {
+		Map<ParkingType, Level[]> lotLevels = levelsByLot.get(lot);
+		Level[] levels = (lotLevels == null) ? null : lotLevels.get(parkingType);
+		int count = 0;
+		if (levels != null) {
+			for (Level level : levels) {
+				for (Shard shard : level.zones) {
+					count += shard.count();
+				}
+			}
+		}
+		return count;
+	}
+
+	public void markAvailable(ParkingType parkingType, int parkingNumber) {
+		Shard shard = shardOf(parkingNumber);
+		if (shard != null && shard.parkingType == parkingType) {
+			shard.set(parkingNumber);
+		}
+	}
+
+	public void markUnavailable(ParkingType parkingType, int parkingNumber) {
+		Shard shard = shardOf(parkingNumber);
+		if (shard != null && shard.parkingType == parkingType) {
+			shard.clear(parkingNumber);
+		}
+	}
+
+	public void update(ParkingSpot parkingSpot) {
+		if (parkingSpot.isAvailable()) {
+			markAvailable(parkingSpot.getParkingType(), parkingSpot.getId());
+		} else {
+			markUnavailable(parkingSpot.getParkingType(), parkingSpot.getId());
+		}
+	}
+
+	public boolean contains(int parkingNumber) {
+		return shardOf(parkingNumber) != null;
+	}
+
+	/**
+	 * @return false if the spot is unknown or has moved to another lot, level,
+	 *         zone or type since the index was loaded
+	 */
+	public boolean covers(ParkingSpot parkingSpot) {
+		Shard shard = shardOf(parkingSpot.getId());
+		return shard != null && shard.parkingType == parkingSpot.getParkingType() && shard.lot == parkingSpot.getLot()
+				&& shard.level == parkingSpot.getLevel() && shard.zone == parkingSpot.getZone();
+	}
+
+	/**
+	 * Sets the lot, level and zone of the spot from the index.
+	 *
+	 * @return false if the spot is not in the index
+	 */
+	public boolean locate(ParkingSpot parkingSpot) {
+		Shard shard = shardOf(parkingSpot.getId());
+		if (shard == null) {
+			return false;
+		}
+		parkingSpot.setLot(shard.lot);
+		parkingSpot.setLevel(shard.level);
+		parkingSpot.setZone(shard.zone);
+		return true;
+	}
+
+	private Shard shardOf(int parkingNumber) {
+		if (parkingNumber <= 0 || parkingNumber >= capacity) {
+			return null;
+		}
+		int shard = shardByNumber[parkingNumber];
+		return (shard == 0) ? null : shards[shard - 1];
+	}
+
+	/**
+	 * Compares the index with a snapshot of the parking table. A spot is only
+	 * corrected when it is found out of sync on two consecutive passes, so that
+	 * an update racing with the snapshot is not mistaken for drift.
+	 *
+	 * @return the number of spots corrected
+	 */
+	public synchronized int reconcile(List<ParkingSpot> parkingSpots) {
+		Set<Integer> drift = new HashSet<>();
+		int corrected = 0;
+		for (ParkingSpot parkingSpot : parkingSpots) {
+			if (isAvailable(parkingSpot.getParkingType(), parkingSpot.getId()) == parkingSpot.isAvailable()) {
+				continue;
+			}
+			if (suspectedDrift.contains(parkingSpot.getId())) {
+				update(parkingSpot);
+				corrected++;
+			} else {
+				drift.add(parkingSpot.getId());
+			}
+		}
+		suspectedDrift = drift;
+		return corrected;
+	}
+
+	/**
+	 * Zones of one level, in zone order.
+	 */
+	private static final class Level {
+		private final int level;
+		private final Shard[] zones;
+
+		private Level(int level, Shard[] zones) {
+			this.level = level;
+			this.zones = zones;
+		}
+
+		private int claim(int zone) {
+			int start = 0;
+			while (start < zones.length && zones[start].zone < zone) {
+				start++;
+			}
+			for (int i = 0; i < zones.length; i++) {
+				int parkingNumber = zones[(start + i) % zones.length].claimLowest();
+				if (parkingNumber > 0) {
+					return parkingNumber;
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Spots of one type in one zone, as a bitset over their number range.
+	 */
+	private static final class Shard {
+		private final int lot;
+		private final int level;
+		private final int zone;
+		private final ParkingType parkingType;
+		private final int firstNumber;
+		private final FreeSpots freeSpots;
+
+		// spots sorted by number
+		private Shard(List<ParkingSpot> parkingSpots) {
+			ParkingSpot first = parkingSpots.get(0);
+			lot = first.getLot();
+			level = first.getLevel();
+			zone = first.getZone();
+			parkingType = first.getParkingType();
+			firstNumber = first.getId();
+			freeSpots = new FreeSpots(parkingSpots.get(parkingSpots.size() - 1).getId() - firstNumber + 1);
+		}
+
+		private boolean get(int parkingNumber) {
+			return freeSpots.get(parkingNumber - firstNumber);
+		}
+
+		private void set(int parkingNumber) {
+			freeSpots.set(parkingNumber - firstNumber);
+		}
+
+		private boolean clear(int parkingNumber) {
+			return freeSpots.clear(parkingNumber - firstNumber);
+		}
+
+		private int lowest() {
+			int bit = freeSpots.lowest();
+			return (bit < 0) ? -1 : firstNumber + bit;
+		}
+
+		private int claimLowest() {
+			int bit = freeSpots.claimLowest();
+			return (bit < 0) ? -1 : firstNumber + bit;
+		}
+
+		private int count() {
+			return freeSpots.count();
+		}
+	}
+
+	/**
+	 * Bitset where a set bit is a free spot, plus a summary level with one bit
+	 * per 64-bit word telling whether that word may hold a free spot. Finding
+	 * the lowest free spot reads one summary word per 4096 spots.
+	 */
+	private static final class FreeSpots {
+		private final AtomicLongArray words;
+		private final AtomicLongArray summary;
+
+		private FreeSpots(int capacity) {
+			int wordCount = (capacity + 63) >>> 6;
+			words = new AtomicLongArray(wordCount);
+			summary = new AtomicLongArray((wordCount + 63) >>> 6);
+		}
+
+		private boolean get(int bit) {
+			return (words.get(bit >>> 6) & (1L << bit)) != 0;
+		}
+
+		private void set(int bit) {
+			int word = bit >>> 6;
+			long mask = 1L << bit;
+			long current;
+			do {
+				current = words.get(word);
+			} while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+			setSummary(word);
+		}
+
+		private boolean clear(int bit) {
+			int word = bit >>> 6;
+			long mask = 1L << bit;
+			long current;
+			do {
+				current = words.get(word);
+				if ((current & mask) == 0) {
+					return false;
+				}
+			} while (!words.compareAndSet(word, current, current & ~mask));
+			return true;
+		}
+
+		private int lowest() {
+			for (int s = 0; s < summary.length(); s++) {
+				long candidates = summary.get(s);
+				while (candidates != 0) {
+					int word = (s << 6) + Long.numberOfTrailingZeros(candidates);
+					long bits = words.get(word);
+					if (bits != 0) {
+						return (word << 6) + Long.numberOfTrailingZeros(bits);
+					}
+					clearSummaryIfEmpty(word);
+					candidates &= candidates - 1;
+				}
+			}
+			return -1;
+		}
+
+		private int claimLowest() {
+			while (true) {
+				int bit = lowest();
+				if (bit < 0 || clear(bit)) {
+					return bit;
+				}
+			}
+		}
+
+		private int count() {
+			int count = 0;
+			for (int i = 0; i < words.length(); i++) {
+				count += Long.bitCount(words.get(i));
+			}
+			return count;
+		}
+
+		private void setSummary(int word) {
+			int index = word >>> 6;
+			long mask = 1L << word;
+			long current;
+			do {
+				current = summary.get(index);
+			} while ((current & mask) == 0 && !summary.compareAndSet(index, current, current | mask));
+		}
+
+		private void clearSummaryIfEmpty(int word) {
+			int index = word >>> 6;
+			long mask = 1L << word;
+			long current;
+			do {
+				current = summary.get(index);
+			} while ((current & mask) != 0 && !summary.compareAndSet(index, current, current & ~mask));
+			// a spot freed meanwhile must stay reachable
+			if (words.get(word) != 0) {
+				setSummary(word);
+			}
+		}
+	}
+}
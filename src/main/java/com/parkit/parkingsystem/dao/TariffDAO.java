@@ -0,0 +1,47 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+import com.parkit.parkingsystem.model.TariffRule;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TariffDAO {
+
+	private static final Timer GET_TARIFF_RULES_TIMER = MetricsRegistry.getDefault()
+			.daoTimer("TariffDAO.getTariffRules");
+
+	public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+	/**
+	 * @return the rules of the tariff table in the order they apply
+	 */
+	public List<TariffRule> getTariffRules() throws ClassNotFoundException, SQLException {
+		long start = System.nanoTime();
+		Connection con = null;
+		List<TariffRule> rules = new ArrayList<>();
+		try {
+			con = dataBaseConfig.getConnection();
+			PreparedStatement ps = con.prepareStatement(DBConstants.GET_TARIFF_RULES);
+			ResultSet rs = ps.executeQuery();
+			while (rs.next()) {
+				rules.add(new TariffRule(rs.getInt(1), ParkingType.valueOf(rs.getString(2)),
+						TariffRule.Kind.valueOf(rs.getString(3)), rs.getInt(4), rs.getInt(5), rs.getInt(6)));
+			}
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+			GET_TARIFF_RULES_TIMER.recordSince(start);
+		}
+		return rules;
+	}
+}
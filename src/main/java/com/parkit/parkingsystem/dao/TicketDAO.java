@@ -1,54 +1,205 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.PricesUtil;
+import com.parkit.parkingsystem.util.TimeUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
 
 public class TicketDAO {
 
 	private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+	private static final Timer SAVE_TICKET_TIMER = daoTimer("saveTicket");
+	private static final Timer GET_LATEST_TICKET_TIMER = daoTimer("getLatestTicket");
+	private static final Timer GET_OPEN_TICKET_TIMER = daoTimer("getOpenTicket");
+	private static final Timer UPDATE_TICKET_TIMER = daoTimer("updateTicket");
+	private static final Timer RELOAD_VISIT_COUNTS_TIMER = daoTimer("reloadVisitCounts");
+	private static final Timer RELOAD_OPEN_TICKETS_TIMER = daoTimer("reloadOpenTickets");
+	private static final Timer SAVE_JOURNALED_TICKET_TIMER = daoTimer("saveJournaledTicket");
+	private static final Timer CLOSE_JOURNALED_TICKET_TIMER = daoTimer("closeJournaledTicket");
+	private static final Timer STREAM_CLOSED_TICKETS_TIMER = daoTimer("streamClosedTickets");
+	private static final Timer UPDATE_TICKET_PRICES_TIMER = daoTimer("updateTicketPrices");
+	private static final Timer GET_LATEST_ARCHIVED_TICKET_TIMER = daoTimer("getLatestArchivedTicket");
+	private static final Timer ARCHIVE_CLOSED_TICKETS_TIMER = daoTimer("archiveClosedTickets");
+	private static final Timer ADD_ARCHIVE_PARTITIONS_TIMER = daoTimer("addArchivePartitions");
+	private static final Timer GET_TICKET_ID_RANGE_TIMER = daoTimer("getTicketIdRange");
+	private static final Timer STREAM_REPORT_TICKETS_TIMER = daoTimer("streamReportTickets");
+
+	private static final long WRITE_BEHIND_TIMEOUT_MILLIS = 5_000;
+
+	private static final DateTimeFormatter ARCHIVE_PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
 	public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+	// when false, open tickets are always looked up in the ticket table
+	public boolean useOpenTicketCache = true;
+
+	private volatile OpenTicketCache openTicketCache;
+
+	private volatile VisitCounter visitCounter;
+
+	private volatile TicketWriteBatcher writeBatcher;
+
+	/**
+	 * Saves the ticket and sets its ID. In write-behind mode and outside a unit
+	 * of work the ticket is committed with a batch of other tickets; inside one
+	 * it is written on the unit of work's connection, to commit or roll back
+	 * with it.
+	 */
 	public boolean saveTicket(Ticket ticket) {
+		return saveTicket(ticket, false);
+	}
+
+	/**
+	 * Write-behind only: saves the ticket and claims its spot in the parking
+	 * table in the same batch transaction, so that the gate holds no lock on
+	 * the spot while it waits for the batch.
+	 *
+	 * @return false, and nothing is written, if the spot was taken meanwhile
+	 * @throws IllegalStateException if write-behind is off or a unit of work
+	 *                               is active
+	 */
+	public boolean saveTicketClaimingSpot(Ticket ticket) {
+		return saveTicket(ticket, true);
+	}
+
+	private boolean saveTicket(Ticket ticket, boolean claimingSpot) {
+		long start = System.nanoTime();
+		TicketWriteBatcher batcher = getWriteBatcher(claimingSpot);
+		if (batcher != null) {
+			boolean saved = claimingSpot ? batcher.saveClaimingSpot(ticket) : batcher.save(ticket);
+			if (saved) {
+				cacheOpenTicket(ticket);
+				countVisit(ticket);
+			} else {
+				SAVE_TICKET_TIMER.recordError();
+			}
+			SAVE_TICKET_TIMER.recordSince(start);
+			return saved;
+		}
 		Connection con = null;
 		try {
 			con = dataBaseConfig.getConnection();
-			PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
-			// ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-			// ps.setInt(1,ticket.getId());
-			ps.setInt(1, ticket.getParkingSpot().getId());
-			ps.setString(2, ticket.getVehicleRegNumber());
-			ps.setDouble(3, ticket.getPrice());
-			ps.setTimestamp(4, Timestamp.valueOf(ticket.getInTime()));
-			ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : Timestamp.valueOf(ticket.getOutTime()));
-
-			return ps.execute();
+			PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+			setSaveTicketParameters(ps, ticket);
+			int updateRowCount = ps.executeUpdate();
+			ResultSet generatedKeys = ps.getGeneratedKeys();
+			if (generatedKeys.next()) {
+				ticket.setId(generatedKeys.getInt(1));
+			}
+			dataBaseConfig.closeResultSet(generatedKeys);
+			dataBaseConfig.closePreparedStatement(ps);
+			if (updateRowCount == 1) {
+				cacheOpenTicket(ticket);
+				countVisit(ticket);
+			}
+			return (updateRowCount == 1);
 		} catch (Exception ex) {
+			SAVE_TICKET_TIMER.recordError();
 			logger.error("Error fetching next available slot", ex);
 		} finally {
-			dataBaseConfig.closeConnection(con);			
+			dataBaseConfig.closeConnection(con);
+			SAVE_TICKET_TIMER.recordSince(start);
 		}
 		return false;
 	}
 
+	static void setSaveTicketParameters(PreparedStatement ps, Ticket ticket) throws SQLException {
+		// ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+		ps.setInt(1, ticket.getParkingSpot().getId());
+		ps.setString(2, ticket.getVehicleRegNumber());
+		ps.setBigDecimal(3, PricesUtil.toDecimal(ticket.getPriceCents()));
+		ps.setTimestamp(4, Timestamp.valueOf(ticket.getInTime()));
+		ps.setTimestamp(5, (ticket.getOutTime() == null) ? null : Timestamp.valueOf(ticket.getOutTime()));
+	}
+
+	private void cacheOpenTicket(Ticket ticket) {
+		OpenTicketCache cache = openTicketCache;
+		if (cache != null && ticket.getOutTime() == null) {
+			UnitOfWork.afterCommit(() -> cache.put(ticket));
+		}
+	}
+
+	private void countVisit(Ticket ticket) {
+		VisitCounter counter = visitCounter;
+		if (counter != null) {
+			String vehicleRegNumber = ticket.getVehicleRegNumber();
+			UnitOfWork.afterCommit(() -> counter.increment(vehicleRegNumber));
+		}
+	}
+
+	/**
+	 * Same as {@link #getLatestTicket(String)}.
+	 */
 	public Ticket getTicket(String vehicleRegNumber) {
+		return getLatestTicket(vehicleRegNumber);
+	}
+
+	/**
+	 * @return the open ticket of that vehicle if it is in the parking, otherwise
+	 *         its last closed ticket, null if it never came or its tickets are
+	 *         all archived
+	 */
+	public Ticket getLatestTicket(String vehicleRegNumber) {
+		return queryTicket(DBConstants.GET_LATEST_TICKET, vehicleRegNumber, 2, GET_LATEST_TICKET_TIMER);
+	}
+
+	/**
+	 * Same as {@link #getLatestTicket(String)}, looking in the ticket archive
+	 * too when includeArchive is true and the vehicle has no ticket left in the
+	 * ticket table.
+	 */
+	public Ticket getLatestTicket(String vehicleRegNumber, boolean includeArchive) {
+		Ticket ticket = getLatestTicket(vehicleRegNumber);
+		if (ticket == null && includeArchive) {
+			ticket = queryTicket(DBConstants.GET_LATEST_ARCHIVED_TICKET, vehicleRegNumber, 1,
+					GET_LATEST_ARCHIVED_TICKET_TIMER);
+		}
+		return ticket;
+	}
+
+	/**
+	 * @return the ticket of that vehicle if it is currently in the parking, null otherwise
+	 */
+	public Ticket getOpenTicket(String vehicleRegNumber) {
+		OpenTicketCache cache = getOpenTicketCache();
+		if (cache != null) {
+			return cache.get(vehicleRegNumber);
+		}
+		return queryTicket(DBConstants.GET_OPEN_TICKET, vehicleRegNumber, 1, GET_OPEN_TICKET_TIMER);
+	}
+
+	private Ticket queryTicket(String query, String vehicleRegNumber, int vehicleRegNumberParameters, Timer timer) {
+		long start = System.nanoTime();
 		Connection con = null;
 		Ticket ticket = null;
 		try {
 			con = dataBaseConfig.getConnection();
-			PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
+			PreparedStatement ps = con.prepareStatement(query);
 			// ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-			ps.setString(1, vehicleRegNumber);
+			for (int i = 1; i <= vehicleRegNumberParameters; i++) {
+				ps.setString(i, vehicleRegNumber);
+			}
 			ResultSet rs = ps.executeQuery();
 			if (rs.next()) {
 				ticket = new Ticket();
@@ -56,7 +207,7 @@ public class TicketDAO {
 				ticket.setParkingSpot(parkingSpot);
 				ticket.setId(rs.getInt(2));
 				ticket.setVehicleRegNumber(vehicleRegNumber);
-				ticket.setPrice(rs.getDouble(3));
+				ticket.setPriceCents(getPriceCents(rs, 3));
 				ticket.setInTime(rs.getTimestamp(4).toLocalDateTime());
 				if (rs.getTimestamp(5) != null) {
 					ticket.setOutTime(rs.getTimestamp(5).toLocalDateTime());
@@ -65,28 +216,651 @@ public class TicketDAO {
 			dataBaseConfig.closeResultSet(rs);
 			dataBaseConfig.closePreparedStatement(ps);
 		} catch (Exception ex) {
-			logger.error("Error fetching next available slot", ex);
+			timer.recordError();
+			logger.error("Error fetching ticket", ex);
 		} finally {
 			dataBaseConfig.closeConnection(con);
+			timer.recordSince(start);
 		}
 		return ticket;
 	}
 
+	private static long getPriceCents(ResultSet rs, int column) throws SQLException {
+		BigDecimal price = rs.getBigDecimal(column);
+		return price == null ? 0 : PricesUtil.toCents(price);
+	}
+
+	/**
+	 * Loads the open tickets on first use. Returns null (callers then query the
+	 * ticket table) if they cannot be loaded.
+	 */
+	public OpenTicketCache getOpenTicketCache() {
+		if (!useOpenTicketCache) {
+			return null;
+		}
+		OpenTicketCache cache = openTicketCache;
+		if (cache == null) {
+			synchronized (this) {
+				if (openTicketCache == null) {
+					reloadOpenTickets();
+				}
+				cache = openTicketCache;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Counts the tickets of every vehicle on first use, then keeps counting the
+	 * saved tickets. Returns null if they cannot be counted.
+	 */
+	public VisitCounter getVisitCounter() {
+		VisitCounter counter = visitCounter;
+		if (counter == null) {
+			synchronized (this) {
+				if (visitCounter == null) {
+					reloadVisitCounts();
+				}
+				counter = visitCounter;
+			}
+		}
+		return counter;
+	}
+
+	public synchronized void reloadVisitCounts() {
+		long start = System.nanoTime();
+		Connection con = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_VEHICLES);
+			ResultSet rs = ps.executeQuery();
+			VisitCounter counter = new VisitCounter(rs.next() ? rs.getInt(1) : 0);
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			ps = con.prepareStatement(DBConstants.GET_VISIT_COUNTS, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(10_000);
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				counter.add(rs.getString(1), rs.getInt(2));
+			}
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			// archived tickets still count as visits
+			ps = con.prepareStatement(DBConstants.GET_ARCHIVED_VISIT_COUNTS, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(10_000);
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				counter.add(rs.getString(1), rs.getInt(2));
+			}
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			visitCounter = counter;
+			logger.info("Visits of {} vehicle(s) loaded", counter.size());
+		} catch (Exception ex) {
+			RELOAD_VISIT_COUNTS_TIMER.recordError();
+			logger.error("Error counting visits", ex);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+			RELOAD_VISIT_COUNTS_TIMER.recordSince(start);
+		}
+	}
+
+	public synchronized void reloadOpenTickets() {
+		long start = System.nanoTime();
+		Connection con = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+			ResultSet rs = ps.executeQuery();
+			OpenTicketCache cache = new OpenTicketCache(0);
+			while (rs.next()) {
+				cache.put(rs.getString(7), rs.getInt(2), rs.getInt(1), ParkingType.valueOf(rs.getString(6)),
+						TimeUtil.toEpochMillis(rs.getTimestamp(4).toLocalDateTime()));
+			}
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			openTicketCache = cache;
+		} catch (Exception ex) {
+			RELOAD_OPEN_TICKETS_TIMER.recordError();
+			logger.error("Error loading open tickets", ex);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+			RELOAD_OPEN_TICKETS_TIMER.recordSince(start);
+		}
+	}
+
+	/**
+	 * Saves the ticket's price and out-time, batched or not as
+	 * {@link #saveTicket(Ticket)}.
+	 */
 	public boolean updateTicket(Ticket ticket) {
+		return updateTicket(ticket, false);
+	}
+
+	/**
+	 * Write-behind only: saves the ticket's price and out-time and frees its
+	 * spot in the parking table in the same batch transaction.
+	 *
+	 * @throws IllegalStateException if write-behind is off or a unit of work
+	 *                               is active
+	 */
+	public boolean updateTicketFreeingSpot(Ticket ticket) {
+		return updateTicket(ticket, true);
+	}
+
+	private boolean updateTicket(Ticket ticket, boolean freeingSpot) {
+		long start = System.nanoTime();
+		TicketWriteBatcher batcher = getWriteBatcher(freeingSpot);
+		if (batcher != null) {
+			boolean updated = freeingSpot ? batcher.updateFreeingSpot(ticket) : batcher.update(ticket);
+			if (updated) {
+				uncacheOpenTicket(ticket);
+			} else {
+				UPDATE_TICKET_TIMER.recordError();
+			}
+			UPDATE_TICKET_TIMER.recordSince(start);
+			return updated;
+		}
 		Connection con = null;
 		try {
 			con = dataBaseConfig.getConnection();
 			PreparedStatement ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
-			ps.setDouble(1, ticket.getPrice());
-			ps.setTimestamp(2, Timestamp.valueOf(ticket.getOutTime()));
-			ps.setInt(3, ticket.getId());
-			ps.execute();
-			return true;
+			setUpdateTicketParameters(ps, ticket);
+			int updateRowCount = ps.executeUpdate();
+			dataBaseConfig.closePreparedStatement(ps);
+			if (updateRowCount == 1) {
+				uncacheOpenTicket(ticket);
+			}
+			return (updateRowCount == 1);
 		} catch (Exception ex) {
+			UPDATE_TICKET_TIMER.recordError();
 			logger.error("Error saving ticket info", ex);
 		} finally {
 			dataBaseConfig.closeConnection(con);
+			UPDATE_TICKET_TIMER.recordSince(start);
 		}
 		return false;
 	}
+
+	/**
+	 * Inserts a ticket replayed from the gate journal, unless the ticket of that
+	 * vehicle and in-time is already there. Leaves the caches alone: the gate
+	 * updated them when it journaled the ticket.
+	 */
+	public void saveJournaledTicket(Ticket ticket) throws ClassNotFoundException, SQLException {
+		long start = System.nanoTime();
+		Connection con = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_JOURNALED_TICKET);
+			setSaveTicketParameters(ps, ticket);
+			ps.setString(6, ticket.getVehicleRegNumber());
+			ps.setTimestamp(7, Timestamp.valueOf(ticket.getInTime()));
+			ps.executeUpdate();
+			dataBaseConfig.closePreparedStatement(ps);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+			SAVE_JOURNALED_TICKET_TIMER.recordSince(start);
+		}
+	}
+
+	/**
+	 * Saves the price and out-time of a ticket replayed from the gate journal,
+	 * found by ID or, when it was journaled too, by vehicle and in-time.
+	 */
+	public void closeJournaledTicket(Ticket ticket) throws ClassNotFoundException, SQLException {
+		long start = System.nanoTime();
+		Connection con = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			PreparedStatement ps;
+			if (ticket.getId() > 0) {
+				ps = con.prepareStatement(DBConstants.UPDATE_TICKET);
+				setUpdateTicketParameters(ps, ticket);
+			} else {
+				ps = con.prepareStatement(DBConstants.CLOSE_JOURNALED_TICKET);
+				ps.setBigDecimal(1, PricesUtil.toDecimal(ticket.getPriceCents()));
+				ps.setTimestamp(2, Timestamp.valueOf(ticket.getOutTime()));
+				ps.setString(3, ticket.getVehicleRegNumber());
+				ps.setTimestamp(4, Timestamp.valueOf(ticket.getInTime()));
+			}
+			ps.executeUpdate();
+			dataBaseConfig.closePreparedStatement(ps);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+			CLOSE_JOURNALED_TICKET_TIMER.recordSince(start);
+		}
+	}
+
+	/**
+	 * Adds a journaled ticket, not in the DB yet, to the open tickets and the
+	 * visit counts.
+	 */
+	public void cacheJournaledTicket(Ticket ticket) {
+		OpenTicketCache cache = getOpenTicketCache();
+		if (cache != null) {
+			cache.put(ticket);
+		}
+		VisitCounter counter = getVisitCounter();
+		if (counter != null) {
+			counter.increment(ticket.getVehicleRegNumber());
+		}
+	}
+
+	/**
+	 * Takes a journaled exit's ticket out of the open tickets.
+	 */
+	public void uncacheJournaledTicket(Ticket ticket) {
+		OpenTicketCache cache = openTicketCache;
+		if (cache != null) {
+			cache.remove(ticket.getVehicleRegNumber(), ticket.getId());
+		}
+	}
+
+	/**
+	 * Receives closed tickets one row at a time, without building a Ticket.
+	 * recurringUser is true when the vehicle has an earlier ticket, lot is the
+	 * lot of the ticket's spot.
+	 */
+	public interface ClosedTicketHandler {
+		/**
+		 * @return false to stop reading
+		 */
+		boolean accept(int ticketId, int lot, ParkingType parkingType, long inEpochMillis, long outEpochMillis,
+				long priceCents, boolean recurringUser) throws Exception;
+	}
+
+	/**
+	 * Streams the closed tickets with an ID above afterTicketId, in ID order,
+	 * over a forward-only read-only cursor reading fetchSize rows at a time
+	 * (Integer.MIN_VALUE streams row by row on MySQL).
+	 * 
+	 * @return the number of tickets read
+	 */
+	public long streamClosedTickets(int afterTicketId, int fetchSize, ClosedTicketHandler handler)
+			throws Exception {
+		long start = System.nanoTime();
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		long count = 0;
+		try {
+			con = dataBaseConfig.getConnection();
+			ps = con.prepareStatement(DBConstants.GET_CLOSED_TICKETS_AFTER, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			ps.setInt(1, afterTicketId);
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				count++;
+				if (!handler.accept(rs.getInt(1), rs.getInt(7), ParkingType.valueOf(rs.getString(4)),
+						TimeUtil.toEpochMillis(rs.getTimestamp(2).toLocalDateTime()),
+						TimeUtil.toEpochMillis(rs.getTimestamp(3).toLocalDateTime()), getPriceCents(rs, 5),
+						rs.getBoolean(6))) {
+					break;
+				}
+			}
+			return count;
+		} finally {
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+			STREAM_CLOSED_TICKETS_TIMER.recordSince(start);
+		}
+	}
+
+	/**
+	 * Sets the price of the first count tickets in one JDBC batch and commits it.
+	 * Not to be called inside a unit of work.
+	 */
+	public void updateTicketPrices(int[] ticketIds, long[] priceCents, int count)
+			throws ClassNotFoundException, SQLException {
+		long start = System.nanoTime();
+		Connection con = null;
+		PreparedStatement ps = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			con.setAutoCommit(false);
+			ps = con.prepareStatement(DBConstants.UPDATE_TICKET_PRICE);
+			for (int i = 0; i < count; i++) {
+				ps.setBigDecimal(1, PricesUtil.toDecimal(priceCents[i]));
+				ps.setInt(2, ticketIds[i]);
+				ps.addBatch();
+			}
+			ps.executeBatch();
+			con.commit();
+		} catch (SQLException ex) {
+			UPDATE_TICKET_PRICES_TIMER.recordError();
+			if (con != null) {
+				con.rollback();
+			}
+			throw ex;
+		} finally {
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+			UPDATE_TICKET_PRICES_TIMER.recordSince(start);
+		}
+	}
+
+	/**
+	 * @return the lowest and highest ticket IDs of the ticket table and the
+	 *         ticket archive, {0, 0} when both are empty
+	 */
+	public int[] getTicketIdRange() throws ClassNotFoundException, SQLException {
+		long start = System.nanoTime();
+		Connection con = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET_ID_RANGE);
+			ResultSet rs = ps.executeQuery();
+			int[] range = { 0, 0 };
+			if (rs.next()) {
+				boolean empty = true;
+				for (int column = 1; column <= 3; column += 2) {
+					int min = rs.getInt(column);
+					if (!rs.wasNull()) {
+						range[0] = empty ? min : Math.min(range[0], min);
+						range[1] = empty ? rs.getInt(column + 1) : Math.max(range[1], rs.getInt(column + 1));
+						empty = false;
+					}
+				}
+			}
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			return range;
+		} catch (SQLException ex) {
+			GET_TICKET_ID_RANGE_TIMER.recordError();
+			throw ex;
+		} finally {
+			dataBaseConfig.closeConnection(con);
+			GET_TICKET_ID_RANGE_TIMER.recordSince(start);
+		}
+	}
+
+	/**
+	 * Receives report tickets one row at a time, without building a Ticket.
+	 * outEpochMillis is Long.MAX_VALUE while the vehicle is still parked.
+	 */
+	public interface ReportTicketHandler {
+		void accept(String vehicleRegNumber, int parkingNumber, long inEpochMillis, long outEpochMillis,
+				long priceCents) throws Exception;
+	}
+
+	/**
+	 * Streams the tickets of the ticket table and the ticket archive with an ID
+	 * above afterTicketId and up to lastTicketId that were open at some point
+	 * between from and to, over a forward-only read-only cursor reading
+	 * fetchSize rows at a time (Integer.MIN_VALUE streams row by row on MySQL).
+	 * Rows come in no particular order.
+	 *
+	 * @return the number of tickets read
+	 */
+	public long streamReportTickets(int afterTicketId, int lastTicketId, LocalDateTime from, LocalDateTime to,
+			int fetchSize, ReportTicketHandler handler) throws Exception {
+		long start = System.nanoTime();
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		long count = 0;
+		try {
+			con = dataBaseConfig.getConnection();
+			ps = con.prepareStatement(DBConstants.GET_REPORT_TICKETS, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(fetchSize);
+			for (int table = 0; table < 2; table++) {
+				ps.setInt(table * 4 + 1, afterTicketId);
+				ps.setInt(table * 4 + 2, lastTicketId);
+				ps.setTimestamp(table * 4 + 3, Timestamp.valueOf(to));
+				ps.setTimestamp(table * 4 + 4, Timestamp.valueOf(from));
+			}
+			rs = ps.executeQuery();
+			while (rs.next()) {
+				count++;
+				Timestamp outTime = rs.getTimestamp(4);
+				handler.accept(rs.getString(1), rs.getInt(2),
+						TimeUtil.toEpochMillis(rs.getTimestamp(3).toLocalDateTime()),
+						outTime == null ? Long.MAX_VALUE : TimeUtil.toEpochMillis(outTime.toLocalDateTime()),
+						getPriceCents(rs, 5));
+			}
+			return count;
+		} catch (SQLException ex) {
+			STREAM_REPORT_TICKETS_TIMER.recordError();
+			throw ex;
+		} finally {
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+			STREAM_REPORT_TICKETS_TIMER.recordSince(start);
+		}
+	}
+
+	/**
+	 * Moves the tickets closed before closedBefore with an ID above
+	 * afterTicketId to the ticket archive, in ID order, up to ticketIds.length
+	 * of them, and commits. They are found without locks, then only their rows
+	 * are locked by primary key until the commit: not the open tickets between
+	 * them nor the gaps new tickets are inserted into. Not to be called inside
+	 * a unit of work.
+	 *
+	 * @param ticketIds receives the IDs of the archived tickets
+	 * @return the number of tickets archived, 0 once there are none left
+	 */
+	public int archiveClosedTickets(int afterTicketId, LocalDateTime closedBefore, int[] ticketIds)
+			throws ClassNotFoundException, SQLException {
+		long start = System.nanoTime();
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			con.setAutoCommit(false);
+			Timestamp cutoff = Timestamp.valueOf(closedBefore);
+			ps = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKETS);
+			ps.setInt(1, afterTicketId);
+			ps.setTimestamp(2, cutoff);
+			ps.setInt(3, ticketIds.length);
+			rs = ps.executeQuery();
+			int count = 0;
+			while (rs.next()) {
+				ticketIds[count++] = rs.getInt(1);
+			}
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			rs = null;
+			ps = null;
+			if (count == 0) {
+				con.commit();
+				return 0;
+			}
+			ps = con.prepareStatement(ticketIdsStatement(DBConstants.LOCK_ARCHIVABLE_TICKETS_PREFIX, count,
+					DBConstants.LOCK_ARCHIVABLE_TICKETS_SUFFIX));
+			setTicketIdsParameters(ps, cutoff, ticketIds, count);
+			rs = ps.executeQuery();
+			int locked = 0;
+			while (rs.next()) {
+				locked++;
+			}
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			rs = null;
+			ps = con.prepareStatement(ticketIdsStatement(DBConstants.ARCHIVE_TICKETS_PREFIX, count,
+					DBConstants.TICKET_IDS_SUFFIX));
+			setTicketIdsParameters(ps, cutoff, ticketIds, count);
+			int archived = ps.executeUpdate();
+			dataBaseConfig.closePreparedStatement(ps);
+			ps = con.prepareStatement(ticketIdsStatement(DBConstants.DELETE_ARCHIVED_TICKETS_PREFIX, count,
+					DBConstants.TICKET_IDS_SUFFIX));
+			setTicketIdsParameters(ps, cutoff, ticketIds, count);
+			int deleted = ps.executeUpdate();
+			if (locked != count || archived != count || deleted != count) {
+				throw new SQLException("Tickets " + ticketIds[0] + " to " + ticketIds[count - 1]
+						+ " changed while archived: " + count + " found, " + locked + " locked, " + archived
+						+ " archived, " + deleted + " deleted");
+			}
+			con.commit();
+			return count;
+		} catch (SQLException ex) {
+			ARCHIVE_CLOSED_TICKETS_TIMER.recordError();
+			if (con != null) {
+				con.rollback();
+			}
+			throw ex;
+		} finally {
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+			ARCHIVE_CLOSED_TICKETS_TIMER.recordSince(start);
+		}
+	}
+
+	/**
+	 * Splits the month partitions of the ticket archive off its last partition,
+	 * pfuture, up to the given month included, so that no archived ticket lands
+	 * in pfuture. Does nothing on databases other than MySQL, where the archive
+	 * is not partitioned.
+	 *
+	 * @return the number of partitions added
+	 */
+	public int addArchivePartitions(YearMonth through) throws ClassNotFoundException, SQLException {
+		long start = System.nanoTime();
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			con = dataBaseConfig.getConnection();
+			if (!"MySQL".equals(con.getMetaData().getDatabaseProductName())) {
+				return 0;
+			}
+			ps = con.prepareStatement(DBConstants.GET_ARCHIVE_PARTITIONS);
+			rs = ps.executeQuery();
+			YearMonth lastMonth = null;
+			while (rs.next()) {
+				String partition = rs.getString(1);
+				if (partition.matches("p[0-9]{6}")) {
+					YearMonth month = YearMonth.parse(partition.substring(1), ARCHIVE_PARTITION_MONTH);
+					if (lastMonth == null || month.isAfter(lastMonth)) {
+						lastMonth = month;
+					}
+				}
+			}
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			rs = null;
+			ps = null;
+			if (lastMonth == null || !lastMonth.isBefore(through)) {
+				return 0;
+			}
+			StringBuilder sql = new StringBuilder(DBConstants.ADD_ARCHIVE_PARTITIONS_PREFIX);
+			int added = 0;
+			for (YearMonth month = lastMonth.plusMonths(1); !month.isAfter(through); month = month.plusMonths(1)) {
+				sql.append("partition p").append(month.format(ARCHIVE_PARTITION_MONTH)).append(" values less than ('")
+						.append(month.plusMonths(1).atDay(1)).append("'), ");
+				added++;
+			}
+			ps = con.prepareStatement(sql.append(DBConstants.ADD_ARCHIVE_PARTITIONS_SUFFIX).toString());
+			ps.executeUpdate();
+			return added;
+		} catch (SQLException ex) {
+			ADD_ARCHIVE_PARTITIONS_TIMER.recordError();
+			throw ex;
+		} finally {
+			dataBaseConfig.closeResultSet(rs);
+			dataBaseConfig.closePreparedStatement(ps);
+			dataBaseConfig.closeConnection(con);
+			ADD_ARCHIVE_PARTITIONS_TIMER.recordSince(start);
+		}
+	}
+
+	private static String ticketIdsStatement(String prefix, int ticketIds, String suffix) {
+		StringBuilder sql = new StringBuilder(prefix.length() + 2 * ticketIds + suffix.length());
+		sql.append(prefix);
+		for (int i = 0; i < ticketIds; i++) {
+			if (i > 0) {
+				sql.append(',');
+			}
+			sql.append('?');
+		}
+		return sql.append(suffix).toString();
+	}
+
+	private static void setTicketIdsParameters(PreparedStatement ps, Timestamp cutoff, int[] ticketIds, int count)
+			throws SQLException {
+		ps.setTimestamp(1, cutoff);
+		for (int i = 0; i < count; i++) {
+			ps.setInt(i + 2, ticketIds[i]);
+		}
+	}
+
+	static void setUpdateTicketParameters(PreparedStatement ps, Ticket ticket) throws SQLException {
+		ps.setBigDecimal(1, PricesUtil.toDecimal(ticket.getPriceCents()));
+		ps.setTimestamp(2, Timestamp.valueOf(ticket.getOutTime()));
+		ps.setInt(3, ticket.getId());
+	}
+
+	private void uncacheOpenTicket(Ticket ticket) {
+		OpenTicketCache cache = openTicketCache;
+		if (cache != null) {
+			String vehicleRegNumber = ticket.getVehicleRegNumber();
+			int ticketId = ticket.getId();
+			UnitOfWork.afterCommit(() -> cache.remove(vehicleRegNumber, ticketId));
+		}
+	}
+
+	/**
+	 * Switches to write-behind: from now on ticket inserts and updates from all
+	 * threads outside a unit of work are written in JDBC batches of up to
+	 * maxBatchSize, one commit per batch, waiting at most maxLatency for a batch
+	 * to fill. Callers still get their answer only once their ticket is
+	 * committed, or false after a few seconds if it cannot be.
+	 */
+	public void startWriteBehind(int maxBatchSize, long maxLatency, TimeUnit unit) {
+		startWriteBehind(maxBatchSize, maxLatency, unit, WRITE_BEHIND_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Same as {@link #startWriteBehind(int, long, TimeUnit)}, giving up on a
+	 * ticket still queued after writeTimeoutMillis.
+	 */
+	public synchronized void startWriteBehind(int maxBatchSize, long maxLatency, TimeUnit unit,
+			long writeTimeoutMillis) {
+		if (writeBatcher == null) {
+			writeBatcher = new TicketWriteBatcher(dataBaseConfig, maxBatchSize, maxLatency, unit, writeTimeoutMillis);
+		}
+	}
+
+	public boolean isWriteBehind() {
+		return writeBatcher != null;
+	}
+
+	/**
+	 * @return the batcher to write with, null to write directly: inside a unit
+	 *         of work, tickets are written on its connection
+	 */
+	private TicketWriteBatcher getWriteBatcher(boolean required) {
+		TicketWriteBatcher batcher = writeBatcher;
+		if (UnitOfWork.current() != null) {
+			batcher = null;
+		}
+		if (required && batcher == null) {
+			throw new IllegalStateException("Spots are only written with tickets in write-behind mode, outside a unit of work");
+		}
+		return batcher;
+	}
+
+	/**
+	 * Writes the queued tickets and goes back to one statement per ticket.
+	 */
+	public synchronized void stopWriteBehind() {
+		TicketWriteBatcher batcher = writeBatcher;
+		if (batcher != null) {
+			writeBatcher = null;
+			batcher.close();
+		}
+	}
+
+	private static Timer daoTimer(String method) {
+		return MetricsRegistry.getDefault().daoTimer("TicketDAO." + method);
+	}
 }
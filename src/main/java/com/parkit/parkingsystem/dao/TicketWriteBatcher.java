@@ -0,0 +1,366 @@
+package com.parkit.parkingsystem.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Write-behind for {@link TicketDAO}: ticket inserts and updates from all
+ * threads are queued and written by one thread in JDBC batches, one commit per
+ * batch. A batch is flushed when it reaches maxBatchSize or when its oldest
+ * write has waited maxLatency. Callers block until their batch is committed.
+ * <p>
+ * The writer keeps its own pooled connection, so it cannot be starved by
+ * callers holding connections while they wait for it. Callers must not hold
+ * locks the batch needs either, e.g. an uncommitted update of the spot of
+ * their ticket, which the ticket's foreign key waits for: a write can carry
+ * its spot's availability, to be written in the same batch transaction.
+ * <p>
+ * A write still queued after writeTimeoutMillis is abandoned and never
+ * written. Once its batch is being written, its statements time out after
+ * writeTimeoutMillis too, so callers never wait much longer than twice that.
+ */
+class TicketWriteBatcher {
+
+	private static final Logger logger = LogManager.getLogger("TicketWriteBatcher");
+
+	private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final DataBaseConfig dataBaseConfig;
+	private final int maxBatchSize;
+	private final long maxLatencyNanos;
+	private final long writeTimeoutMillis;
+	private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+	private final Thread writer;
+	private volatile boolean running = true;
+	private Connection connection;
+
+	TicketWriteBatcher(DataBaseConfig dataBaseConfig, int maxBatchSize, long maxLatency, TimeUnit unit,
+			long writeTimeoutMillis) {
+		if (maxBatchSize < 1 || maxLatency < 0 || writeTimeoutMillis < 1) {
+			throw new IllegalArgumentException("Invalid ticket batch settings");
+		}
+		this.dataBaseConfig = dataBaseConfig;
+		this.maxBatchSize = maxBatchSize;
+		this.maxLatencyNanos = unit.toNanos(maxLatency);
+		this.writeTimeoutMillis = writeTimeoutMillis;
+		this.writer = new Thread(this::writeBatches, "ticket-write-batcher");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * @return true once the ticket is committed, its ID is then set
+	 */
+	boolean save(Ticket ticket) {
+		return submit(new PendingWrite(ticket, true, false));
+	}
+
+	/**
+	 * Same as {@link #save(Ticket)}, claiming the ticket's spot in the same
+	 * transaction.
+	 *
+	 * @return false, and nothing is written, if the spot was not available
+	 */
+	boolean saveClaimingSpot(Ticket ticket) {
+		return submit(new PendingWrite(ticket, true, true));
+	}
+
+	/**
+	 * @return true once the ticket's price and out-time are committed
+	 */
+	boolean update(Ticket ticket) {
+		return submit(new PendingWrite(ticket, false, false));
+	}
+
+	/**
+	 * Same as {@link #update(Ticket)}, freeing the ticket's spot in the same
+	 * transaction.
+	 */
+	boolean updateFreeingSpot(Ticket ticket) {
+		return submit(new PendingWrite(ticket, false, true));
+	}
+
+	/**
+	 * Writes what is still queued and stops the writer thread.
+	 */
+	void close() {
+		synchronized (this) {
+			running = false;
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean submit(PendingWrite write) {
+		synchronized (this) {
+			// queued before close() returns, so the writer still sees it
+			if (!running) {
+				throw new IllegalStateException("Ticket write batcher is closed");
+			}
+			queue.add(write);
+		}
+		try {
+			return write.result.get(writeTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			if (write.abandon()) {
+				logger.error("Ticket of {} not written after {} ms, abandoned", write.ticket.getVehicleRegNumber(),
+						writeTimeoutMillis);
+				return false;
+			}
+			// its batch is being written, with statement timeouts
+			return write.result.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			// written or abandoned, never left for the writer to find later
+			return !write.abandon() && write.result.join();
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	private void writeBatches() {
+		List<PendingWrite> batch = new ArrayList<>(maxBatchSize);
+		try {
+			while (running || !queue.isEmpty()) {
+				PendingWrite first = queue.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = first.queuedAt + maxLatencyNanos;
+				while (batch.size() < maxBatchSize) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0 || !running) {
+						queue.drainTo(batch, maxBatchSize - batch.size());
+						break;
+					}
+					// wakes up regularly to notice close()
+					PendingWrite next = queue.poll(Math.min(remaining, POLL_NANOS), TimeUnit.NANOSECONDS);
+					if (next != null) {
+						batch.add(next);
+					}
+				}
+				// abandoned writes are left out, the others can no longer be
+				batch.removeIf(write -> !write.startWriting());
+				if (!batch.isEmpty()) {
+					flush(batch);
+				}
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			for (PendingWrite write : batch) {
+				write.result.complete(false);
+			}
+			PendingWrite write;
+			while ((write = queue.poll()) != null) {
+				write.result.complete(false);
+			}
+			releaseConnection();
+		}
+	}
+
+	private void flush(List<PendingWrite> batch) {
+		try {
+			writeBatch(batch);
+			return;
+		} catch (Exception ex) {
+			logger.error("Error writing batch of {} ticket(s), retrying them one by one", batch.size(), ex);
+			releaseConnection();
+		}
+		// one bad ticket must not fail the others
+		for (PendingWrite write : batch) {
+			if (write.result.isDone()) {
+				continue;
+			}
+			try {
+				writeBatch(Collections.singletonList(write));
+			} catch (Exception ex) {
+				logger.error("Error writing ticket", ex);
+				releaseConnection();
+				write.result.complete(false);
+			}
+		}
+	}
+
+	private void writeBatch(List<PendingWrite> batch) throws ClassNotFoundException, SQLException {
+		Connection con = getConnection();
+		PreparedStatement claims = null;
+		PreparedStatement inserts = null;
+		PreparedStatement updates = null;
+		PreparedStatement frees = null;
+		try {
+			List<PendingWrite> claiming = new ArrayList<>();
+			List<PendingWrite> saved = new ArrayList<>();
+			List<PendingWrite> updated = new ArrayList<>();
+			for (PendingWrite write : batch) {
+				if (write.insert && write.withSpot) {
+					if (claims == null) {
+						claims = prepare(con, DBConstants.CLAIM_PARKING_SPOT);
+					}
+					claims.setInt(1, write.ticket.getParkingSpot().getId());
+					claims.addBatch();
+					claiming.add(write);
+				} else if (write.withSpot) {
+					if (frees == null) {
+						frees = prepare(con, DBConstants.UPDATE_PARKING_SPOT);
+					}
+					frees.setBoolean(1, true);
+					frees.setInt(2, write.ticket.getParkingSpot().getId());
+					frees.addBatch();
+				}
+				if (write.insert) {
+					if (inserts == null) {
+						inserts = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+						inserts.setQueryTimeout(queryTimeoutSeconds());
+					}
+					TicketDAO.setSaveTicketParameters(inserts, write.ticket);
+					inserts.addBatch();
+					saved.add(write);
+				} else {
+					if (updates == null) {
+						updates = prepare(con, DBConstants.UPDATE_TICKET);
+					}
+					TicketDAO.setUpdateTicketParameters(updates, write.ticket);
+					updates.addBatch();
+					updated.add(write);
+				}
+			}
+
+			// spots first: the ticket inserts then find their spot's row locked by
+			// this transaction, not by a gate
+			int[] claimCounts = claims == null ? new int[0] : claims.executeBatch();
+			for (int i = 0; i < claimCounts.length; i++) {
+				if (!isSuccess(claimCounts[i])) {
+					throw new SQLException("Parking spot " + claiming.get(i).ticket.getParkingSpot().getId()
+							+ " is no longer available");
+				}
+			}
+			int[] insertCounts = inserts == null ? new int[0] : inserts.executeBatch();
+			int[] ids = new int[saved.size()];
+			if (inserts != null) {
+				ResultSet generatedKeys = inserts.getGeneratedKeys();
+				for (int i = 0; i < ids.length && generatedKeys.next(); i++) {
+					ids[i] = generatedKeys.getInt(1);
+				}
+				dataBaseConfig.closeResultSet(generatedKeys);
+			}
+			int[] updateCounts = updates == null ? new int[0] : updates.executeBatch();
+			if (frees != null) {
+				frees.executeBatch();
+			}
+			con.commit();
+
+			for (int i = 0; i < saved.size(); i++) {
+				PendingWrite write = saved.get(i);
+				boolean success = isSuccess(insertCounts[i]) && ids[i] > 0;
+				if (success) {
+					write.ticket.setId(ids[i]);
+				}
+				write.result.complete(success);
+			}
+			for (int i = 0; i < updated.size(); i++) {
+				updated.get(i).result.complete(isSuccess(updateCounts[i]));
+			}
+		} catch (SQLException | RuntimeException ex) {
+			try {
+				con.rollback();
+			} catch (SQLException rollbackEx) {
+				logger.error("Error rolling back ticket batch", rollbackEx);
+			}
+			throw ex;
+		} finally {
+			dataBaseConfig.closePreparedStatement(claims);
+			dataBaseConfig.closePreparedStatement(inserts);
+			dataBaseConfig.closePreparedStatement(updates);
+			dataBaseConfig.closePreparedStatement(frees);
+		}
+	}
+
+	private PreparedStatement prepare(Connection con, String sql) throws SQLException {
+		PreparedStatement ps = con.prepareStatement(sql);
+		ps.setQueryTimeout(queryTimeoutSeconds());
+		return ps;
+	}
+
+	private int queryTimeoutSeconds() {
+		return (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(writeTimeoutMillis));
+	}
+
+	private static boolean isSuccess(int updateCount) {
+		return updateCount == 1 || updateCount == Statement.SUCCESS_NO_INFO;
+	}
+
+	private Connection getConnection() throws ClassNotFoundException, SQLException {
+		if (connection == null) {
+			connection = dataBaseConfig.getConnection();
+			connection.setAutoCommit(false);
+		}
+		return connection;
+	}
+
+	private void releaseConnection() {
+		if (connection != null) {
+			dataBaseConfig.closeConnection(connection);
+			connection = null;
+		}
+	}
+
+	private static class PendingWrite {
+		private static final int QUEUED = 0;
+		private static final int WRITING = 1;
+		private static final int ABANDONED = 2;
+
+		final Ticket ticket;
+		final boolean insert;
+		// the spot is claimed with the insert, freed with the update
+		final boolean withSpot;
+		final long queuedAt = System.nanoTime();
+		final CompletableFuture<Boolean> result = new CompletableFuture<>();
+		private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+		PendingWrite(Ticket ticket, boolean insert, boolean withSpot) {
+			this.ticket = ticket;
+			this.insert = insert;
+			this.withSpot = withSpot;
+		}
+
+		/**
+		 * @return false if the caller gave up on it
+		 */
+		boolean startWriting() {
+			return state.compareAndSet(QUEUED, WRITING);
+		}
+
+		/**
+		 * @return false if the writer already started writing it
+		 */
+		boolean abandon() {
+			return state.compareAndSet(QUEUED, ABANDONED);
+		}
+	}
+}
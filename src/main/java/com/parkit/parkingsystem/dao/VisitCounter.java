@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.concurrent.locks.StampedLock;
+
+import com.parkit.parkingsystem.util.PlateCodec;
+
+/**
+ * Number of tickets of every vehicle that ever came, in an open-addressing
+ * table of {@link PlateCodec} longs: 16 to 32 bytes a vehicle and no object
+ * per entry. Lookups take constant time whatever the size of the ticket
+ * history and do not lock unless a count is being written at the same time.
+ */
+public class VisitCounter {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private final StampedLock lock = new StampedLock();
+
+	private Table table;
+	private int size;
+
+	public VisitCounter(int expectedVehicles) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < expectedVehicles) {
+			capacity <<= 1;
+		}
+		table = new Table(capacity);
+	}
+
+	/**
+	 * @return the tickets saved for that vehicle, 0 if it never came
+	 */
+	public int getVisits(String vehicleRegNumber) {
+		long plate = PlateCodec.encode(vehicleRegNumber);
+		long stamp = lock.tryOptimisticRead();
+		int count = table.find(plate);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				count = table.find(plate);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return count;
+	}
+
+	public void increment(String vehicleRegNumber) {
+		add(vehicleRegNumber, 1);
+	}
+
+	public void add(String vehicleRegNumber, int count) {
+		long plate = PlateCodec.encode(vehicleRegNumber);
+		long stamp = lock.writeLock();
+		try {
+			if (table.find(plate) == 0) {
+				if ((size + 1) * 4 > table.plates.length * 3) {
+					table = table.resize();
+				}
+				size++;
+			}
+			table.add(plate, count);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * @return the number of vehicles
+	 */
+	public int size() {
+		long stamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Both arrays in one object, so that a lookup racing with a resize reads a
+	 * consistent pair.
+	 */
+	private static final class Table {
+		// 0 marks a free slot, PlateCodec never returns it
+		final long[] plates;
+		final int[] visits;
+
+		Table(int capacity) {
+			plates = new long[capacity];
+			visits = new int[capacity];
+		}
+
+		int find(long plate) {
+			int mask = plates.length - 1;
+			int slot = PlateCodec.slot(plate, mask);
+			// a concurrent write can make this read stale, never endless
+			for (int probes = 0; probes < plates.length; probes++) {
+				long slotPlate = plates[slot];
+				if (slotPlate == plate) {
+					return visits[slot];
+				}
+				if (slotPlate == 0) {
+					return 0;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return 0;
+		}
+
+		// with room left for the plate
+		void add(long plate, int count) {
+			int mask = plates.length - 1;
+			int slot = PlateCodec.slot(plate, mask);
+			while (plates[slot] != 0 && plates[slot] != plate) {
+				slot = (slot + 1) & mask;
+			}
+			plates[slot] = plate;
+			visits[slot] += count;
+		}
+
+		Table resize() {
+			Table resized = new Table(plates.length * 2);
+			for (int i = 0; i < plates.length; i++) {
+				if (plates[i] != 0) {
+					resized.add(plates[i], visits[i]);
+				}
+			}
+			return resized;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.parkit.parkingsystem.event;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes every occupancy event to the "OccupancyAudit" log, off the gate
+ * path.
+ */
+public class AuditLogHandler implements OccupancyEventHandler {
+
+	private static final Logger logger = LogManager.getLogger("OccupancyAudit");
+
+	@Override
+	public void onEvent(OccupancyEvent event, boolean endOfBatch) {
+		logger.info("{}", event);
+	}
+
+	@Override
+	public void onEventsDropped(long count) {
+		logger.warn("{} occupancy event(s) missing from the audit log", count);
+	}
+}
@@ -0,0 +1,80 @@
+package com.parkit.parkingsystem.event;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+
+/**
+ * Keeps the free spot signs of each lot up to date. Spot changes only mark
+ * their lot and type as changed; the free spots are counted once per batch of
+ * events and only signs whose count moved are updated.
+ */
+public class DisplayBoardHandler implements OccupancyEventHandler {
+
+	private static final Logger logger = LogManager.getLogger("DisplayBoard");
+
+	/**
+	 * The signs of the parking.
+	 */
+	public interface DisplayBoard {
+		void show(int lot, ParkingType parkingType, int freeSpots);
+	}
+
+	private final ParkingSpotDAO parkingSpotDAO;
+	private final DisplayBoard displayBoard;
+	// lot * types + type ordinal
+	private final Set<Integer> changed = new HashSet<>();
+	private final Map<Integer, Integer> shown = new HashMap<>();
+
+	/**
+	 * Shows the free spots in the "DisplayBoard" log.
+	 */
+	public DisplayBoardHandler(ParkingSpotDAO parkingSpotDAO) {
+		this(parkingSpotDAO,
+				(lot, parkingType, freeSpots) -> logger.info("Lot {} {}: {} free", lot, parkingType, freeSpots));
+	}
+
+	public DisplayBoardHandler(ParkingSpotDAO parkingSpotDAO, DisplayBoard displayBoard) {
+		this.parkingSpotDAO = parkingSpotDAO;
+		this.displayBoard = displayBoard;
+	}
+
+	@Override
+	public void onEvent(OccupancyEvent event, boolean endOfBatch) {
+		if (event.getType() == OccupancyEvent.Type.SPOT_OCCUPIED || event.getType() == OccupancyEvent.Type.SPOT_FREED) {
+			changed.add(event.getLot() * ParkingType.values().length + event.getParkingType().ordinal());
+		}
+		if (endOfBatch) {
+			refresh();
+		}
+	}
+
+	@Override
+	public void onEventsDropped(long count) {
+		// counts come from the DAO, only which signs changed is lost
+		changed.addAll(shown.keySet());
+	}
+
+	private void refresh() {
+		ParkingType[] parkingTypes = ParkingType.values();
+		for (Integer sign : changed) {
+			int lot = sign / parkingTypes.length;
+			ParkingType parkingType = parkingTypes[sign % parkingTypes.length];
+			int freeSpots = parkingSpotDAO.countAvailableSlots(lot, parkingType);
+			if (freeSpots >= 0) {
+				Integer previous = shown.put(sign, freeSpots);
+				if (previous == null || previous != freeSpots) {
+					displayBoard.show(lot, parkingType, freeSpots);
+				}
+			}
+		}
+		changed.clear();
+	}
+}
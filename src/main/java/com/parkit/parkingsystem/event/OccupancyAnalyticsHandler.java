@@ -0,0 +1,364 @@
+package com.parkit.parkingsystem.event;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.util.TimeUtil;
+
+/**
+ * Live traffic, revenue and dwell time figures per vehicle type, kept from the
+ * occupancy events: entries, exits, fares and dwell times in tumbling
+ * one-minute buckets over the last hour and one-hour buckets over the last two
+ * days, a dwell time histogram and the vehicles parked since the handler was
+ * added.
+ * <p>
+ * Entries are counted in the bucket of their in-time, exits, fares and dwell
+ * times in the bucket of their out-time, as a query grouping the ticket table
+ * by IN_TIME or OUT_TIME would. Memory is allocated once; each event updates
+ * a few array slots, reusing a bucket when its time has passed. Events older
+ * than the oldest bucket of a window are left out of it and counted as late.
+ * <p>
+ * Only the consumer thread writes; queries from any thread see every event
+ * either counted or not, never half counted.
+ */
+public class OccupancyAnalyticsHandler implements OccupancyEventHandler {
+
+	public static final long MINUTE_MILLIS = 60_000;
+	public static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+	public static final int MINUTE_BUCKETS = 60;
+	public static final int HOUR_BUCKETS = 48;
+
+	// upper bounds of the dwell time histogram buckets, the last bucket has none
+	private static final long[] DWELL_BOUNDS_MINUTES = { 15, 30, 60, 120, 180, 240, 360, 480, 720, 1440 };
+
+	private static final int TYPES = ParkingType.values().length;
+
+	// the figures of a bucket, by type
+	private static final int ENTRIES = 0;
+	private static final int EXITS = 1;
+	private static final int REVENUE_CENTS = 2;
+	private static final int DWELL_MILLIS = 3;
+	private static final int FIELDS = 4;
+
+	private final StampedLock lock = new StampedLock();
+	private final Window minutes = new Window(MINUTE_BUCKETS, MINUTE_MILLIS);
+	private final Window hours = new Window(HOUR_BUCKETS, HOUR_MILLIS);
+	private final long[] parkedVehicles = new long[TYPES];
+	private final long[] dwellHistogram = new long[TYPES * (DWELL_BOUNDS_MINUTES.length + 1)];
+	private long lateEvents;
+	private long droppedEvents;
+
+	/**
+	 * Exposes the figures of the last hour in the registry, by vehicle type.
+	 */
+	public void register(MetricsRegistry metrics) {
+		for (ParkingType parkingType : ParkingType.values()) {
+			String type = parkingType.name();
+			metrics.gauge("parkingsystem_vehicles_parked", "Entries minus exits since startup",
+					() -> getParkedVehicles(parkingType), "type", type);
+			metrics.gauge("parkingsystem_last_hour_entries", "Vehicles entered in the last 60 minutes",
+					() -> lastHour(parkingType).getEntries(), "type", type);
+			metrics.gauge("parkingsystem_last_hour_exits", "Vehicles exited in the last 60 minutes",
+					() -> lastHour(parkingType).getExits(), "type", type);
+			metrics.gauge("parkingsystem_last_hour_revenue_cents", "Fares of the last 60 minutes",
+					() -> lastHour(parkingType).getRevenueCents(), "type", type);
+			metrics.gauge("parkingsystem_last_hour_dwell_seconds_average",
+					"Average dwell time of the vehicles exited in the last 60 minutes",
+					() -> lastHour(parkingType).getAverageDwellMillis() / 1000.0, "type", type);
+		}
+		metrics.counter("parkingsystem_analytics_late_events_total",
+				"Occupancy events older than the analytics windows", this::getLateEvents);
+		metrics.counter("parkingsystem_analytics_events_dropped_total", "Occupancy events the analytics missed",
+				this::getDroppedEvents);
+	}
+
+	private Bucket lastHour(ParkingType parkingType) {
+		return Bucket.sum(getMinuteBuckets(parkingType, TimeUtil.toEpochMillis(LocalDateTime.now())));
+	}
+
+	@Override
+	public void onEvent(OccupancyEvent event, boolean endOfBatch) {
+		int type = event.getParkingType().ordinal();
+		long stamp = lock.writeLock();
+		try {
+			switch (event.getType()) {
+			case VEHICLE_ENTERED:
+				parkedVehicles[type]++;
+				record(event.getEpochMillis(), type, 1, 0, 0, 0);
+				break;
+			case VEHICLE_EXITED:
+				parkedVehicles[type]--;
+				record(event.getEpochMillis(), type, 0, 1, event.getPriceCents(), event.getDwellMillis());
+				dwellHistogram[type * (DWELL_BOUNDS_MINUTES.length + 1) + dwellBucket(event.getDwellMillis())]++;
+				break;
+			default:
+				break;
+			}
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private void record(long epochMillis, int type, long entries, long exits, long revenueCents, long dwellMillis) {
+		boolean inMinutes = minutes.add(epochMillis, type, entries, exits, revenueCents, dwellMillis);
+		boolean inHours = hours.add(epochMillis, type, entries, exits, revenueCents, dwellMillis);
+		if (!inMinutes || !inHours) {
+			lateEvents++;
+		}
+	}
+
+	private static int dwellBucket(long dwellMillis) {
+		for (int i = 0; i < DWELL_BOUNDS_MINUTES.length; i++) {
+			if (dwellMillis <= DWELL_BOUNDS_MINUTES[i] * MINUTE_MILLIS) {
+				return i;
+			}
+		}
+		return DWELL_BOUNDS_MINUTES.length;
+	}
+
+	@Override
+	public void onEventsDropped(long count) {
+		long stamp = lock.writeLock();
+		droppedEvents += count;
+		lock.unlockWrite(stamp);
+	}
+
+	/**
+	 * @return the vehicles entered minus the vehicles exited since the handler
+	 *         was added
+	 */
+	public long getParkedVehicles(ParkingType parkingType) {
+		long stamp = lock.readLock();
+		try {
+			return parkedVehicles[parkingType.ordinal()];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return the MINUTE_BUCKETS one-minute buckets up to the one of
+	 *         nowEpochMillis, oldest first
+	 */
+	public List<Bucket> getMinuteBuckets(ParkingType parkingType, long nowEpochMillis) {
+		return getBuckets(minutes, parkingType, nowEpochMillis);
+	}
+
+	/**
+	 * @return the HOUR_BUCKETS one-hour buckets up to the one of nowEpochMillis,
+	 *         oldest first
+	 */
+	public List<Bucket> getHourBuckets(ParkingType parkingType, long nowEpochMillis) {
+		return getBuckets(hours, parkingType, nowEpochMillis);
+	}
+
+	private List<Bucket> getBuckets(Window window, ParkingType parkingType, long nowEpochMillis) {
+		long stamp = lock.readLock();
+		try {
+			return window.get(parkingType.ordinal(), nowEpochMillis);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return the number of exits since the handler was added by dwell time,
+	 *         bucket i counting the dwell times up to
+	 *         {@link #getDwellBoundsMinutes()}[i] minutes above the previous
+	 *         bound, the last one those above every bound
+	 */
+	public long[] getDwellHistogram(ParkingType parkingType) {
+		int from = parkingType.ordinal() * (DWELL_BOUNDS_MINUTES.length + 1);
+		long stamp = lock.readLock();
+		try {
+			return Arrays.copyOfRange(dwellHistogram, from, from + DWELL_BOUNDS_MINUTES.length + 1);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	public static long[] getDwellBoundsMinutes() {
+		return DWELL_BOUNDS_MINUTES.clone();
+	}
+
+	/**
+	 * @return the number of entries and exits left out of the minute or hour
+	 *         buckets as older than the oldest one
+	 */
+	public long getLateEvents() {
+		long stamp = lock.readLock();
+		try {
+			return lateEvents;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @return the number of events missed, the figures are short by as many
+	 */
+	public long getDroppedEvents() {
+		long stamp = lock.readLock();
+		try {
+			return droppedEvents;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * The figures of one vehicle type over one bucket of time.
+	 */
+	public static final class Bucket {
+		private final long startEpochMillis;
+		private final long entries;
+		private final long exits;
+		private final long revenueCents;
+		private final long dwellMillis;
+
+		public Bucket(long startEpochMillis, long entries, long exits, long revenueCents, long dwellMillis) {
+			this.startEpochMillis = startEpochMillis;
+			this.entries = entries;
+			this.exits = exits;
+			this.revenueCents = revenueCents;
+			this.dwellMillis = dwellMillis;
+		}
+
+		/**
+		 * @return the buckets added up, starting at the first one
+		 */
+		public static Bucket sum(List<Bucket> buckets) {
+			long entries = 0;
+			long exits = 0;
+			long revenueCents = 0;
+			long dwellMillis = 0;
+			for (Bucket bucket : buckets) {
+				entries += bucket.entries;
+				exits += bucket.exits;
+				revenueCents += bucket.revenueCents;
+				dwellMillis += bucket.dwellMillis;
+			}
+			return new Bucket(buckets.isEmpty() ? 0 : buckets.get(0).startEpochMillis, entries, exits, revenueCents,
+					dwellMillis);
+		}
+
+		public long getStartEpochMillis() {
+			return startEpochMillis;
+		}
+
+		public long getEntries() {
+			return entries;
+		}
+
+		public long getExits() {
+			return exits;
+		}
+
+		public long getRevenueCents() {
+			return revenueCents;
+		}
+
+		/**
+		 * @return the dwell times of the exits, added up
+		 */
+		public long getDwellMillis() {
+			return dwellMillis;
+		}
+
+		/**
+		 * @return the average dwell time of the exits, 0 if there were none
+		 */
+		public long getAverageDwellMillis() {
+			return exits == 0 ? 0 : dwellMillis / exits;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Bucket)) {
+				return false;
+			}
+			Bucket other = (Bucket) o;
+			return startEpochMillis == other.startEpochMillis && entries == other.entries && exits == other.exits
+					&& revenueCents == other.revenueCents && dwellMillis == other.dwellMillis;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(startEpochMillis, entries, exits, revenueCents, dwellMillis);
+		}
+
+		@Override
+		public String toString() {
+			return TimeUtil.toLocalDateTime(startEpochMillis) + ": " + entries + " in, " + exits + " out, "
+					+ revenueCents + " cents, " + dwellMillis + " ms parked";
+		}
+	}
+
+	/**
+	 * Tumbling buckets of one width in a ring: the bucket of a time goes to the
+	 * slot of its number modulo the size, and replaces the older bucket there.
+	 */
+	private static final class Window {
+		private final int size;
+		private final long widthMillis;
+		// the number of the bucket in each slot, Long.MIN_VALUE if none yet
+		private final long[] bucketNumbers;
+		// by slot, type and field
+		private final long[] values;
+		private long newestBucketNumber = Long.MIN_VALUE;
+
+		private Window(int size, long widthMillis) {
+			this.size = size;
+			this.widthMillis = widthMillis;
+			this.bucketNumbers = new long[size];
+			Arrays.fill(bucketNumbers, Long.MIN_VALUE);
+			this.values = new long[size * TYPES * FIELDS];
+		}
+
+		/**
+		 * @return false if the time is older than the oldest bucket
+		 */
+		private boolean add(long epochMillis, int type, long entries, long exits, long revenueCents,
+				long dwellMillis) {
+			long bucketNumber = Math.floorDiv(epochMillis, widthMillis);
+			if (newestBucketNumber != Long.MIN_VALUE && bucketNumber <= newestBucketNumber - size) {
+				return false;
+			}
+			int slot = (int) Math.floorMod(bucketNumber, (long) size);
+			if (bucketNumbers[slot] != bucketNumber) {
+				// any other bucket in the slot is at least a whole window older
+				bucketNumbers[slot] = bucketNumber;
+				Arrays.fill(values, slot * TYPES * FIELDS, (slot + 1) * TYPES * FIELDS, 0);
+			}
+			int offset = (slot * TYPES + type) * FIELDS;
+			values[offset + ENTRIES] += entries;
+			values[offset + EXITS] += exits;
+			values[offset + REVENUE_CENTS] += revenueCents;
+			values[offset + DWELL_MILLIS] += dwellMillis;
+			newestBucketNumber = Math.max(newestBucketNumber, bucketNumber);
+			return true;
+		}
+
+		private List<Bucket> get(int type, long nowEpochMillis) {
+			long last = Math.floorDiv(nowEpochMillis, widthMillis);
+			List<Bucket> buckets = new ArrayList<>(size);
+			for (long bucketNumber = last - size + 1; bucketNumber <= last; bucketNumber++) {
+				int slot = (int) Math.floorMod(bucketNumber, (long) size);
+				if (bucketNumbers[slot] == bucketNumber) {
+					int offset = (slot * TYPES + type) * FIELDS;
+					buckets.add(new Bucket(bucketNumber * widthMillis, values[offset + ENTRIES], values[offset + EXITS],
+							values[offset + REVENUE_CENTS], values[offset + DWELL_MILLIS]));
+				} else {
+					buckets.add(new Bucket(bucketNumber * widthMillis, 0, 0, 0, 0));
+				}
+			}
+			return buckets;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.parkit.parkingsystem.event;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * A committed change of the parking's occupancy, as published to an
+ * {@link OccupancyEventRing}. Immutable, so consumers on other threads always
+ * see it whole.
+ */
+public final class OccupancyEvent {
+
+	public enum Type {
+		VEHICLE_ENTERED, VEHICLE_EXITED, SPOT_OCCUPIED, SPOT_FREED
+	}
+
+	private final long sequence;
+	private final Type type;
+	private final int ticketId;
+	private final String vehicleRegNumber;
+	private final int parkingNumber;
+	private final ParkingType parkingType;
+	private final int lot;
+	private final long epochMillis;
+	private final long priceCents;
+	private final long dwellMillis;
+
+	OccupancyEvent(long sequence, Type type, int ticketId, String vehicleRegNumber, int parkingNumber,
+			ParkingType parkingType, int lot, long epochMillis, long priceCents, long dwellMillis) {
+		this.sequence = sequence;
+		this.type = type;
+		this.ticketId = ticketId;
+		this.vehicleRegNumber = vehicleRegNumber;
+		this.parkingNumber = parkingNumber;
+		this.parkingType = parkingType;
+		this.lot = lot;
+		this.epochMillis = epochMillis;
+		this.priceCents = priceCents;
+		this.dwellMillis = dwellMillis;
+	}
+
+	/**
+	 * @return the position of the event in the ring, from 0 in publication order
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getTicketId() {
+		return ticketId;
+	}
+
+	public String getVehicleRegNumber() {
+		return vehicleRegNumber;
+	}
+
+	public int getParkingNumber() {
+		return parkingNumber;
+	}
+
+	public ParkingType getParkingType() {
+		return parkingType;
+	}
+
+	public int getLot() {
+		return lot;
+	}
+
+	/**
+	 * @return the in-time of an entry, the out-time of an exit
+	 */
+	public long getEpochMillis() {
+		return epochMillis;
+	}
+
+	/**
+	 * @return the fare of an exit, 0 for other events
+	 */
+	public long getPriceCents() {
+		return priceCents;
+	}
+
+	/**
+	 * @return the time from entry to exit of an exit, 0 for other events
+	 */
+	public long getDwellMillis() {
+		return dwellMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + sequence + " " + type + " ticket " + ticketId + " vehicle " + vehicleRegNumber + " spot "
+				+ parkingNumber + " " + parkingType + " lot " + lot + " at " + epochMillis
+				+ (type == Type.VEHICLE_EXITED ? " fare " + priceCents + " cents after " + dwellMillis + " ms" : "");
+	}
+}
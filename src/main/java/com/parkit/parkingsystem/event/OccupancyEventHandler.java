@@ -0,0 +1,21 @@
+package com.parkit.parkingsystem.event;
+
+/**
+ * Consumer of an {@link OccupancyEventRing}, called on its own thread with
+ * the events in publication order.
+ */
+public interface OccupancyEventHandler {
+
+	/**
+	 * @param endOfBatch true when no later event is published yet, e.g. to
+	 *                   flush what was gathered from the previous ones
+	 */
+	void onEvent(OccupancyEvent event, boolean endOfBatch) throws Exception;
+
+	/**
+	 * Called when this handler fell a whole ring behind the publishers and
+	 * count events were overwritten before it could read them.
+	 */
+	default void onEventsDropped(long count) {
+	}
+}
@@ -0,0 +1,240 @@
+package com.parkit.parkingsystem.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+
+/**
+ * In-process fan-out of occupancy events, disruptor style: a ring of
+ * power-of-two size that publishers write into and that every consumer reads
+ * on its own thread, at its own pace, tracking its own sequence.
+ * <p>
+ * Publishing is lock-free and never waits for consumers: a publisher claims a
+ * sequence with one atomic increment and stores its event in that slot. A
+ * consumer that falls a whole ring behind does not hold the gates back; it
+ * skips to the most recent half of the ring and is told how many events it
+ * missed.
+ */
+public class OccupancyEventRing {
+
+	private static final Logger logger = LogManager.getLogger("OccupancyEventRing");
+
+	public static final int DEFAULT_SIZE = 1 << 14;
+
+	private static final int SPINS = 100;
+	private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+	private final AtomicReferenceArray<OccupancyEvent> slots;
+	private final int mask;
+	// next sequence to claim
+	private final AtomicLong cursor = new AtomicLong();
+	private final List<Consumer> consumers = new CopyOnWriteArrayList<>();
+
+	public OccupancyEventRing() {
+		this(DEFAULT_SIZE);
+	}
+
+	public OccupancyEventRing(int size) {
+		if (size < 2 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+		}
+		slots = new AtomicReferenceArray<>(size);
+		mask = size - 1;
+	}
+
+	/**
+	 * @return a ring feeding the display boards, the audit log, the metrics and
+	 *         the analytics, registered in the default {@link MetricsRegistry}
+	 *         along with the free spots per type
+	 */
+	public static OccupancyEventRing startDefault(ParkingSpotDAO parkingSpotDAO) {
+		OccupancyEventRing ring = new OccupancyEventRing();
+		ring.addHandler("display-board", new DisplayBoardHandler(parkingSpotDAO));
+		ring.addHandler("audit", new AuditLogHandler());
+		OccupancyMetricsHandler occupancyMetrics = new OccupancyMetricsHandler();
+		ring.addHandler("metrics", occupancyMetrics);
+		OccupancyAnalyticsHandler analytics = new OccupancyAnalyticsHandler();
+		ring.addHandler("analytics", analytics);
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		occupancyMetrics.register(metrics);
+		analytics.register(metrics);
+		for (ParkingType parkingType : ParkingType.values()) {
+			metrics.gauge("parkingsystem_spots_available", "Free spots, -1 if they cannot be counted",
+					() -> parkingSpotDAO.countAvailableSlots(parkingType), "type", parkingType.name());
+		}
+		metrics.counter("parkingsystem_occupancy_events_total", "Occupancy events published", ring::getPublished);
+		return ring;
+	}
+
+	/**
+	 * Starts a consumer thread delivering to the handler every event published
+	 * from now on.
+	 */
+	public synchronized Consumer addHandler(String name, OccupancyEventHandler handler) {
+		Consumer consumer = new Consumer(name, handler, cursor.get());
+		consumers.add(consumer);
+		consumer.thread.start();
+		return consumer;
+	}
+
+	/**
+	 * Publishes an event to every consumer, without waiting for any.
+	 *
+	 * @param priceCents  the fare of an exit, 0 for other events
+	 * @param dwellMillis the time from entry to exit of an exit, 0 for other
+	 *                    events
+	 * @return the sequence of the event
+	 */
+	public long publish(OccupancyEvent.Type type, int ticketId, String vehicleRegNumber, int parkingNumber,
+			ParkingType parkingType, int lot, long epochMillis, long priceCents, long dwellMillis) {
+		long sequence = cursor.getAndIncrement();
+		OccupancyEvent event = new OccupancyEvent(sequence, type, ticketId, vehicleRegNumber, parkingNumber,
+				parkingType, lot, epochMillis, priceCents, dwellMillis);
+		int index = (int) sequence & mask;
+		while (true) {
+			OccupancyEvent current = slots.get(index);
+			// a publisher a whole ring ahead may already have taken the slot
+			if ((current != null && current.getSequence() > sequence) || slots.compareAndSet(index, current, event)) {
+				return sequence;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of events published so far
+	 */
+	public long getPublished() {
+		return cursor.get();
+	}
+
+	public List<Consumer> getConsumers() {
+		return consumers;
+	}
+
+	/**
+	 * Lets every consumer read what is already published, then stops them,
+	 * waiting up to a second for each.
+	 */
+	public synchronized void close() {
+		for (Consumer consumer : consumers) {
+			consumer.closing = true;
+			LockSupport.unpark(consumer.thread);
+		}
+		for (Consumer consumer : consumers) {
+			try {
+				consumer.thread.join(CLOSE_TIMEOUT_MILLIS);
+				if (consumer.thread.isAlive()) {
+					logger.warn("Occupancy event consumer {} did not stop in time", consumer.name);
+					consumer.thread.interrupt();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		consumers.clear();
+	}
+
+	/**
+	 * One handler and the thread that feeds it.
+	 */
+	public final class Consumer {
+		private final String name;
+		private final OccupancyEventHandler handler;
+		private final Thread thread;
+		private final AtomicLong processed = new AtomicLong();
+		private final AtomicLong dropped = new AtomicLong();
+		private volatile boolean closing;
+		private long next;
+
+		private Consumer(String name, OccupancyEventHandler handler, long first) {
+			this.name = name;
+			this.handler = handler;
+			this.next = first;
+			this.thread = new Thread(this::consume, "occupancy-events-" + name);
+			thread.setDaemon(true);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the number of events handed to the handler so far
+		 */
+		public long getProcessed() {
+			return processed.get();
+		}
+
+		/**
+		 * @return the number of events overwritten before this consumer read them
+		 */
+		public long getDropped() {
+			return dropped.get();
+		}
+
+		private void consume() {
+			int idle = 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				OccupancyEvent event = slots.get((int) next & mask);
+				if (event == null || event.getSequence() < next) {
+					if (closing) {
+						return;
+					}
+					idle = idle(idle);
+					continue;
+				}
+				idle = 0;
+				if (event.getSequence() > next) {
+					skipOverwritten();
+					continue;
+				}
+				next++;
+				OccupancyEvent following = slots.get((int) next & mask);
+				boolean endOfBatch = following == null || following.getSequence() < next;
+				try {
+					handler.onEvent(event, endOfBatch);
+				} catch (Exception ex) {
+					logger.error("Occupancy event consumer {} failed on event {}", name, event, ex);
+				}
+				processed.lazySet(processed.get() + 1);
+			}
+		}
+
+		private void skipOverwritten() {
+			// half a ring of headroom, so as not to be overtaken again right away
+			long resume = cursor.get() - (mask + 1) / 2;
+			long count = resume - next;
+			next = resume;
+			dropped.lazySet(dropped.get() + count);
+			logger.warn("Occupancy event consumer {} fell behind and missed {} event(s)", name, count);
+			try {
+				handler.onEventsDropped(count);
+			} catch (RuntimeException ex) {
+				logger.error("Occupancy event consumer {} failed on dropped events", name, ex);
+			}
+		}
+
+		private int idle(int idle) {
+			if (idle < SPINS) {
+				Thread.yield();
+			} else {
+				// backs off so that idle consumers cost the gates next to no CPU
+				LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, MIN_PARK_NANOS << Math.min(idle - SPINS, 5)));
+			}
+			return idle + 1;
+		}
+	}
+}
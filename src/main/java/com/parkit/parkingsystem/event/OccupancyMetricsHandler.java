@@ -0,0 +1,98 @@
+package com.parkit.parkingsystem.event;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+
+/**
+ * Entry, exit, revenue and occupancy counters per vehicle type, kept from the
+ * occupancy events. Only the consumer thread writes them; any thread can read
+ * them.
+ */
+public class OccupancyMetricsHandler implements OccupancyEventHandler {
+
+	private static final int TYPES = ParkingType.values().length;
+
+	private final AtomicLongArray entries = new AtomicLongArray(TYPES);
+	private final AtomicLongArray exits = new AtomicLongArray(TYPES);
+	private final AtomicLongArray revenueCents = new AtomicLongArray(TYPES);
+	private final AtomicLongArray occupiedSpots = new AtomicLongArray(TYPES);
+	private volatile long droppedEvents;
+
+	/**
+	 * Exposes the counters in the registry, by vehicle type.
+	 */
+	public void register(MetricsRegistry metrics) {
+		for (ParkingType parkingType : ParkingType.values()) {
+			String type = parkingType.name();
+			metrics.counter("parkingsystem_entries_total", "Vehicles entered", () -> getEntries(parkingType), "type",
+					type);
+			metrics.counter("parkingsystem_exits_total", "Vehicles exited", () -> getExits(parkingType), "type", type);
+			metrics.counter("parkingsystem_revenue_cents_total", "Fares of the vehicles exited",
+					() -> getRevenueCents(parkingType), "type", type);
+			metrics.gauge("parkingsystem_spots_occupied", "Spots taken minus spots freed since startup",
+					() -> getOccupiedSpots(parkingType), "type", type);
+		}
+		metrics.counter("parkingsystem_occupancy_events_dropped_total", "Occupancy events the metrics missed",
+				this::getDroppedEvents);
+	}
+
+	@Override
+	public void onEvent(OccupancyEvent event, boolean endOfBatch) {
+		int type = event.getParkingType().ordinal();
+		switch (event.getType()) {
+		case VEHICLE_ENTERED:
+			increment(entries, type, 1);
+			break;
+		case VEHICLE_EXITED:
+			increment(exits, type, 1);
+			increment(revenueCents, type, event.getPriceCents());
+			break;
+		case SPOT_OCCUPIED:
+			increment(occupiedSpots, type, 1);
+			break;
+		case SPOT_FREED:
+			increment(occupiedSpots, type, -1);
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Override
+	public void onEventsDropped(long count) {
+		droppedEvents += count;
+	}
+
+	public long getEntries(ParkingType parkingType) {
+		return entries.get(parkingType.ordinal());
+	}
+
+	public long getExits(ParkingType parkingType) {
+		return exits.get(parkingType.ordinal());
+	}
+
+	public long getRevenueCents(ParkingType parkingType) {
+		return revenueCents.get(parkingType.ordinal());
+	}
+
+	/**
+	 * @return the spots taken minus the spots freed since the handler was added
+	 */
+	public long getOccupiedSpots(ParkingType parkingType) {
+		return occupiedSpots.get(parkingType.ordinal());
+	}
+
+	/**
+	 * @return the number of events missed, the counters are short by as many
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents;
+	}
+
+	// single writer, so no atomic read-modify-write is needed
+	private static void increment(AtomicLongArray counters, int index, long delta) {
+		counters.lazySet(index, counters.get(index) + delta);
+	}
+}
@@ -0,0 +1,516 @@
+package com.parkit.parkingsystem.journal;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Append-only write-ahead journal of the gate operations, so that a gate can
+ * answer once its entry or exit is on disk and leave the DB writes to a
+ * {@link JournalReplayer}.
+ * <p>
+ * Records are appended to segment files of about segmentBytes, named after
+ * their position in the journal. {@link #append(JournalRecord)} returns once
+ * the record is forced to disk; gates appending while a force runs are forced
+ * together by the next one, so one fsync covers as many records as arrived
+ * meanwhile. Each record carries its length and CRC32: a record torn by a
+ * crash is cut off when the journal is opened again. Segments are deleted
+ * once every record in them is applied to the DB and {@link #checkpoint(long)}
+ * recorded it.
+ * <p>
+ * A failed write or force fails the journal: the records not known to be on
+ * disk are cut off, since their gates were told they failed, and every later
+ * append throws.
+ */
+public class GateJournal implements Closeable {
+
+	private static final Logger logger = LogManager.getLogger("GateJournal");
+
+	public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+	private static final String SEGMENT_PREFIX = "gate-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+	private static final String CHECKPOINT_FILE = "checkpoint";
+	// payload length and CRC32
+	private static final int HEADER_BYTES = 8;
+	private static final int MAX_PAYLOAD_BYTES = 1024;
+	// everything but the registration number
+	private static final int FIXED_PAYLOAD_BYTES = 36;
+	private static final ParkingType[] PARKING_TYPES = ParkingType.values();
+	private static final JournalRecord.Type[] RECORD_TYPES = JournalRecord.Type.values();
+
+	/**
+	 * Receives the records read from the journal, in order.
+	 */
+	public interface RecordHandler {
+		/**
+		 * @param nextPosition position of the record following this one
+		 * @return false to stop reading
+		 */
+		boolean accept(JournalRecord record, long nextPosition) throws Exception;
+	}
+
+	private final Path directory;
+	private final long segmentBytes;
+	// start positions of the segments on disk
+	private final NavigableSet<Long> segments = new ConcurrentSkipListSet<>();
+
+	private final Object writeLock = new Object();
+	private final ByteBuffer writeBuffer = ByteBuffer.allocate(HEADER_BYTES + MAX_PAYLOAD_BYTES);
+	private final CRC32 writeCrc = new CRC32();
+	private FileChannel segment;
+	private long segmentStart;
+	private volatile long writtenPosition;
+	private boolean closed;
+	private IOException failure;
+	private boolean failureHandled;
+
+	private final Object syncLock = new Object();
+	private volatile long durablePosition;
+	private volatile long checkpointPosition;
+
+	private final AtomicLong appends = new AtomicLong();
+	private final AtomicLong syncs = new AtomicLong();
+
+	public GateJournal(Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_BYTES);
+	}
+
+	public GateJournal(Path directory, long segmentBytes) throws IOException {
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		Files.createDirectories(directory);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			}
+		}
+		checkpointPosition = readCheckpoint();
+		if (segments.isEmpty()) {
+			segmentStart = checkpointPosition;
+			segment = createSegment(segmentStart);
+			writtenPosition = segmentStart;
+		} else {
+			segmentStart = segments.last();
+			// only the last segment can end with a torn record, the others were forced when rolled
+			long end = scan(segmentStart, Long.MAX_VALUE, (record, nextPosition) -> true, true);
+			segment = openSegment(segmentFile(segmentStart), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			if (segment.size() > end - segmentStart) {
+				logger.warn("Cutting off {} byte(s) of torn record at {} in {}", segment.size() - (end - segmentStart), end,
+						segmentFile(segmentStart));
+				segment.truncate(end - segmentStart);
+				segment.force(true);
+			}
+			segment.position(end - segmentStart);
+			writtenPosition = end;
+		}
+		durablePosition = writtenPosition;
+		if (checkpointPosition > writtenPosition) {
+			throw new IOException("Journal checkpoint at " + checkpointPosition + " is past its end at "
+					+ writtenPosition + " in " + directory);
+		}
+	}
+
+	/**
+	 * Appends the record and forces it to disk.
+	 *
+	 * @return the position following the record
+	 */
+	public long append(JournalRecord record) throws IOException {
+		long end;
+		try {
+			end = write(record);
+			appends.incrementAndGet();
+			sync(end);
+		} catch (IOException ex) {
+			cutOffUndurableRecords();
+			throw ex;
+		}
+		return end;
+	}
+
+	private long write(JournalRecord record) throws IOException {
+		synchronized (writeLock) {
+			checkWritable();
+			encode(record);
+			int length = writeBuffer.remaining();
+			try {
+				if (writtenPosition > segmentStart && writtenPosition + length - segmentStart > segmentBytes) {
+					roll();
+				}
+				while (writeBuffer.hasRemaining()) {
+					segment.write(writeBuffer);
+				}
+			} catch (IOException ex) {
+				// part of the record may be in the segment: no later record may follow it
+				failure = ex;
+				throw ex;
+			}
+			writtenPosition += length;
+			return writtenPosition;
+		}
+	}
+
+	// with writeLock held
+	private void checkWritable() throws IOException {
+		if (closed) {
+			throw new ClosedChannelException();
+		}
+		if (failure != null) {
+			throw new IOException("Journal failed in " + directory, failure);
+		}
+	}
+
+	private void encode(JournalRecord record) {
+		byte[] vehicleRegNumber = record.getVehicleRegNumber().getBytes(StandardCharsets.UTF_8);
+		if (FIXED_PAYLOAD_BYTES + vehicleRegNumber.length > MAX_PAYLOAD_BYTES) {
+			throw new IllegalArgumentException("Registration number too long to journal: " + record.getVehicleRegNumber());
+		}
+		writeBuffer.clear();
+		writeBuffer.position(HEADER_BYTES);
+		writeBuffer.put((byte) record.getType().ordinal());
+		writeBuffer.put((byte) record.getParkingType().ordinal());
+		writeBuffer.putInt(record.getTicketId());
+		writeBuffer.putInt(record.getParkingNumber());
+		writeBuffer.putLong(record.getInEpochMillis());
+		writeBuffer.putLong(record.getOutEpochMillis());
+		writeBuffer.putLong(record.getPriceCents());
+		writeBuffer.putShort((short) vehicleRegNumber.length);
+		writeBuffer.put(vehicleRegNumber);
+		int payloadLength = writeBuffer.position() - HEADER_BYTES;
+		writeCrc.reset();
+		writeCrc.update(writeBuffer.array(), HEADER_BYTES, payloadLength);
+		writeBuffer.putInt(0, payloadLength);
+		writeBuffer.putInt(4, (int) writeCrc.getValue());
+		writeBuffer.flip();
+	}
+
+	// with writeLock held
+	private void roll() throws IOException {
+		FileChannel previous = segment;
+		previous.force(false);
+		segment = createSegment(writtenPosition);
+		segmentStart = writtenPosition;
+		// a sync still holding the previous channel finds it closed and forced
+		previous.close();
+	}
+
+	private FileChannel createSegment(long start) throws IOException {
+		FileChannel channel = openSegment(segmentFile(start), StandardOpenOption.CREATE_NEW,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		segments.add(start);
+		forceDirectory();
+		return channel;
+	}
+
+	/**
+	 * Opens the segment file the records are appended to.
+	 */
+	protected FileChannel openSegment(Path file, OpenOption... options) throws IOException {
+		return FileChannel.open(file, options);
+	}
+
+	/**
+	 * Group commit: waits for the force in progress, which may already cover
+	 * the position, then forces everything written so far in one go.
+	 */
+	private void sync(long position) throws IOException {
+		synchronized (syncLock) {
+			if (durablePosition >= position) {
+				return;
+			}
+			FileChannel channel;
+			long target;
+			synchronized (writeLock) {
+				checkWritable();
+				channel = segment;
+				target = writtenPosition;
+			}
+			try {
+				channel.force(false);
+			} catch (ClosedChannelException ex) {
+				// rolled meanwhile, after forcing the records up to target
+			} catch (IOException ex) {
+				synchronized (writeLock) {
+					failure = ex;
+				}
+				throw ex;
+			}
+			syncs.incrementAndGet();
+			durablePosition = target;
+		}
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Once the journal failed, cuts off everything past the last force that
+	 * succeeded, so that neither a replay nor a reopened journal applies a
+	 * record its gate was told failed. Holding syncLock, no force is running
+	 * and durablePosition stays put.
+	 */
+	private void cutOffUndurableRecords() {
+		synchronized (syncLock) {
+			synchronized (writeLock) {
+				if (failure == null || failureHandled) {
+					return;
+				}
+				failureHandled = true;
+				long end = durablePosition;
+				try {
+					segment.close();
+					for (Long start : segments.tailSet(end, false)) {
+						Files.deleteIfExists(segmentFile(start));
+						segments.remove(start);
+					}
+					long start = segments.floor(end);
+					try (FileChannel channel = FileChannel.open(segmentFile(start), StandardOpenOption.WRITE)) {
+						channel.truncate(end - start);
+						channel.force(true);
+					}
+					forceDirectory();
+					logger.error("Journal failed, cut off the records past {} in {}", end, directory, failure);
+				} catch (IOException ex) {
+					failure.addSuppressed(ex);
+					logger.error("Journal failed and could not be cut off at {} in {}", end, directory, failure);
+				}
+				writtenPosition = end;
+			}
+		}
+	}
+
+	/**
+	 * Reads the records on disk from position on, until the handler returns
+	 * false.
+	 *
+	 * @return the position following the last record read
+	 */
+	public long read(long position, RecordHandler handler) throws IOException {
+		return scan(position, durablePosition, handler, false);
+	}
+
+	/**
+	 * Waits up to timeoutMillis for records past position to be on disk.
+	 *
+	 * @return true if there are
+	 */
+	public synchronized boolean awaitRecords(long position, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		long remaining = timeoutMillis;
+		while (durablePosition <= position && remaining > 0) {
+			wait(remaining);
+			remaining = deadline - System.currentTimeMillis();
+		}
+		return durablePosition > position;
+	}
+
+	private long scan(long from, long limit, RecordHandler handler, boolean stopAtTornRecord) throws IOException {
+		try {
+			return scanChecked(from, limit, handler, stopAtTornRecord);
+		} catch (IOException | RuntimeException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw new IOException("Unable to handle journal record", ex);
+		}
+	}
+
+	private long scanChecked(long from, long limit, RecordHandler handler, boolean stopAtTornRecord)
+			throws Exception {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		ByteBuffer payload = ByteBuffer.allocate(MAX_PAYLOAD_BYTES);
+		CRC32 crc = new CRC32();
+		long position = from;
+		while (position < limit) {
+			Long start = segments.floor(position);
+			if (start == null) {
+				throw new IOException("No journal segment holds position " + position + " in " + directory);
+			}
+			Long next = segments.higher(start);
+			long segmentLimit = (next == null) ? limit : Math.min(next, limit);
+			try (FileChannel channel = FileChannel.open(segmentFile(start), StandardOpenOption.READ)) {
+				channel.position(position - start);
+				while (position < segmentLimit) {
+					header.clear();
+					if (!readFully(channel, header)) {
+						if (stopAtTornRecord) {
+							return position;
+						}
+						throw new EOFException("Journal ends at " + position + " in " + segmentFile(start));
+					}
+					int payloadLength = header.getInt(0);
+					payload.clear();
+					boolean valid = payloadLength > 0 && payloadLength <= MAX_PAYLOAD_BYTES;
+					if (valid) {
+						payload.limit(payloadLength);
+						valid = readFully(channel, payload);
+					}
+					if (valid) {
+						crc.reset();
+						crc.update(payload.array(), 0, payloadLength);
+						valid = (int) crc.getValue() == header.getInt(4);
+					}
+					if (!valid) {
+						if (stopAtTornRecord) {
+							return position;
+						}
+						throw new IOException("Corrupt journal record at " + position + " in " + segmentFile(start));
+					}
+					position += HEADER_BYTES + payloadLength;
+					payload.flip();
+					if (!handler.accept(decode(payload), position)) {
+						return position;
+					}
+				}
+			}
+			if (next == null || position < next) {
+				break;
+			}
+		}
+		return position;
+	}
+
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static JournalRecord decode(ByteBuffer payload) {
+		JournalRecord.Type type = RECORD_TYPES[payload.get()];
+		ParkingType parkingType = PARKING_TYPES[payload.get()];
+		int ticketId = payload.getInt();
+		int parkingNumber = payload.getInt();
+		long inEpochMillis = payload.getLong();
+		long outEpochMillis = payload.getLong();
+		long priceCents = payload.getLong();
+		byte[] vehicleRegNumber = new byte[payload.getShort()];
+		payload.get(vehicleRegNumber);
+		return new JournalRecord(type, ticketId, new String(vehicleRegNumber, StandardCharsets.UTF_8), parkingNumber,
+				parkingType, inEpochMillis, outEpochMillis, priceCents);
+	}
+
+	/**
+	 * Records that every record before position is applied to the DB, and
+	 * deletes the segments holding only such records.
+	 */
+	public void checkpoint(long position) throws IOException {
+		if (position > durablePosition) {
+			throw new IllegalArgumentException("Checkpoint at " + position + " past the journal end at " + durablePosition);
+		}
+		Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+		Path temporaryFile = directory.resolve(CHECKPOINT_FILE + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(Long.toString(position).getBytes(StandardCharsets.UTF_8)));
+			channel.force(true);
+		}
+		Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		checkpointPosition = position;
+		for (Long start : segments) {
+			Long next = segments.higher(start);
+			if (next == null || next > position) {
+				break;
+			}
+			Files.deleteIfExists(segmentFile(start));
+			segments.remove(start);
+		}
+	}
+
+	private long readCheckpoint() throws IOException {
+		Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+		if (!Files.exists(checkpointFile)) {
+			return segments.isEmpty() ? 0 : segments.first();
+		}
+		return Long.parseLong(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim());
+	}
+
+	// so that a segment created just before a crash is still listed after it
+	private void forceDirectory() {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException ex) {
+			// not supported on every platform
+		}
+	}
+
+	private Path segmentFile(long start) {
+		return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX));
+	}
+
+	/**
+	 * @return the position of the first record not applied to the DB yet
+	 */
+	public long getCheckpoint() {
+		return checkpointPosition;
+	}
+
+	/**
+	 * @return the position following the last record on disk
+	 */
+	public long getDurablePosition() {
+		return durablePosition;
+	}
+
+	/**
+	 * @return the number of bytes on disk not applied to the DB yet
+	 */
+	public long getPendingBytes() {
+		return durablePosition - checkpointPosition;
+	}
+
+	/**
+	 * @return the number of records appended since the journal was opened
+	 */
+	public long getAppends() {
+		return appends.get();
+	}
+
+	/**
+	 * @return the number of forces the appends took
+	 */
+	public long getSyncs() {
+		return syncs.get();
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (writeLock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (failure == null) {
+				segment.force(true);
+			}
+			segment.close();
+		}
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+}
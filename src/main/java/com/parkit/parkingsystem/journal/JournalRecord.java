@@ -0,0 +1,107 @@
+package com.parkit.parkingsystem.journal;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.TimeUtil;
+
+/**
+ * An entry or exit as written to the {@link GateJournal}: everything needed to
+ * write its ticket and spot to the DB later. A ticket is identified by its
+ * vehicle and in-time, which journaled gates keep to the second so that the
+ * DB stores them exactly.
+ */
+public final class JournalRecord {
+
+	public enum Type {
+		ENTRY, EXIT
+	}
+
+	private final Type type;
+	// 0 when the ticket was journaled and is not in the DB yet
+	private final int ticketId;
+	private final String vehicleRegNumber;
+	private final int parkingNumber;
+	private final ParkingType parkingType;
+	private final long inEpochMillis;
+	// 0 for an entry
+	private final long outEpochMillis;
+	private final long priceCents;
+
+	public JournalRecord(Type type, int ticketId, String vehicleRegNumber, int parkingNumber,
+			ParkingType parkingType, long inEpochMillis, long outEpochMillis, long priceCents) {
+		this.type = type;
+		this.ticketId = ticketId;
+		this.vehicleRegNumber = vehicleRegNumber;
+		this.parkingNumber = parkingNumber;
+		this.parkingType = parkingType;
+		this.inEpochMillis = inEpochMillis;
+		this.outEpochMillis = outEpochMillis;
+		this.priceCents = priceCents;
+	}
+
+	public static JournalRecord entry(Ticket ticket) {
+		return new JournalRecord(Type.ENTRY, 0, ticket.getVehicleRegNumber(), ticket.getParkingSpot().getId(),
+				ticket.getParkingSpot().getParkingType(), TimeUtil.toEpochMillis(ticket.getInTime()), 0, 0);
+	}
+
+	public static JournalRecord exit(Ticket ticket) {
+		return new JournalRecord(Type.EXIT, ticket.getId(), ticket.getVehicleRegNumber(), ticket.getParkingSpot().getId(),
+				ticket.getParkingSpot().getParkingType(), TimeUtil.toEpochMillis(ticket.getInTime()),
+				TimeUtil.toEpochMillis(ticket.getOutTime()), ticket.getPriceCents());
+	}
+
+	/**
+	 * @return the ticket as it must be in the DB once the record is applied
+	 */
+	public Ticket toTicket() {
+		Ticket ticket = new Ticket();
+		ticket.setId(ticketId);
+		ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, type == Type.EXIT));
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(TimeUtil.toLocalDateTime(inEpochMillis));
+		if (type == Type.EXIT) {
+			ticket.setOutTime(TimeUtil.toLocalDateTime(outEpochMillis));
+			ticket.setPriceCents(priceCents);
+		}
+		return ticket;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getTicketId() {
+		return ticketId;
+	}
+
+	public String getVehicleRegNumber() {
+		return vehicleRegNumber;
+	}
+
+	public int getParkingNumber() {
+		return parkingNumber;
+	}
+
+	public ParkingType getParkingType() {
+		return parkingType;
+	}
+
+	public long getInEpochMillis() {
+		return inEpochMillis;
+	}
+
+	public long getOutEpochMillis() {
+		return outEpochMillis;
+	}
+
+	public long getPriceCents() {
+		return priceCents;
+	}
+
+	@Override
+	public String toString() {
+		return type + " ticket " + ticketId + " " + vehicleRegNumber + " spot " + parkingNumber + " " + parkingType + " in " + inEpochMillis
+				+ (type == Type.EXIT ? " out " + outEpochMillis + " fare " + priceCents + " cents" : "");
+	}
+}
@@ -0,0 +1,179 @@
+package com.parkit.parkingsystem.journal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Writes the journaled entries and exits to the ticket and parking tables, in
+ * journal order, batchSize records a transaction, then moves the journal
+ * checkpoint past them.
+ * <p>
+ * A crash between a commit and its checkpoint replays the batch again, which
+ * writes nothing twice: journaled tickets are only inserted if the ticket of
+ * that vehicle and in-time is not there yet, and closing a ticket or setting
+ * a spot's availability again changes nothing. While the DB is down the
+ * records wait in the journal and are retried with a growing delay.
+ */
+public class JournalReplayer {
+
+	private static final Logger logger = LogManager.getLogger("JournalReplayer");
+
+	public static final int DEFAULT_BATCH_SIZE = 128;
+
+	private static final long POLL_MILLIS = 100;
+	private static final long MIN_RETRY_MILLIS = 100;
+	private static final long MAX_RETRY_MILLIS = 5000;
+
+	private final GateJournal journal;
+	private final TicketDAO ticketDAO;
+	private final ParkingSpotDAO parkingSpotDAO;
+	private final int batchSize;
+
+	private Thread thread;
+	private volatile boolean running;
+	private volatile long replayedRecords;
+
+	public JournalReplayer(GateJournal journal, TicketDAO ticketDAO, ParkingSpotDAO parkingSpotDAO) {
+		this(journal, ticketDAO, parkingSpotDAO, DEFAULT_BATCH_SIZE);
+	}
+
+	public JournalReplayer(GateJournal journal, TicketDAO ticketDAO, ParkingSpotDAO parkingSpotDAO, int batchSize) {
+		this.journal = journal;
+		this.ticketDAO = ticketDAO;
+		this.parkingSpotDAO = parkingSpotDAO;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Replays what an earlier run left in the journal. To be called before the
+	 * gates open and before the open tickets and availability index are loaded,
+	 * so that they are loaded with it.
+	 *
+	 * @return the number of records replayed
+	 */
+	public long recover() throws IOException {
+		long recovered = 0;
+		for (int replayed = replayBatch(); replayed > 0; replayed = replayBatch()) {
+			recovered += replayed;
+		}
+		if (recovered > 0) {
+			logger.info("Replayed {} journaled gate operation(s) left by the last run", recovered);
+		}
+		return recovered;
+	}
+
+	/**
+	 * Replays the journal on a background thread as the gates append to it.
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		running = true;
+		thread = new Thread(this::replay, "journal-replayer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the background thread once its current batch is written. What is
+	 * left in the journal is replayed by the next {@link #recover()}.
+	 */
+	public synchronized void stop() {
+		if (thread == null) {
+			return;
+		}
+		running = false;
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	/**
+	 * @return true if every record on disk is written to the DB
+	 */
+	public boolean isCaughtUp() {
+		return journal.getPendingBytes() == 0;
+	}
+
+	/**
+	 * @return the number of records replayed since this replayer was created
+	 */
+	public long getReplayedRecords() {
+		return replayedRecords;
+	}
+
+	private void replay() {
+		long retryMillis = MIN_RETRY_MILLIS;
+		while (running) {
+			try {
+				if (replayBatch() == 0) {
+					journal.awaitRecords(journal.getCheckpoint(), POLL_MILLIS);
+				}
+				retryMillis = MIN_RETRY_MILLIS;
+			} catch (InterruptedException e) {
+				return;
+			} catch (Exception ex) {
+				logger.error("Unable to replay the gate journal, {} byte(s) pending, retrying in {} ms",
+						journal.getPendingBytes(), retryMillis, ex);
+				try {
+					Thread.sleep(retryMillis);
+				} catch (InterruptedException e) {
+					return;
+				}
+				retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of records replayed, 0 if there were none
+	 */
+	private int replayBatch() throws IOException {
+		List<JournalRecord> batch = new ArrayList<>(batchSize);
+		long[] end = { journal.getCheckpoint() };
+		journal.read(end[0], (record, nextPosition) -> {
+			batch.add(record);
+			end[0] = nextPosition;
+			return batch.size() < batchSize;
+		});
+		if (batch.isEmpty()) {
+			return 0;
+		}
+		UnitOfWork.run(() -> {
+			for (JournalRecord record : batch) {
+				apply(record);
+			}
+		});
+		journal.checkpoint(end[0]);
+		replayedRecords += batch.size();
+		return batch.size();
+	}
+
+	private void apply(JournalRecord record) {
+		Ticket ticket = record.toTicket();
+		try {
+			if (record.getType() == JournalRecord.Type.ENTRY) {
+				parkingSpotDAO.writeAvailability(record.getParkingNumber(), false);
+				ticketDAO.saveJournaledTicket(ticket);
+			} else {
+				ticketDAO.closeJournaledTicket(ticket);
+				parkingSpotDAO.writeAvailability(record.getParkingNumber(), true);
+			}
+		} catch (Exception ex) {
+			throw new RuntimeException("Unable to replay " + record, ex);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic count, striped so that threads counting at once do not contend.
+ */
+public final class Counter {
+
+	private final LongAdder count = new LongAdder();
+
+	public void increment() {
+		count.increment();
+	}
+
+	public void add(long delta) {
+		count.add(delta);
+	}
+
+	public long get() {
+		return count.sum();
+	}
+}
@@ -0,0 +1,108 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in nanoseconds, HdrHistogram style: 64 exact
+ * buckets below 64 ns, then 32 linear buckets per power of two, so any value
+ * is reported within about 3% whatever its magnitude. Recording is a bucket
+ * lookup and a few uncontended atomic adds, cheap enough to stay on in
+ * production.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+	// up to Long.MAX_VALUE, whose highest bit is 62
+	private static final int BUCKETS = LINEAR_BUCKETS + (62 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sumNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sumNanos.add(value);
+		maxNanos.accumulate(value);
+	}
+
+	/**
+	 * Records the time elapsed since startNanos, a {@link System#nanoTime()}.
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSumNanos() {
+		return sumNanos.sum();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @return the value below which the given fraction of the recorded values
+	 *         fall, 0 if none was recorded
+	 */
+	public long getValueAtQuantile(double quantile) {
+		return getValuesAtQuantiles(quantile)[0];
+	}
+
+	/**
+	 * Same as {@link #getValueAtQuantile(double)} for several quantiles read
+	 * from one pass over the buckets.
+	 */
+	public long[] getValuesAtQuantiles(double... quantiles) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		long max = maxNanos.get();
+		long[] values = new long[quantiles.length];
+		for (int q = 0; q < quantiles.length; q++) {
+			if (total == 0) {
+				continue;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += snapshot[i];
+				if (seen >= rank) {
+					values[q] = Math.min(highestValue(i), max);
+					break;
+				}
+			}
+		}
+		return values;
+	}
+
+	static int bucket(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	static long highestValue(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long top = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((top + 1) << shift) - 1;
+	}
+}
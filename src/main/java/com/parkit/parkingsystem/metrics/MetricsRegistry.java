@@ -0,0 +1,183 @@
+package com.parkit.parkingsystem.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Named counters, gauges and latency histograms, with labels, written out in
+ * the Prometheus text format by {@link #scrape()}. Metrics are looked up
+ * once, when a class is loaded or a component starts; recording does not go
+ * through the registry.
+ */
+public final class MetricsRegistry {
+
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final String[] QUANTILE_LABELS = { "0.5", "0.9", "0.99", "0.999" };
+
+	private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+	/**
+	 * @return the registry of the whole application, served on GET /metrics
+	 */
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @param labels label names and values, in pairs
+	 */
+	public Counter counter(String name, String help, String... labels) {
+		return (Counter) family(name, help, "counter").series.computeIfAbsent(labels(labels), key -> new Counter());
+	}
+
+	/**
+	 * Reports as a counter the value of the supplier, read on every scrape, for
+	 * counts a component already keeps. Replaces the counter of the same name
+	 * and labels, if any.
+	 */
+	public void counter(String name, String help, DoubleSupplier value, String... labels) {
+		family(name, help, "counter").series.put(labels(labels), value);
+	}
+
+	/**
+	 * Reports the value of the supplier, read on every scrape. Replaces the
+	 * gauge of the same name and labels, if any.
+	 */
+	public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+		family(name, help, "gauge").series.put(labels(labels), value);
+	}
+
+	public LatencyHistogram histogram(String name, String help, String... labels) {
+		return (LatencyHistogram) family(name, help, "summary").series.computeIfAbsent(labels(labels),
+				key -> new LatencyHistogram());
+	}
+
+	/**
+	 * @return the latency histogram name_seconds and error counter
+	 *         name_errors_total of an operation
+	 */
+	public Timer timer(String name, String help, String... labels) {
+		return new Timer(histogram(name + "_seconds", help, labels),
+				counter(name + "_errors_total", "Errors of: " + help, labels));
+	}
+
+	/**
+	 * @return the timer of a DAO method, named ClassName.method
+	 */
+	public Timer daoTimer(String operation) {
+		return timer("parkingsystem_dao", "DAO methods that read or write the database", "operation", operation);
+	}
+
+	/**
+	 * Drops the metric of that name and labels, e.g. the gauges of a closed
+	 * component.
+	 */
+	public void remove(String name, String... labels) {
+		Family family = families.get(name);
+		if (family != null) {
+			family.series.remove(labels(labels));
+		}
+	}
+
+	/**
+	 * @return every metric in the Prometheus text exposition format 0.0.4
+	 */
+	public String scrape() {
+		StringBuilder out = new StringBuilder(4096);
+		for (Family family : families.values()) {
+			if (family.series.isEmpty()) {
+				continue;
+			}
+			out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+			out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+			for (Map.Entry<String, Object> series : family.series.entrySet()) {
+				String labels = series.getKey();
+				Object metric = series.getValue();
+				if (metric instanceof Counter) {
+					sample(out, family.name, labels, null, ((Counter) metric).get());
+				} else if (metric instanceof DoubleSupplier) {
+					sample(out, family.name, labels, null, ((DoubleSupplier) metric).getAsDouble());
+				} else {
+					LatencyHistogram histogram = (LatencyHistogram) metric;
+					long[] values = histogram.getValuesAtQuantiles(QUANTILES);
+					for (int i = 0; i < QUANTILES.length; i++) {
+						sample(out, family.name, labels, "quantile=\"" + QUANTILE_LABELS[i] + "\"", values[i] / 1e9);
+					}
+					sample(out, family.name + "_sum", labels, null, histogram.getSumNanos() / 1e9);
+					sample(out, family.name + "_count", labels, null, histogram.getCount());
+				}
+			}
+		}
+		return out.toString();
+	}
+
+	private static void sample(StringBuilder out, String name, String labels, String extraLabel, double value) {
+		out.append(name);
+		if (!labels.isEmpty() || extraLabel != null) {
+			out.append('{').append(labels);
+			if (extraLabel != null) {
+				out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+			}
+			out.append('}');
+		}
+		out.append(' ');
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+		out.append('\n');
+	}
+
+	private Family family(String name, String help, String type) {
+		Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+		if (!family.type.equals(type)) {
+			throw new IllegalArgumentException("Metric " + name + " is a " + family.type + ", not a " + type);
+		}
+		return family;
+	}
+
+	private static String labels(String[] labels) {
+		if (labels.length % 2 != 0) {
+			throw new IllegalArgumentException("Labels must come in name and value pairs");
+		}
+		StringBuilder rendered = new StringBuilder();
+		for (int i = 0; i < labels.length; i += 2) {
+			if (i > 0) {
+				rendered.append(',');
+			}
+			rendered.append(labels[i]).append("=\"");
+			String value = labels[i + 1];
+			for (int c = 0; c < value.length(); c++) {
+				char ch = value.charAt(c);
+				if (ch == '\\' || ch == '"') {
+					rendered.append('\\').append(ch);
+				} else if (ch == '\n') {
+					rendered.append("\\n");
+				} else {
+					rendered.append(ch);
+				}
+			}
+			rendered.append('"');
+		}
+		return rendered.toString();
+	}
+
+	private static final class Family {
+		private final String name;
+		private final String help;
+		private final String type;
+		// by rendered labels: a Counter, a DoubleSupplier or a LatencyHistogram
+		private final ConcurrentMap<String, Object> series = new ConcurrentSkipListMap<>();
+
+		private Family(String name, String help, String type) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.parkit.parkingsystem.metrics;
+
+/**
+ * Latency and error count of one operation.
+ */
+public final class Timer {
+
+	private final LatencyHistogram latency;
+	private final Counter errors;
+
+	Timer(LatencyHistogram latency, Counter errors) {
+		this.latency = latency;
+		this.errors = errors;
+	}
+
+	/**
+	 * Records the time elapsed since startNanos, a {@link System#nanoTime()}.
+	 */
+	public void recordSince(long startNanos) {
+		latency.recordSince(startNanos);
+	}
+
+	public void recordError() {
+		errors.increment();
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+}
@@ -0,0 +1,70 @@
+package com.parkit.parkingsystem.model;
+
+import java.time.LocalDateTime;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+public final class EntryResult {
+
+	public enum Status {
+		PARKED, ALREADY_PARKED, PARKING_FULL, FAILED
+	}
+
+	private final Status status;
+	private final String vehicleRegNumber;
+	private final ParkingType parkingType;
+	private final int parkingNumber;
+	private final LocalDateTime inTime;
+
+	private EntryResult(Status status, String vehicleRegNumber, ParkingType parkingType, int parkingNumber,
+			LocalDateTime inTime) {
+		this.status = status;
+		this.vehicleRegNumber = vehicleRegNumber;
+		this.parkingType = parkingType;
+		this.parkingNumber = parkingNumber;
+		this.inTime = inTime;
+	}
+
+	public static EntryResult parked(Ticket ticket) {
+		return new EntryResult(Status.PARKED, ticket.getVehicleRegNumber(), ticket.getParkingSpot().getParkingType(),
+				ticket.getParkingSpot().getId(), ticket.getInTime());
+	}
+
+	public static EntryResult rejected(Status status, String vehicleRegNumber, ParkingType parkingType,
+			LocalDateTime inTime) {
+		return new EntryResult(status, vehicleRegNumber, parkingType, -1, inTime);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public boolean isParked() {
+		return status == Status.PARKED;
+	}
+
+	public String getVehicleRegNumber() {
+		return vehicleRegNumber;
+	}
+
+	public ParkingType getParkingType() {
+		return parkingType;
+	}
+
+	/**
+	 * @return the allocated parking spot, -1 if the vehicle was not parked
+	 */
+	public int getParkingNumber() {
+		return parkingNumber;
+	}
+
+	public LocalDateTime getInTime() {
+		return inTime;
+	}
+
+	@Override
+	public String toString() {
+		return "EntryResult[" + status + ", " + vehicleRegNumber + ", " + parkingType + ", spot " + parkingNumber
+				+ ", " + inTime + "]";
+	}
+}
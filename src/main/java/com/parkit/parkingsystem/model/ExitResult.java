@@ -0,0 +1,82 @@
+package com.parkit.parkingsystem.model;
+
+import java.time.LocalDateTime;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+public final class ExitResult {
+
+	public enum Status {
+		EXITED, NOT_PARKED, FAILED
+	}
+
+	private final Status status;
+	private final String vehicleRegNumber;
+	private final ParkingType parkingType;
+	private final int parkingNumber;
+	private final LocalDateTime inTime;
+	private final LocalDateTime outTime;
+	private final long fareCents;
+
+	private ExitResult(Status status, String vehicleRegNumber, ParkingType parkingType, int parkingNumber,
+			LocalDateTime inTime, LocalDateTime outTime, long fareCents) {
+		this.status = status;
+		this.vehicleRegNumber = vehicleRegNumber;
+		this.parkingType = parkingType;
+		this.parkingNumber = parkingNumber;
+		this.inTime = inTime;
+		this.outTime = outTime;
+		this.fareCents = fareCents;
+	}
+
+	public static ExitResult exited(Ticket ticket) {
+		return new ExitResult(Status.EXITED, ticket.getVehicleRegNumber(), ticket.getParkingSpot().getParkingType(),
+				ticket.getParkingSpot().getId(), ticket.getInTime(), ticket.getOutTime(), ticket.getPriceCents());
+	}
+
+	public static ExitResult rejected(Status status, String vehicleRegNumber, LocalDateTime outTime) {
+		return new ExitResult(status, vehicleRegNumber, null, -1, null, outTime, 0);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public boolean isExited() {
+		return status == Status.EXITED;
+	}
+
+	public String getVehicleRegNumber() {
+		return vehicleRegNumber;
+	}
+
+	public ParkingType getParkingType() {
+		return parkingType;
+	}
+
+	public int getParkingNumber() {
+		return parkingNumber;
+	}
+
+	public LocalDateTime getInTime() {
+		return inTime;
+	}
+
+	public LocalDateTime getOutTime() {
+		return outTime;
+	}
+
+	public double getFare() {
+		return fareCents / 100.0;
+	}
+
+	public long getFareCents() {
+		return fareCents;
+	}
+
+	@Override
+	public String toString() {
+		return "ExitResult[" + status + ", " + vehicleRegNumber + ", spot " + parkingNumber + ", " + inTime + " -> "
+				+ outTime + ", fare " + getFare() + "]";
+	}
+}
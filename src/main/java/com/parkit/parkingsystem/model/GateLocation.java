@@ -0,0 +1,35 @@
+package com.parkit.parkingsystem.model;
+
+/**
+ * Lot, level and zone of an entry gate. Spots are allocated in its lot, on
+ * the nearest level with a free spot, starting with its zone.
+ */
+public final class GateLocation {
+
+	private final int lot;
+	private final int level;
+	private final int zone;
+
+	public GateLocation(int lot, int level, int zone) {
+		this.lot = lot;
+		this.level = level;
+		this.zone = zone;
+	}
+
+	public int getLot() {
+		return lot;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public int getZone() {
+		return zone;
+	}
+
+	@Override
+	public String toString() {
+		return "lot " + lot + ", level " + level + ", zone " + zone;
+	}
+}
@@ -6,6 +6,10 @@ public class ParkingSpot {
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
+    // where the spot is: garage, level within it and zone within the level, all 0 in a single parking
+    private int lot;
+    private int level;
+    private int zone;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
         this.number = number;
@@ -13,6 +17,13 @@ public class ParkingSpot {
         this.isAvailable = isAvailable;
     }
 
+    public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable, int lot, int level, int zone) {
+        this(number, parkingType, isAvailable);
+        this.lot = lot;
+        this.level = level;
+        this.zone = zone;
+    }
+
     public int getId() {
         return number;
     }
@@ -37,6 +48,30 @@ public class ParkingSpot {
         isAvailable = available;
     }
 
+    public int getLot() {
+        return lot;
+    }
+
+    public void setLot(int lot) {
+        this.lot = lot;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public int getZone() {
+        return zone;
+    }
+
+    public void setZone(int zone) {
+        this.zone = zone;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,292 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Tariff rules compiled for pricing: one immutable set of arrays per lot and
+ * vehicle type, so a price takes a few array reads whatever the number of
+ * rules.
+ * <p>
+ * Lot 0 is the default tariff and must give an hourly rate for every vehicle
+ * type. The rules of any other lot are applied over the ones of lot 0, and
+ * lots without rules use lot 0's tariff.
+ * <p>
+ * Times are epoch milliseconds of the local wall-clock time, see
+ * {@link com.parkit.parkingsystem.util.TimeUtil#toEpochMillis}, so minute of
+ * day 0 is local midnight.
+ */
+public final class Tariff {
+
+	public static final int DEFAULT_LOT = 0;
+
+	private static final int MINUTES_PER_DAY = 24 * 60;
+	private static final long MILLIS_PER_MINUTE = 60 * 1000;
+	private static final long MILLIS_PER_DAY = MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+	// prices are summed exactly in cents per hour * milliseconds * percent
+	private static final long UNITS_PER_CENT = 60 * MILLIS_PER_MINUTE * 100;
+	private static final int TYPES = ParkingType.values().length;
+
+	/**
+	 * The flat hourly rates of {@link Fare}, no free time and no cap.
+	 */
+	public static final Tariff DEFAULT = compile(Arrays.asList(
+			TariffRule.hourlyRate(DEFAULT_LOT, ParkingType.CAR, 0, MINUTES_PER_DAY, (int) Fare.CAR_RATE_PER_HOUR_CENTS),
+			TariffRule.hourlyRate(DEFAULT_LOT, ParkingType.BIKE, 0, MINUTES_PER_DAY, (int) Fare.BIKE_RATE_PER_HOUR_CENTS)));
+
+	// indexed by lot * TYPES + parking type ordinal
+	private final Rates[] rates;
+	private final int ruleCount;
+
+	private Tariff(Rates[] rates, int ruleCount) {
+		this.rates = rates;
+		this.ruleCount = ruleCount;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a rule is out of range or lot 0 has
+	 *                                  no hourly rate for a vehicle type
+	 */
+	public static Tariff compile(List<TariffRule> rules) {
+		int lots = 1;
+		for (TariffRule rule : rules) {
+			if (rule.getLot() < 0) {
+				throw new IllegalArgumentException("Invalid lot in tariff rule " + rule);
+			}
+			lots = Math.max(lots, rule.getLot() + 1);
+		}
+		List<List<TariffRule>> rulesByIndex = new ArrayList<>(lots * TYPES);
+		for (int i = 0; i < lots * TYPES; i++) {
+			rulesByIndex.add(new ArrayList<>());
+		}
+		for (TariffRule rule : rules) {
+			rulesByIndex.get(rule.getLot() * TYPES + rule.getParkingType().ordinal()).add(rule);
+		}
+
+		Rates[] rates = new Rates[lots * TYPES];
+		List<char[]> distinctSegmentsOfDay = new ArrayList<>();
+		for (ParkingType parkingType : ParkingType.values()) {
+			RatesBuilder builder = new RatesBuilder();
+			builder.addAll(rulesByIndex.get(parkingType.ordinal()));
+			if (!builder.hasRate) {
+				throw new IllegalArgumentException("No hourly rate for " + parkingType + " in lot " + DEFAULT_LOT);
+			}
+			rates[parkingType.ordinal()] = builder.build(distinctSegmentsOfDay);
+		}
+		for (int i = TYPES; i < rates.length; i++) {
+			List<TariffRule> lotRules = rulesByIndex.get(i);
+			if (lotRules.isEmpty()) {
+				rates[i] = rates[i % TYPES];
+			} else {
+				RatesBuilder builder = new RatesBuilder();
+				builder.addAll(rulesByIndex.get(i % TYPES));
+				builder.addAll(lotRules);
+				rates[i] = builder.build(distinctSegmentsOfDay);
+			}
+		}
+		return new Tariff(rates, rules.size());
+	}
+
+	/**
+	 * Price of a stay in cents, rounded half up to the cent. Allocates nothing.
+	 */
+	public long priceCents(int lot, ParkingType parkingType, long inEpochMillis, long outEpochMillis) {
+		int type = parkingType.ordinal();
+		int index = lot * TYPES + type;
+		Rates lotRates = (lot >= 0 && index < rates.length) ? rates[index] : rates[type];
+		return lotRates.priceCents(inEpochMillis, outEpochMillis);
+	}
+
+	public int getRuleCount() {
+		return ruleCount;
+	}
+
+	private static final class RatesBuilder {
+		private final int[] centsPerHourByMinute = new int[MINUTES_PER_DAY];
+		private final TreeMap<Integer, Integer> percentByStartMinute = new TreeMap<>();
+		private boolean hasRate;
+		private int freeMinutes;
+		private int dailyCapCents;
+
+		void addAll(List<TariffRule> rules) {
+			for (TariffRule rule : rules) {
+				add(rule);
+			}
+		}
+
+		private void add(TariffRule rule) {
+			int start = rule.getStartMinute();
+			int end = rule.getEndMinute();
+			int amount = rule.getAmount();
+			switch (rule.getKind()) {
+			case HOURLY_RATE:
+				if (start < 0 || start > MINUTES_PER_DAY || end < 0 || end > MINUTES_PER_DAY || start == end
+						|| amount < 0) {
+					throw new IllegalArgumentException("Invalid tariff rule " + rule);
+				}
+				if (start < end) {
+					Arrays.fill(centsPerHourByMinute, start, end, amount);
+				} else {
+					Arrays.fill(centsPerHourByMinute, start, MINUTES_PER_DAY, amount);
+					Arrays.fill(centsPerHourByMinute, 0, end, amount);
+				}
+				hasRate = true;
+				break;
+			case DURATION_TIER:
+				if (start < 0 || amount < 0) {
+					throw new IllegalArgumentException("Invalid tariff rule " + rule);
+				}
+				percentByStartMinute.put(start, amount);
+				break;
+			case FREE_MINUTES:
+				if (amount < 0) {
+					throw new IllegalArgumentException("Invalid tariff rule " + rule);
+				}
+				freeMinutes = amount;
+				break;
+			case DAILY_CAP:
+				if (amount < 0) {
+					throw new IllegalArgumentException("Invalid tariff rule " + rule);
+				}
+				dailyCapCents = amount;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown tariff rule " + rule);
+			}
+		}
+
+		Rates build(List<char[]> distinctSegmentsOfDay) {
+			// minutes of the day cut into segments of the same rate
+			char[] segmentByMinute = new char[MINUTES_PER_DAY];
+			List<Integer> segmentStarts = new ArrayList<>();
+			for (int m = 0; m < MINUTES_PER_DAY; m++) {
+				if (m == 0 || centsPerHourByMinute[m] != centsPerHourByMinute[m - 1]) {
+					segmentStarts.add(m);
+				}
+				segmentByMinute[m] = (char) (segmentStarts.size() - 1);
+			}
+			char[] shared = null;
+			for (char[] distinct : distinctSegmentsOfDay) {
+				if (Arrays.equals(distinct, segmentByMinute)) {
+					shared = distinct;
+					break;
+				}
+			}
+			if (shared != null) {
+				segmentByMinute = shared;
+			} else {
+				distinctSegmentsOfDay.add(segmentByMinute);
+			}
+			int segments = segmentStarts.size();
+			long[] segmentStartMillis = new long[segments];
+			long[] segmentCentsPerHour = new long[segments];
+			long[] segmentStartCost = new long[segments + 1];
+			for (int i = 0; i < segments; i++) {
+				int start = segmentStarts.get(i);
+				int end = (i + 1 < segments) ? segmentStarts.get(i + 1) : MINUTES_PER_DAY;
+				segmentStartMillis[i] = start * MILLIS_PER_MINUTE;
+				segmentCentsPerHour[i] = centsPerHourByMinute[start];
+				segmentStartCost[i + 1] = segmentStartCost[i] + segmentCentsPerHour[i] * (end - start) * MILLIS_PER_MINUTE;
+			}
+
+			percentByStartMinute.putIfAbsent(0, 100);
+			long[] tierStartMillis = new long[percentByStartMinute.size()];
+			int[] tierPercent = new int[percentByStartMinute.size()];
+			int i = 0;
+			for (Map.Entry<Integer, Integer> tier : percentByStartMinute.entrySet()) {
+				tierStartMillis[i] = tier.getKey() * MILLIS_PER_MINUTE;
+				tierPercent[i] = tier.getValue();
+				i++;
+			}
+			return new Rates(segmentByMinute, segmentStartMillis, segmentCentsPerHour, segmentStartCost,
+					tierStartMillis, tierPercent, freeMinutes * MILLIS_PER_MINUTE, dailyCapCents * UNITS_PER_CENT);
+		}
+	}
+
+	private static final class Rates {
+		// shared by all lots with rates changing at the same minutes
+		private final char[] segmentByMinute;
+		private final long[] segmentStartMillis;
+		private final long[] segmentCentsPerHour;
+		// cost of the day before each segment, the last one is a whole day
+		private final long[] segmentStartCost;
+		private final long dayCost;
+		private final long[] tierStartMillis;
+		private final int[] tierPercent;
+		private final long freeMillis;
+		private final long dailyCap;
+
+		Rates(char[] segmentByMinute, long[] segmentStartMillis, long[] segmentCentsPerHour, long[] segmentStartCost,
+				long[] tierStartMillis, int[] tierPercent, long freeMillis, long dailyCap) {
+			this.segmentByMinute = segmentByMinute;
+			this.segmentStartMillis = segmentStartMillis;
+			this.segmentCentsPerHour = segmentCentsPerHour;
+			this.segmentStartCost = segmentStartCost;
+			this.dayCost = segmentStartCost[segmentStartCost.length - 1];
+			this.tierStartMillis = tierStartMillis;
+			this.tierPercent = tierPercent;
+			this.freeMillis = freeMillis;
+			this.dailyCap = dailyCap;
+		}
+
+		long priceCents(long inEpochMillis, long outEpochMillis) {
+			long stayMillis = outEpochMillis - inEpochMillis;
+			if (stayMillis <= freeMillis) {
+				return 0;
+			}
+			long inDay = Math.floorDiv(inEpochMillis, MILLIS_PER_DAY);
+			long total;
+			if (dailyCap == 0) {
+				total = cost(inEpochMillis, inDay, 0, stayMillis);
+			} else {
+				int lastTier = tierStartMillis.length - 1;
+				long fullDayCost = Math.min(dailyCap, tierPercent[lastTier] * dayCost);
+				total = 0;
+				long dayStart = 0;
+				while (dayStart < stayMillis) {
+					if (dayStart >= tierStartMillis[lastTier] && stayMillis - dayStart >= MILLIS_PER_DAY) {
+						// every remaining full day costs the same
+						long fullDays = (stayMillis - dayStart) / MILLIS_PER_DAY;
+						total += fullDays * fullDayCost;
+						dayStart += fullDays * MILLIS_PER_DAY;
+					} else {
+						long dayEnd = Math.min(stayMillis, dayStart + MILLIS_PER_DAY);
+						total += Math.min(dailyCap, cost(inEpochMillis, inDay, dayStart, dayEnd));
+						dayStart = dayEnd;
+					}
+				}
+			}
+			return (total + UNITS_PER_CENT / 2) / UNITS_PER_CENT;
+		}
+
+		/**
+		 * Cost between fromMillis and toMillis of the stay.
+		 */
+		private long cost(long inEpochMillis, long inDay, long fromMillis, long toMillis) {
+			long total = 0;
+			for (int i = 0; i < tierStartMillis.length; i++) {
+				long start = Math.max(fromMillis, tierStartMillis[i]);
+				long end = (i + 1 < tierStartMillis.length) ? Math.min(toMillis, tierStartMillis[i + 1]) : toMillis;
+				if (start < end) {
+					total += tierPercent[i]
+							* (costSinceInDay(inEpochMillis + end, inDay) - costSinceInDay(inEpochMillis + start, inDay));
+				}
+			}
+			return total;
+		}
+
+		private long costSinceInDay(long epochMillis, long inDay) {
+			long day = Math.floorDiv(epochMillis, MILLIS_PER_DAY);
+			long millisOfDay = epochMillis - day * MILLIS_PER_DAY;
+			int segment = segmentByMinute[(int) (millisOfDay / MILLIS_PER_MINUTE)];
+			return (day - inDay) * dayCost + segmentStartCost[segment]
+					+ segmentCentsPerHour[segment] * (millisOfDay - segmentStartMillis[segment]);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.parkit.parkingsystem.model;
+
+import java.util.Objects;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * One row of the tariff table. What startMinute, endMinute and amount mean
+ * depends on the kind of rule.
+ */
+public final class TariffRule {
+
+	public enum Kind {
+		/**
+		 * amount cents per hour between minutes of the day startMinute
+		 * (inclusive) and endMinute (exclusive), wrapping past midnight when
+		 * endMinute is before startMinute. Later rules override earlier ones.
+		 */
+		HOURLY_RATE,
+		/**
+		 * From startMinute of the stay on, amount percent of the hourly rate.
+		 */
+		DURATION_TIER,
+		/**
+		 * Stays of at most amount minutes are free.
+		 */
+		FREE_MINUTES,
+		/**
+		 * At most amount cents for every 24 hours since entry, 0 for no cap.
+		 */
+		DAILY_CAP
+	}
+
+	private final int lot;
+	private final ParkingType parkingType;
+	private final Kind kind;
+	private final int startMinute;
+	private final int endMinute;
+	private final int amount;
+
+	public TariffRule(int lot, ParkingType parkingType, Kind kind, int startMinute, int endMinute, int amount) {
+		this.lot = lot;
+		this.parkingType = Objects.requireNonNull(parkingType, "parkingType");
+		this.kind = Objects.requireNonNull(kind, "kind");
+		this.startMinute = startMinute;
+		this.endMinute = endMinute;
+		this.amount = amount;
+	}
+
+	public static TariffRule hourlyRate(int lot, ParkingType parkingType, int startMinute, int endMinute,
+			int centsPerHour) {
+		return new TariffRule(lot, parkingType, Kind.HOURLY_RATE, startMinute, endMinute, centsPerHour);
+	}
+
+	public static TariffRule durationTier(int lot, ParkingType parkingType, int startMinute, int percent) {
+		return new TariffRule(lot, parkingType, Kind.DURATION_TIER, startMinute, 0, percent);
+	}
+
+	public static TariffRule freeMinutes(int lot, ParkingType parkingType, int minutes) {
+		return new TariffRule(lot, parkingType, Kind.FREE_MINUTES, 0, 0, minutes);
+	}
+
+	public static TariffRule dailyCap(int lot, ParkingType parkingType, int cents) {
+		return new TariffRule(lot, parkingType, Kind.DAILY_CAP, 0, 0, cents);
+	}
+
+	public int getLot() {
+		return lot;
+	}
+
+	public ParkingType getParkingType() {
+		return parkingType;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public int getStartMinute() {
+		return startMinute;
+	}
+
+	public int getEndMinute() {
+		return endMinute;
+	}
+
+	public int getAmount() {
+		return amount;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		TariffRule that = (TariffRule) o;
+		return lot == that.lot && parkingType == that.parkingType && kind == that.kind
+				&& startMinute == that.startMinute && endMinute == that.endMinute && amount == that.amount;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(lot, parkingType, kind, startMinute, endMinute, amount);
+	}
+
+	@Override
+	public String toString() {
+		return kind + "(lot " + lot + ", " + parkingType + ", " + startMinute + ", " + endMinute + ", " + amount + ")";
+	}
+}
@@ -2,11 +2,14 @@ package com.parkit.parkingsystem.model;
 
 import java.time.LocalDateTime;
 
+import com.parkit.parkingsystem.util.PricesUtil;
+
 public class Ticket {
     private int id;
     private ParkingSpot parkingSpot;
     private String vehicleRegNumber;
-    private double price;
+    // exact amount, in cents
+    private long priceCents;
     private LocalDateTime inTime;
     private LocalDateTime outTime;
 
@@ -35,11 +38,22 @@ public class Ticket {
     }
 
     public double getPrice() {
-        return price;
+        return priceCents / 100.0;
     }
 
+    /**
+     * Rounded to the cent.
+     */
     public void setPrice(double price) {
-        this.price = price;
+        this.priceCents = PricesUtil.toCents(price);
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public void setPriceCents(long priceCents) {
+        this.priceCents = priceCents;
     }
 
     public LocalDateTime getInTime() {
@@ -0,0 +1,345 @@
+package com.parkit.parkingsystem.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+
+/**
+ * Re-prices every closed ticket with the current fares, e.g. after a tariff
+ * correction. Tickets of vehicles that came before get the recurring user
+ * discount, as they did at exit.
+ * <p>
+ * Tickets are streamed in ID order from one forward-only cursor into
+ * fixed-size chunks. The chunks are priced on a fork-join pool and the
+ * changed prices written back in one JDBC batch per chunk. A fixed set of
+ * chunks is reused, so memory does not depend on the size of the ticket table.
+ * <p>
+ * The highest ticket ID below which every chunk is written is kept in a
+ * checkpoint file; a run that fails or is stopped restarts from there. The
+ * file is deleted once a run completes.
+ */
+public class BatchBillingService {
+
+	private static final Logger logger = LogManager.getLogger("BatchBillingService");
+
+	private final TicketDAO ticketDAO;
+	private final FareCalculatorService fareCalculatorService;
+
+	private int chunkSize = 10_000;
+	private int fetchSize = 10_000;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private long progressIntervalMillis = 10_000;
+	private Consumer<Report> progressListener;
+
+	public BatchBillingService(TicketDAO ticketDAO, FareCalculatorService fareCalculatorService) {
+		this.ticketDAO = ticketDAO;
+		this.fareCalculatorService = fareCalculatorService;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Rows read per round trip by the ticket cursor, and held by the driver at
+	 * a time since cursor fetch is on in the MySQL URL. Integer.MIN_VALUE
+	 * streams row by row on MySQL.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Chunks priced and written at the same time, each needs a pooled
+	 * connection to write.
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		this.parallelism = parallelism;
+	}
+
+	public void setProgressIntervalMillis(long progressIntervalMillis) {
+		this.progressIntervalMillis = progressIntervalMillis;
+	}
+
+	/**
+	 * Called on the reading thread every progress interval.
+	 */
+	public void setProgressListener(Consumer<Report> progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Re-prices the closed tickets after the one recorded in checkpointFile, or
+	 * all of them when there is no checkpoint.
+	 *
+	 * @return what this run read and changed
+	 */
+	public Report reprice(Path checkpointFile) throws Exception {
+		return new Run(checkpointFile).execute();
+	}
+
+	public static final class Report {
+		private final long readTickets;
+		private final long repricedTickets;
+		private final int checkpointTicketId;
+		private final long elapsedMillis;
+
+		Report(long readTickets, long repricedTickets, int checkpointTicketId, long elapsedMillis) {
+			this.readTickets = readTickets;
+			this.repricedTickets = repricedTickets;
+			this.checkpointTicketId = checkpointTicketId;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		/**
+		 * @return tickets priced and written by this run
+		 */
+		public long getReadTickets() {
+			return readTickets;
+		}
+
+		/**
+		 * @return tickets whose price changed
+		 */
+		public long getRepricedTickets() {
+			return repricedTickets;
+		}
+
+		/**
+		 * @return every closed ticket up to this ID has been re-priced
+		 */
+		public int getCheckpointTicketId() {
+			return checkpointTicketId;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public long getTicketsPerSecond() {
+			return elapsedMillis == 0 ? readTickets : readTickets * 1000 / elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return readTickets + " tickets read, " + repricedTickets + " re-priced, " + getTicketsPerSecond()
+					+ " tickets/s, checkpoint at ticket " + checkpointTicketId;
+		}
+	}
+
+	private static final class Chunk {
+		final int[] ticketIds;
+		final int[] lots;
+		final ParkingType[] parkingTypes;
+		final long[] inEpochMillis;
+		final long[] outEpochMillis;
+		final long[] priceCents;
+		final boolean[] recurringUsers;
+		final int[] changedTicketIds;
+		final long[] changedPriceCents;
+		int size;
+		long sequence;
+
+		Chunk(int capacity) {
+			ticketIds = new int[capacity];
+			lots = new int[capacity];
+			parkingTypes = new ParkingType[capacity];
+			inEpochMillis = new long[capacity];
+			outEpochMillis = new long[capacity];
+			priceCents = new long[capacity];
+			recurringUsers = new boolean[capacity];
+			changedTicketIds = new int[capacity];
+			changedPriceCents = new long[capacity];
+		}
+	}
+
+	/**
+	 * State of one reprice() call.
+	 */
+	private final class Run {
+		private final Path checkpointFile;
+		private final long start = System.currentTimeMillis();
+		private final int chunksInFlight = parallelism * 2;
+		private final BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(chunksInFlight);
+		private final ForkJoinPool workers = new ForkJoinPool(parallelism);
+		private final AtomicLong readTickets = new AtomicLong();
+		private final AtomicLong repricedTickets = new AtomicLong();
+
+		// chunks written out of order, waiting for the ones before them
+		private final TreeMap<Long, Integer> writtenChunks = new TreeMap<>();
+		private long nextChunkToCheckpoint;
+		private volatile int checkpointTicketId;
+		private volatile Throwable failure;
+
+		private Chunk current;
+		private long nextSequence;
+		private long lastProgress = start;
+
+		Run(Path checkpointFile) {
+			this.checkpointFile = checkpointFile;
+		}
+
+		Report execute() throws Exception {
+			checkpointTicketId = readCheckpoint();
+			if (checkpointTicketId > 0) {
+				logger.info("Re-pricing tickets from checkpoint at ticket {}", checkpointTicketId);
+			}
+			for (int i = 0; i < chunksInFlight; i++) {
+				freeChunks.add(new Chunk(chunkSize));
+			}
+			try {
+				current = freeChunks.take();
+				ticketDAO.streamClosedTickets(checkpointTicketId, fetchSize, this::add);
+				if (current.size > 0 && failure == null) {
+					submit();
+				}
+			} finally {
+				if (current != null) {
+					freeChunks.add(current);
+				}
+				// every chunk back means every chunk written
+				for (int i = 0; i < chunksInFlight; i++) {
+					freeChunks.take();
+				}
+				workers.shutdown();
+			}
+
+			Report report = report();
+			if (failure != null) {
+				logger.error("Re-pricing stopped: {}", report);
+				throw new Exception("Unable to re-price tickets, restart from checkpoint at ticket "
+						+ checkpointTicketId, failure);
+			}
+			Files.deleteIfExists(checkpointFile);
+			logger.info("Re-pricing done: {}", report);
+			return report;
+		}
+
+		private boolean add(int ticketId, int lot, ParkingType parkingType, long inEpochMillis, long outEpochMillis,
+				long priceCents, boolean recurringUser) throws InterruptedException {
+			if (failure != null) {
+				return false;
+			}
+			Chunk chunk = current;
+			int i = chunk.size++;
+			chunk.ticketIds[i] = ticketId;
+			chunk.lots[i] = lot;
+			chunk.parkingTypes[i] = parkingType;
+			chunk.inEpochMillis[i] = inEpochMillis;
+			chunk.outEpochMillis[i] = outEpochMillis;
+			chunk.priceCents[i] = priceCents;
+			chunk.recurringUsers[i] = recurringUser;
+			if (chunk.size == chunkSize) {
+				submit();
+				// waits while all chunks are being priced or written
+				current = freeChunks.take();
+				reportProgress();
+			}
+			return true;
+		}
+
+		private void submit() {
+			Chunk chunk = current;
+			chunk.sequence = nextSequence++;
+			current = null;
+			workers.execute(() -> process(chunk));
+		}
+
+		private void process(Chunk chunk) {
+			try {
+				int changed = 0;
+				for (int i = 0; i < chunk.size; i++) {
+					long priceCents = fareCalculatorService.calculateFareCents(chunk.lots[i], chunk.parkingTypes[i],
+							chunk.inEpochMillis[i], chunk.outEpochMillis[i]);
+					if (chunk.recurringUsers[i]) {
+						priceCents = fareCalculatorService.applyRecurringUserDiscount(priceCents);
+					}
+					if (priceCents != chunk.priceCents[i]) {
+						chunk.changedTicketIds[changed] = chunk.ticketIds[i];
+						chunk.changedPriceCents[changed] = priceCents;
+						changed++;
+					}
+				}
+				if (changed > 0) {
+					ticketDAO.updateTicketPrices(chunk.changedTicketIds, chunk.changedPriceCents, changed);
+				}
+				readTickets.addAndGet(chunk.size);
+				repricedTickets.addAndGet(changed);
+				written(chunk.sequence, chunk.ticketIds[chunk.size - 1]);
+			} catch (Throwable t) {
+				if (failure == null) {
+					failure = t;
+				}
+				logger.error("Error re-pricing tickets {} to {}", chunk.ticketIds[0], chunk.ticketIds[chunk.size - 1],
+						t);
+			} finally {
+				chunk.size = 0;
+				freeChunks.add(chunk);
+			}
+		}
+
+		private synchronized void written(long sequence, int lastTicketId) throws IOException {
+			writtenChunks.put(sequence, lastTicketId);
+			Integer ticketId = null;
+			while (!writtenChunks.isEmpty() && writtenChunks.firstKey() == nextChunkToCheckpoint) {
+				ticketId = writtenChunks.pollFirstEntry().getValue();
+				nextChunkToCheckpoint++;
+			}
+			if (ticketId != null) {
+				writeCheckpoint(ticketId);
+				checkpointTicketId = ticketId;
+			}
+		}
+
+		private void reportProgress() {
+			long now = System.currentTimeMillis();
+			if (now - lastProgress >= progressIntervalMillis) {
+				lastProgress = now;
+				Report report = report();
+				logger.info("Re-pricing: {}", report);
+				if (progressListener != null) {
+					progressListener.accept(report);
+				}
+			}
+		}
+
+		private Report report() {
+			return new Report(readTickets.get(), repricedTickets.get(), checkpointTicketId,
+					System.currentTimeMillis() - start);
+		}
+
+		private int readCheckpoint() throws IOException {
+			if (!Files.exists(checkpointFile)) {
+				return 0;
+			}
+			return Integer.parseInt(new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim());
+		}
+
+		private void writeCheckpoint(int ticketId) throws IOException {
+			Path temporaryFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+			Files.write(temporaryFile, Integer.toString(ticketId).getBytes(StandardCharsets.UTF_8));
+			Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+}
@@ -1,33 +1,97 @@
 package com.parkit.parkingsystem.service;
 
-import java.time.Duration;
-
 import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+import com.parkit.parkingsystem.model.Tariff;
 import com.parkit.parkingsystem.model.Ticket;
-import com.parkit.parkingsystem.util.PricesUtil;
+import com.parkit.parkingsystem.util.TimeUtil;
 
 public class FareCalculatorService {
 
+	private static final Timer FARE_TIMER = MetricsRegistry.getDefault().timer("parkingsystem_fare",
+			"Pricing a ticket, recurring user lookup included");
+
+	private volatile Tariff tariff;
+
+	private volatile VisitFrequencyService visitFrequencyService;
+
+	/**
+	 * Prices with the flat hourly rates of {@link Tariff#DEFAULT}.
+	 */
+	public FareCalculatorService() {
+		this(Tariff.DEFAULT);
+	}
+
+	public FareCalculatorService(Tariff tariff) {
+		this.tariff = tariff;
+	}
+
+	public Tariff getTariff() {
+		return tariff;
+	}
+
+	/**
+	 * Prices the following fares with the given tariff, see
+	 * {@link TariffService} to load it from the tariff table.
+	 */
+	public void setTariff(Tariff tariff) {
+		this.tariff = tariff;
+	}
+
+	/**
+	 * Gives the recurring user discount to the vehicles it counts more than one
+	 * visit for. Without it, no fare is discounted.
+	 */
+	public void setVisitFrequencyService(VisitFrequencyService visitFrequencyService) {
+		this.visitFrequencyService = visitFrequencyService;
+	}
+
 	public void calculateFare(Ticket ticket) {
+		long start = System.nanoTime();
+		try {
+			VisitFrequencyService visits = visitFrequencyService;
+			calculateFare(ticket, visits != null && visits.isRecurringUser(ticket.getVehicleRegNumber()));
+		} catch (RuntimeException e) {
+			FARE_TIMER.recordError();
+			throw e;
+		} finally {
+			FARE_TIMER.recordSince(start);
+		}
+	}
+
+	public void calculateFare(Ticket ticket, boolean discount) {
 		if ((ticket.getOutTime() == null) || (ticket.getOutTime().isBefore(ticket.getInTime()))) {
 			throw new IllegalArgumentException("Out time provided is incorrect:" + ticket.getOutTime().toString());
 		}
 
-		Duration duration = Duration.between(ticket.getInTime(), ticket.getOutTime());
-		double durationInHours = duration.toMillis() / (60.0 * 60.0 * 1000.0);
+		long fareCents = calculateFareCents(ticket.getParkingSpot().getLot(), ticket.getParkingSpot().getParkingType(),
+				TimeUtil.toEpochMillis(ticket.getInTime()), TimeUtil.toEpochMillis(ticket.getOutTime()));
+		ticket.setPriceCents(discount ? applyRecurringUserDiscount(fareCents) : fareCents);
+	}
+
+	/**
+	 * @return the fare less {@link Fare#RECURRING_USER_DISCOUNT_PERCENT},
+	 *         rounded half up to the cent
+	 */
+	public long applyRecurringUserDiscount(long fareCents) {
+		return (fareCents * (100 - Fare.RECURRING_USER_DISCOUNT_PERCENT) + 50) / 100;
+	}
 
-		switch (ticket.getParkingSpot().getParkingType()) {
-		case CAR: {
-			ticket.setPrice(PricesUtil.roundToPrice(durationInHours * Fare.CAR_RATE_PER_HOUR));
-			break;
-		}
-		case BIKE: {
-			ticket.setPrice(PricesUtil.roundToPrice(durationInHours * Fare.BIKE_RATE_PER_HOUR));
-			break;
-		}
-		default:
-			throw new IllegalArgumentException("Unkown Parking Type");
+	/**
+	 * Exact fare in cents in the default lot, rounded half up to the cent.
+	 * Allocates nothing.
+	 */
+	public long calculateFareCents(ParkingType parkingType, long inEpochMillis, long outEpochMillis) {
+		return calculateFareCents(Tariff.DEFAULT_LOT, parkingType, inEpochMillis, outEpochMillis);
+	}
+
+	public long calculateFareCents(int lot, ParkingType parkingType, long inEpochMillis, long outEpochMillis) {
+		if (outEpochMillis < inEpochMillis) {
+			throw new IllegalArgumentException("Out time provided is incorrect");
 		}
 
+		return tariff.priceCents(lot, parkingType, inEpochMillis, outEpochMillis);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,436 @@
+package com.parkit.parkingsystem.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.event.OccupancyEventRing;
+import com.parkit.parkingsystem.journal.GateJournal;
+import com.parkit.parkingsystem.journal.JournalReplayer;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.GateLocation;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.PricesUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP front end for the entry and exit gates, over the
+ * {@link ParkingService} API:
+ * <ul>
+ * <li>POST /entry?plate=...&amp;type=CAR|BIKE[&amp;time=...]</li>
+ * <li>POST /exit?plate=...[&amp;time=...]</li>
+ * <li>GET /availability</li>
+ * <li>GET /tickets/{plate}[?history=true]</li>
+ * <li>GET /metrics</li>
+ * </ul>
+ * Parameters can also be sent as a form encoded body, times are ISO local date
+ * times and default to now. Responses are JSON, but for the metrics, in the
+ * Prometheus text format.
+ * <p>
+ * Each request runs on its own virtual thread when the JVM has them (Java 21+),
+ * otherwise on a cached thread pool, so requests waiting on a pooled
+ * connection do not hold back the others.
+ */
+public class GateHttpServer {
+
+	private static final Logger logger = LogManager.getLogger("GateHttpServer");
+
+	private static final int BACKLOG = 1024;
+
+	static {
+		// headers and body are written separately, Nagle would hold the body back
+		// until the client's delayed ack (~40 ms per request)
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final ParkingService parkingService;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	public GateHttpServer(ParkingService parkingService, int port) throws IOException {
+		this.parkingService = parkingService;
+		this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		this.executor = newRequestExecutor();
+		server.setExecutor(executor);
+		server.createContext("/entry", this::handleEntry);
+		server.createContext("/exit", this::handleExit);
+		server.createContext("/availability", this::handleAvailability);
+		server.createContext("/tickets/", this::handleTicket);
+		server.createContext("/metrics", this::handleMetrics);
+	}
+
+	/**
+	 * Starts the gate server on the production database, until the JVM stops.
+	 */
+	public static GateHttpServer launch(int port) throws IOException {
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		TicketDAO ticketDAO = new TicketDAO();
+		String journalDirectory = System.getProperty("parkingsystem.journal.dir");
+		GateJournal journal = null;
+		JournalReplayer journalReplayer = null;
+		if (journalDirectory != null) {
+			journal = new GateJournal(Paths.get(journalDirectory));
+			journalReplayer = new JournalReplayer(journal, ticketDAO, parkingSpotDAO);
+			registerJournalMetrics(journal);
+			// before anything is loaded from the tables it writes to
+			journalReplayer.recover();
+		} else {
+			// the tables lag behind a journaled gate's index, they would undo its reservations
+			parkingSpotDAO.startAvailabilityReconciliation(1, TimeUnit.MINUTES);
+		}
+		Integer ticketBatchSize = Integer.getInteger("parkingsystem.ticketBatch.maxSize");
+		if (ticketBatchSize != null) {
+			// gates then claim spots with their ticket's batch, reconciliation gives back those of failed batches
+			ticketDAO.startWriteBehind(ticketBatchSize,
+					Long.getLong("parkingsystem.ticketBatch.maxLatencyMillis", 5), TimeUnit.MILLISECONDS,
+					Long.getLong("parkingsystem.ticketBatch.timeoutMillis", 5_000));
+		}
+		ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+		Integer gateLot = Integer.getInteger("parkingsystem.gate.lot");
+		if (gateLot != null) {
+			parkingService.setGateLocation(new GateLocation(gateLot, Integer.getInteger("parkingsystem.gate.level", 0),
+					Integer.getInteger("parkingsystem.gate.zone", 0)));
+		}
+		FareCalculatorService fareCalculatorService = TariffService.startReloadingFareCalculator();
+		VisitFrequencyService visitFrequencyService = new VisitFrequencyService(ticketDAO);
+		visitFrequencyService.warmUp();
+		fareCalculatorService.setVisitFrequencyService(visitFrequencyService);
+		parkingService.setFareCalculatorService(fareCalculatorService);
+		OccupancyEventRing occupancyEvents = OccupancyEventRing.startDefault(parkingSpotDAO);
+		Integer archiveAfterDays = Integer.getInteger("parkingsystem.archive.afterDays");
+		TicketArchivalService archivalService = null;
+		if (archiveAfterDays != null) {
+			archivalService = new TicketArchivalService(ticketDAO);
+			archivalService.startAutoArchival(archiveAfterDays, 1, TimeUnit.HOURS);
+		}
+		parkingService.setOccupancyEvents(occupancyEvents);
+		if (journal != null) {
+			parkingService.setJournal(journal);
+			journalReplayer.start();
+		}
+		GateHttpServer gateServer = new GateHttpServer(parkingService, port);
+		GateJournal gateJournal = journal;
+		JournalReplayer gateJournalReplayer = journalReplayer;
+		TicketArchivalService gateArchivalService = archivalService;
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			gateServer.stop(1);
+			if (gateArchivalService != null) {
+				gateArchivalService.stopAutoArchival();
+			}
+			ticketDAO.stopWriteBehind();
+			if (gateJournal != null) {
+				gateJournalReplayer.stop();
+				try {
+					gateJournal.close();
+				} catch (IOException e) {
+					logger.error("Unable to close the gate journal", e);
+				}
+			}
+			occupancyEvents.close();
+		}, "gate-http-shutdown"));
+		gateServer.start();
+		return gateServer;
+	}
+
+	public void start() {
+		server.start();
+		logger.info("Gate HTTP server listening on port {}", getPort());
+	}
+
+	/**
+	 * Stops accepting requests and waits up to delaySeconds for the ones in
+	 * flight.
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		executor.shutdownNow();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void handleEntry(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Method not allowed");
+				return;
+			}
+			Map<String, String> parameters = getParameters(exchange);
+			String vehicleRegNumber = parameters.get("plate");
+			ParkingType parkingType = ParkingType.valueOf(String.valueOf(parameters.get("type")).toUpperCase());
+			EntryResult result = parkingService.enter(vehicleRegNumber, parkingType, getTime(parameters));
+
+			int status;
+			switch (result.getStatus()) {
+			case PARKED:
+				status = 201;
+				break;
+			case ALREADY_PARKED:
+				status = 409;
+				break;
+			case PARKING_FULL:
+				status = 503;
+				break;
+			default:
+				status = 500;
+				break;
+			}
+			send(exchange, status, new Json().add("status", result.getStatus().name())
+					.add("plate", result.getVehicleRegNumber()).add("type", result.getParkingType().name())
+					.add("parkingNumber", result.getParkingNumber()).add("inTime", result.getInTime()).toString());
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			sendError(exchange, 400, e.getMessage());
+		} catch (RuntimeException e) {
+			logger.error("Unable to process entry request", e);
+			sendError(exchange, 500, "Internal error");
+		}
+	}
+
+	private void handleExit(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Method not allowed");
+				return;
+			}
+			Map<String, String> parameters = getParameters(exchange);
+			ExitResult result = parkingService.exit(parameters.get("plate"), getTime(parameters));
+
+			int status;
+			switch (result.getStatus()) {
+			case EXITED:
+				status = 200;
+				break;
+			case NOT_PARKED:
+				status = 404;
+				break;
+			default:
+				status = 500;
+				break;
+			}
+			Json json = new Json().add("status", result.getStatus().name()).add("plate",
+					result.getVehicleRegNumber());
+			if (result.isExited()) {
+				json.add("type", result.getParkingType().name()).add("parkingNumber", result.getParkingNumber())
+						.add("inTime", result.getInTime()).add("outTime", result.getOutTime())
+						.add("fare", PricesUtil.toDecimal(result.getFareCents()));
+			}
+			send(exchange, status, json.toString());
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			sendError(exchange, 400, e.getMessage());
+		} catch (RuntimeException e) {
+			logger.error("Unable to process exit request", e);
+			sendError(exchange, 500, "Internal error");
+		}
+	}
+
+	private void handleAvailability(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Method not allowed");
+				return;
+			}
+			Json json = new Json();
+			for (ParkingType parkingType : ParkingType.values()) {
+				int available = parkingService.getAvailableSpots(parkingType);
+				if (available < 0) {
+					sendError(exchange, 500, "Availability cannot be read");
+					return;
+				}
+				json.add(parkingType.name(), available);
+			}
+			send(exchange, 200, json.toString());
+		} catch (RuntimeException e) {
+			logger.error("Unable to process availability request", e);
+			sendError(exchange, 500, "Internal error");
+		}
+	}
+
+	private void handleTicket(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Method not allowed");
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			String vehicleRegNumber = URLDecoder.decode(path.substring(path.lastIndexOf('/') + 1), "UTF-8");
+			if (vehicleRegNumber.isEmpty()) {
+				sendError(exchange, 400, "Invalid vehicle registration number");
+				return;
+			}
+			Ticket ticket = parkingService.getTicket(vehicleRegNumber,
+					Boolean.parseBoolean(getParameters(exchange).get("history")));
+			if (ticket == null) {
+				sendError(exchange, 404, "No ticket for this vehicle");
+				return;
+			}
+			send(exchange, 200, new Json().add("id", ticket.getId()).add("plate", ticket.getVehicleRegNumber())
+					.add("type", ticket.getParkingSpot().getParkingType().name())
+					.add("parkingNumber", ticket.getParkingSpot().getId()).add("inTime", ticket.getInTime())
+					.add("outTime", ticket.getOutTime()).add("price", PricesUtil.toDecimal(ticket.getPriceCents())).toString());
+		} catch (RuntimeException e) {
+			logger.error("Unable to process ticket request", e);
+			sendError(exchange, 500, "Internal error");
+		}
+	}
+
+	private static LocalDateTime getTime(Map<String, String> parameters) {
+		String time = parameters.get("time");
+		return time == null ? LocalDateTime.now() : LocalDateTime.parse(time);
+	}
+
+	private static Map<String, String> getParameters(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = new HashMap<>();
+		parseParameters(exchange.getRequestURI().getRawQuery(), parameters);
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+		if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+			parseParameters(readBody(exchange.getRequestBody()), parameters);
+		}
+		return parameters;
+	}
+
+	private static void parseParameters(String encoded, Map<String, String> parameters) throws IOException {
+		if (encoded == null || encoded.isEmpty()) {
+			return;
+		}
+		for (String pair : encoded.split("&")) {
+			int separator = pair.indexOf('=');
+			if (separator > 0) {
+				parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+						URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+			}
+		}
+	}
+
+	private static String readBody(InputStream body) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		byte[] buffer = new byte[512];
+		int read;
+		while ((read = body.read(buffer)) != -1) {
+			content.write(buffer, 0, read);
+		}
+		return new String(content.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Method not allowed");
+				return;
+			}
+			byte[] body = MetricsRegistry.getDefault().scrape().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void registerJournalMetrics(GateJournal journal) {
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		metrics.gauge("parkingsystem_journal_pending_bytes", "Journaled bytes not written to the database yet",
+				journal::getPendingBytes);
+		metrics.counter("parkingsystem_journal_appends_total", "Records appended to the journal", journal::getAppends);
+		metrics.counter("parkingsystem_journal_syncs_total", "Forces of the journal to disk", journal::getSyncs);
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		send(exchange, status, new Json().add("error", message).toString());
+	}
+
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static ExecutorService newRequestExecutor() {
+		try {
+			// Java 21+, looked up so the application still runs on older JVMs
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			logger.info("Virtual threads not available, serving gate requests on a cached thread pool");
+			AtomicInteger threadCount = new AtomicInteger();
+			return Executors.newCachedThreadPool(r -> {
+				Thread thread = new Thread(r, "gate-http-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Flat JSON object, enough for the gate responses and the report rows.
+	 */
+	static class Json {
+		private final StringBuilder content = new StringBuilder("{");
+
+		Json add(String name, Object value) {
+			if (content.length() > 1) {
+				content.append(',');
+			}
+			appendString(name);
+			content.append(':');
+			if (value == null) {
+				content.append("null");
+			} else if (value instanceof Number) {
+				content.append(value);
+			} else {
+				appendString(value.toString());
+			}
+			return this;
+		}
+
+		private void appendString(String value) {
+			content.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					content.append('\\').append(c);
+				} else if (c < 0x20) {
+					content.append(String.format("\\u%04x", (int) c));
+				} else {
+					content.append(c);
+				}
+			}
+			content.append('"');
+		}
+
+		@Override
+		public String toString() {
+			return content + "}";
+		}
+	}
+}
@@ -1,15 +1,35 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.event.OccupancyEventRing;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Console client of {@link ParkingService#enter(String, ParkingType, LocalDateTime)}
+ * and {@link ParkingService#exit(String, LocalDateTime)}: prompts for the vehicle
+ * and prints the results.
+ */
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
+    private final InputReaderUtil inputReaderUtil;
+    private final ParkingService parkingService;
+
+    public InteractiveShell(InputReaderUtil inputReaderUtil, ParkingService parkingService) {
+        this.inputReaderUtil = inputReaderUtil;
+        this.parkingService = parkingService;
+    }
+
     public static void loadInterface(){
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
@@ -17,23 +37,33 @@ public class InteractiveShell {
         boolean continueApp = true;
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
         ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.startAvailabilityReconciliation(1, TimeUnit.MINUTES);
         TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+        FareCalculatorService fareCalculatorService = TariffService.startReloadingFareCalculator();
+        VisitFrequencyService visitFrequencyService = new VisitFrequencyService(ticketDAO);
+        visitFrequencyService.warmUp();
+        fareCalculatorService.setVisitFrequencyService(visitFrequencyService);
+        parkingService.setFareCalculatorService(fareCalculatorService);
+        OccupancyEventRing occupancyEvents = OccupancyEventRing.startDefault(parkingSpotDAO);
+        parkingService.setOccupancyEvents(occupancyEvents);
+        InteractiveShell shell = new InteractiveShell(inputReaderUtil, parkingService);
 
         while(continueApp){
             loadMenu();
             int option = inputReaderUtil.readSelection();
             switch(option){
                 case 1: {
-                    parkingService.processIncomingVehicle();
+                    shell.processIncomingVehicle();
                     break;
                 }
                 case 2: {
-                    parkingService.processExitingVehicle();
+                    shell.processExitingVehicle();
                     break;
                 }
                 case 3: {
                     System.out.println("Exiting from the system!");
+                    occupancyEvents.close();
                     continueApp = false;
                     break;
                 }
@@ -49,4 +79,95 @@ public class InteractiveShell {
         System.out.println("3 Shutdown System");
     }
 
+    public void processIncomingVehicle(){
+        processIncomingVehicle(LocalDateTime.now());
+    }
+
+    /**
+     * Prompts for the vehicle and its type and prints the allocated spot.
+     *
+     * @throws IllegalArgumentException if the type entered is not on the menu
+     * @throws RuntimeException if the vehicle is already in the parking
+     */
+    public void processIncomingVehicle(LocalDateTime inTime){
+        String vehicleRegNumber;
+        try {
+            vehicleRegNumber = getVehichleRegNumber();
+        }catch (Exception e){
+            logger.error("Unable to process incoming vehicle", e);
+            return;
+        }
+        ParkingType parkingType = getVehichleType();
+
+        EntryResult result = parkingService.enter(vehicleRegNumber, parkingType, inTime);
+
+        switch(result.getStatus()){
+            case PARKED:
+                System.out.println("Generated Ticket and saved in DB");
+                System.out.println("Please park your vehicle in spot number:" + result.getParkingNumber());
+                System.out.println("Recorded in-time for vehicle number:" + vehicleRegNumber + " is:" + inTime);
+                break;
+            case ALREADY_PARKED:
+                throw new RuntimeException("This vehicle is already in the parking");
+            default:
+                break;
+        }
+    }
+
+    public void processExitingVehicle(){
+        processExitingVehicle(LocalDateTime.now());
+    }
+
+    /**
+     * Prompts for the vehicle and prints the fare to pay.
+     *
+     * @throws RuntimeException if the vehicle is not in the parking
+     */
+    public void processExitingVehicle(LocalDateTime outTime){
+        String vehicleRegNumber;
+        try {
+            vehicleRegNumber = getVehichleRegNumber();
+        }catch (Exception e){
+            logger.error("Unable to process exiting vehicle", e);
+            return;
+        }
+
+        ExitResult result = parkingService.exit(vehicleRegNumber, outTime);
+
+        switch(result.getStatus()){
+            case EXITED:
+                System.out.println("Please pay the parking fare:" + result.getFare());
+                System.out.println("Recorded out-time for vehicle number:" + result.getVehicleRegNumber() + " is:" + outTime);
+                break;
+            case NOT_PARKED:
+                throw new RuntimeException("Error : This vehicle is not in the parking.");
+            default:
+                System.out.println("Unable to update ticket information. Error occurred");
+                break;
+        }
+    }
+
+    private String getVehichleRegNumber() throws Exception {
+        System.out.println("Please type the vehicle registration number and press enter key");
+        return inputReaderUtil.readVehicleRegistrationNumber();
+    }
+
+    private ParkingType getVehichleType(){
+        System.out.println("Please select vehicle type from menu");
+        System.out.println("1 CAR");
+        System.out.println("2 BIKE");
+        int input = inputReaderUtil.readSelection();
+        switch(input){
+            case 1: {
+                return ParkingType.CAR;
+            }
+            case 2: {
+                return ParkingType.BIKE;
+            }
+            default: {
+                logger.error("ParkingType::getVehichleType : Incorrect input provided");
+                throw new IllegalArgumentException("Entered input is invalid");
+            }
+        }
+    }
 }
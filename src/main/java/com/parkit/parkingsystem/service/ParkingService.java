@@ -1,99 +1,253 @@
 package com.parkit.parkingsystem.service;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.event.OccupancyEvent;
+import com.parkit.parkingsystem.event.OccupancyEventRing;
+import com.parkit.parkingsystem.journal.GateJournal;
+import com.parkit.parkingsystem.journal.JournalRecord;
+import com.parkit.parkingsystem.metrics.Counter;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.GateLocation;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
-import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.TimeUtil;
 
 public class ParkingService {
 
 	private static final Logger logger = LogManager.getLogger("ParkingService");
 
-	private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
-
-	private InputReaderUtil inputReaderUtil;
-	private ParkingSpotDAO parkingSpotDAO;
-	private TicketDAO ticketDAO;
-
-	public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
-		this.inputReaderUtil = inputReaderUtil;
+	private static final Timer ENTRY_TIMER = gateTimer("entry");
+	private static final Timer EXIT_TIMER = gateTimer("exit");
+	private static final Counter[] ENTRY_RESULTS = gateResults("entry", EntryResult.Status.values());
+	private static final Counter[] EXIT_RESULTS = gateResults("exit", ExitResult.Status.values());
+
+	private FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+	private final ParkingSpotDAO parkingSpotDAO;
+	private final TicketDAO ticketDAO;
+	// null to allocate the lowest free spot of any lot
+	private volatile GateLocation gateLocation;
+	private volatile OccupancyEventRing occupancyEvents;
+	// null to write entries and exits to the DB before answering
+	private volatile GateJournal journal;
+
+	/**
+	 * Service for the {@link #enter(String, ParkingType, LocalDateTime)} and
+	 * {@link #exit(String, LocalDateTime)} API, without console: see
+	 * {@link InteractiveShell} for that.
+	 */
+	public ParkingService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
 		this.parkingSpotDAO = parkingSpotDAO;
 		this.ticketDAO = ticketDAO;
 	}
 
-	public void processIncomingVehicle(LocalDateTime inTime) {
+	/**
+	 * Prices exits with the given calculator, e.g. one whose tariff is kept up
+	 * to date by a {@link TariffService}.
+	 */
+	public void setFareCalculatorService(FareCalculatorService fareCalculatorService) {
+		this.fareCalculatorService = fareCalculatorService;
+	}
 
-		String vehicleRegNumber = "";
+	/**
+	 * Allocates spots in the gate's lot only, on the nearest level with a free
+	 * spot.
+	 */
+	public void setGateLocation(GateLocation gateLocation) {
+		this.gateLocation = gateLocation;
+	}
 
-		try {
-			vehicleRegNumber = getVehichleRegNumber();
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+	/**
+	 * Publishes entries, exits and spot changes to the ring once committed, for
+	 * signage, audit and metrics consumers.
+	 */
+	public void setOccupancyEvents(OccupancyEventRing occupancyEvents) {
+		this.occupancyEvents = occupancyEvents;
+	}
 
-		// first check if this vehicle is not already in the parking
+	/**
+	 * Answers entries and exits once they are in the journal, from the open
+	 * tickets cache and the availability index, and leaves the DB writes to a
+	 * {@link com.parkit.parkingsystem.journal.JournalReplayer}. Times are kept
+	 * to the second. The gate must be the only one allocating spots in its lot,
+	 * and {@link #getTicket(String)} lags behind until the journal is replayed.
+	 *
+	 * @throws IllegalStateException if the cache or the index cannot be loaded
+	 */
+	public void setJournal(GateJournal journal) {
+		if (journal != null
+				&& (ticketDAO.getOpenTicketCache() == null || parkingSpotDAO.getAvailabilityIndex() == null)) {
+			throw new IllegalStateException("Journaled gates need the open tickets cache and the availability index");
+		}
+		this.journal = journal;
+	}
 
-		Ticket checkPreviousTicket = ticketDAO.getTicket(vehicleRegNumber);
-		if ((checkPreviousTicket != null) && (checkPreviousTicket.getOutTime() == null)) {
-			throw new RuntimeException("This vehicle is already in the parking");
+	/**
+	 * Registers a vehicle entering the parking: checks it is not already parked,
+	 * claims the next available spot and saves its ticket, all in one
+	 * transaction. Does not use the console and can be called from any number of
+	 * threads.
+	 */
+	public EntryResult enter(String vehicleRegNumber, ParkingType parkingType, LocalDateTime inTime) {
+		if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+			throw new IllegalArgumentException("Invalid vehicle registration number");
+		}
+		if (parkingType == null || inTime == null) {
+			throw new IllegalArgumentException("Parking type and in-time are required");
 		}
 
-		ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
+		long start = System.nanoTime();
+		EntryResult result = registerEntry(vehicleRegNumber, parkingType, inTime);
+		ENTRY_TIMER.recordSince(start);
+		ENTRY_RESULTS[result.getStatus().ordinal()].increment();
+		if (result.getStatus() == EntryResult.Status.FAILED) {
+			ENTRY_TIMER.recordError();
+		}
+		return result;
+	}
 
+	private EntryResult registerEntry(String vehicleRegNumber, ParkingType parkingType, LocalDateTime inTime) {
 		try {
-
-			if (parkingSpot != null && parkingSpot.getId() > 0) {
-				parkingSpot.setAvailable(false);
-				parkingSpotDAO.updateParking(parkingSpot);// allot this parking space and mark it's availability as
-															// false
-
-				Ticket ticket = new Ticket();
-				// ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
-				// ticket.setId(ticketID);
-				ticket.setParkingSpot(parkingSpot);
-				ticket.setVehicleRegNumber(vehicleRegNumber);
-				ticket.setPrice(0);
-				ticket.setInTime(inTime);
-				ticket.setOutTime(null);
-				ticketDAO.saveTicket(ticket);
-				System.out.println("Generated Ticket and saved in DB");
-				System.out.println("Please park your vehicle in spot number:" + parkingSpot.getId());
-				System.out.println("Recorded in-time for vehicle number:" + vehicleRegNumber + " is:" + inTime);
+			GateJournal gateJournal = journal;
+			if (gateJournal != null) {
+				return registerJournaledEntry(gateJournal, vehicleRegNumber, parkingType,
+						inTime.truncatedTo(ChronoUnit.SECONDS));
 			}
-
-		} catch (Exception e) {
+			if (ticketDAO.isWriteBehind() && parkingSpotDAO.getAvailabilityIndex() != null) {
+				return registerBatchedEntry(vehicleRegNumber, parkingType, inTime);
+			}
+			// check, spot allocation and ticket are committed together on one connection
+			return UnitOfWork.execute(() -> registerIncomingVehicle(vehicleRegNumber, parkingType, inTime));
+		} catch (RuntimeException e) {
 			logger.error("Unable to process incoming vehicle", e);
+			return EntryResult.rejected(EntryResult.Status.FAILED, vehicleRegNumber, parkingType, inTime);
+		}
+	}
+
+	private EntryResult registerIncomingVehicle(String vehicleRegNumber, ParkingType parkingType,
+			LocalDateTime inTime) {
+
+		// first check if this vehicle is not already in the parking
+
+		if (ticketDAO.getOpenTicket(vehicleRegNumber) != null) {
+			return EntryResult.rejected(EntryResult.Status.ALREADY_PARKED, vehicleRegNumber, parkingType, inTime);
+		}
+
+		ParkingSpot parkingSpot = getNextParkingNumberIfAvailable(parkingType);
+
+		if (parkingSpot == null || parkingSpot.getId() <= 0) {
+			return EntryResult.rejected(EntryResult.Status.PARKING_FULL, vehicleRegNumber, parkingType, inTime);
 		}
 
+		// the parking space has already been claimed (marked as unavailable)
+		Ticket ticket = new Ticket();
+		// ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)
+		// ticket.setId(ticketID);
+		ticket.setParkingSpot(parkingSpot);
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setPrice(0);
+		ticket.setInTime(inTime);
+		ticket.setOutTime(null);
+		if (!ticketDAO.saveTicket(ticket)) {
+			logger.error("Unable to process incoming vehicle: ticket could not be saved");
+			UnitOfWork.setRollbackOnly();
+			return EntryResult.rejected(EntryResult.Status.FAILED, vehicleRegNumber, parkingType, inTime);
+		}
+		publishAfterCommit(ticket, OccupancyEvent.Type.VEHICLE_ENTERED, OccupancyEvent.Type.SPOT_OCCUPIED);
+		return EntryResult.parked(ticket);
 	}
 
-	public void processIncomingVehicle() {
-		processIncomingVehicle(LocalDateTime.now());
+	private EntryResult registerJournaledEntry(GateJournal gateJournal, String vehicleRegNumber,
+			ParkingType parkingType, LocalDateTime inTime) {
+		if (ticketDAO.getOpenTicket(vehicleRegNumber) != null) {
+			return EntryResult.rejected(EntryResult.Status.ALREADY_PARKED, vehicleRegNumber, parkingType, inTime);
+		}
+		GateLocation gate = gateLocation;
+		int parkingNumber = (gate == null) ? parkingSpotDAO.reserveNextAvailableSlot(parkingType)
+				: parkingSpotDAO.reserveNearestAvailableSlot(gate.getLot(), gate.getLevel(), gate.getZone(), parkingType);
+		if (parkingNumber <= 0) {
+			return EntryResult.rejected(EntryResult.Status.PARKING_FULL, vehicleRegNumber, parkingType, inTime);
+		}
+		ParkingSpot parkingSpot = new ParkingSpot(parkingNumber, parkingType, false);
+		parkingSpotDAO.locate(parkingSpot);
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(parkingSpot);
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(inTime);
+		try {
+			gateJournal.append(JournalRecord.entry(ticket));
+		} catch (IOException e) {
+			logger.error("Unable to process incoming vehicle: entry could not be journaled", e);
+			parkingSpotDAO.releaseSlot(parkingType, parkingNumber);
+			return EntryResult.rejected(EntryResult.Status.FAILED, vehicleRegNumber, parkingType, inTime);
+		}
+		ticketDAO.cacheJournaledTicket(ticket);
+		publishAfterCommit(ticket, OccupancyEvent.Type.VEHICLE_ENTERED, OccupancyEvent.Type.SPOT_OCCUPIED);
+		return EntryResult.parked(ticket);
 	}
 
-	private String getVehichleRegNumber() throws Exception {
-		System.out.println("Please type the vehicle registration number and press enter key");
-		return inputReaderUtil.readVehicleRegistrationNumber();
+	/**
+	 * Write-behind entry, outside a unit of work: the spot is reserved in the
+	 * availability index and claimed in the parking table by the ticket's batch,
+	 * so that no row lock is held while waiting for it.
+	 */
+	private EntryResult registerBatchedEntry(String vehicleRegNumber, ParkingType parkingType,
+			LocalDateTime inTime) {
+		if (ticketDAO.getOpenTicket(vehicleRegNumber) != null) {
+			return EntryResult.rejected(EntryResult.Status.ALREADY_PARKED, vehicleRegNumber, parkingType, inTime);
+		}
+		GateLocation gate = gateLocation;
+		int parkingNumber = (gate == null) ? parkingSpotDAO.reserveNextAvailableSlot(parkingType)
+				: parkingSpotDAO.reserveNearestAvailableSlot(gate.getLot(), gate.getLevel(), gate.getZone(), parkingType);
+		if (parkingNumber <= 0) {
+			return EntryResult.rejected(EntryResult.Status.PARKING_FULL, vehicleRegNumber, parkingType, inTime);
+		}
+		ParkingSpot parkingSpot = new ParkingSpot(parkingNumber, parkingType, false);
+		parkingSpotDAO.locate(parkingSpot);
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(parkingSpot);
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setPrice(0);
+		ticket.setInTime(inTime);
+		if (!ticketDAO.saveTicketClaimingSpot(ticket)) {
+			// the spot stays out of the index: it may have been taken behind it, and
+			// reconciliation gives it back if it is still free in the parking table
+			logger.error("Unable to process incoming vehicle: ticket could not be saved on spot {}", parkingNumber);
+			return EntryResult.rejected(EntryResult.Status.FAILED, vehicleRegNumber, parkingType, inTime);
+		}
+		publishAfterCommit(ticket, OccupancyEvent.Type.VEHICLE_ENTERED, OccupancyEvent.Type.SPOT_OCCUPIED);
+		return EntryResult.parked(ticket);
 	}
 
-	public ParkingSpot getNextParkingNumberIfAvailable() {
+	private ParkingSpot getNextParkingNumberIfAvailable(ParkingType parkingType) {
 		int parkingNumber = 0;
 		ParkingSpot parkingSpot = null;
-		ParkingType parkingType = getVehichleType();
-		parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+		GateLocation gate = gateLocation;
+		if (gate == null) {
+			parkingNumber = parkingSpotDAO.claimNextAvailableSlot(parkingType);
+		} else {
+			parkingNumber = parkingSpotDAO.claimNearestAvailableSlot(gate.getLot(), gate.getLevel(), gate.getZone(),
+					parkingType);
+		}
 
 		try {
 
 			if (parkingNumber > 0) {
-				parkingSpot = new ParkingSpot(parkingNumber, parkingType, true);
+				parkingSpot = new ParkingSpot(parkingNumber, parkingType, false);
+				parkingSpotDAO.locate(parkingSpot);
 			} else {
 				throw new Exception("Error fetching parking number from DB. Parking slots might be full");
 			}
@@ -105,64 +259,170 @@ public class ParkingService {
 		return parkingSpot;
 	}
 
-	private ParkingType getVehichleType() {
-		System.out.println("Please select vehicle type from menu");
-		System.out.println("1 CAR");
-		System.out.println("2 BIKE");
-		int input = inputReaderUtil.readSelection();
-		switch (input) {
-		case 1: {
-			return ParkingType.CAR;
+	/**
+	 * Registers a vehicle leaving the parking: prices its open ticket, closes it
+	 * and frees the spot, all in one transaction. Does not use the console and
+	 * can be called from any number of threads.
+	 */
+	public ExitResult exit(String vehicleRegNumber, LocalDateTime outTime) {
+		if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+			throw new IllegalArgumentException("Invalid vehicle registration number");
 		}
-		case 2: {
-			return ParkingType.BIKE;
-		}
-		default: {
-			logger.error("ParkingType::getVehichleType : Incorrect input provided");
-			throw new IllegalArgumentException("Entered input is invalid");
+		if (outTime == null) {
+			throw new IllegalArgumentException("Out-time is required");
 		}
+
+		long start = System.nanoTime();
+		ExitResult result = registerExit(vehicleRegNumber, outTime);
+		EXIT_TIMER.recordSince(start);
+		EXIT_RESULTS[result.getStatus().ordinal()].increment();
+		if (result.getStatus() == ExitResult.Status.FAILED) {
+			EXIT_TIMER.recordError();
 		}
+		return result;
 	}
 
-	public void processExitingVehicle(LocalDateTime outTime) {
-
-		Ticket ticket = null;
-		String vehicleRegNumber = "";
-
+	private ExitResult registerExit(String vehicleRegNumber, LocalDateTime outTime) {
 		try {
-			vehicleRegNumber = getVehichleRegNumber();
-			ticket = ticketDAO.getTicket(vehicleRegNumber);
-		} catch (Exception e) {
+			GateJournal gateJournal = journal;
+			if (gateJournal != null) {
+				return registerJournaledExit(gateJournal, vehicleRegNumber, outTime.truncatedTo(ChronoUnit.SECONDS));
+			}
+			if (ticketDAO.isWriteBehind() && parkingSpotDAO.getAvailabilityIndex() != null) {
+				return registerBatchedExit(vehicleRegNumber, outTime);
+			}
+			// ticket and parking spot are updated together on one connection
+			return UnitOfWork.execute(() -> registerExitingVehicle(vehicleRegNumber, outTime));
+		} catch (RuntimeException e) {
 			logger.error("Unable to process exiting vehicle", e);
-			return;
+			return ExitResult.rejected(ExitResult.Status.FAILED, vehicleRegNumber, outTime);
 		}
+	}
+
+	private ExitResult registerExitingVehicle(String vehicleRegNumber, LocalDateTime outTime) {
+
+		Ticket ticket = ticketDAO.getOpenTicket(vehicleRegNumber);
 
 		if (ticket == null) {
-			throw new RuntimeException("Error : This vehicle is not in the parking.");
+			return ExitResult.rejected(ExitResult.Status.NOT_PARKED, vehicleRegNumber, outTime);
 		}
 
 		try {
 			ticket.setOutTime(outTime);
 
+			// the fare depends on the lot
+			ParkingSpot parkingSpot = ticket.getParkingSpot();
+			parkingSpotDAO.locate(parkingSpot);
 			fareCalculatorService.calculateFare(ticket);
 
-			if (ticketDAO.updateTicket(ticket)) {
-				ParkingSpot parkingSpot = ticket.getParkingSpot();
-				parkingSpot.setAvailable(true);
-				parkingSpotDAO.updateParking(parkingSpot);
-				System.out.println("Please pay the parking fare:" + ticket.getPrice());
-				System.out.println(
-						"Recorded out-time for vehicle number:" + ticket.getVehicleRegNumber() + " is:" + outTime);
-			} else {
-				System.out.println("Unable to update ticket information. Error occurred");
+			parkingSpot.setAvailable(true);
+			if (ticketDAO.updateTicket(ticket) && parkingSpotDAO.updateParking(parkingSpot)) {
+				publishAfterCommit(ticket, OccupancyEvent.Type.VEHICLE_EXITED, OccupancyEvent.Type.SPOT_FREED);
+				return ExitResult.exited(ticket);
 			}
 		} catch (Exception e) {
 			logger.error("Unable to process exiting vehicle", e);
 		}
+		UnitOfWork.setRollbackOnly();
+		return ExitResult.rejected(ExitResult.Status.FAILED, vehicleRegNumber, outTime);
 	}
 
-	public void processExitingVehicle() {
-		processExitingVehicle(LocalDateTime.now());
+	private ExitResult registerJournaledExit(GateJournal gateJournal, String vehicleRegNumber, LocalDateTime outTime) {
+		Ticket ticket = ticketDAO.getOpenTicket(vehicleRegNumber);
+		if (ticket == null) {
+			return ExitResult.rejected(ExitResult.Status.NOT_PARKED, vehicleRegNumber, outTime);
+		}
+		ticket.setOutTime(outTime);
+		ParkingSpot parkingSpot = ticket.getParkingSpot();
+		parkingSpotDAO.locate(parkingSpot);
+		fareCalculatorService.calculateFare(ticket);
+		try {
+			gateJournal.append(JournalRecord.exit(ticket));
+		} catch (IOException e) {
+			logger.error("Unable to process exiting vehicle: exit could not be journaled", e);
+			return ExitResult.rejected(ExitResult.Status.FAILED, vehicleRegNumber, outTime);
+		}
+		ticketDAO.uncacheJournaledTicket(ticket);
+		parkingSpot.setAvailable(true);
+		parkingSpotDAO.releaseSlot(parkingSpot.getParkingType(), parkingSpot.getId());
+		publishAfterCommit(ticket, OccupancyEvent.Type.VEHICLE_EXITED, OccupancyEvent.Type.SPOT_FREED);
+		return ExitResult.exited(ticket);
 	}
 
+	private ExitResult registerBatchedExit(String vehicleRegNumber, LocalDateTime outTime) {
+		Ticket ticket = ticketDAO.getOpenTicket(vehicleRegNumber);
+		if (ticket == null) {
+			return ExitResult.rejected(ExitResult.Status.NOT_PARKED, vehicleRegNumber, outTime);
+		}
+		ticket.setOutTime(outTime);
+		ParkingSpot parkingSpot = ticket.getParkingSpot();
+		parkingSpotDAO.locate(parkingSpot);
+		fareCalculatorService.calculateFare(ticket);
+		parkingSpot.setAvailable(true);
+		if (!ticketDAO.updateTicketFreeingSpot(ticket)) {
+			logger.error("Unable to process exiting vehicle: ticket could not be updated");
+			return ExitResult.rejected(ExitResult.Status.FAILED, vehicleRegNumber, outTime);
+		}
+		parkingSpotDAO.releaseSlot(parkingSpot.getParkingType(), parkingSpot.getId());
+		publishAfterCommit(ticket, OccupancyEvent.Type.VEHICLE_EXITED, OccupancyEvent.Type.SPOT_FREED);
+		return ExitResult.exited(ticket);
+	}
+
+	private void publishAfterCommit(Ticket ticket, OccupancyEvent.Type vehicleEvent, OccupancyEvent.Type spotEvent) {
+		OccupancyEventRing events = occupancyEvents;
+		if (events == null) {
+			return;
+		}
+		int ticketId = ticket.getId();
+		String vehicleRegNumber = ticket.getVehicleRegNumber();
+		ParkingSpot parkingSpot = ticket.getParkingSpot();
+		int parkingNumber = parkingSpot.getId();
+		ParkingType parkingType = parkingSpot.getParkingType();
+		int lot = parkingSpot.getLot();
+		boolean exit = (vehicleEvent == OccupancyEvent.Type.VEHICLE_EXITED);
+		long epochMillis = TimeUtil.toEpochMillis(exit ? ticket.getOutTime() : ticket.getInTime());
+		long priceCents = exit ? ticket.getPriceCents() : 0;
+		long dwellMillis = exit ? epochMillis - TimeUtil.toEpochMillis(ticket.getInTime()) : 0;
+		UnitOfWork.afterCommit(() -> {
+			events.publish(vehicleEvent, ticketId, vehicleRegNumber, parkingNumber, parkingType, lot, epochMillis,
+					priceCents, dwellMillis);
+			events.publish(spotEvent, ticketId, vehicleRegNumber, parkingNumber, parkingType, lot, epochMillis, 0, 0);
+		});
+	}
+
+	/**
+	 * @return the number of free spots for this type, -1 if it cannot be read
+	 */
+	public int getAvailableSpots(ParkingType parkingType) {
+		return parkingSpotDAO.countAvailableSlots(parkingType);
+	}
+
+	/**
+	 * @return the vehicle's current ticket, or its last one if it has left
+	 */
+	public Ticket getTicket(String vehicleRegNumber) {
+		return ticketDAO.getLatestTicket(vehicleRegNumber);
+	}
+
+	/**
+	 * Same as {@link #getTicket(String)}, looking in the ticket archive too when
+	 * includeArchive is true and the vehicle has no recent ticket.
+	 */
+	public Ticket getTicket(String vehicleRegNumber, boolean includeArchive) {
+		return ticketDAO.getLatestTicket(vehicleRegNumber, includeArchive);
+	}
+
+	private static Timer gateTimer(String operation) {
+		return MetricsRegistry.getDefault().timer("parkingsystem_gate", "Entries and exits, end to end",
+				"operation", operation);
+	}
+
+	private static Counter[] gateResults(String operation, Enum<?>[] statuses) {
+		Counter[] counters = new Counter[statuses.length];
+		for (Enum<?> status : statuses) {
+			counters[status.ordinal()] = MetricsRegistry.getDefault().counter("parkingsystem_gate_results_total",
+					"Entries and exits by outcome", "operation", operation, "status", status.name());
+		}
+		return counters;
+	}
 }
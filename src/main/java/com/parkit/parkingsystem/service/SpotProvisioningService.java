@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem.service;
+
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+
+/**
+ * Loads the parking spots of a layout file into the parking table, one spot
+ * per line: lot,level,number,type and an optional zone, e.g. "2,1,2048,CAR".
+ * Blank lines, lines starting with # and a first line that is not a spot, the
+ * header, are skipped.
+ * <p>
+ * The file is read line by line into one fixed-size batch of spots, written
+ * with a single multi-row insert, so memory does not depend on the size of the
+ * layout. Spots already in the table get the type, lot, level and zone of the
+ * layout and keep their availability: importing a layout again, or again after
+ * a failed import, leaves the table as one import would. Spots that are not in
+ * the layout are left alone.
+ * <p>
+ * The availability index is reloaded from the table once the layout is
+ * imported. Vehicles parked in the meantime are in the table; entries and
+ * exits of a journaled gate that are not replayed yet are not.
+ */
+public class SpotProvisioningService {
+
+	private static final Logger logger = LogManager.getLogger("SpotProvisioningService");
+
+	private final ParkingSpotDAO parkingSpotDAO;
+
+	private int batchSize = 1000;
+
+	public SpotProvisioningService(ParkingSpotDAO parkingSpotDAO) {
+		this.parkingSpotDAO = parkingSpotDAO;
+	}
+
+	/**
+	 * Spots written per insert statement.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return the number of spots imported
+	 */
+	public long importLayout(Path layout) throws Exception {
+		try (BufferedReader reader = Files.newBufferedReader(layout, StandardCharsets.UTF_8)) {
+			return importLayout(reader);
+		}
+	}
+
+	/**
+	 * @return the number of spots imported
+	 * @throws IllegalArgumentException on a line that is not a spot, with the
+	 *                                  spots of the lines before it imported
+	 */
+	public long importLayout(BufferedReader layout) throws Exception {
+		int[] parkingNumbers = new int[batchSize];
+		ParkingType[] parkingTypes = new ParkingType[batchSize];
+		int[] lots = new int[batchSize];
+		int[] levels = new int[batchSize];
+		int[] zones = new int[batchSize];
+		long imported = 0;
+		int count = 0;
+		int lineNumber = 0;
+		String line;
+		while ((line = layout.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.charAt(0) == '#'
+					|| (lineNumber == 1 && !Character.isDigit(line.charAt(0)))) {
+				continue;
+			}
+			try {
+				int end = field(line, 0);
+				lots[count] = Integer.parseInt(line.substring(0, end).trim());
+				int start = end + 1;
+				end = field(line, start);
+				levels[count] = Integer.parseInt(line.substring(start, end).trim());
+				start = end + 1;
+				end = field(line, start);
+				parkingNumbers[count] = Integer.parseInt(line.substring(start, end).trim());
+				start = end + 1;
+				end = line.indexOf(',', start);
+				if (end < 0) {
+					parkingTypes[count] = ParkingType.valueOf(line.substring(start).trim());
+					zones[count] = 0;
+				} else {
+					parkingTypes[count] = ParkingType.valueOf(line.substring(start, end).trim());
+					zones[count] = Integer.parseInt(line.substring(end + 1).trim());
+				}
+			} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+				throw new IllegalArgumentException("Line " + lineNumber + " of the layout is not a parking spot: "
+						+ line, e);
+			}
+			if (parkingNumbers[count] < 1) {
+				throw new IllegalArgumentException("Line " + lineNumber + " of the layout has no parking number: "
+						+ line);
+			}
+			if (++count == batchSize) {
+				parkingSpotDAO.saveParkingSpots(count, parkingNumbers, parkingTypes, lots, levels, zones);
+				imported += count;
+				count = 0;
+			}
+		}
+		if (count > 0) {
+			parkingSpotDAO.saveParkingSpots(count, parkingNumbers, parkingTypes, lots, levels, zones);
+			imported += count;
+		}
+		parkingSpotDAO.reloadAvailabilityIndex();
+		logger.info("Imported {} parking spot(s) from the layout", imported);
+		return imported;
+	}
+
+	private static int field(String line, int start) {
+		int end = line.indexOf(',', start);
+		if (end < 0) {
+			throw new IllegalArgumentException("missing field");
+		}
+		return end;
+	}
+}
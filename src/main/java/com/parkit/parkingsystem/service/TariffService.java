@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem.service;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.dao.TariffDAO;
+import com.parkit.parkingsystem.model.Tariff;
+import com.parkit.parkingsystem.model.TariffRule;
+
+/**
+ * Loads the tariff table into a {@link FareCalculatorService}, and reloads it
+ * while the application runs. Tickets being priced keep the tariff they
+ * started with; an invalid table is logged and the current tariff kept.
+ */
+public class TariffService {
+
+	private static final Logger logger = LogManager.getLogger("TariffService");
+
+	private final TariffDAO tariffDAO;
+	private final FareCalculatorService fareCalculatorService;
+
+	private List<TariffRule> loadedRules;
+	private ScheduledExecutorService reloadScheduler;
+
+	public TariffService(TariffDAO tariffDAO, FareCalculatorService fareCalculatorService) {
+		this.tariffDAO = tariffDAO;
+		this.fareCalculatorService = fareCalculatorService;
+	}
+
+	/**
+	 * @return a fare calculator following the tariff table of the production
+	 *         database, reloaded every minute
+	 */
+	public static FareCalculatorService startReloadingFareCalculator() {
+		FareCalculatorService fareCalculatorService = new FareCalculatorService();
+		TariffService tariffService = new TariffService(new TariffDAO(), fareCalculatorService);
+		tariffService.reload();
+		tariffService.startAutoReload(1, TimeUnit.MINUTES);
+		return fareCalculatorService;
+	}
+
+	/**
+	 * @return true if the tariff table changed and its new tariff is in use
+	 */
+	public synchronized boolean reload() {
+		try {
+			List<TariffRule> rules = tariffDAO.getTariffRules();
+			if (rules.equals(loadedRules)) {
+				return false;
+			}
+			fareCalculatorService.setTariff(Tariff.compile(rules));
+			loadedRules = rules;
+			logger.info("Tariff loaded with {} rule(s)", rules.size());
+			return true;
+		} catch (Exception ex) {
+			logger.error("Error loading tariff, keeping the current one", ex);
+			return false;
+		}
+	}
+
+	public synchronized void startAutoReload(long period, TimeUnit unit) {
+		if (reloadScheduler == null) {
+			reloadScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "tariff-reload");
+				thread.setDaemon(true);
+				return thread;
+			});
+			reloadScheduler.scheduleWithFixedDelay(this::reload, period, period, unit);
+		}
+	}
+
+	public synchronized void stopAutoReload() {
+		if (reloadScheduler != null) {
+			reloadScheduler.shutdownNow();
+			reloadScheduler = null;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem.service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.Counter;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+
+/**
+ * Moves the tickets closed more than retentionDays ago from the ticket table
+ * to the ticket archive, so that the ticket table only holds the open and
+ * recent tickets the gates look up, whatever the size of the history.
+ * <p>
+ * Tickets are moved in ID order, chunkSize tickets a transaction: each chunk
+ * locks only its own tickets, for the time of one insert and one delete. A run
+ * that fails or is stopped leaves the tickets it did not reach in the ticket
+ * table, for the next run. Each run first adds the archive's month partitions
+ * up to next month, on MySQL. Archived tickets still count as visits for the
+ * recurring user discount, but are no longer re-priced by
+ * {@link BatchBillingService}.
+ */
+public class TicketArchivalService {
+
+	private static final Logger logger = LogManager.getLogger("TicketArchivalService");
+
+	private static final Counter ARCHIVED_TICKETS = MetricsRegistry.getDefault().counter(
+			"parkingsystem_tickets_archived_total", "Closed tickets moved to the ticket archive");
+
+	private final TicketDAO ticketDAO;
+
+	private int chunkSize = 1000;
+	private ScheduledExecutorService archivalScheduler;
+
+	public TicketArchivalService(TicketDAO ticketDAO) {
+		this.ticketDAO = ticketDAO;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Not to be run twice at the same time: the second run fails on the
+	 * tickets the first one locked.
+	 *
+	 * @return the number of tickets archived
+	 */
+	public long archive(LocalDateTime closedBefore) throws Exception {
+		addArchivePartitions(closedBefore);
+		int[] ticketIds = new int[chunkSize];
+		long archived = 0;
+		int afterTicketId = 0;
+		int count;
+		while ((count = ticketDAO.archiveClosedTickets(afterTicketId, closedBefore, ticketIds)) > 0) {
+			afterTicketId = ticketIds[count - 1];
+			archived += count;
+			ARCHIVED_TICKETS.add(count);
+		}
+		if (archived > 0) {
+			logger.info("Archived {} ticket(s) closed before {}", archived, closedBefore);
+		}
+		return archived;
+	}
+
+	private void addArchivePartitions(LocalDateTime closedBefore) {
+		YearMonth through = YearMonth.now();
+		if (through.isBefore(YearMonth.from(closedBefore))) {
+			through = YearMonth.from(closedBefore);
+		}
+		try {
+			int added = ticketDAO.addArchivePartitions(through.plusMonths(1));
+			if (added > 0) {
+				logger.info("Added {} month partition(s) to the ticket archive, up to {}", added, through.plusMonths(1));
+			}
+		} catch (Exception ex) {
+			// the tickets are still archived, into pfuture, until a run splits it
+			logger.error("Error adding ticket archive partitions", ex);
+		}
+	}
+
+	/**
+	 * Archives the tickets closed more than retentionDays ago now, then every
+	 * period, on a background thread.
+	 */
+	public synchronized void startAutoArchival(int retentionDays, long period, TimeUnit unit) {
+		if (retentionDays < 1) {
+			throw new IllegalArgumentException("retentionDays must be positive");
+		}
+		if (archivalScheduler == null) {
+			archivalScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "ticket-archival");
+				thread.setDaemon(true);
+				return thread;
+			});
+			archivalScheduler.scheduleWithFixedDelay(() -> {
+				try {
+					archive(LocalDateTime.now().minusDays(retentionDays));
+				} catch (Exception ex) {
+					logger.error("Error archiving tickets, retrying at the next run", ex);
+				}
+			}, 0, period, unit);
+		}
+	}
+
+	public synchronized void stopAutoArchival() {
+		if (archivalScheduler != null) {
+			archivalScheduler.shutdownNow();
+			archivalScheduler = null;
+		}
+	}
+}
@@ -0,0 +1,509 @@
+package com.parkit.parkingsystem.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.util.PricesUtil;
+import com.parkit.parkingsystem.util.TimeUtil;
+
+/**
+ * Reports over the tickets of a period, archived ones included, per vehicle
+ * type: exits and revenue per day, entries, exits and parked vehicles per hour,
+ * and the plates that spent the most. A ticket's revenue counts on the day it
+ * was closed.
+ * <p>
+ * The ticket IDs are split into ranges, a few per worker so that a slow range
+ * does not keep the others waiting. Ranges are read at the same time by a
+ * fork-join pool of workers, each over its own pooled connection and
+ * forward-only cursor, into a partial report; partial reports are merged as the
+ * fork-join tasks complete. Memory depends on the length of the period and the
+ * number of plates, not on the number of tickets: the workers' cursors hold
+ * fetchSize rows between them, cursor fetch being on in the MySQL URL. The type of each spot is
+ * loaded once per report rather than joined to every ticket row.
+ */
+public class TicketReportService {
+
+	private static final Logger logger = LogManager.getLogger("TicketReportService");
+
+	private static final long HOUR_MILLIS = 3_600_000;
+	private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+	private static final int RANGES_PER_WORKER = 4;
+
+	private final ParkingSpotDAO parkingSpotDAO;
+	private final TicketDAO ticketDAO;
+
+	private int workers = Runtime.getRuntime().availableProcessors();
+	private int fetchSize = 10_000;
+	private int topPlates = 100;
+
+	public TicketReportService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+		this.parkingSpotDAO = parkingSpotDAO;
+		this.ticketDAO = ticketDAO;
+	}
+
+	/**
+	 * Ranges read at the same time, each needs a pooled connection.
+	 */
+	public void setWorkers(int workers) {
+		if (workers < 1) {
+			throw new IllegalArgumentException("workers must be positive");
+		}
+		this.workers = workers;
+	}
+
+	/**
+	 * Rows read per round trip by all the workers' cursors together, each
+	 * reading its share. Integer.MIN_VALUE streams row by row on MySQL.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	public void setTopPlates(int topPlates) {
+		if (topPlates < 1) {
+			throw new IllegalArgumentException("topPlates must be positive");
+		}
+		this.topPlates = topPlates;
+	}
+
+	/**
+	 * @param from start of the first day and hour of the report
+	 * @param to   end of the report, excluded
+	 */
+	public Report generate(LocalDateTime from, LocalDateTime to) throws Exception {
+		if (!to.isAfter(from)) {
+			throw new IllegalArgumentException("to must be after from");
+		}
+		long start = System.currentTimeMillis();
+		ParkingType[] spotTypes = getSpotTypes();
+		int[] idRange = ticketDAO.getTicketIdRange();
+		long ranges = (long) workers * RANGES_PER_WORKER;
+		int rangeSize = (int) Math.max(1, ((long) idRange[1] - idRange[0] + ranges) / ranges);
+		int cursorFetchSize = (fetchSize == Integer.MIN_VALUE) ? fetchSize : Math.max(1, fetchSize / workers);
+		ForkJoinPool pool = new ForkJoinPool(workers);
+		Partial total;
+		try {
+			total = pool.invoke(
+					new RangeTask(idRange[0] - 1, idRange[1], rangeSize, cursorFetchSize, spotTypes, from, to));
+		} catch (CompletionException ex) {
+			Throwable cause = ex;
+			while (cause instanceof CompletionException && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			throw new Exception("Unable to read the tickets from " + from + " to " + to, cause);
+		} finally {
+			pool.shutdown();
+		}
+		Report report = new Report(total, topPlates, System.currentTimeMillis() - start);
+		logger.info("Report from {} to {}: {} ticket(s) read by {} worker(s) in {} ms", from, to,
+				report.getTickets(), workers, report.getElapsedMillis());
+		return report;
+	}
+
+	/**
+	 * @return the type of each spot, by parking number
+	 */
+	private ParkingType[] getSpotTypes() throws Exception {
+		List<ParkingSpot> parkingSpots = parkingSpotDAO.getParkingSpots();
+		int lastParkingNumber = 0;
+		for (ParkingSpot parkingSpot : parkingSpots) {
+			lastParkingNumber = Math.max(lastParkingNumber, parkingSpot.getId());
+		}
+		ParkingType[] spotTypes = new ParkingType[lastParkingNumber + 1];
+		for (ParkingSpot parkingSpot : parkingSpots) {
+			spotTypes[parkingSpot.getId()] = parkingSpot.getParkingType();
+		}
+		return spotTypes;
+	}
+
+	/**
+	 * Reads the tickets with an ID above afterTicketId and up to lastTicketId,
+	 * splitting the range in two until it is small enough.
+	 */
+	private final class RangeTask extends RecursiveTask<Partial> {
+		private static final long serialVersionUID = 1L;
+
+		private final int afterTicketId;
+		private final int lastTicketId;
+		private final int rangeSize;
+		private final int fetchSize;
+		private final ParkingType[] spotTypes;
+		private final LocalDateTime from;
+		private final LocalDateTime to;
+
+		RangeTask(int afterTicketId, int lastTicketId, int rangeSize, int fetchSize, ParkingType[] spotTypes,
+				LocalDateTime from, LocalDateTime to) {
+			this.afterTicketId = afterTicketId;
+			this.lastTicketId = lastTicketId;
+			this.rangeSize = rangeSize;
+			this.fetchSize = fetchSize;
+			this.spotTypes = spotTypes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Partial compute() {
+			if (lastTicketId - afterTicketId <= rangeSize) {
+				Partial partial = new Partial(spotTypes, from, to);
+				try {
+					ticketDAO.streamReportTickets(afterTicketId, lastTicketId, from, to, fetchSize, partial::add);
+				} catch (Exception ex) {
+					logger.error("Error reading tickets {} to {}", afterTicketId + 1, lastTicketId, ex);
+					throw new CompletionException(ex);
+				}
+				return partial;
+			}
+			int middle = afterTicketId + (lastTicketId - afterTicketId) / 2;
+			RangeTask lower = new RangeTask(afterTicketId, middle, rangeSize, fetchSize, spotTypes, from, to);
+			lower.fork();
+			Partial upper = new RangeTask(middle, lastTicketId, rangeSize, fetchSize, spotTypes, from, to).compute();
+			return lower.join().merge(upper);
+		}
+	}
+
+	/**
+	 * Figures of the tickets of some ID ranges. Parked vehicles are kept as
+	 * the change at each hour, summed up once every range is merged.
+	 */
+	private static final class Partial {
+		final ParkingType[] spotTypes;
+		final long fromEpochMillis;
+		final long toEpochMillis;
+		final int days;
+		final int hours;
+		final long[][] dailyExits;
+		final long[][] dailyRevenueCents;
+		final long[][] hourlyEntries;
+		final long[][] hourlyExits;
+		final long[][] hourlyParkedChanges;
+		// tickets and revenue in cents of each plate
+		Map<String, long[]> plates = new HashMap<>();
+		long tickets;
+
+		Partial(ParkingType[] spotTypes, LocalDateTime from, LocalDateTime to) {
+			this.spotTypes = spotTypes;
+			fromEpochMillis = TimeUtil.toEpochMillis(from);
+			toEpochMillis = TimeUtil.toEpochMillis(to);
+			days = (int) ((toEpochMillis - fromEpochMillis + DAY_MILLIS - 1) / DAY_MILLIS);
+			hours = (int) ((toEpochMillis - fromEpochMillis + HOUR_MILLIS - 1) / HOUR_MILLIS);
+			int types = ParkingType.values().length;
+			dailyExits = new long[types][days];
+			dailyRevenueCents = new long[types][days];
+			hourlyEntries = new long[types][hours];
+			hourlyExits = new long[types][hours];
+			hourlyParkedChanges = new long[types][hours + 1];
+		}
+
+		void add(String vehicleRegNumber, int parkingNumber, long inEpochMillis, long outEpochMillis,
+				long priceCents) {
+			int type = spotTypes[parkingNumber].ordinal();
+			tickets++;
+			if (inEpochMillis >= fromEpochMillis) {
+				hourlyEntries[type][(int) ((inEpochMillis - fromEpochMillis) / HOUR_MILLIS)]++;
+			}
+			if (outEpochMillis < toEpochMillis) {
+				long sinceFrom = outEpochMillis - fromEpochMillis;
+				dailyExits[type][(int) (sinceFrom / DAY_MILLIS)]++;
+				dailyRevenueCents[type][(int) (sinceFrom / DAY_MILLIS)] += priceCents;
+				hourlyExits[type][(int) (sinceFrom / HOUR_MILLIS)]++;
+				long[] plate = plates.computeIfAbsent(vehicleRegNumber, k -> new long[2]);
+				plate[0]++;
+				plate[1] += priceCents;
+			}
+			// parked at the start of every hour from the first one after the
+			// entry to the last one before the exit
+			int firstHour = hourAtOrAfter(inEpochMillis);
+			int endHour = hourAtOrAfter(outEpochMillis);
+			if (firstHour < endHour) {
+				hourlyParkedChanges[type][firstHour]++;
+				hourlyParkedChanges[type][endHour]--;
+			}
+		}
+
+		private int hourAtOrAfter(long epochMillis) {
+			if (epochMillis <= fromEpochMillis) {
+				return 0;
+			}
+			if (epochMillis >= toEpochMillis) {
+				return hours;
+			}
+			return (int) ((epochMillis - fromEpochMillis + HOUR_MILLIS - 1) / HOUR_MILLIS);
+		}
+
+		Partial merge(Partial other) {
+			for (int type = 0; type < dailyExits.length; type++) {
+				addTo(dailyExits[type], other.dailyExits[type]);
+				addTo(dailyRevenueCents[type], other.dailyRevenueCents[type]);
+				addTo(hourlyEntries[type], other.hourlyEntries[type]);
+				addTo(hourlyExits[type], other.hourlyExits[type]);
+				addTo(hourlyParkedChanges[type], other.hourlyParkedChanges[type]);
+			}
+			Map<String, long[]> smaller = other.plates;
+			if (smaller.size() > plates.size()) {
+				smaller = plates;
+				plates = other.plates;
+			}
+			for (Map.Entry<String, long[]> entry : smaller.entrySet()) {
+				long[] plate = plates.putIfAbsent(entry.getKey(), entry.getValue());
+				if (plate != null) {
+					plate[0] += entry.getValue()[0];
+					plate[1] += entry.getValue()[1];
+				}
+			}
+			tickets += other.tickets;
+			return this;
+		}
+
+		private static void addTo(long[] values, long[] otherValues) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] += otherValues[i];
+			}
+		}
+	}
+
+	public static final class PlateTotal {
+		private final String vehicleRegNumber;
+		private final long tickets;
+		private final long revenueCents;
+
+		PlateTotal(String vehicleRegNumber, long tickets, long revenueCents) {
+			this.vehicleRegNumber = vehicleRegNumber;
+			this.tickets = tickets;
+			this.revenueCents = revenueCents;
+		}
+
+		public String getVehicleRegNumber() {
+			return vehicleRegNumber;
+		}
+
+		/**
+		 * @return tickets closed during the report
+		 */
+		public long getTickets() {
+			return tickets;
+		}
+
+		public long getRevenueCents() {
+			return revenueCents;
+		}
+
+		@Override
+		public String toString() {
+			return vehicleRegNumber + " " + tickets + " ticket(s) " + revenueCents + " cents";
+		}
+	}
+
+	public static final class Report {
+		// most revenue first, then most tickets, then by plate
+		private static final Comparator<PlateTotal> TOP_PLATES = Comparator
+				.comparingLong(PlateTotal::getRevenueCents).reversed()
+				.thenComparing(Comparator.comparingLong(PlateTotal::getTickets).reversed())
+				.thenComparing(PlateTotal::getVehicleRegNumber);
+
+		private final Partial figures;
+		private final long[][] hourlyParked;
+		private final List<PlateTotal> topPlates;
+		private final long elapsedMillis;
+
+		Report(Partial figures, int topPlates, long elapsedMillis) {
+			this.figures = figures;
+			this.elapsedMillis = elapsedMillis;
+			hourlyParked = new long[figures.hourlyParkedChanges.length][figures.hours];
+			for (int type = 0; type < hourlyParked.length; type++) {
+				long parked = 0;
+				for (int hour = 0; hour < figures.hours; hour++) {
+					parked += figures.hourlyParkedChanges[type][hour];
+					hourlyParked[type][hour] = parked;
+				}
+			}
+			PriorityQueue<PlateTotal> top = new PriorityQueue<>(topPlates + 1, TOP_PLATES.reversed());
+			for (Map.Entry<String, long[]> plate : figures.plates.entrySet()) {
+				top.add(new PlateTotal(plate.getKey(), plate.getValue()[0], plate.getValue()[1]));
+				if (top.size() > topPlates) {
+					top.poll();
+				}
+			}
+			List<PlateTotal> sorted = new ArrayList<>(top);
+			sorted.sort(TOP_PLATES);
+			this.topPlates = Collections.unmodifiableList(sorted);
+		}
+
+		public LocalDateTime getFrom() {
+			return TimeUtil.toLocalDateTime(figures.fromEpochMillis);
+		}
+
+		public LocalDateTime getTo() {
+			return TimeUtil.toLocalDateTime(figures.toEpochMillis);
+		}
+
+		/**
+		 * @return tickets read, open at some point of the report
+		 */
+		public long getTickets() {
+			return figures.tickets;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/**
+		 * @return tickets closed on each day of the report
+		 */
+		public long[] getDailyExits(ParkingType parkingType) {
+			return figures.dailyExits[parkingType.ordinal()].clone();
+		}
+
+		public long[] getDailyRevenueCents(ParkingType parkingType) {
+			return figures.dailyRevenueCents[parkingType.ordinal()].clone();
+		}
+
+		public long[] getHourlyEntries(ParkingType parkingType) {
+			return figures.hourlyEntries[parkingType.ordinal()].clone();
+		}
+
+		public long[] getHourlyExits(ParkingType parkingType) {
+			return figures.hourlyExits[parkingType.ordinal()].clone();
+		}
+
+		/**
+		 * @return vehicles parked at the start of each hour of the report
+		 */
+		public long[] getHourlyParked(ParkingType parkingType) {
+			return hourlyParked[parkingType.ordinal()].clone();
+		}
+
+		/**
+		 * @return the plates with the most revenue from the tickets closed
+		 *         during the report, highest first
+		 */
+		public List<PlateTotal> getTopPlates() {
+			return topPlates;
+		}
+
+		/**
+		 * Writes revenue.csv, occupancy.csv and top_plates.csv to directory,
+		 * replacing them.
+		 */
+		public void writeCsv(Path directory) throws IOException {
+			Files.createDirectories(directory);
+			try (Writer out = Files.newBufferedWriter(directory.resolve("revenue.csv"), StandardCharsets.UTF_8)) {
+				out.write("day,type,exits,revenue\n");
+				for (int day = 0; day < figures.days; day++) {
+					for (ParkingType parkingType : ParkingType.values()) {
+						int type = parkingType.ordinal();
+						out.write(startOf(day, DAY_MILLIS) + "," + parkingType + "," + figures.dailyExits[type][day]
+								+ "," + PricesUtil.toDecimal(figures.dailyRevenueCents[type][day]) + "\n");
+					}
+				}
+			}
+			try (Writer out = Files.newBufferedWriter(directory.resolve("occupancy.csv"), StandardCharsets.UTF_8)) {
+				out.write("hour,type,entries,exits,parked\n");
+				for (int hour = 0; hour < figures.hours; hour++) {
+					for (ParkingType parkingType : ParkingType.values()) {
+						int type = parkingType.ordinal();
+						out.write(startOf(hour, HOUR_MILLIS) + "," + parkingType + ","
+								+ figures.hourlyEntries[type][hour] + "," + figures.hourlyExits[type][hour] + ","
+								+ hourlyParked[type][hour] + "\n");
+					}
+				}
+			}
+			try (Writer out = Files.newBufferedWriter(directory.resolve("top_plates.csv"), StandardCharsets.UTF_8)) {
+				out.write("rank,plate,tickets,revenue\n");
+				for (int rank = 1; rank <= topPlates.size(); rank++) {
+					PlateTotal plate = topPlates.get(rank - 1);
+					out.write(rank + "," + csvField(plate.getVehicleRegNumber()) + "," + plate.getTickets() + ","
+							+ PricesUtil.toDecimal(plate.getRevenueCents()) + "\n");
+				}
+			}
+		}
+
+		/**
+		 * Writes the report as one JSON object, with revenue, occupancy and
+		 * topPlates arrays of the rows of the CSV files.
+		 */
+		public void writeJson(Path file) throws IOException {
+			try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+				GateHttpServer.Json header = new GateHttpServer.Json().add("from", getFrom()).add("to", getTo())
+						.add("tickets", getTickets());
+				String headerJson = header.toString();
+				out.write(headerJson.substring(0, headerJson.length() - 1));
+				out.write(",\"revenue\":[");
+				for (int day = 0; day < figures.days; day++) {
+					for (ParkingType parkingType : ParkingType.values()) {
+						int type = parkingType.ordinal();
+						if (day > 0 || type > 0) {
+							out.write(',');
+						}
+						out.write(new GateHttpServer.Json().add("day", startOf(day, DAY_MILLIS))
+								.add("type", parkingType).add("exits", figures.dailyExits[type][day])
+								.add("revenue", PricesUtil.toDecimal(figures.dailyRevenueCents[type][day])).toString());
+					}
+				}
+				out.write("],\"occupancy\":[");
+				for (int hour = 0; hour < figures.hours; hour++) {
+					for (ParkingType parkingType : ParkingType.values()) {
+						int type = parkingType.ordinal();
+						if (hour > 0 || type > 0) {
+							out.write(',');
+						}
+						out.write(new GateHttpServer.Json().add("hour", startOf(hour, HOUR_MILLIS))
+								.add("type", parkingType).add("entries", figures.hourlyEntries[type][hour])
+								.add("exits", figures.hourlyExits[type][hour]).add("parked", hourlyParked[type][hour])
+								.toString());
+					}
+				}
+				out.write("],\"topPlates\":[");
+				for (int rank = 1; rank <= topPlates.size(); rank++) {
+					PlateTotal plate = topPlates.get(rank - 1);
+					if (rank > 1) {
+						out.write(',');
+					}
+					out.write(new GateHttpServer.Json().add("rank", rank).add("plate", plate.getVehicleRegNumber())
+							.add("tickets", plate.getTickets())
+							.add("revenue", PricesUtil.toDecimal(plate.getRevenueCents())).toString());
+				}
+				out.write("]}\n");
+			}
+		}
+
+		private LocalDateTime startOf(int index, long widthMillis) {
+			return TimeUtil.toLocalDateTime(figures.fromEpochMillis + index * widthMillis);
+		}
+
+		private static String csvField(String value) {
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+				return value;
+			}
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+
+		@Override
+		public String toString() {
+			return "report from " + getFrom() + " to " + getTo() + ", " + getTickets() + " tickets read in "
+					+ elapsedMillis + " ms";
+		}
+	}
+}
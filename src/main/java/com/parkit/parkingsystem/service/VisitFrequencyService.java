@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.VisitCounter;
+
+/**
+ * How often vehicles come, answered from the {@link VisitCounter} of the
+ * ticket DAO in constant time instead of counting their tickets. A visit is
+ * counted once its ticket is saved, so at exit a vehicle has at least one.
+ */
+public class VisitFrequencyService {
+
+	private final TicketDAO ticketDAO;
+
+	public VisitFrequencyService(TicketDAO ticketDAO) {
+		this.ticketDAO = ticketDAO;
+	}
+
+	/**
+	 * Counts the visits now rather than on the first exit.
+	 */
+	public void warmUp() {
+		ticketDAO.getVisitCounter();
+	}
+
+	/**
+	 * @return the tickets of that vehicle, 0 if it never came or the visits
+	 *         cannot be counted
+	 */
+	public int getVisits(String vehicleRegNumber) {
+		VisitCounter counter = ticketDAO.getVisitCounter();
+		return (counter == null || vehicleRegNumber == null) ? 0 : counter.getVisits(vehicleRegNumber);
+	}
+
+	/**
+	 * @return true if the vehicle has a ticket before the current one
+	 */
+	public boolean isRecurringUser(String vehicleRegNumber) {
+		return getVisits(vehicleRegNumber) > 1;
+	}
+}
@@ -0,0 +1,49 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets one in rate occurrences of a chatty log through, for logs written on
+ * every connection or statement. Check the level first, so nothing is counted
+ * while the log is off:
+ *
+ * <pre>
+ * if (logger.isDebugEnabled() &amp;&amp; sampler.sample()) {
+ * 	logger.debug("Closing DB connection (1 in {} logged)", sampler.getRate());
+ * }
+ * </pre>
+ */
+public class LogSampler {
+
+	public static final String RATE_PROPERTY = "parkingsystem.log.sampleRate";
+	public static final int DEFAULT_RATE = 100;
+
+	private final int rate;
+	private final AtomicLong occurrences = new AtomicLong();
+
+	public LogSampler(int rate) {
+		if (rate < 1) {
+			throw new IllegalArgumentException("Sample rate must be at least 1: " + rate);
+		}
+		this.rate = rate;
+	}
+
+	/**
+	 * @return a sampler at the rate of -Dparkingsystem.log.sampleRate, 100 by
+	 *         default, 1 logging everything
+	 */
+	public static LogSampler fromSystemProperties() {
+		return new LogSampler(Integer.getInteger(RATE_PROPERTY, DEFAULT_RATE));
+	}
+
+	/**
+	 * @return true for the first occurrence and every rate-th one after it
+	 */
+	public boolean sample() {
+		return occurrences.getAndIncrement() % rate == 0;
+	}
+
+	public int getRate() {
+		return rate;
+	}
+}
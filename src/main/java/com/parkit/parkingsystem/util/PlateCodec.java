@@ -0,0 +1,81 @@
+package com.parkit.parkingsystem.util;
+
+/**
+ * Vehicle registration numbers as non-zero longs, for primitive-keyed tables.
+ * <p>
+ * Numbers of up to 10 digits, letters and dashes are packed 6 bits a
+ * character and decode back exactly. Any other number is hashed to a long
+ * with the sign bit set, so it can only collide with another hashed number.
+ */
+public final class PlateCodec {
+
+	public static final int MAX_PACKED_LENGTH = 10;
+
+	private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz-";
+	private static final byte[] CODES = new byte[128];
+
+	static {
+		for (int i = 0; i < ALPHABET.length(); i++) {
+			CODES[ALPHABET.charAt(i)] = (byte) (i + 1);
+		}
+	}
+
+	private PlateCodec() {
+	}
+
+	public static long encode(String vehicleRegNumber) {
+		int length = vehicleRegNumber.length();
+		if (length == 0 || length > MAX_PACKED_LENGTH) {
+			return hash(vehicleRegNumber);
+		}
+		long packed = 0;
+		for (int i = 0; i < length; i++) {
+			char c = vehicleRegNumber.charAt(i);
+			int code = (c < CODES.length) ? CODES[c] : 0;
+			if (code == 0) {
+				return hash(vehicleRegNumber);
+			}
+			packed = (packed << 6) | code;
+		}
+		return packed;
+	}
+
+	/**
+	 * @return false if the number was hashed and cannot be decoded
+	 */
+	public static boolean isPacked(long plate) {
+		return plate > 0;
+	}
+
+	public static String decode(long plate) {
+		if (!isPacked(plate)) {
+			throw new IllegalArgumentException("Hashed registration numbers cannot be decoded");
+		}
+		char[] chars = new char[MAX_PACKED_LENGTH];
+		int start = chars.length;
+		for (long rest = plate; rest != 0; rest >>>= 6) {
+			chars[--start] = ALPHABET.charAt((int) (rest & 63) - 1);
+		}
+		return new String(chars, start, chars.length - start);
+	}
+
+	/**
+	 * @return the slot of the plate in a table of mask + 1 slots, a power of two
+	 */
+	public static int slot(long plate, int mask) {
+		long h = plate * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private static long hash(String vehicleRegNumber) {
+		// FNV-1a then the murmur3 finalizer
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < vehicleRegNumber.length(); i++) {
+			h = (h ^ vehicleRegNumber.charAt(i)) * 0x100000001b3L;
+		}
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h | Long.MIN_VALUE;
+	}
+}
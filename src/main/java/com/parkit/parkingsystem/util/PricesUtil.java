@@ -1,9 +1,24 @@
 package com.parkit.parkingsystem.util;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
 public class PricesUtil {
 	
 	public static double roundToPrice(double rawPrice) {
 		return Math.round(rawPrice * 100.0) / 100.0;
 	}
+
+	public static long toCents(double price) {
+		return Math.round(price * 100.0);
+	}
+
+	public static long toCents(BigDecimal price) {
+		return price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	public static BigDecimal toDecimal(long cents) {
+		return BigDecimal.valueOf(cents, 2);
+	}
 	
 }
@@ -0,0 +1,21 @@
+package com.parkit.parkingsystem.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+public class TimeUtil {
+
+	/**
+	 * Local date time as epoch millis on a UTC clock, so differences match
+	 * Duration.between on the local date times. Allocates nothing.
+	 */
+	public static long toEpochMillis(LocalDateTime time) {
+		return time.toEpochSecond(ZoneOffset.UTC) * 1000 + time.getNano() / 1_000_000;
+	}
+
+	public static LocalDateTime toLocalDateTime(long epochMillis) {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+				(int) Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+	}
+
+}
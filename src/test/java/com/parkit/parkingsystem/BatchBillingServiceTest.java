@@ -0,0 +1,187 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.BatchBillingService;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.util.TimeUtil;
+
+public class BatchBillingServiceTest {
+
+	private static final int TICKETS = 2_500;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+	@TempDir
+	Path workDirectory;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("batchBilling");
+		dataBaseConfig.createSchema(3, 2);
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement(
+					"insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+			LocalDateTime inTime = LocalDateTime.of(2022, 1, 1, 8, 0);
+			for (int i = 0; i < TICKETS; i++) {
+				ps.setInt(1, i % 5 + 1);
+				// every vehicle comes 5 times
+				ps.setString(2, "V" + (i % (TICKETS / 5)));
+				// all priced with an outdated tariff
+				ps.setInt(3, 0);
+				ps.setTimestamp(4, Timestamp.valueOf(inTime.plusMinutes(i)));
+				ps.setTimestamp(5, Timestamp.valueOf(inTime.plusMinutes(i + i % 300 + 1)));
+				ps.addBatch();
+			}
+			// still in the parking, not billed
+			ps.setInt(1, 1);
+			ps.setString(2, "OPEN");
+			ps.setInt(3, 0);
+			ps.setTimestamp(4, Timestamp.valueOf(inTime));
+			ps.setTimestamp(5, null);
+			ps.addBatch();
+			ps.executeBatch();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void repricesEveryClosedTicket() throws Exception {
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		BatchBillingService billingService = new BatchBillingService(ticketDAO, fareCalculatorService);
+		billingService.setChunkSize(100);
+		billingService.setParallelism(4);
+		List<BatchBillingService.Report> progress = new ArrayList<>();
+		billingService.setProgressIntervalMillis(0);
+		billingService.setProgressListener(progress::add);
+		Path checkpointFile = workDirectory.resolve("billing.checkpoint");
+
+		BatchBillingService.Report report = billingService.reprice(checkpointFile);
+
+		assertEquals(TICKETS, report.getReadTickets());
+		assertEquals(TICKETS, report.getRepricedTickets());
+		assertEquals(TICKETS, report.getCheckpointTicketId());
+		assertFalse(progress.isEmpty());
+		assertFalse(Files.exists(checkpointFile));
+		assertPricesAreCurrent();
+
+		// nothing left to change
+		assertEquals(0, billingService.reprice(checkpointFile).getRepricedTickets());
+	}
+
+	@Test
+	public void restartsFromCheckpoint() throws Exception {
+		TicketDAO failingTicketDAO = new TicketDAO() {
+			private int batches;
+
+			@Override
+			public void updateTicketPrices(int[] ticketIds, long[] priceCents, int count)
+					throws ClassNotFoundException, SQLException {
+				if (++batches == 5) {
+					throw new SQLException("connection lost");
+				}
+				super.updateTicketPrices(ticketIds, priceCents, count);
+			}
+		};
+		failingTicketDAO.dataBaseConfig = dataBaseConfig;
+		BatchBillingService billingService = new BatchBillingService(failingTicketDAO, fareCalculatorService);
+		billingService.setChunkSize(100);
+		billingService.setParallelism(1);
+		Path checkpointFile = workDirectory.resolve("billing.checkpoint");
+
+		assertThrows(Exception.class, () -> billingService.reprice(checkpointFile));
+		assertTrue(Files.exists(checkpointFile));
+		assertEquals("400", new String(Files.readAllBytes(checkpointFile)).trim());
+
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		BatchBillingService.Report report = new BatchBillingService(ticketDAO, fareCalculatorService)
+				.reprice(checkpointFile);
+		assertEquals(TICKETS - 400, report.getReadTickets());
+		assertPricesAreCurrent();
+	}
+
+	@Test
+	public void ticketCursorIsFetchedByChunksOnMySql() throws Exception {
+		// the driver only honours the fetch size with cursor fetch on, it would
+		// otherwise read the whole ticket table into memory
+		String url = new DataBaseConfig() {
+			@Override
+			public String toString() {
+				return getUrl();
+			}
+		}.toString();
+		boolean cursorFetch = false;
+		for (DriverPropertyInfo property : new com.mysql.cj.jdbc.Driver().getPropertyInfo(url, null)) {
+			if (property.name.equals("useCursorFetch")) {
+				cursorFetch = Boolean.parseBoolean(property.value);
+			}
+		}
+		assertTrue(cursorFetch, url);
+	}
+
+	private void assertPricesAreCurrent() throws Exception {
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			ResultSet rs = con.createStatement().executeQuery("select t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE,"
+					+ " t.VEHICLE_REG_NUMBER from ticket t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER"
+					+ " order by t.ID");
+			int closedTickets = 0;
+			Set<String> vehicles = new HashSet<>();
+			while (rs.next()) {
+				boolean recurringUser = !vehicles.add(rs.getString(5));
+				if (rs.getTimestamp(3) == null) {
+					assertEquals(0, rs.getBigDecimal(1).signum());
+					continue;
+				}
+				closedTickets++;
+				long expectedCents = fareCalculatorService.calculateFareCents(ParkingType.valueOf(rs.getString(4)),
+						TimeUtil.toEpochMillis(rs.getTimestamp(2).toLocalDateTime()),
+						TimeUtil.toEpochMillis(rs.getTimestamp(3).toLocalDateTime()));
+				if (recurringUser) {
+					expectedCents = fareCalculatorService.applyRecurringUserDiscount(expectedCents);
+				}
+				assertEquals(expectedCents, rs.getBigDecimal(1).movePointRight(2).longValueExact());
+			}
+			assertEquals(TICKETS, closedTickets);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+}
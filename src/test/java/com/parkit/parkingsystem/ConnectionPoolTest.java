@@ -0,0 +1,192 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.ConnectionPoolSettings;
+
+public class ConnectionPoolTest {
+
+	private List<Connection> physicalConnections;
+	private List<PreparedStatement> physicalStatements;
+	private ConnectionPoolSettings settings;
+	private ConnectionPool pool;
+
+	@BeforeEach
+	void setUpPerTest() {
+		physicalConnections = new ArrayList<>();
+		physicalStatements = new ArrayList<>();
+		settings = new ConnectionPoolSettings();
+		settings.setMinSize(0);
+		settings.setMaxSize(2);
+		settings.setMaxWaitMillis(100);
+		settings.setValidationIntervalMillis(0);
+		pool = new ConnectionPool("jdbc:test", "user", "password", settings) {
+			@Override
+			protected Connection createPhysicalConnection() throws SQLException {
+				Connection connection = mock(Connection.class);
+				when(connection.isValid(anyInt())).thenReturn(true);
+				when(connection.getAutoCommit()).thenReturn(true);
+				when(connection.prepareStatement(anyString())).thenAnswer(invocation -> prepare());
+				when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenAnswer(invocation -> prepare());
+				physicalConnections.add(connection);
+				return connection;
+			}
+		};
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		pool.close();
+	}
+
+	@Test
+	public void closedConnectionIsReused() throws Exception {
+		pool.getConnection().close();
+		pool.getConnection().close();
+
+		assertEquals(1, physicalConnections.size());
+		assertEquals(2, pool.getBorrowCount());
+		assertEquals(1, pool.getIdleConnections());
+		assertEquals(0, pool.getActiveConnections());
+	}
+
+	@Test
+	public void poolIsBoundedByMaxSize() throws Exception {
+		Connection first = pool.getConnection();
+		Connection second = pool.getConnection();
+
+		assertNotSame(first, second);
+		assertEquals(2, pool.getActiveConnections());
+		assertThrows(SQLTimeoutException.class, () -> pool.getConnection());
+
+		second.close();
+		pool.getConnection();
+		assertEquals(2, physicalConnections.size());
+	}
+
+	@Test
+	public void invalidConnectionIsDiscardedOnBorrow() throws Exception {
+		pool.getConnection().close();
+		when(physicalConnections.get(0).isValid(anyInt())).thenReturn(false);
+
+		pool.getConnection();
+
+		assertEquals(2, physicalConnections.size());
+		assertEquals(1, pool.getTotalConnections());
+		verify(physicalConnections.get(0)).close();
+	}
+
+	@Test
+	public void idleConnectionsAreEvicted() throws Exception {
+		settings.setIdleTimeoutMillis(0);
+		pool.getConnection().close();
+		Thread.sleep(5);
+
+		pool.evictIdleConnections();
+
+		assertEquals(0, pool.getTotalConnections());
+		verify(physicalConnections.get(0)).close();
+	}
+
+	@Test
+	public void pendingTransactionIsRolledBackOnReturn() throws Exception {
+		Connection connection = pool.getConnection();
+		when(physicalConnections.get(0).getAutoCommit()).thenReturn(false);
+
+		connection.close();
+
+		verify(physicalConnections.get(0)).rollback();
+		verify(physicalConnections.get(0)).setAutoCommit(true);
+		assertTrue(connection.isClosed());
+	}
+
+	@Test
+	public void preparedStatementIsReusedAcrossLeases() throws Exception {
+		Connection connection = pool.getConnection();
+		PreparedStatement first = connection.prepareStatement("select 1");
+		first.setInt(1, 42);
+		first.close();
+		connection.close();
+
+		connection = pool.getConnection();
+		PreparedStatement second = connection.prepareStatement("select 1");
+
+		assertSame(first, second);
+		assertSame(connection, second.getConnection());
+		assertEquals(1, physicalStatements.size());
+		verify(physicalStatements.get(0)).clearParameters();
+		verify(physicalStatements.get(0), never()).close();
+		assertEquals(1, pool.getPreparedStatements());
+		assertEquals(1, pool.getStatementCacheHits());
+	}
+
+	@Test
+	public void statementsLeftOpenAreClosedWithTheLease() throws Exception {
+		Connection connection = pool.getConnection();
+		PreparedStatement cached = connection.prepareStatement("select 1");
+		ResultSet resultSet = cached.executeQuery();
+		// the same query again while the first one is open, and a query the cache does not keep
+		PreparedStatement twice = connection.prepareStatement("select 1");
+		PreparedStatement scrollable = connection.prepareStatement("select 2", ResultSet.TYPE_SCROLL_INSENSITIVE,
+				ResultSet.CONCUR_READ_ONLY);
+
+		connection.close();
+
+		assertTrue(cached.isClosed());
+		verify(resultSet).close();
+		verify(physicalStatements.get(0), never()).close();
+		verify(twice).close();
+		verify(scrollable).close();
+		assertThrows(SQLException.class, () -> cached.executeQuery());
+	}
+
+	@Test
+	public void leastRecentlyUsedStatementIsClosedBeyondCacheSize() throws Exception {
+		settings.setStatementCacheSize(2);
+		Connection connection = pool.getConnection();
+		for (String sql : new String[] { "select 1", "select 2", "select 1", "select 3" }) {
+			connection.prepareStatement(sql).close();
+		}
+
+		verify(physicalStatements.get(1)).close();
+		verify(physicalStatements.get(0), never()).close();
+		verify(physicalStatements.get(2), never()).close();
+
+		connection.close();
+		settings.setIdleTimeoutMillis(0);
+		Thread.sleep(5);
+		pool.evictIdleConnections();
+		verify(physicalStatements.get(0)).close();
+		verify(physicalStatements.get(2)).close();
+	}
+
+	private PreparedStatement prepare() throws SQLException {
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(statement.executeQuery()).thenAnswer(invocation -> mock(ResultSet.class));
+		physicalStatements.add(statement);
+		return statement;
+	}
+}
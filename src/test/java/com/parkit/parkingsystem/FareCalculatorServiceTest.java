@@ -130,4 +130,38 @@ public class FareCalculatorServiceTest {
         fareCalculatorService.calculateFare(ticket);
         assertEquals(PricesUtil.roundToPrice(24 * Fare.CAR_RATE_PER_HOUR) , ticket.getPrice());
     }    
+
+    @Test
+    public void calculateFareCarWithDiscount(){
+        LocalDateTime inTime = LocalDateTime.now().minusHours(1);
+        LocalDateTime outTime = LocalDateTime.now();
+
+        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR,false);
+
+        ticket.setInTime(inTime);
+        ticket.setOutTime(outTime);
+        ticket.setParkingSpot(parkingSpot);
+        fareCalculatorService.calculateFare(ticket, true);
+        // 5% off 1.50 is 1.425, rounded half up
+        assertEquals(1.43, ticket.getPrice());
+    }
+
+    @Test
+    public void calculateFareCentsIsRoundedHalfUp(){
+        long inTime = 1_662_019_200_000L;
+        // 45 minutes of car is 112.5 cents
+        assertEquals(113, fareCalculatorService.calculateFareCents(ParkingType.CAR, inTime, inTime + 45 * 60_000));
+        assertEquals(112, fareCalculatorService.calculateFareCents(ParkingType.CAR, inTime, inTime + 45 * 60_000 - 12_000));
+        assertEquals(0, fareCalculatorService.calculateFareCents(ParkingType.BIKE, inTime, inTime));
+    }
+
+    @Test
+    public void calculateFareCentsIsExactOverLongStays(){
+        long inTime = 1_662_019_200_000L;
+        long oneYear = 365L * 24 * 60 * 60_000;
+        assertEquals(365 * 24 * Fare.CAR_RATE_PER_HOUR_CENTS,
+                fareCalculatorService.calculateFareCents(ParkingType.CAR, inTime, inTime + oneYear));
+        assertThrows(IllegalArgumentException.class,
+                () -> fareCalculatorService.calculateFareCents(ParkingType.CAR, inTime, inTime - 1));
+    }
 }
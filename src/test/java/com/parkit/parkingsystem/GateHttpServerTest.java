@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.GateHttpServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.TicketArchivalService;
+
+public class GateHttpServerTest {
+
+	private static final int CAR_SPOTS = 512;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private TicketDAO ticketDAO;
+	private GateHttpServer gateServer;
+	private String baseUrl;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("gateHttp");
+		dataBaseConfig.createSchema(CAR_SPOTS, 2);
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		gateServer = new GateHttpServer(new ParkingService(parkingSpotDAO, ticketDAO), 0);
+		gateServer.start();
+		baseUrl = "http://localhost:" + gateServer.getPort();
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		gateServer.stop(0);
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void entryExitAvailabilityAndTicket() throws Exception {
+		assertEquals("{\"CAR\":512,\"BIKE\":2}", request("GET", "/availability").body);
+
+		Response entry = request("POST", "/entry?plate=AB-123&type=car&time=2022-09-01T08:00");
+		assertEquals(201, entry.status);
+		assertEquals("{\"status\":\"PARKED\",\"plate\":\"AB-123\",\"type\":\"CAR\",\"parkingNumber\":1,"
+				+ "\"inTime\":\"2022-09-01T08:00\"}", entry.body);
+		assertEquals(409, request("POST", "/entry?plate=AB-123&type=CAR").status);
+		assertEquals("{\"CAR\":511,\"BIKE\":2}", request("GET", "/availability").body);
+		assertTrue(request("GET", "/tickets/AB-123").body.contains("\"outTime\":null"));
+
+		Response exit = request("POST", "/exit?plate=AB-123&time=2022-09-01T08:45");
+		assertEquals(200, exit.status);
+		assertTrue(exit.body.endsWith("\"fare\":1.13}"), exit.body);
+		assertEquals(404, request("POST", "/exit?plate=AB-123").status);
+		assertTrue(request("GET", "/tickets/AB-123").body.contains("\"outTime\":\"2022-09-01T08:45\""));
+
+		assertEquals(404, request("GET", "/tickets/ZZ-999").status);
+		new TicketArchivalService(ticketDAO).archive(LocalDateTime.of(2022, 9, 2, 0, 0));
+		assertEquals(404, request("GET", "/tickets/AB-123").status);
+		assertTrue(request("GET", "/tickets/AB-123?history=true").body.contains("\"outTime\":\"2022-09-01T08:45\""));
+		assertEquals(400, request("POST", "/entry?plate=AB-123&type=TRUCK").status);
+		assertEquals(400, request("POST", "/exit").status);
+		assertEquals(405, request("GET", "/entry?plate=AB-123&type=CAR").status);
+	}
+
+	@Test
+	public void metricsAreServedAsPrometheusText() throws Exception {
+		assertEquals(201, request("POST", "/entry?plate=AB-123&type=CAR").status);
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/metrics").openConnection();
+		assertEquals("text/plain; version=0.0.4; charset=utf-8", connection.getContentType());
+		String metrics = request("GET", "/metrics").body;
+		assertTrue(metrics.contains("# TYPE parkingsystem_gate_seconds summary\n"), metrics);
+		assertTrue(metrics.contains("parkingsystem_gate_results_total{operation=\"entry\",status=\"PARKED\"}"));
+		assertTrue(metrics.contains("parkingsystem_dao_seconds_count{operation=\"TicketDAO.saveTicket\"}"));
+		assertTrue(metrics.contains("parkingsystem_fare_seconds_count"));
+		assertTrue(metrics.contains("parkingsystem_connection_acquire_seconds_count{pool=\"jdbc:h2:mem:gateHttp\"}"));
+		assertTrue(metrics.contains("parkingsystem_connection_pool_active{pool=\"jdbc:h2:mem:gateHttp\"}"));
+		assertEquals(405, request("POST", "/metrics").status);
+	}
+
+	@Test
+	public void latencyUnderIncreasingConcurrency() throws Exception {
+		for (int concurrency : new int[] { 1, 16, 64, 256 }) {
+			int vehiclesPerClient = Math.max(4, 256 / concurrency);
+			ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+			List<Future<long[]>> results = new ArrayList<>();
+			long start = System.nanoTime();
+			for (int client = 0; client < concurrency; client++) {
+				String platePrefix = concurrency + "-" + client + "-";
+				results.add(clients.submit(() -> {
+					// one vehicle at a time per client, so all of them fit in the parking
+					long[] latencies = new long[vehiclesPerClient * 2];
+					for (int i = 0; i < vehiclesPerClient; i++) {
+						long requestStart = System.nanoTime();
+						assertEquals(201, request("POST", "/entry?type=CAR&plate=" + platePrefix + i).status);
+						latencies[2 * i] = System.nanoTime() - requestStart;
+						requestStart = System.nanoTime();
+						assertEquals(200, request("POST", "/exit?plate=" + platePrefix + i).status);
+						latencies[2 * i + 1] = System.nanoTime() - requestStart;
+					}
+					return latencies;
+				}));
+			}
+			List<long[]> clientLatencies = new ArrayList<>();
+			for (Future<long[]> result : results) {
+				clientLatencies.add(result.get());
+			}
+			long elapsed = System.nanoTime() - start;
+			clients.shutdown();
+
+			long[] latencies = clientLatencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+			System.out.printf("%d concurrent gates: %d requests, p50 %.2f ms, p99 %.2f ms, %.0f requests/s%n",
+					concurrency, latencies.length, percentile(latencies, 50) / 1e6, percentile(latencies, 99) / 1e6,
+					latencies.length * 1e9 / elapsed);
+		}
+		assertEquals("{\"CAR\":512,\"BIKE\":2}", request("GET", "/availability").body);
+	}
+
+	private static long percentile(long[] sortedLatencies, int percentile) {
+		return sortedLatencies[(sortedLatencies.length - 1) * percentile / 100];
+	}
+
+	private Response request(String method, String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		int status = connection.getResponseCode();
+		InputStream stream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (InputStream in = stream) {
+			byte[] buffer = new byte[512];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				body.write(buffer, 0, read);
+			}
+		}
+		return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	private static class Response {
+		final int status;
+		final String body;
+
+		Response(int status, String body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.journal.GateJournal;
+import com.parkit.parkingsystem.journal.JournalRecord;
+
+public class GateJournalTest {
+
+	@TempDir
+	Path directory;
+
+	private volatile boolean failWrites;
+	private volatile boolean failForces;
+
+	@Test
+	public void recordsAreReadBackAcrossSegments() throws Exception {
+		long checkpoint;
+		try (GateJournal journal = new GateJournal(directory, 1024)) {
+			for (int i = 0; i < 200; i++) {
+				journal.append(record(i));
+			}
+			assertTrue(segments().size() > 5);
+			List<JournalRecord> records = readAll(journal, 0);
+			assertEquals(200, records.size());
+			for (int i = 0; i < 200; i++) {
+				JournalRecord record = records.get(i);
+				assertEquals(record(i).toString(), record.toString());
+			}
+
+			long[] position = { 0 };
+			journal.read(0, (record, nextPosition) -> {
+				position[0] = nextPosition;
+				return !record.getVehicleRegNumber().equals("V99");
+			});
+			checkpoint = position[0];
+			int segmentsBefore = segments().size();
+			journal.checkpoint(checkpoint);
+			assertTrue(segments().size() < segmentsBefore);
+		}
+
+		try (GateJournal journal = new GateJournal(directory, 1024)) {
+			assertEquals(checkpoint, journal.getCheckpoint());
+			List<JournalRecord> records = readAll(journal, journal.getCheckpoint());
+			assertEquals(100, records.size());
+			assertEquals("V100", records.get(0).getVehicleRegNumber());
+		}
+	}
+
+	@Test
+	public void tornRecordIsCutOffOnReopen() throws Exception {
+		try (GateJournal journal = new GateJournal(directory)) {
+			for (int i = 0; i < 3; i++) {
+				journal.append(record(i));
+			}
+		}
+		// the last record only half written when the gate died
+		Path segment = segments().get(0);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 10);
+		}
+
+		try (GateJournal journal = new GateJournal(directory)) {
+			assertEquals(2, readAll(journal, 0).size());
+			journal.append(record(3));
+			List<JournalRecord> records = readAll(journal, 0);
+			assertEquals(3, records.size());
+			assertEquals("V3", records.get(2).getVehicleRegNumber());
+		}
+	}
+
+	@Test
+	public void concurrentAppendsShareForces() throws Exception {
+		ExecutorService gates = Executors.newFixedThreadPool(8);
+		try (GateJournal journal = new GateJournal(directory, 16 * 1024)) {
+			List<Future<?>> appends = new ArrayList<>();
+			for (int gate = 0; gate < 8; gate++) {
+				int first = gate * 200;
+				appends.add(gates.submit(() -> {
+					for (int i = first; i < first + 200; i++) {
+						journal.append(record(i));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> append : appends) {
+				append.get();
+			}
+
+			assertEquals(1600, journal.getAppends());
+			assertTrue(journal.getSyncs() < journal.getAppends(), journal.getSyncs() + " forces");
+			Set<String> vehicles = new HashSet<>();
+			readAll(journal, 0).forEach(record -> vehicles.add(record.getVehicleRegNumber()));
+			assertEquals(1600, vehicles.size());
+		} finally {
+			gates.shutdownNow();
+		}
+	}
+
+	@Test
+	public void recordOfFailedWriteIsCutOff() throws Exception {
+		assertFailedAppendIsCutOff(() -> failWrites = true);
+	}
+
+	@Test
+	public void recordOfFailedForceIsCutOff() throws Exception {
+		assertFailedAppendIsCutOff(() -> failForces = true);
+	}
+
+	private void assertFailedAppendIsCutOff(Runnable failure) throws Exception {
+		try (GateJournal journal = new GateJournal(directory) {
+			@Override
+			protected FileChannel openSegment(Path file, OpenOption... options) throws IOException {
+				return new FailingChannel(FileChannel.open(file, options));
+			}
+		}) {
+			journal.append(record(0));
+			journal.append(record(1));
+			failure.run();
+			assertThrows(IOException.class, () -> journal.append(record(2)));
+			failWrites = false;
+			failForces = false;
+			// the journal stays failed
+			assertThrows(IOException.class, () -> journal.append(record(3)));
+			assertEquals(2, readAll(journal, 0).size());
+		}
+
+		try (GateJournal journal = new GateJournal(directory)) {
+			List<JournalRecord> records = readAll(journal, 0);
+			assertEquals(2, records.size());
+			assertEquals("V1", records.get(1).getVehicleRegNumber());
+		}
+	}
+
+	private static JournalRecord record(int i) {
+		return (i % 2 == 0)
+				? new JournalRecord(JournalRecord.Type.ENTRY, 0, "V" + i, i % 50 + 1, ParkingType.CAR, 1_000L * i, 0, 0)
+				: new JournalRecord(JournalRecord.Type.EXIT, i, "V" + i, i % 50 + 1, ParkingType.BIKE, 1_000L * i,
+						2_000L * i, 150 * i);
+	}
+
+	private static List<JournalRecord> readAll(GateJournal journal, long position) throws Exception {
+		List<JournalRecord> records = new ArrayList<>();
+		journal.read(position, (record, nextPosition) -> records.add(record));
+		return records;
+	}
+
+	// fails after the whole record reached the file, the worst case for the journal
+	private class FailingChannel extends FileChannel {
+
+		private final FileChannel channel;
+
+		FailingChannel(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			int written = channel.write(src);
+			if (failWrites) {
+				throw new IOException("Write failed");
+			}
+			return written;
+		}
+
+		@Override
+		public void force(boolean metaData) throws IOException {
+			if (failForces) {
+				throw new IOException("Force failed");
+			}
+			channel.force(metaData);
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			return channel.read(dst);
+		}
+
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			return channel.read(dsts, offset, length);
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			return channel.write(srcs, offset, length);
+		}
+
+		@Override
+		public long position() throws IOException {
+			return channel.position();
+		}
+
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			channel.position(newPosition);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			return channel.size();
+		}
+
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			channel.truncate(size);
+			return this;
+		}
+
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			return channel.transferTo(position, count, target);
+		}
+
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			return channel.transferFrom(src, position, count);
+		}
+
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return channel.read(dst, position);
+		}
+
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			return channel.write(src, position);
+		}
+
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			return channel.map(mode, position, size);
+		}
+
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			return channel.lock(position, size, shared);
+		}
+
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			return channel.tryLock(position, size, shared);
+		}
+
+		@Override
+		protected void implCloseChannel() throws IOException {
+			channel.close();
+		}
+	}
+
+	private List<Path> segments() throws Exception {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".journal")).sorted()
+					.collect(Collectors.toList());
+		}
+	}
+}
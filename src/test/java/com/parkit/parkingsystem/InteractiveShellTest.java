@@ -0,0 +1,71 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+
+@ExtendWith(MockitoExtension.class)
+public class InteractiveShellTest {
+
+	private InteractiveShell shell;
+
+	@Mock
+	private InputReaderUtil inputReaderUtil;
+	@Mock
+	private ParkingService parkingService;
+
+	@BeforeEach
+	void setUpPerTest() {
+		shell = new InteractiveShell(inputReaderUtil, parkingService);
+	}
+
+	@Test
+	void incomingVehicleIsEnteredWithTheTypeRead() throws Exception {
+		LocalDateTime inTime = LocalDateTime.now();
+		when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+		when(inputReaderUtil.readSelection()).thenReturn(2);
+		when(parkingService.enter("ABCDEF", ParkingType.BIKE, inTime))
+				.thenReturn(EntryResult.rejected(EntryResult.Status.PARKING_FULL, "ABCDEF", ParkingType.BIKE, inTime));
+
+		shell.processIncomingVehicle(inTime);
+
+		verify(parkingService).enter("ABCDEF", ParkingType.BIKE, inTime);
+	}
+
+	@Test
+	void unreadablePlateIsNotEntered() throws Exception {
+		when(inputReaderUtil.readVehicleRegistrationNumber()).thenThrow(new IllegalArgumentException("Invalid input provided"));
+
+		shell.processIncomingVehicle();
+
+		verify(parkingService, never()).enter(anyString(), any(ParkingType.class), any(LocalDateTime.class));
+	}
+
+	@Test
+	void vehicleNotInTheParkingCannotExit() throws Exception {
+		LocalDateTime outTime = LocalDateTime.now();
+		when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+		when(parkingService.exit("ABCDEF", outTime))
+				.thenReturn(ExitResult.rejected(ExitResult.Status.NOT_PARKED, "ABCDEF", outTime));
+
+		assertThrows(RuntimeException.class, () -> shell.processExitingVehicle(outTime));
+	}
+}
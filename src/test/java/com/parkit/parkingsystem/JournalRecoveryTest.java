@@ -0,0 +1,257 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.journal.GateJournal;
+import com.parkit.parkingsystem.journal.JournalReplayer;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.PricesUtil;
+
+/**
+ * Kills a journaled gate process in the middle of its traffic, then checks
+ * that replaying its journal leaves in the DB every entry and exit the gate
+ * acknowledged, each exactly once.
+ */
+public class JournalRecoveryTest {
+
+	private static final int SPOTS = 20;
+	private static final int PARKED_VEHICLES = 10;
+	private static final int ACKS_BEFORE_KILL = 600;
+	// small enough for the gate to roll over a few segments
+	private static final long SEGMENT_BYTES = 4096;
+	private static final LocalDateTime START = LocalDateTime.of(2022, 9, 1, 8, 0);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void acknowledgedOperationsSurviveAKillWhileReplaying() throws Exception {
+		killAndRecover(true);
+	}
+
+	@Test
+	public void acknowledgedOperationsSurviveAKillWithTheDataBaseBehind() throws Exception {
+		killAndRecover(false);
+	}
+
+	@Test
+	public void replayingTwiceWritesOnce() throws Exception {
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("replayTwice");
+		dataBaseConfig.createSchema(SPOTS, 0);
+		try {
+			TicketDAO ticketDAO = new TicketDAO();
+			ticketDAO.dataBaseConfig = dataBaseConfig;
+			ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+			parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+			try (GateJournal journal = new GateJournal(directory, SEGMENT_BYTES)) {
+				ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+				parkingService.setJournal(journal);
+				for (int i = 0; i < 5; i++) {
+					assertTrue(parkingService.enter("V" + i, ParkingType.CAR, START.plusMinutes(i)).isParked());
+				}
+				assertTrue(parkingService.exit("V0", START.plusHours(2)).isExited());
+				assertEquals(6, new JournalReplayer(journal, ticketDAO, parkingSpotDAO).recover());
+			}
+			// as if the process died between the commit and the checkpoint
+			Files.write(directory.resolve("checkpoint"), "0".getBytes(StandardCharsets.UTF_8));
+			try (GateJournal journal = new GateJournal(directory, SEGMENT_BYTES)) {
+				assertEquals(6, new JournalReplayer(journal, ticketDAO, parkingSpotDAO).recover());
+			}
+
+			Map<String, Integer> tickets = countTickets(dataBaseConfig);
+			assertEquals(5, tickets.size());
+			tickets.values().forEach(count -> assertEquals(1, count));
+			assertEquals(4, countUnavailableSpots(dataBaseConfig));
+		} finally {
+			dataBaseConfig.closeConnectionPool();
+		}
+	}
+
+	private void killAndRecover(boolean replay) throws Exception {
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("gate", directory);
+		dataBaseConfig.createSchema(SPOTS, 0);
+		dataBaseConfig.closeConnectionPool();
+
+		Set<String> entered = new LinkedHashSet<>();
+		Map<String, Long> exitFares = new HashMap<>();
+		Process gate = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-cp",
+				gateClassPath(), JournalRecoveryTest.class.getName(), directory.toString(), Boolean.toString(replay))
+						.redirectError(ProcessBuilder.Redirect.INHERIT).start();
+		try (BufferedReader acks = new BufferedReader(
+				new InputStreamReader(gate.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while (entered.size() + exitFares.size() < ACKS_BEFORE_KILL && (line = acks.readLine()) != null) {
+				String[] ack = line.split(" ");
+				if (ack[0].equals("ENTERED")) {
+					entered.add(ack[1]);
+				} else if (ack[0].equals("EXITED")) {
+					exitFares.put(ack[1], Long.parseLong(ack[2]));
+				}
+			}
+			// while it journals the next operations
+			gate.destroyForcibly();
+		} finally {
+			gate.destroyForcibly();
+			gate.waitFor();
+		}
+		assertTrue(entered.size() + exitFares.size() >= ACKS_BEFORE_KILL, "gate died before it was killed");
+
+		dataBaseConfig = new EmbeddedDataBaseConfig("gate", directory);
+		try {
+			TicketDAO ticketDAO = new TicketDAO();
+			ticketDAO.dataBaseConfig = dataBaseConfig;
+			ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+			parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+			try (GateJournal journal = new GateJournal(directory.resolve("journal"), SEGMENT_BYTES)) {
+				new JournalReplayer(journal, ticketDAO, parkingSpotDAO).recover();
+				assertEquals(0, journal.getPendingBytes());
+			}
+
+			Map<String, Integer> tickets = countTickets(dataBaseConfig);
+			for (String vehicleRegNumber : entered) {
+				assertEquals(Integer.valueOf(1), tickets.get(vehicleRegNumber), vehicleRegNumber);
+			}
+			tickets.values().forEach(count -> assertEquals(1, count));
+			int openTickets = 0;
+			for (String vehicleRegNumber : tickets.keySet()) {
+				if (ticketDAO.getOpenTicket(vehicleRegNumber) != null) {
+					openTickets++;
+					assertFalse(exitFares.containsKey(vehicleRegNumber), vehicleRegNumber + " exited");
+				}
+			}
+			for (Map.Entry<String, Long> exit : exitFares.entrySet()) {
+				assertEquals(exit.getValue().longValue(), closedTicketPriceCents(dataBaseConfig, exit.getKey()),
+						exit.getKey());
+			}
+			assertEquals(openTickets, countUnavailableSpots(dataBaseConfig));
+		} finally {
+			dataBaseConfig.closeConnectionPool();
+		}
+	}
+
+	/**
+	 * The gate process: parks PARKED_VEHICLES vehicles, then lets the oldest one
+	 * out for each new one, printing every acknowledged entry and exit, until it
+	 * is killed.
+	 */
+	public static void main(String[] args) throws Exception {
+		Path directory = Paths.get(args[0]);
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("gate", directory);
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		GateJournal journal = new GateJournal(directory.resolve("journal"), SEGMENT_BYTES);
+		JournalReplayer replayer = new JournalReplayer(journal, ticketDAO, parkingSpotDAO, 16);
+		replayer.recover();
+		ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+		parkingService.setJournal(journal);
+		if (Boolean.parseBoolean(args[1])) {
+			replayer.start();
+		}
+		for (int i = 0;; i++) {
+			LocalDateTime time = START.plusMinutes(i * 7L);
+			EntryResult entry = parkingService.enter("V" + i, ParkingType.CAR, time);
+			if (entry.isParked()) {
+				System.out.println("ENTERED V" + i);
+			}
+			if (i >= PARKED_VEHICLES) {
+				ExitResult exit = parkingService.exit("V" + (i - PARKED_VEHICLES), time);
+				if (exit.isExited()) {
+					System.out.println("EXITED V" + (i - PARKED_VEHICLES) + " " + exit.getFareCents());
+				}
+			}
+		}
+	}
+
+	// the launcher's class path may not hold the test classes and their dependencies
+	private static String gateClassPath() throws Exception {
+		Set<String> classPath = new LinkedHashSet<>();
+		for (Class<?> type : new Class<?>[] { JournalRecoveryTest.class, GateJournal.class,
+				org.apache.logging.log4j.LogManager.class, org.apache.logging.log4j.core.LoggerContext.class,
+				com.lmax.disruptor.RingBuffer.class, org.h2.Driver.class }) {
+			classPath.add(Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+		}
+		return String.join(File.pathSeparator, classPath);
+	}
+
+	private static Map<String, Integer> countTickets(EmbeddedDataBaseConfig dataBaseConfig) throws Exception {
+		Map<String, Integer> tickets = new HashMap<>();
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con
+					.prepareStatement("select VEHICLE_REG_NUMBER, count(*) from ticket group by VEHICLE_REG_NUMBER");
+			ResultSet rs = ps.executeQuery();
+			while (rs.next()) {
+				tickets.put(rs.getString(1), rs.getInt(2));
+			}
+			rs.close();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		return tickets;
+	}
+
+	private static int countUnavailableSpots(EmbeddedDataBaseConfig dataBaseConfig) throws Exception {
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement("select count(*) from parking where AVAILABLE = false");
+			ResultSet rs = ps.executeQuery();
+			rs.next();
+			int count = rs.getInt(1);
+			rs.close();
+			ps.close();
+			return count;
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+
+	private static long closedTicketPriceCents(EmbeddedDataBaseConfig dataBaseConfig, String vehicleRegNumber)
+			throws Exception {
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con
+					.prepareStatement("select OUT_TIME, PRICE from ticket where VEHICLE_REG_NUMBER = ?");
+			ps.setString(1, vehicleRegNumber);
+			ResultSet rs = ps.executeQuery();
+			rs.next();
+			assertNotNull(rs.getTimestamp(1), vehicleRegNumber);
+			long priceCents = PricesUtil.toCents(rs.getBigDecimal(2));
+			rs.close();
+			ps.close();
+			return priceCents;
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+}
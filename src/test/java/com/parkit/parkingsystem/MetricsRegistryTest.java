@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.metrics.Counter;
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void quantilesAreWithinThreePercent() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Random random = new Random(42);
+		long[] values = new long[100_000];
+		for (int i = 0; i < values.length; i++) {
+			// from tens of nanoseconds to seconds
+			values[i] = (long) Math.exp(random.nextDouble() * 21) + 10;
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+
+		assertEquals(values.length, histogram.getCount());
+		assertEquals(values[values.length - 1], histogram.getMaxNanos());
+		for (double quantile : new double[] { 0.01, 0.5, 0.9, 0.99, 0.999, 1.0 }) {
+			long expected = values[(int) Math.ceil(quantile * values.length) - 1];
+			long actual = histogram.getValueAtQuantile(quantile);
+			assertTrue(Math.abs(actual - expected) <= expected * 0.03, quantile + ": " + actual + " vs " + expected);
+		}
+	}
+
+	@Test
+	public void smallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 0; value < 64; value++) {
+			histogram.record(value);
+		}
+		assertEquals(31, histogram.getValueAtQuantile(0.5));
+		assertEquals(63, histogram.getValueAtQuantile(1.0));
+		assertEquals(0, new LatencyHistogram().getValueAtQuantile(0.99));
+	}
+
+	@Test
+	public void scrapeWritesThePrometheusTextFormat() {
+		MetricsRegistry registry = new MetricsRegistry();
+		Counter counter = registry.counter("test_requests_total", "Requests", "path", "/a\"b\\c");
+		counter.add(3);
+		assertSame(counter, registry.counter("test_requests_total", "Requests", "path", "/a\"b\\c"));
+		registry.gauge("test_temperature", "Temperature", () -> 21.5);
+		Timer timer = registry.timer("test_call", "Calls", "operation", "read");
+		timer.getLatency().record(2_000_000);
+		timer.getLatency().record(4_000_000);
+		timer.recordError();
+
+		String scrape = registry.scrape();
+		assertTrue(scrape.contains("# TYPE test_requests_total counter\n"
+				+ "test_requests_total{path=\"/a\\\"b\\\\c\"} 3\n"), scrape);
+		assertTrue(scrape.contains("# TYPE test_temperature gauge\ntest_temperature 21.5\n"), scrape);
+		assertTrue(scrape.contains("# TYPE test_call_seconds summary\n"), scrape);
+		assertTrue(scrape.contains("test_call_seconds{operation=\"read\",quantile=\"0.999\"} 0.004"), scrape);
+		assertTrue(scrape.contains("test_call_seconds_sum{operation=\"read\"} 0.006\n"), scrape);
+		assertTrue(scrape.contains("test_call_seconds_count{operation=\"read\"} 2\n"), scrape);
+		assertTrue(scrape.contains("test_call_errors_total{operation=\"read\"} 1\n"), scrape);
+
+		registry.remove("test_temperature");
+		assertTrue(!registry.scrape().contains("test_temperature"));
+		assertThrows(IllegalArgumentException.class, () -> registry.gauge("test_requests_total", "", () -> 0));
+		assertThrows(IllegalArgumentException.class, () -> registry.counter("test_other_total", "", "path"));
+	}
+}
@@ -0,0 +1,204 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.event.OccupancyAnalyticsHandler;
+import com.parkit.parkingsystem.event.OccupancyAnalyticsHandler.Bucket;
+import com.parkit.parkingsystem.event.OccupancyEvent;
+import com.parkit.parkingsystem.event.OccupancyEventRing;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.PricesUtil;
+import com.parkit.parkingsystem.util.TimeUtil;
+
+public class OccupancyAnalyticsTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2022, 9, 1, 6, 0);
+	private static final int MINUTES = 5 * 60;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private OccupancyEventRing ring;
+	private OccupancyAnalyticsHandler analytics;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("occupancyAnalytics");
+		dataBaseConfig.createSchema(60, 20);
+		ring = new OccupancyEventRing();
+		analytics = new OccupancyAnalyticsHandler();
+		ring.addHandler("analytics", analytics);
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		ring.close();
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void figuresMatchARecomputationFromTheTicketTable() throws Exception {
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+		parkingService.setOccupancyEvents(ring);
+
+		// five hours of traffic, a few vehicles a minute, staying from minutes to hours
+		Random random = new Random(42);
+		List<String> parked = new ArrayList<>();
+		int vehicles = 0;
+		for (int minute = 0; minute < MINUTES; minute++) {
+			for (int i = random.nextInt(3); i > 0; i--) {
+				LocalDateTime time = START.plusMinutes(minute).plusSeconds(random.nextInt(60));
+				String vehicleRegNumber = "V" + vehicles++;
+				ParkingType parkingType = random.nextInt(4) == 0 ? ParkingType.BIKE : ParkingType.CAR;
+				if (parkingService.enter(vehicleRegNumber, parkingType, time).isParked()) {
+					parked.add(vehicleRegNumber);
+				}
+			}
+			for (int i = 0; i < parked.size(); i++) {
+				if (random.nextInt(60) == 0) {
+					LocalDateTime time = START.plusMinutes(minute).plusSeconds(59);
+					assertTrue(parkingService.exit(parked.remove(i), time).isExited());
+				}
+			}
+		}
+		awaitEvents();
+
+		long now = TimeUtil.toEpochMillis(START.plusMinutes(MINUTES - 1));
+		List<long[]> tickets = tickets();
+		for (ParkingType parkingType : ParkingType.values()) {
+			assertEquals(recompute(tickets, parkingType, now, OccupancyAnalyticsHandler.MINUTE_BUCKETS,
+					OccupancyAnalyticsHandler.MINUTE_MILLIS), analytics.getMinuteBuckets(parkingType, now),
+					parkingType.name());
+			assertEquals(recompute(tickets, parkingType, now, OccupancyAnalyticsHandler.HOUR_BUCKETS,
+					OccupancyAnalyticsHandler.HOUR_MILLIS), analytics.getHourBuckets(parkingType, now),
+					parkingType.name());
+
+			long[] dwellBounds = OccupancyAnalyticsHandler.getDwellBoundsMinutes();
+			long[] dwellHistogram = new long[dwellBounds.length + 1];
+			long parkedVehicles = 0;
+			for (long[] ticket : tickets) {
+				if (ticket[0] != parkingType.ordinal()) {
+					continue;
+				}
+				if (ticket[2] == 0) {
+					parkedVehicles++;
+					continue;
+				}
+				int bucket = 0;
+				while (bucket < dwellBounds.length && ticket[2] - ticket[1] > dwellBounds[bucket] * 60_000) {
+					bucket++;
+				}
+				dwellHistogram[bucket]++;
+			}
+			assertArrayEquals(dwellHistogram, analytics.getDwellHistogram(parkingType), parkingType.name());
+			assertEquals(parkedVehicles, analytics.getParkedVehicles(parkingType));
+		}
+		assertEquals(0, analytics.getLateEvents());
+	}
+
+	@Test
+	public void eventsOlderThanAWindowAreLeftOutOfIt() throws Exception {
+		long now = TimeUtil.toEpochMillis(START);
+		publish(OccupancyEvent.Type.VEHICLE_ENTERED, now);
+		// in the hour buckets, not in the minute buckets any more
+		publish(OccupancyEvent.Type.VEHICLE_ENTERED, now - 2 * OccupancyAnalyticsHandler.HOUR_MILLIS);
+		// too old for both
+		publish(OccupancyEvent.Type.VEHICLE_ENTERED, now - 3 * 24 * OccupancyAnalyticsHandler.HOUR_MILLIS);
+		awaitEvents();
+
+		assertEquals(1, Bucket.sum(analytics.getMinuteBuckets(ParkingType.CAR, now)).getEntries());
+		assertEquals(2, Bucket.sum(analytics.getHourBuckets(ParkingType.CAR, now)).getEntries());
+		assertEquals(2, analytics.getLateEvents());
+		assertEquals(3, analytics.getParkedVehicles(ParkingType.CAR));
+
+		// a bucket whose time has passed is reused for the new one
+		long later = now + OccupancyAnalyticsHandler.HOUR_MILLIS;
+		publish(OccupancyEvent.Type.VEHICLE_ENTERED, later);
+		awaitEvents();
+		List<Bucket> minutes = analytics.getMinuteBuckets(ParkingType.CAR, later);
+		assertEquals(1, Bucket.sum(minutes).getEntries());
+		assertEquals(later, minutes.get(minutes.size() - 1).getStartEpochMillis());
+	}
+
+	private void publish(OccupancyEvent.Type type, long epochMillis) {
+		ring.publish(type, 1, "AB-123", 1, ParkingType.CAR, 0, epochMillis, 0, 0);
+	}
+
+	private void awaitEvents() throws InterruptedException {
+		OccupancyEventRing.Consumer consumer = ring.getConsumers().get(0);
+		while (consumer.getProcessed() < ring.getPublished()) {
+			Thread.sleep(1);
+		}
+	}
+
+	/**
+	 * @return type ordinal, in-time, out-time (0 if open), price in cents
+	 */
+	private List<long[]> tickets() throws Exception {
+		List<long[]> tickets = new ArrayList<>();
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement("select p.TYPE, t.IN_TIME, t.OUT_TIME, t.PRICE"
+					+ " from ticket t, parking p where p.PARKING_NUMBER = t.PARKING_NUMBER");
+			ResultSet rs = ps.executeQuery();
+			while (rs.next()) {
+				tickets.add(new long[] { ParkingType.valueOf(rs.getString(1)).ordinal(),
+						TimeUtil.toEpochMillis(rs.getTimestamp(2).toLocalDateTime()),
+						rs.getTimestamp(3) == null ? 0 : TimeUtil.toEpochMillis(rs.getTimestamp(3).toLocalDateTime()),
+						rs.getBigDecimal(4) == null ? 0 : PricesUtil.toCents(rs.getBigDecimal(4)) });
+			}
+			rs.close();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		return tickets;
+	}
+
+	private static List<Bucket> recompute(List<long[]> tickets, ParkingType parkingType, long now, int size,
+			long widthMillis) {
+		long last = Math.floorDiv(now, widthMillis);
+		List<Bucket> buckets = new ArrayList<>();
+		for (long bucketNumber = last - size + 1; bucketNumber <= last; bucketNumber++) {
+			long entries = 0;
+			long exits = 0;
+			long revenueCents = 0;
+			long dwellMillis = 0;
+			for (long[] ticket : tickets) {
+				if (ticket[0] != parkingType.ordinal()) {
+					continue;
+				}
+				if (Math.floorDiv(ticket[1], widthMillis) == bucketNumber) {
+					entries++;
+				}
+				if (ticket[2] != 0 && Math.floorDiv(ticket[2], widthMillis) == bucketNumber) {
+					exits++;
+					revenueCents += ticket[3];
+					dwellMillis += ticket[2] - ticket[1];
+				}
+			}
+			buckets.add(new Bucket(bucketNumber * widthMillis, entries, exits, revenueCents, dwellMillis));
+		}
+		return buckets;
+	}
+}
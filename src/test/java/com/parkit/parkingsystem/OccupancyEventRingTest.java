@@ -0,0 +1,102 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.event.OccupancyEvent;
+import com.parkit.parkingsystem.event.OccupancyEventRing;
+
+public class OccupancyEventRingTest {
+
+	@Test
+	public void everyConsumerSeesEveryEventInOrder() throws Exception {
+		int publishers = 4;
+		int eventsPerPublisher = 10_000;
+		int events = publishers * eventsPerPublisher;
+		OccupancyEventRing ring = new OccupancyEventRing(1 << 16);
+		List<List<Long>> seen = new ArrayList<>();
+		List<OccupancyEventRing.Consumer> consumers = new ArrayList<>();
+		for (int c = 0; c < 3; c++) {
+			List<Long> sequences = new ArrayList<>();
+			seen.add(sequences);
+			consumers.add(ring.addHandler("consumer" + c, (event, endOfBatch) -> sequences.add(event.getSequence())));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(publishers);
+		List<Future<?>> workers = new ArrayList<>();
+		for (int p = 0; p < publishers; p++) {
+			int publisher = p;
+			workers.add(executor.submit(() -> {
+				for (int i = 0; i < eventsPerPublisher; i++) {
+					publish(ring, publisher * eventsPerPublisher + i);
+				}
+			}));
+		}
+		for (Future<?> worker : workers) {
+			worker.get(1, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+		for (OccupancyEventRing.Consumer consumer : consumers) {
+			awaitProcessed(consumer, events);
+		}
+		ring.close();
+
+		for (List<Long> sequences : seen) {
+			assertEquals(events, sequences.size());
+			for (int i = 0; i < events; i++) {
+				assertEquals(i, sequences.get(i).longValue());
+			}
+		}
+	}
+
+	@Test
+	public void slowConsumerDoesNotStallPublishers() throws Exception {
+		int events = 100_000;
+		OccupancyEventRing ring = new OccupancyEventRing(1024);
+		OccupancyEventRing.Consumer slow = ring.addHandler("slow", (event, endOfBatch) -> Thread.sleep(1));
+		long[] lastSequence = { -1 };
+		boolean[] outOfOrder = { false };
+		OccupancyEventRing.Consumer fast = ring.addHandler("fast", (event, endOfBatch) -> {
+			outOfOrder[0] |= event.getSequence() <= lastSequence[0];
+			lastSequence[0] = event.getSequence();
+		});
+
+		long start = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			publish(ring, i);
+		}
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		// the slow consumer alone would take 100 s to read them all
+		assertTrue(elapsedMillis < 10_000, events + " events published in " + elapsedMillis + " ms");
+
+		awaitProcessed(fast, events);
+		ring.close();
+		assertEquals(events, fast.getProcessed() + fast.getDropped());
+		assertFalse(outOfOrder[0]);
+		assertTrue(slow.getDropped() > 0);
+		assertTrue(slow.getProcessed() < events);
+	}
+
+	private static void publish(OccupancyEventRing ring, int i) {
+		ring.publish(OccupancyEvent.Type.VEHICLE_ENTERED, i, "AB" + i, i % 100 + 1, ParkingType.CAR, 0, i, 0, 0);
+	}
+
+	// until processed and dropped events add up to the given count
+	private static void awaitProcessed(OccupancyEventRing.Consumer consumer, long events) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+		while (consumer.getProcessed() + consumer.getDropped() < events && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketCache;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+public class OpenTicketCacheTest {
+
+	private static final LocalDateTime IN_TIME = LocalDateTime.of(2022, 9, 1, 8, 0, 12, 345_000_000);
+
+	@Test
+	public void ticketsAreCopiedInAndOut() {
+		OpenTicketCache cache = new OpenTicketCache(Collections.emptyList());
+		Ticket ticket = ticket("AB-123-CD", 7, 3, ParkingType.BIKE);
+		cache.put(ticket);
+		ticket.getParkingSpot().setId(4);
+
+		Ticket cached = cache.get("AB-123-CD");
+		assertNotSame(ticket, cached);
+		assertEquals(7, cached.getId());
+		assertEquals(3, cached.getParkingSpot().getId());
+		assertEquals(ParkingType.BIKE, cached.getParkingSpot().getParkingType());
+		assertEquals("AB-123-CD", cached.getVehicleRegNumber());
+		assertEquals(IN_TIME, cached.getInTime());
+		assertNull(cached.getOutTime());
+		assertNull(cache.get("AB-123-CE"));
+	}
+
+	@Test
+	public void removeOnlyTakesOutTheGivenTicket() {
+		OpenTicketCache cache = new OpenTicketCache(0);
+		cache.put(ticket("ABCDEF", 1, 1, ParkingType.CAR));
+		cache.put(ticket("AB CD EF", 2, 2, ParkingType.CAR));
+
+		cache.remove("ABCDEF", 99);
+		cache.remove("AB CD EF", 99);
+		assertEquals(2, cache.size());
+
+		cache.remove("ABCDEF", 1);
+		cache.remove("AB CD EF", 2);
+		assertNull(cache.get("ABCDEF"));
+		assertNull(cache.get("AB CD EF"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void keepsTicketsFoundPastRemovedOnes() {
+		OpenTicketCache cache = new OpenTicketCache(0);
+		for (int i = 0; i < 100_000; i++) {
+			cache.put(ticket("V" + i, i, i, ParkingType.CAR));
+		}
+		for (int i = 0; i < 100_000; i += 2) {
+			cache.remove("V" + i, i);
+		}
+
+		assertEquals(50_000, cache.size());
+		for (int i = 0; i < 100_000; i++) {
+			Ticket ticket = cache.get("V" + i);
+			if (i % 2 == 0) {
+				assertNull(ticket);
+			} else {
+				assertEquals(i, ticket.getId());
+			}
+		}
+	}
+
+	@Test
+	public void holdsNoObjectPerTicket() {
+		OpenTicketCache cache = new OpenTicketCache(0);
+		for (int i = 0; i < 10_000; i++) {
+			cache.put(ticket("AB" + i, i, i, ParkingType.CAR));
+		}
+		long bytesPerTicket = GraphLayout.parseInstance(cache).totalSize() / 10_000;
+		assertTrue(bytesPerTicket < 80, bytesPerTicket + " bytes a ticket");
+	}
+
+	private static Ticket ticket(String vehicleRegNumber, int id, int parkingNumber, ParkingType parkingType) {
+		Ticket ticket = new Ticket();
+		ticket.setId(id);
+		ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(IN_TIME);
+		return ticket;
+	}
+}
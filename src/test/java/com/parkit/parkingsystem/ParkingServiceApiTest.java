@@ -0,0 +1,146 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.event.OccupancyEvent;
+import com.parkit.parkingsystem.event.OccupancyEventRing;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.service.ParkingService;
+
+public class ParkingServiceApiTest {
+
+	private static final int CAR_SPOTS = 32;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private ParkingService parkingService;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("serviceApi");
+		dataBaseConfig.createSchema(CAR_SPOTS, 2);
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void enterAndExit() {
+		LocalDateTime inTime = LocalDateTime.of(2022, 9, 1, 8, 0);
+
+		EntryResult entry = parkingService.enter("ABCDEF", ParkingType.CAR, inTime);
+		assertEquals(EntryResult.Status.PARKED, entry.getStatus());
+		assertEquals(1, entry.getParkingNumber());
+		assertEquals(EntryResult.Status.ALREADY_PARKED,
+				parkingService.enter("ABCDEF", ParkingType.CAR, inTime).getStatus());
+
+		ExitResult exit = parkingService.exit("ABCDEF", inTime.plusMinutes(45));
+		assertEquals(ExitResult.Status.EXITED, exit.getStatus());
+		assertEquals(1, exit.getParkingNumber());
+		assertEquals(inTime, exit.getInTime());
+		assertEquals(1.13, exit.getFare());
+		assertEquals(113, exit.getFareCents());
+		assertEquals(113, parkingService.getTicket("ABCDEF").getPriceCents());
+		assertEquals(ExitResult.Status.NOT_PARKED, parkingService.exit("ABCDEF", inTime.plusHours(1)).getStatus());
+	}
+
+	@Test
+	public void committedEntriesAndExitsArePublished() throws Exception {
+		BlockingQueue<OccupancyEvent> events = new LinkedBlockingQueue<>();
+		OccupancyEventRing ring = new OccupancyEventRing(64);
+		ring.addHandler("test", (event, endOfBatch) -> events.add(event));
+		parkingService.setOccupancyEvents(ring);
+		LocalDateTime inTime = LocalDateTime.of(2022, 9, 1, 8, 0);
+		try {
+			parkingService.enter("ABCDEF", ParkingType.CAR, inTime);
+			parkingService.enter("ABCDEF", ParkingType.CAR, inTime);
+			parkingService.exit("ABCDEF", inTime.plusMinutes(45));
+			parkingService.exit("ABCDEF", inTime.plusMinutes(45));
+
+			OccupancyEvent entered = events.poll(10, TimeUnit.SECONDS);
+			assertEquals(OccupancyEvent.Type.VEHICLE_ENTERED, entered.getType());
+			assertEquals("ABCDEF", entered.getVehicleRegNumber());
+			assertEquals(1, entered.getParkingNumber());
+			assertEquals(OccupancyEvent.Type.SPOT_OCCUPIED, events.poll(10, TimeUnit.SECONDS).getType());
+			OccupancyEvent exited = events.poll(10, TimeUnit.SECONDS);
+			// the rejected second entry published nothing
+			assertEquals(OccupancyEvent.Type.VEHICLE_EXITED, exited.getType());
+			assertEquals(entered.getTicketId(), exited.getTicketId());
+			assertEquals(113, exited.getPriceCents());
+			assertEquals(OccupancyEvent.Type.SPOT_FREED, events.poll(10, TimeUnit.SECONDS).getType());
+			assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+		} finally {
+			ring.close();
+		}
+	}
+
+	@Test
+	public void concurrentGatesGetDistinctSpots() throws Exception {
+		int vehicles = CAR_SPOTS + 8;
+		LocalDateTime inTime = LocalDateTime.now().minusHours(2);
+		ExecutorService gates = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<EntryResult>> entries = new ArrayList<>();
+			for (int i = 0; i < vehicles; i++) {
+				String vehicleRegNumber = "CAR" + i;
+				entries.add(gates.submit(() -> parkingService.enter(vehicleRegNumber, ParkingType.CAR, inTime)));
+			}
+
+			Set<Integer> spots = new HashSet<>();
+			List<String> parked = new ArrayList<>();
+			int full = 0;
+			for (Future<EntryResult> entry : entries) {
+				EntryResult result = entry.get();
+				if (result.isParked()) {
+					assertTrue(spots.add(result.getParkingNumber()), "spot allocated twice: " + result);
+					parked.add(result.getVehicleRegNumber());
+				} else {
+					assertEquals(EntryResult.Status.PARKING_FULL, result.getStatus());
+					full++;
+				}
+			}
+			assertEquals(CAR_SPOTS, spots.size());
+			assertEquals(vehicles - CAR_SPOTS, full);
+
+			List<Future<ExitResult>> exits = new ArrayList<>();
+			for (String vehicleRegNumber : parked) {
+				exits.add(gates.submit(() -> parkingService.exit(vehicleRegNumber, LocalDateTime.now())));
+			}
+			for (Future<ExitResult> exit : exits) {
+				assertEquals(ExitResult.Status.EXITED, exit.get().getStatus());
+			}
+		} finally {
+			gates.shutdownNow();
+		}
+		assertTrue(parkingService.enter("LATE", ParkingType.CAR, LocalDateTime.now()).isParked());
+	}
+}
@@ -1,9 +1,11 @@
 package com.parkit.parkingsystem;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
 
@@ -20,15 +22,12 @@ import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.ParkingService;
-import com.parkit.parkingsystem.util.InputReaderUtil;
 
 @ExtendWith(MockitoExtension.class)
 public class ParkingServiceTest {
 	
 	private static ParkingService parkingService;
 
-	@Mock
-	private static InputReaderUtil inputReaderUtil;
 	@Mock
 	private static ParkingSpotDAO parkingSpotDAO;
 	@Mock
@@ -37,20 +36,18 @@ public class ParkingServiceTest {
 	@BeforeEach
 	void setUpPerTest() {
 		try {
-			when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
-
 			ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR, false);
 			Ticket ticket = new Ticket();
 			ticket.setInTime(LocalDateTime.now().minusHours(1));
 			ticket.setParkingSpot(parkingSpot);
 			ticket.setVehicleRegNumber("ABCDEF");
 			
-			when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
-			when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
+			lenient().when(ticketDAO.getOpenTicket(anyString())).thenReturn(ticket);
+			lenient().when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
 			
-			when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+			lenient().when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
 
-			parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+			parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
 			
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -59,9 +56,17 @@ public class ParkingServiceTest {
 	}
 
 	@Test
-	void processExitingVehicleTest() {
-		parkingService.processExitingVehicle();
+	void exitTest() {
+		parkingService.exit("ABCDEF", LocalDateTime.now());
 		verify(parkingSpotDAO, Mockito.times(1)).updateParking(any(ParkingSpot.class));
 	}
 
+	@Test
+	void enterWithBlankPlateTest() {
+		assertThrows(IllegalArgumentException.class, () -> parkingService.enter(" ", ParkingType.CAR, LocalDateTime.now()));
+
+		verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+		verify(parkingSpotDAO, never()).claimNextAvailableSlot(any(ParkingType.class));
+	}
+
 }
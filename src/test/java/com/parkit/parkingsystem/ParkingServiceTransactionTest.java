@@ -0,0 +1,108 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.ParkingService;
+
+public class ParkingServiceTransactionTest {
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private ParkingSpotDAO parkingSpotDAO;
+	private TicketDAO ticketDAO;
+	private ParkingService parkingService;
+	private ConnectionPool pool;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("transaction");
+		dataBaseConfig.createSchema(3, 2);
+		parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		parkingSpotDAO.getAvailabilityIndex();
+		pool = dataBaseConfig.getConnectionPool();
+
+		parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void entryAndExitUseOneConnectionEach() throws Exception {
+		long borrowed = pool.getBorrowCount();
+		parkingService.enter("ABCDEF", ParkingType.CAR, LocalDateTime.now().minusHours(1));
+		assertEquals(borrowed + 1, pool.getBorrowCount());
+		assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+
+		borrowed = pool.getBorrowCount();
+		parkingService.exit("ABCDEF", LocalDateTime.now());
+		assertEquals(borrowed + 1, pool.getBorrowCount());
+		assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+		assertNotNull(ticketDAO.getTicket("ABCDEF").getOutTime());
+	}
+
+	@Test
+	public void openTicketsAreServedFromMemory() throws Exception {
+		ticketDAO.getOpenTicketCache();
+
+		parkingService.enter("ABCDEF", ParkingType.CAR, LocalDateTime.now().minusHours(1));
+		long borrowed = pool.getBorrowCount();
+		assertEquals(1, ticketDAO.getOpenTicket("ABCDEF").getParkingSpot().getId());
+		assertNull(ticketDAO.getOpenTicket("GHIJKL"));
+		assertEquals(borrowed, pool.getBorrowCount());
+
+		parkingService.exit("ABCDEF", LocalDateTime.now());
+		assertNull(ticketDAO.getOpenTicket("ABCDEF"));
+		assertEquals(0, ticketDAO.getOpenTicketCache().size());
+	}
+
+	@Test
+	public void latestTicketIsTheCurrentVisit() throws Exception {
+		ticketDAO.useOpenTicketCache = false;
+		LocalDateTime firstVisit = LocalDateTime.of(2022, 1, 1, 10, 0);
+		LocalDateTime secondVisit = LocalDateTime.of(2022, 1, 2, 10, 0);
+
+		parkingService.enter("ABCDEF", ParkingType.CAR, firstVisit);
+		parkingService.exit("ABCDEF", firstVisit.plusHours(1));
+		assertNull(ticketDAO.getOpenTicket("ABCDEF"));
+		assertEquals(firstVisit, ticketDAO.getLatestTicket("ABCDEF").getInTime());
+
+		parkingService.enter("ABCDEF", ParkingType.CAR, secondVisit);
+		assertEquals(secondVisit, ticketDAO.getOpenTicket("ABCDEF").getInTime());
+		assertEquals(secondVisit, ticketDAO.getLatestTicket("ABCDEF").getInTime());
+		assertNull(ticketDAO.getLatestTicket("GHIJKL"));
+	}
+
+	@Test
+	public void failedEntryIsRolledBack() throws Exception {
+		// longer than VEHICLE_REG_NUMBER allows, the ticket insert fails after the spot was claimed
+		parkingService.enter("ABCDEFGHIJKLMNOP", ParkingType.CAR, LocalDateTime.now());
+
+		assertNull(ticketDAO.getTicket("ABCDEFGHIJKLMNOP"));
+		assertEquals(1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+		for (ParkingSpot parkingSpot : parkingSpotDAO.getParkingSpots()) {
+			assertTrue(parkingSpot.isAvailable());
+		}
+		assertEquals(0, pool.getActiveConnections());
+		assertNull(ticketDAO.getOpenTicket("ABCDEFGHIJKLMNOP"));
+	}
+}
@@ -0,0 +1,213 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+
+public class ParkingSpotAllocationStressTest {
+
+	private static final int CAR_SPOTS = 4000;
+	private static final int GATES = 8;
+	private static final int LEVELS = 2;
+	private static final int ZONES = 2;
+
+	@Test
+	public void concurrentGatesNeverGetTheSameSpot() throws Exception {
+		for (int threads : new int[] { 1, 4, 16, 64 }) {
+			allocateAllSpots(threads);
+		}
+	}
+
+	@Test
+	public void allocationThroughputGrowsWithLots() throws Exception {
+		double singleLotThroughput = allocateAcrossLots(1);
+		double throughput = 0;
+		for (int lots : new int[] { 2, 4, 8 }) {
+			throughput = allocateAcrossLots(lots);
+		}
+		assertTrue(throughput > singleLotThroughput,
+				"8 lots: " + throughput + " allocations/s, 1 lot: " + singleLotThroughput + " allocations/s");
+	}
+
+	@Test
+	public void nearestSlotFromTheTableMatchesTheIndex() throws Exception {
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("nearest");
+		dataBaseConfig.createSchema(2, 3, ZONES, 2, 1);
+		ParkingSpotDAO gate = new ParkingSpotDAO();
+		gate.dataBaseConfig = dataBaseConfig;
+		try {
+			int parkingNumber;
+			do {
+				parkingNumber = gate.getNearestAvailableSlot(1, 2, 1, ParkingType.CAR);
+				assertEquals(parkingNumber, gate.claimNearestAvailableSlot(1, 2, 1, ParkingType.CAR));
+			} while (parkingNumber > 0);
+			assertEquals(6 * 2, gate.countAvailableSlots(ParkingType.CAR));
+		} finally {
+			dataBaseConfig.closeConnectionPool();
+		}
+	}
+
+	@Test
+	public void gatesWithoutTheIndexClaimFromTheTable() throws Exception {
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("unindexed");
+		dataBaseConfig.createSchema(200, 0);
+		// as when the index cannot be loaded
+		ParkingSpotDAO gate = new ParkingSpotDAO() {
+			@Override
+			public SpotAvailabilityIndex getAvailabilityIndex() {
+				return null;
+			}
+		};
+		gate.dataBaseConfig = dataBaseConfig;
+
+		Set<Integer> allocated = ConcurrentHashMap.newKeySet();
+		List<Integer> duplicates = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(GATES);
+		List<Future<?>> workers = new ArrayList<>();
+		for (int t = 0; t < GATES; t++) {
+			workers.add(executor.submit(() -> {
+				int parkingNumber;
+				// claimed within a transaction, as the gates do
+				while ((parkingNumber = UnitOfWork.execute(() -> gate.claimNextAvailableSlot(ParkingType.CAR))) > 0) {
+					if (!allocated.add(parkingNumber)) {
+						synchronized (duplicates) {
+							duplicates.add(parkingNumber);
+						}
+					}
+				}
+				return null;
+			}));
+		}
+		try {
+			for (Future<?> worker : workers) {
+				worker.get(2, TimeUnit.MINUTES);
+			}
+		} finally {
+			executor.shutdown();
+			dataBaseConfig.closeConnectionPool();
+		}
+		assertTrue(duplicates.isEmpty(), "Spots allocated twice: " + duplicates);
+		assertEquals(200, allocated.size());
+	}
+
+	/**
+	 * Gates as separate processes, each with its own availability index over
+	 * the same DB, spread over the lots. Gates of the same lot keep trying spots
+	 * another gate has just claimed, gates of different lots never do.
+	 *
+	 * @return allocations per second
+	 */
+	private double allocateAcrossLots(int lots) throws Exception {
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("lots" + lots);
+		int spotsPerZone = CAR_SPOTS / (lots * LEVELS * ZONES);
+		int spotsPerLot = spotsPerZone * LEVELS * ZONES;
+		dataBaseConfig.createSchema(lots, LEVELS, ZONES, spotsPerZone, 0);
+
+		List<Integer> misplaced = new ArrayList<>();
+		Set<Integer> allocated = ConcurrentHashMap.newKeySet();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(GATES);
+		List<Future<?>> workers = new ArrayList<>();
+		for (int g = 0; g < GATES; g++) {
+			int lot = g % lots;
+			int level = (g / lots) % LEVELS;
+			ParkingSpotDAO gate = new ParkingSpotDAO();
+			gate.dataBaseConfig = dataBaseConfig;
+			gate.getAvailabilityIndex();
+			workers.add(executor.submit(() -> {
+				start.await();
+				int parkingNumber;
+				while ((parkingNumber = gate.claimNearestAvailableSlot(lot, level, 0, ParkingType.CAR)) > 0) {
+					allocated.add(parkingNumber);
+					if ((parkingNumber - 1) / spotsPerLot != lot) {
+						synchronized (misplaced) {
+							misplaced.add(parkingNumber);
+						}
+					}
+				}
+				return null;
+			}));
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		for (Future<?> worker : workers) {
+			worker.get(2, TimeUnit.MINUTES);
+		}
+		long elapsed = System.nanoTime() - startTime;
+		executor.shutdown();
+		dataBaseConfig.closeConnectionPool();
+
+		double throughput = CAR_SPOTS / (elapsed / 1_000_000_000.0);
+		System.out.printf("Spot allocation with %d gates over %d lot(s): %,10.0f allocations/s%n", GATES, lots,
+				throughput);
+		assertTrue(misplaced.isEmpty(), "Spots allocated outside the gate's lot: " + misplaced);
+		assertEquals(CAR_SPOTS, allocated.size());
+		return throughput;
+	}
+
+	private void allocateAllSpots(int threads) throws Exception {
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("allocation" + threads);
+		dataBaseConfig.createSchema(CAR_SPOTS, 0);
+
+		// two gate processes, each with its own availability index, sharing the same DB
+		ParkingSpotDAO firstGate = new ParkingSpotDAO();
+		firstGate.dataBaseConfig = dataBaseConfig;
+		ParkingSpotDAO secondGate = new ParkingSpotDAO();
+		secondGate.dataBaseConfig = dataBaseConfig;
+		firstGate.getAvailabilityIndex();
+		secondGate.getAvailabilityIndex();
+
+		Set<Integer> allocated = ConcurrentHashMap.newKeySet();
+		List<Integer> duplicates = new ArrayList<>();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			ParkingSpotDAO gate = (t % 2 == 0) ? firstGate : secondGate;
+			workers.add(executor.submit(() -> {
+				start.await();
+				int parkingNumber;
+				while ((parkingNumber = gate.claimNextAvailableSlot(ParkingType.CAR)) > 0) {
+					if (!allocated.add(parkingNumber)) {
+						synchronized (duplicates) {
+							duplicates.add(parkingNumber);
+						}
+					}
+				}
+				return null;
+			}));
+		}
+
+		long startTime = System.nanoTime();
+		start.countDown();
+		for (Future<?> worker : workers) {
+			worker.get(2, TimeUnit.MINUTES);
+		}
+		long elapsed = System.nanoTime() - startTime;
+		executor.shutdown();
+		dataBaseConfig.closeConnectionPool();
+
+		System.out.printf("Spot allocation with %2d thread(s): %,10.0f allocations/s%n", threads,
+				CAR_SPOTS / (elapsed / 1_000_000_000.0));
+		assertTrue(duplicates.isEmpty(), "Spots allocated twice: " + duplicates);
+		assertEquals(CAR_SPOTS, allocated.size());
+	}
+}
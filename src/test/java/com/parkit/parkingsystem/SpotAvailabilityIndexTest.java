@@ -0,0 +1,111 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+public class SpotAvailabilityIndexTest {
+
+	private SpotAvailabilityIndex index;
+
+	@BeforeEach
+	void setUpPerTest() {
+		index = new SpotAvailabilityIndex(Arrays.asList(new ParkingSpot(1, ParkingType.CAR, false),
+				new ParkingSpot(2, ParkingType.CAR, true), new ParkingSpot(3, ParkingType.CAR, true),
+				new ParkingSpot(4, ParkingType.BIKE, true), new ParkingSpot(5, ParkingType.BIKE, true)));
+	}
+
+	@Test
+	public void lowestAvailableIsPerType() {
+		assertEquals(2, index.lowestAvailable(ParkingType.CAR));
+		assertEquals(4, index.lowestAvailable(ParkingType.BIKE));
+	}
+
+	@Test
+	public void updatesMoveTheLowestAvailableSpot() {
+		index.markUnavailable(ParkingType.CAR, 2);
+		assertEquals(3, index.lowestAvailable(ParkingType.CAR));
+
+		index.markUnavailable(ParkingType.CAR, 3);
+		assertEquals(-1, index.lowestAvailable(ParkingType.CAR));
+
+		index.markAvailable(ParkingType.CAR, 1);
+		assertEquals(1, index.lowestAvailable(ParkingType.CAR));
+	}
+
+	@Test
+	public void lowestAvailableAcrossManyWords() {
+		List<ParkingSpot> parkingSpots = new ArrayList<>();
+		for (int i = 1; i <= 50_000; i++) {
+			parkingSpots.add(new ParkingSpot(i, ParkingType.CAR, i == 49_999));
+		}
+		SpotAvailabilityIndex largeIndex = new SpotAvailabilityIndex(parkingSpots);
+
+		assertEquals(49_999, largeIndex.lowestAvailable(ParkingType.CAR));
+		largeIndex.markAvailable(ParkingType.CAR, 70);
+		assertEquals(70, largeIndex.lowestAvailable(ParkingType.CAR));
+	}
+
+	@Test
+	public void nearestLevelWithAFreeSpotIsClaimed() {
+		// lot 1: levels -1, 0 and 1, zones 0 and 1 on level 0
+		SpotAvailabilityIndex lotIndex = new SpotAvailabilityIndex(Arrays.asList(
+				new ParkingSpot(1, ParkingType.CAR, true, 1, -1, 0), new ParkingSpot(2, ParkingType.CAR, true, 1, 0, 0),
+				new ParkingSpot(3, ParkingType.CAR, true, 1, 0, 1), new ParkingSpot(4, ParkingType.CAR, true, 1, 1, 0),
+				new ParkingSpot(5, ParkingType.CAR, true, 1, 1, 0)));
+
+		assertEquals(3, lotIndex.claimNearest(1, 0, 1, ParkingType.CAR));
+		assertEquals(2, lotIndex.claimNearest(1, 0, 1, ParkingType.CAR));
+		// level 0 full: -1 and 1 are as near, the lower one comes first
+		assertEquals(1, lotIndex.claimNearest(1, 0, 0, ParkingType.CAR));
+		assertEquals(4, lotIndex.claimNearest(1, 0, 0, ParkingType.CAR));
+		assertEquals(5, lotIndex.claimNearest(1, -3, 0, ParkingType.CAR));
+		assertEquals(-1, lotIndex.claimNearest(1, 0, 0, ParkingType.CAR));
+	}
+
+	@Test
+	public void lotsAreAllocatedSeparately() {
+		SpotAvailabilityIndex lotIndex = new SpotAvailabilityIndex(Arrays.asList(
+				new ParkingSpot(1, ParkingType.CAR, true, 0, 0, 0), new ParkingSpot(2, ParkingType.CAR, true, 1, 0, 0),
+				new ParkingSpot(3, ParkingType.BIKE, true, 1, 0, 0), new ParkingSpot(4, ParkingType.CAR, false, 1, 0, 0)));
+
+		assertEquals(1, lotIndex.countAvailable(0, ParkingType.CAR));
+		assertEquals(1, lotIndex.countAvailable(1, ParkingType.CAR));
+		assertEquals(2, lotIndex.countAvailable(ParkingType.CAR));
+		assertEquals(2, lotIndex.claimNearest(1, 0, 0, ParkingType.CAR));
+		assertEquals(-1, lotIndex.claimNearest(1, 0, 0, ParkingType.CAR));
+		assertEquals(-1, lotIndex.claimNearest(2, 0, 0, ParkingType.CAR));
+		assertEquals(1, lotIndex.claimLowest(ParkingType.CAR));
+
+		lotIndex.markAvailable(ParkingType.CAR, 4);
+		assertEquals(4, lotIndex.claimNearest(1, 0, 0, ParkingType.CAR));
+		// a spot only moves with its own type
+		lotIndex.markAvailable(ParkingType.BIKE, 2);
+		assertFalse(lotIndex.isAvailable(ParkingType.CAR, 2));
+		assertEquals(3, lotIndex.claimNearest(1, 0, 0, ParkingType.BIKE));
+	}
+
+	@Test
+	public void driftIsCorrectedWhenSeenOnTwoPasses() {
+		List<ParkingSpot> table = Arrays.asList(new ParkingSpot(1, ParkingType.CAR, false),
+				new ParkingSpot(2, ParkingType.CAR, false), new ParkingSpot(3, ParkingType.CAR, true),
+				new ParkingSpot(4, ParkingType.BIKE, true), new ParkingSpot(5, ParkingType.BIKE, true));
+
+		assertEquals(0, index.reconcile(table));
+		assertEquals(2, index.lowestAvailable(ParkingType.CAR));
+
+		assertEquals(1, index.reconcile(table));
+		assertFalse(index.isAvailable(ParkingType.CAR, 2));
+		assertEquals(3, index.lowestAvailable(ParkingType.CAR));
+	}
+}
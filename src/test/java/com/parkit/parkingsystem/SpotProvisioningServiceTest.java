@@ -0,0 +1,127 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.service.SpotProvisioningService;
+
+public class SpotProvisioningServiceTest {
+
+	private static final int SPOTS = 5_000;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private ParkingSpotDAO parkingSpotDAO;
+	private SpotProvisioningService provisioningService;
+
+	@TempDir
+	Path directory;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("spotProvisioning");
+		dataBaseConfig.createSchema(0, 0);
+		parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		provisioningService = new SpotProvisioningService(parkingSpotDAO);
+		provisioningService.setBatchSize(300);
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void layoutIsImportedAndIndexed() throws Exception {
+		assertEquals(SPOTS, provisioningService.importLayout(layout(false)));
+
+		List<ParkingSpot> parkingSpots = parkingSpotDAO.getParkingSpots();
+		assertEquals(SPOTS, parkingSpots.size());
+		for (ParkingSpot parkingSpot : parkingSpots) {
+			int number = parkingSpot.getId();
+			assertEquals(expectedType(number, false), parkingSpot.getParkingType(), "spot " + number);
+			assertEquals(number % 4, parkingSpot.getLot());
+			assertEquals(number % 3, parkingSpot.getLevel());
+			assertEquals(number % 2, parkingSpot.getZone());
+			assertTrue(parkingSpot.isAvailable());
+		}
+		assertEquals(SPOTS - SPOTS / 10, parkingSpotDAO.countAvailableSlots(ParkingType.CAR));
+		assertEquals(SPOTS / 10, parkingSpotDAO.countAvailableSlots(ParkingType.BIKE));
+	}
+
+	@Test
+	public void importingAgainKeepsAvailabilityAndAppliesTheLayout() throws Exception {
+		provisioningService.importLayout(layout(false));
+		int parked = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+		assertTrue(parked > 0);
+
+		// a re-run after a change of layout: every tenth car spot is now for bikes
+		assertEquals(SPOTS, provisioningService.importLayout(layout(true)));
+
+		Map<Integer, ParkingSpot> parkingSpots = new HashMap<>();
+		parkingSpotDAO.getParkingSpots().forEach(parkingSpot -> parkingSpots.put(parkingSpot.getId(), parkingSpot));
+		assertEquals(SPOTS, parkingSpots.size());
+		assertFalse(parkingSpots.get(parked).isAvailable());
+		for (ParkingSpot parkingSpot : parkingSpots.values()) {
+			assertEquals(expectedType(parkingSpot.getId(), true), parkingSpot.getParkingType());
+			assertEquals(parkingSpot.getId() != parked, parkingSpot.isAvailable());
+		}
+		int bikes = 0;
+		for (int number = 1; number <= SPOTS; number++) {
+			if (expectedType(number, true) == ParkingType.BIKE) {
+				bikes++;
+			}
+		}
+		// reloaded: the index knows of the new bike spots and of the parked car
+		assertEquals(bikes, parkingSpotDAO.countAvailableSlots(ParkingType.BIKE));
+		assertEquals(SPOTS - bikes - 1, parkingSpotDAO.countAvailableSlots(ParkingType.CAR));
+	}
+
+	@Test
+	public void invalidLineIsReportedWithItsNumber() throws Exception {
+		Path layout = directory.resolve("invalid.csv");
+		Files.write(layout, "lot,level,number,type\n1,1,1,CAR\n\n# bikes\n1,1,2,BIKE\n1,1,three,CAR\n"
+				.getBytes(StandardCharsets.UTF_8));
+
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> provisioningService.importLayout(layout));
+		assertTrue(e.getMessage().startsWith("Line 6 "), e.getMessage());
+		// lines are imported a batch at a time
+		assertEquals(0, parkingSpotDAO.getParkingSpots().size());
+	}
+
+	private Path layout(boolean moreBikes) throws Exception {
+		Path layout = directory.resolve(moreBikes ? "moreBikes.csv" : "layout.csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(layout, StandardCharsets.UTF_8)) {
+			writer.write("lot,level,number,type,zone\n");
+			for (int number = 1; number <= SPOTS; number++) {
+				writer.write((number % 4) + "," + (number % 3) + "," + number + "," + expectedType(number, moreBikes)
+						+ "," + (number % 2) + "\n");
+			}
+		}
+		return layout;
+	}
+
+	private static ParkingType expectedType(int number, boolean moreBikes) {
+		return number % 10 == 0 || (moreBikes && number % 10 == 5) ? ParkingType.BIKE : ParkingType.CAR;
+	}
+}
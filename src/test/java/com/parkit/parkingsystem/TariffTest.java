@@ -0,0 +1,163 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TariffDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.Tariff;
+import com.parkit.parkingsystem.model.TariffRule;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.TariffService;
+import com.parkit.parkingsystem.util.TimeUtil;
+
+public class TariffTest {
+
+	private static final LocalDateTime MORNING = LocalDateTime.of(2022, 9, 1, 8, 0);
+
+	@Test
+	public void defaultTariffIsTheFlatHourlyRate() {
+		Random random = new Random(42);
+		for (int i = 0; i < 10_000; i++) {
+			long inTime = TimeUtil.toEpochMillis(MORNING) + random.nextInt(1_000_000_000);
+			long stay = (long) random.nextInt(1_000_000_000) * (i % 3 + 1);
+			assertEquals((stay * Fare.CAR_RATE_PER_HOUR_CENTS + 1_800_000) / 3_600_000,
+					Tariff.DEFAULT.priceCents(0, ParkingType.CAR, inTime, inTime + stay));
+			assertEquals((stay * Fare.BIKE_RATE_PER_HOUR_CENTS + 1_800_000) / 3_600_000,
+					Tariff.DEFAULT.priceCents(0, ParkingType.BIKE, inTime, inTime + stay));
+		}
+	}
+
+	@Test
+	public void firstThirtyMinutesAreFree() {
+		Tariff tariff = Tariff.compile(Arrays.asList(flatRate(0, ParkingType.CAR, 150), flatRate(0, ParkingType.BIKE, 100),
+				TariffRule.freeMinutes(0, ParkingType.CAR, 30)));
+
+		assertEquals(0, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusMinutes(30)));
+		assertEquals(78, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusMinutes(31)));
+		assertEquals(50, price(tariff, 0, ParkingType.BIKE, MORNING, MORNING.plusMinutes(30)));
+	}
+
+	@Test
+	public void nightRateAppliesAcrossMidnight() {
+		Tariff tariff = Tariff.compile(Arrays.asList(flatRate(0, ParkingType.CAR, 200), flatRate(0, ParkingType.BIKE, 100),
+				TariffRule.hourlyRate(0, ParkingType.CAR, 22 * 60, 7 * 60, 50)));
+		LocalDateTime evening = LocalDateTime.of(2022, 9, 1, 21, 0);
+
+		assertEquals(200 + 50, price(tariff, 0, ParkingType.CAR, evening, evening.plusHours(2)));
+		// 21:00 to 08:30: 1 hour of day, 9 hours of night, 1.5 hours of day
+		assertEquals(200 + 9 * 50 + 300, price(tariff, 0, ParkingType.CAR, evening, evening.plusMinutes(690)));
+		assertEquals(25, price(tariff, 0, ParkingType.CAR, evening.plusHours(3), evening.plusHours(3).plusMinutes(30)));
+	}
+
+	@Test
+	public void dailyCapLimitsEachDayOfTheStay() {
+		Tariff tariff = Tariff.compile(Arrays.asList(flatRate(0, ParkingType.CAR, 150), flatRate(0, ParkingType.BIKE, 100),
+				TariffRule.dailyCap(0, ParkingType.CAR, 1000)));
+
+		assertEquals(900, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusHours(6)));
+		assertEquals(1000, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusHours(12)));
+		assertEquals(1000 + 300, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusHours(26)));
+		assertEquals(365 * 1000, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusDays(365)));
+	}
+
+	@Test
+	public void durationTiersDiscountLongStays() {
+		Tariff tariff = Tariff.compile(Arrays.asList(flatRate(0, ParkingType.CAR, 150), flatRate(0, ParkingType.BIKE, 100),
+				TariffRule.durationTier(0, ParkingType.CAR, 3 * 60, 50),
+				TariffRule.durationTier(0, ParkingType.CAR, 24 * 60, 20),
+				TariffRule.dailyCap(0, ParkingType.CAR, 2000)));
+
+		assertEquals(3 * 150 + 2 * 75, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusHours(5)));
+		// first day: 450 + 21 * 75 = 2025 capped to 2000, then 30 cents an hour
+		assertEquals(2000 + 720, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusDays(2)));
+		assertEquals(2000 + 9 * 720 + 60, price(tariff, 0, ParkingType.CAR, MORNING, MORNING.plusDays(10).plusHours(2)));
+	}
+
+	@Test
+	public void lotsOverrideTheDefaultLot() {
+		Tariff tariff = Tariff.compile(Arrays.asList(flatRate(0, ParkingType.CAR, 150), flatRate(0, ParkingType.BIKE, 100),
+				TariffRule.freeMinutes(0, ParkingType.CAR, 30),
+				flatRate(2, ParkingType.CAR, 300),
+				TariffRule.freeMinutes(4, ParkingType.CAR, 0)));
+
+		assertEquals(0, price(tariff, 2, ParkingType.CAR, MORNING, MORNING.plusMinutes(20)));
+		assertEquals(600, price(tariff, 2, ParkingType.CAR, MORNING, MORNING.plusHours(2)));
+		assertEquals(50, price(tariff, 4, ParkingType.CAR, MORNING, MORNING.plusMinutes(20)));
+		assertEquals(100, price(tariff, 2, ParkingType.BIKE, MORNING, MORNING.plusHours(1)));
+		// unknown lots use the default lot
+		assertEquals(150, price(tariff, 3, ParkingType.CAR, MORNING, MORNING.plusHours(1)));
+		assertEquals(150, price(tariff, 99, ParkingType.CAR, MORNING, MORNING.plusHours(1)));
+		assertEquals(150, price(tariff, -1, ParkingType.CAR, MORNING, MORNING.plusHours(1)));
+	}
+
+	@Test
+	public void invalidRulesAreRejected() {
+		assertThrows(IllegalArgumentException.class,
+				() -> Tariff.compile(Collections.singletonList(flatRate(0, ParkingType.CAR, 150))));
+		assertThrows(IllegalArgumentException.class, () -> Tariff.compile(Arrays.asList(flatRate(0, ParkingType.CAR, 150),
+				flatRate(0, ParkingType.BIKE, 100), TariffRule.hourlyRate(0, ParkingType.CAR, 60, 60, 10))));
+		assertThrows(IllegalArgumentException.class, () -> Tariff.compile(Arrays.asList(flatRate(0, ParkingType.CAR, 150),
+				flatRate(0, ParkingType.BIKE, 100), TariffRule.dailyCap(0, ParkingType.CAR, -1))));
+	}
+
+	@Test
+	public void reloadsTheTariffTable() throws Exception {
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("tariff");
+		try {
+			dataBaseConfig.createSchema(1, 1);
+			TariffDAO tariffDAO = new TariffDAO();
+			tariffDAO.dataBaseConfig = dataBaseConfig;
+			FareCalculatorService fareCalculatorService = new FareCalculatorService();
+			TariffService tariffService = new TariffService(tariffDAO, fareCalculatorService);
+			long inTime = TimeUtil.toEpochMillis(MORNING);
+
+			assertTrue(tariffService.reload());
+			assertFalse(tariffService.reload());
+			assertEquals(150, fareCalculatorService.calculateFareCents(ParkingType.CAR, inTime, inTime + 3_600_000));
+
+			execute(dataBaseConfig, "insert into tariff(TYPE,RULE,AMOUNT) values('CAR','FREE_MINUTES',30)");
+			assertTrue(tariffService.reload());
+			assertEquals(0, fareCalculatorService.calculateFareCents(ParkingType.CAR, inTime, inTime + 1_800_000));
+
+			Tariff tariff = fareCalculatorService.getTariff();
+			execute(dataBaseConfig, "insert into tariff(TYPE,RULE,START_MINUTE,END_MINUTE,AMOUNT)"
+					+ " values('CAR','HOURLY_RATE',60,60,10)");
+			assertFalse(tariffService.reload());
+			assertSame(tariff, fareCalculatorService.getTariff());
+		} finally {
+			dataBaseConfig.closeConnectionPool();
+		}
+	}
+
+	private static TariffRule flatRate(int lot, ParkingType parkingType, int centsPerHour) {
+		return TariffRule.hourlyRate(lot, parkingType, 0, 24 * 60, centsPerHour);
+	}
+
+	private static long price(Tariff tariff, int lot, ParkingType parkingType, LocalDateTime inTime,
+			LocalDateTime outTime) {
+		return tariff.priceCents(lot, parkingType, TimeUtil.toEpochMillis(inTime), TimeUtil.toEpochMillis(outTime));
+	}
+
+	private static void execute(EmbeddedDataBaseConfig dataBaseConfig, String sql) throws Exception {
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			con.createStatement().execute(sql);
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.TicketArchivalService;
+
+public class TicketArchivalServiceTest {
+
+	private static final LocalDateTime CUTOFF = LocalDateTime.of(2022, 6, 1, 0, 0);
+	// one ticket a day for 300 days before the cutoff, then 20 after it
+	private static final int OLD_TICKETS = 300;
+	private static final int RECENT_TICKETS = 20;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private TicketDAO ticketDAO;
+	private TicketArchivalService archivalService;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("ticketArchival");
+		dataBaseConfig.createSchema(3, 2);
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement(
+					"insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+			for (int day = -OLD_TICKETS; day < RECENT_TICKETS; day++) {
+				LocalDateTime inTime = CUTOFF.plusDays(day);
+				ps.setInt(1, 1);
+				// 10 vehicles, coming in turn
+				ps.setString(2, "V" + Math.floorMod(day, 10));
+				ps.setInt(3, 3);
+				ps.setTimestamp(4, Timestamp.valueOf(inTime));
+				ps.setTimestamp(5, Timestamp.valueOf(inTime.plusHours(2)));
+				ps.addBatch();
+			}
+			// parked since long before the cutoff
+			ps.setInt(1, 2);
+			ps.setString(2, "PARKED");
+			ps.setInt(3, 0);
+			ps.setTimestamp(4, Timestamp.valueOf(CUTOFF.minusDays(OLD_TICKETS + 10)));
+			ps.setTimestamp(5, null);
+			ps.addBatch();
+			// came once, before the cutoff
+			ps.setInt(1, 4);
+			ps.setString(2, "GONE");
+			ps.setInt(3, 1);
+			ps.setTimestamp(4, Timestamp.valueOf(CUTOFF.minusDays(50)));
+			ps.setTimestamp(5, Timestamp.valueOf(CUTOFF.minusDays(49)));
+			ps.addBatch();
+			ps.executeBatch();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		archivalService = new TicketArchivalService(ticketDAO);
+		archivalService.setChunkSize(7);
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void closedTicketsBeforeTheCutoffAreMovedToTheArchive() throws Exception {
+		Map<Integer, String> ticketsBefore = tickets("ticket");
+
+		assertEquals(OLD_TICKETS + 1, archivalService.archive(CUTOFF));
+
+		Map<Integer, String> hot = tickets("ticket");
+		Map<Integer, String> archived = tickets("ticket_archive");
+		assertEquals(RECENT_TICKETS + 1, hot.size());
+		assertEquals(OLD_TICKETS + 1, archived.size());
+		// moved as they were, IDs included
+		Map<Integer, String> ticketsAfter = new HashMap<>(hot);
+		ticketsAfter.putAll(archived);
+		assertEquals(ticketsBefore, ticketsAfter);
+		for (String ticket : archived.values()) {
+			assertTrue(ticket.compareTo(CUTOFF.toString()) < 0, ticket);
+		}
+		assertNotNull(ticketDAO.getOpenTicket("PARKED"));
+
+		assertEquals(0, archivalService.archive(CUTOFF));
+		assertEquals(RECENT_TICKETS + 1, tickets("ticket").size());
+	}
+
+	@Test
+	public void lookupsOnlyReadTheArchiveWhenAsked() throws Exception {
+		archivalService.archive(CUTOFF);
+
+		assertNull(ticketDAO.getLatestTicket("GONE"));
+		Ticket archived = ticketDAO.getLatestTicket("GONE", true);
+		assertEquals(CUTOFF.minusDays(49), archived.getOutTime());
+		assertEquals(ParkingType.BIKE, archived.getParkingSpot().getParkingType());
+		assertEquals(100, archived.getPriceCents());
+		// recent tickets are still read from the ticket table
+		assertEquals(CUTOFF.plusDays(RECENT_TICKETS - 1), ticketDAO.getLatestTicket("V9", true).getInTime());
+	}
+
+	@Test
+	public void archivedTicketsStillCountAsVisits() throws Exception {
+		archivalService.archive(CUTOFF);
+
+		ticketDAO.reloadVisitCounts();
+		assertEquals(1, ticketDAO.getVisitCounter().getVisits("GONE"));
+		assertEquals((OLD_TICKETS + RECENT_TICKETS) / 10, ticketDAO.getVisitCounter().getVisits("V0"));
+
+		Map<Integer, Boolean> recurring = new HashMap<>();
+		ticketDAO.streamClosedTickets(0, 100, (ticketId, lot, parkingType, inEpochMillis, outEpochMillis,
+				priceCents, recurringUser) -> recurring.put(ticketId, recurringUser) == null);
+		assertEquals(RECENT_TICKETS, recurring.size());
+		// every vehicle came before the cutoff
+		recurring.values().forEach(recurringUser -> assertTrue(recurringUser));
+	}
+
+	private Map<Integer, String> tickets(String table) throws Exception {
+		Map<Integer, String> tickets = new HashMap<>();
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement(
+					"select ID, IN_TIME, OUT_TIME, VEHICLE_REG_NUMBER, PARKING_NUMBER, PRICE from " + table);
+			ResultSet rs = ps.executeQuery();
+			while (rs.next()) {
+				tickets.put(rs.getInt(1), rs.getTimestamp(2).toLocalDateTime() + " " + rs.getTimestamp(3) + " "
+						+ rs.getString(4) + " " + rs.getInt(5) + " " + rs.getBigDecimal(6));
+			}
+			rs.close();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		return tickets;
+	}
+}
@@ -0,0 +1,220 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.TicketArchivalService;
+import com.parkit.parkingsystem.service.TicketReportService;
+import com.parkit.parkingsystem.service.TicketReportService.PlateTotal;
+import com.parkit.parkingsystem.service.TicketReportService.Report;
+
+public class TicketReportServiceTest {
+
+	private static final LocalDateTime FROM = LocalDateTime.of(2022, 9, 1, 0, 0);
+	private static final LocalDateTime TO = LocalDateTime.of(2022, 10, 1, 0, 0);
+	private static final int TICKETS = 3000;
+
+	// spots 1 to 3 are for cars, 4 and 5 for bikes
+	private final List<Object[]> tickets = new ArrayList<>();
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private TicketReportService reportService;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("ticketReport");
+		dataBaseConfig.createSchema(3, 2);
+		Random random = new Random(7);
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement(
+					"insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+			for (int i = 0; i < TICKETS; i++) {
+				// from a few days before the report to a few days after it
+				LocalDateTime inTime = FROM.minusDays(3).plusMinutes(random.nextInt(36 * 24 * 60));
+				LocalDateTime outTime = random.nextInt(20) == 0 ? null : inTime.plusMinutes(random.nextInt(48 * 60));
+				int parkingNumber = random.nextInt(5) + 1;
+				String vehicleRegNumber = "V" + random.nextInt(200);
+				int priceCents = outTime == null ? 0 : random.nextInt(5000);
+				ps.setInt(1, parkingNumber);
+				ps.setString(2, vehicleRegNumber);
+				ps.setBigDecimal(3, outTime == null ? null : BigDecimal.valueOf(priceCents, 2));
+				ps.setTimestamp(4, Timestamp.valueOf(inTime));
+				ps.setTimestamp(5, outTime == null ? null : Timestamp.valueOf(outTime));
+				ps.addBatch();
+				tickets.add(new Object[] { parkingNumber > 3 ? ParkingType.BIKE : ParkingType.CAR, vehicleRegNumber,
+						inTime, outTime, priceCents });
+			}
+			ps.executeBatch();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		// the first half of September is read from the archive
+		new TicketArchivalService(ticketDAO).archive(FROM.plusDays(15));
+		reportService = new TicketReportService(parkingSpotDAO, ticketDAO);
+		reportService.setTopPlates(5);
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void reportsMatchTheTicketsWhateverTheWorkers() throws Exception {
+		for (int workers : new int[] { 1, 4 }) {
+			reportService.setWorkers(workers);
+			Report report = reportService.generate(FROM, TO);
+
+			long expectedTickets = 0;
+			for (ParkingType parkingType : ParkingType.values()) {
+				long[] dailyExits = new long[30];
+				long[] dailyRevenueCents = new long[30];
+				long[] hourlyEntries = new long[30 * 24];
+				long[] hourlyExits = new long[30 * 24];
+				long[] hourlyParked = new long[30 * 24];
+				for (Object[] ticket : tickets) {
+					LocalDateTime inTime = (LocalDateTime) ticket[2];
+					LocalDateTime outTime = (LocalDateTime) ticket[3];
+					if (ticket[0] != parkingType || !inTime.isBefore(TO)
+							|| (outTime != null && outTime.isBefore(FROM))) {
+						continue;
+					}
+					expectedTickets++;
+					for (int hour = 0; hour < 30 * 24; hour++) {
+						LocalDateTime start = FROM.plusHours(hour);
+						LocalDateTime end = start.plusHours(1);
+						if (!inTime.isBefore(start) && inTime.isBefore(end)) {
+							hourlyEntries[hour]++;
+						}
+						if (outTime != null && !outTime.isBefore(start) && outTime.isBefore(end)) {
+							hourlyExits[hour]++;
+							dailyExits[hour / 24]++;
+							dailyRevenueCents[hour / 24] += (Integer) ticket[4];
+						}
+						if (!inTime.isAfter(start) && (outTime == null || outTime.isAfter(start))) {
+							hourlyParked[hour]++;
+						}
+					}
+				}
+				String message = parkingType + " with " + workers + " worker(s)";
+				assertArrayEquals(dailyExits, report.getDailyExits(parkingType), message);
+				assertArrayEquals(dailyRevenueCents, report.getDailyRevenueCents(parkingType), message);
+				assertArrayEquals(hourlyEntries, report.getHourlyEntries(parkingType), message);
+				assertArrayEquals(hourlyExits, report.getHourlyExits(parkingType), message);
+				assertArrayEquals(hourlyParked, report.getHourlyParked(parkingType), message);
+			}
+			assertEquals(expectedTickets, report.getTickets());
+		}
+	}
+
+	@Test
+	public void workersShareTheFetchSize() throws Exception {
+		AtomicInteger largestFetchSize = new AtomicInteger();
+		TicketDAO ticketDAO = new TicketDAO() {
+			@Override
+			public long streamReportTickets(int afterTicketId, int lastTicketId, LocalDateTime from,
+					LocalDateTime to, int fetchSize, ReportTicketHandler handler) throws Exception {
+				largestFetchSize.accumulateAndGet(fetchSize, Math::max);
+				return super.streamReportTickets(afterTicketId, lastTicketId, from, to, fetchSize, handler);
+			}
+		};
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		TicketReportService sharedReportService = new TicketReportService(parkingSpotDAO, ticketDAO);
+		sharedReportService.setWorkers(4);
+		sharedReportService.setFetchSize(1000);
+
+		assertEquals(reportService.generate(FROM, TO).getTickets(),
+				sharedReportService.generate(FROM, TO).getTickets());
+		assertEquals(250, largestFetchSize.get());
+	}
+
+	@Test
+	public void topPlatesAreThoseThatSpentTheMost() throws Exception {
+		Report report = reportService.generate(FROM, TO);
+
+		long[][] plates = new long[200][2];
+		for (Object[] ticket : tickets) {
+			LocalDateTime outTime = (LocalDateTime) ticket[3];
+			if (outTime != null && !outTime.isBefore(FROM) && outTime.isBefore(TO)) {
+				long[] plate = plates[Integer.parseInt(((String) ticket[1]).substring(1))];
+				plate[0]++;
+				plate[1] += (Integer) ticket[4];
+			}
+		}
+		List<PlateTotal> topPlates = report.getTopPlates();
+		assertEquals(5, topPlates.size());
+		long lowestTopRevenue = topPlates.get(4).getRevenueCents();
+		for (int i = 0; i < plates.length; i++) {
+			String vehicleRegNumber = "V" + i;
+			PlateTotal top = topPlates.stream().filter(p -> p.getVehicleRegNumber().equals(vehicleRegNumber))
+					.findFirst().orElse(null);
+			if (top != null) {
+				assertEquals(plates[i][0], top.getTickets());
+				assertEquals(plates[i][1], top.getRevenueCents());
+			} else {
+				assertTrue(plates[i][1] <= lowestTopRevenue, vehicleRegNumber);
+			}
+		}
+		for (int i = 1; i < topPlates.size(); i++) {
+			assertTrue(topPlates.get(i - 1).getRevenueCents() >= topPlates.get(i).getRevenueCents());
+		}
+	}
+
+	@Test
+	public void reportsAreWrittenAsCsvAndJson(@TempDir Path directory) throws Exception {
+		Report report = reportService.generate(FROM, TO);
+
+		report.writeCsv(directory);
+		List<String> revenue = Files.readAllLines(directory.resolve("revenue.csv"), StandardCharsets.UTF_8);
+		assertEquals("day,type,exits,revenue", revenue.get(0));
+		assertEquals(1 + 30 * ParkingType.values().length, revenue.size());
+		long[] carExits = report.getDailyExits(ParkingType.CAR);
+		assertEquals("2022-09-01T00:00,CAR," + carExits[0] + ","
+				+ BigDecimal.valueOf(report.getDailyRevenueCents(ParkingType.CAR)[0], 2), revenue.get(1));
+		List<String> occupancy = Files.readAllLines(directory.resolve("occupancy.csv"), StandardCharsets.UTF_8);
+		assertEquals("hour,type,entries,exits,parked", occupancy.get(0));
+		assertEquals(1 + 30 * 24 * ParkingType.values().length, occupancy.size());
+		List<String> topPlates = Files.readAllLines(directory.resolve("top_plates.csv"), StandardCharsets.UTF_8);
+		PlateTotal top = report.getTopPlates().get(0);
+		assertEquals("1," + top.getVehicleRegNumber() + "," + top.getTickets() + ","
+				+ BigDecimal.valueOf(top.getRevenueCents(), 2), topPlates.get(1));
+
+		Path json = directory.resolve("report.json");
+		report.writeJson(json);
+		String content = new String(Files.readAllBytes(json), StandardCharsets.UTF_8);
+		assertTrue(content.startsWith("{\"from\":\"2022-09-01T00:00\",\"to\":\"2022-10-01T00:00\",\"tickets\":"
+				+ report.getTickets() + ",\"revenue\":[{\"day\":\"2022-09-01T00:00\",\"type\":\"CAR\""), content);
+		assertTrue(content.contains(",\"topPlates\":[{\"rank\":1,\"plate\":\"" + top.getVehicleRegNumber() + "\""));
+		assertTrue(content.trim().endsWith("]}"));
+	}
+}
@@ -0,0 +1,178 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.EntryResult;
+import com.parkit.parkingsystem.model.ExitResult;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+
+public class TicketWriteBehindTest {
+
+	private static final int GATES = 32;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private ParkingSpotDAO parkingSpotDAO;
+	private TicketDAO ticketDAO;
+	private ParkingService parkingService;
+	private ExecutorService gates;
+
+	@BeforeEach
+	void setUpPerTest() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("writeBehind");
+		dataBaseConfig.createSchema(GATES, 2);
+		parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		ticketDAO.startWriteBehind(16, 50, TimeUnit.MILLISECONDS);
+		parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+		gates = Executors.newFixedThreadPool(GATES);
+	}
+
+	@AfterEach
+	void tearDownPerTest() {
+		gates.shutdownNow();
+		ticketDAO.stopWriteBehind();
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Test
+	public void concurrentTicketsAreWrittenInBatches() throws Exception {
+		ConnectionPool pool = dataBaseConfig.getConnectionPool();
+		LocalDateTime inTime = LocalDateTime.now().minusHours(1);
+
+		List<Future<EntryResult>> entries = new ArrayList<>();
+		for (int i = 0; i < GATES; i++) {
+			String vehicleRegNumber = "CAR" + i;
+			entries.add(gates.submit(() -> parkingService.enter(vehicleRegNumber, ParkingType.CAR, inTime)));
+		}
+		for (Future<EntryResult> entry : entries) {
+			assertTrue(entry.get().isParked());
+		}
+		// the batches claimed the spots with the tickets
+		for (ParkingSpot parkingSpot : parkingSpotDAO.getParkingSpots()) {
+			assertEquals(parkingSpot.getParkingType() != ParkingType.CAR, parkingSpot.isAvailable());
+		}
+
+		Set<Integer> ticketIds = new HashSet<>();
+		for (int i = 0; i < GATES; i++) {
+			Ticket ticket = ticketDAO.getOpenTicket("CAR" + i);
+			assertTrue(ticketIds.add(ticket.getId()));
+		}
+
+		List<Future<ExitResult>> exits = new ArrayList<>();
+		for (int i = 0; i < GATES; i++) {
+			String vehicleRegNumber = "CAR" + i;
+			exits.add(gates.submit(() -> parkingService.exit(vehicleRegNumber, LocalDateTime.now())));
+		}
+		for (Future<ExitResult> exit : exits) {
+			assertTrue(exit.get().isExited());
+		}
+		for (ParkingSpot parkingSpot : parkingSpotDAO.getParkingSpots()) {
+			assertTrue(parkingSpot.isAvailable());
+		}
+
+		ticketDAO.useOpenTicketCache = false;
+		for (int i = 0; i < GATES; i++) {
+			assertNull(ticketDAO.getOpenTicket("CAR" + i));
+			assertNotNull(ticketDAO.getLatestTicket("CAR" + i).getOutTime());
+		}
+		assertEquals(1, pool.getActiveConnections(), "only the batch writer keeps a connection");
+	}
+
+	@Test
+	public void failedTicketDoesNotFailItsBatch() throws Exception {
+		List<Future<Boolean>> saves = new ArrayList<>();
+		for (int i = 0; i < GATES; i++) {
+			// longer than VEHICLE_REG_NUMBER allows for one of them
+			String vehicleRegNumber = i == GATES / 2 ? "ABCDEFGHIJKLMNOP" : "CAR" + i;
+			saves.add(gates.submit(() -> ticketDAO.saveTicket(ticket(vehicleRegNumber))));
+		}
+		for (int i = 0; i < GATES; i++) {
+			assertEquals(i != GATES / 2, saves.get(i).get());
+		}
+	}
+
+	@Test
+	public void queuedTicketsAreWrittenOnStop() throws Exception {
+		ticketDAO.stopWriteBehind();
+		// a long latency, the stop flushes the batch before it is due
+		ticketDAO.startWriteBehind(128, 1, TimeUnit.HOURS);
+		Future<Boolean> save = gates.submit(() -> ticketDAO.saveTicket(ticket("ABCDEF")));
+		Thread.sleep(100);
+		assertFalse(save.isDone());
+
+		ticketDAO.stopWriteBehind();
+		assertTrue(save.get());
+		assertNotNull(ticketDAO.getLatestTicket("ABCDEF"));
+	}
+
+	@Test
+	public void spotTakenBehindTheIndexFailsOnlyItsEntry() throws Exception {
+		parkingSpotDAO.getAvailabilityIndex();
+		parkingSpotDAO.writeAvailability(1, false);
+
+		assertEquals(EntryResult.Status.FAILED,
+				parkingService.enter("CAR1", ParkingType.CAR, LocalDateTime.now()).getStatus());
+		assertNull(ticketDAO.getLatestTicket("CAR1"));
+		EntryResult entry = parkingService.enter("CAR2", ParkingType.CAR, LocalDateTime.now());
+		assertTrue(entry.isParked());
+		assertEquals(2, entry.getParkingNumber());
+	}
+
+	@Test
+	public void ticketsOfARolledBackUnitOfWorkAreNotWritten() {
+		UnitOfWork.run(() -> {
+			assertTrue(ticketDAO.saveTicket(ticket("ABCDEF")));
+			UnitOfWork.setRollbackOnly();
+		});
+
+		assertNull(ticketDAO.getOpenTicket("ABCDEF"));
+		ticketDAO.useOpenTicketCache = false;
+		assertNull(ticketDAO.getLatestTicket("ABCDEF"));
+	}
+
+	@Test
+	public void ticketStillQueuedAfterTheTimeoutIsNotWritten() throws Exception {
+		ticketDAO.stopWriteBehind();
+		ticketDAO.startWriteBehind(128, 1, TimeUnit.HOURS, 200);
+
+		assertFalse(ticketDAO.saveTicket(ticket("ABCDEF")));
+		ticketDAO.stopWriteBehind();
+		assertNull(ticketDAO.getLatestTicket("ABCDEF"));
+	}
+
+	private static Ticket ticket(String vehicleRegNumber) {
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+		ticket.setVehicleRegNumber(vehicleRegNumber);
+		ticket.setInTime(LocalDateTime.now());
+		return ticket;
+	}
+}
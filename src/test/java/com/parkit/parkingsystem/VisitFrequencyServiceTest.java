@@ -0,0 +1,111 @@
+package com.parkit.parkingsystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.VisitCounter;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.VisitFrequencyService;
+import com.parkit.parkingsystem.util.PlateCodec;
+
+public class VisitFrequencyServiceTest {
+
+	@Test
+	public void plateCodecPacksShortNumbers() {
+		for (String vehicleRegNumber : new String[] { "A", "ABCDEF", "zz-99-ZZ", "0000000000", "-" }) {
+			long plate = PlateCodec.encode(vehicleRegNumber);
+			assertTrue(PlateCodec.isPacked(plate));
+			assertEquals(vehicleRegNumber, PlateCodec.decode(plate));
+		}
+		assertNotEquals(PlateCodec.encode("0"), PlateCodec.encode("00"));
+
+		long hashed = PlateCodec.encode("AB 123");
+		assertFalse(PlateCodec.isPacked(hashed));
+		assertEquals(hashed, PlateCodec.encode("AB 123"));
+		assertNotEquals(hashed, PlateCodec.encode("AB 124"));
+		assertFalse(PlateCodec.isPacked(PlateCodec.encode("ABCDEFGHIJK")));
+		assertThrows(IllegalArgumentException.class, () -> PlateCodec.decode(hashed));
+	}
+
+	@Test
+	public void counterGrowsWithoutLosingCounts() {
+		VisitCounter counter = new VisitCounter(0);
+		for (int i = 0; i < 100_000; i++) {
+			counter.add("P" + i, i % 7 + 1);
+		}
+		counter.increment("P42");
+		counter.increment("über");
+
+		assertEquals(100_001, counter.size());
+		assertEquals(1, counter.getVisits("P0"));
+		assertEquals(42 % 7 + 1 + 1, counter.getVisits("P42"));
+		assertEquals(99_999 % 7 + 1, counter.getVisits("P99999"));
+		assertEquals(1, counter.getVisits("über"));
+		assertEquals(0, counter.getVisits("P100000"));
+	}
+
+	@Test
+	public void recurringUsersGetTheDiscount() throws Exception {
+		EmbeddedDataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("visitFrequency");
+		try {
+			dataBaseConfig.createSchema(4, 1);
+			LocalDateTime inTime = LocalDateTime.of(2022, 9, 1, 8, 0);
+			Connection con = dataBaseConfig.getConnection();
+			try {
+				PreparedStatement ps = con.prepareStatement("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER,"
+						+ " PRICE, IN_TIME, OUT_TIME) values(1,?,1.5,?,?)");
+				for (String vehicleRegNumber : new String[] { "ABC", "ABC", "ABC", "XYZ" }) {
+					ps.setString(1, vehicleRegNumber);
+					ps.setTimestamp(2, Timestamp.valueOf(inTime.minusDays(1)));
+					ps.setTimestamp(3, Timestamp.valueOf(inTime.minusDays(1).plusHours(1)));
+					ps.addBatch();
+				}
+				ps.executeBatch();
+				ps.close();
+			} finally {
+				dataBaseConfig.closeConnection(con);
+			}
+			ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+			parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+			TicketDAO ticketDAO = new TicketDAO();
+			ticketDAO.dataBaseConfig = dataBaseConfig;
+			VisitFrequencyService visitFrequencyService = new VisitFrequencyService(ticketDAO);
+			visitFrequencyService.warmUp();
+			FareCalculatorService fareCalculatorService = new FareCalculatorService();
+			fareCalculatorService.setVisitFrequencyService(visitFrequencyService);
+			ParkingService parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+			parkingService.setFareCalculatorService(fareCalculatorService);
+
+			assertEquals(3, visitFrequencyService.getVisits("ABC"));
+			assertEquals(1, visitFrequencyService.getVisits("XYZ"));
+			assertEquals(0, visitFrequencyService.getVisits("NEW"));
+
+			assertTrue(parkingService.enter("XYZ", ParkingType.CAR, inTime).isParked());
+			assertTrue(parkingService.enter("NEW", ParkingType.CAR, inTime).isParked());
+			assertEquals(2, visitFrequencyService.getVisits("XYZ"));
+			assertEquals(1, visitFrequencyService.getVisits("NEW"));
+			// 45 minutes of car is 1.13, 1.07 with 5% off
+			assertEquals(107, parkingService.exit("XYZ", inTime.plusMinutes(45)).getFareCents());
+			assertEquals(113, parkingService.exit("NEW", inTime.plusMinutes(45)).getFareCents());
+			// exits are not visits
+			assertEquals(1, visitFrequencyService.getVisits("NEW"));
+		} finally {
+			dataBaseConfig.closeConnectionPool();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.BatchBillingService;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+
+/**
+ * Re-pricing the whole ticket history on embedded H2, every ticket changing
+ * price. Time per run; tickets/s is tickets divided by the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xmx1g" })
+public class BatchBillingBenchmark {
+
+	@Param({ "100000", "1000000" })
+	public int tickets;
+
+	@Param({ "1", "4" })
+	public int parallelism;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private BatchBillingService billingService;
+	private Path checkpointFile;
+
+	@Setup
+	public void setUp() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("batchBillingBenchmark");
+		dataBaseConfig.createSchema(3, 2);
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement(
+					"insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,0,?,?)");
+			LocalDateTime inTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+			for (int i = 0; i < tickets; i++) {
+				ps.setInt(1, i % 5 + 1);
+				ps.setString(2, "V" + (i % 100_000));
+				ps.setTimestamp(3, Timestamp.valueOf(inTime.plusSeconds(i * 60L)));
+				ps.setTimestamp(4, Timestamp.valueOf(inTime.plusSeconds(i * 60L + 60 + i % 20_000)));
+				ps.addBatch();
+				if (i % 10_000 == 9_999) {
+					ps.executeBatch();
+				}
+			}
+			ps.executeBatch();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		billingService = new BatchBillingService(ticketDAO, new FareCalculatorService());
+		billingService.setParallelism(parallelism);
+		checkpointFile = Files.createTempFile("billing", ".checkpoint");
+	}
+
+	@Setup(Level.Iteration)
+	public void resetPrices() throws Exception {
+		Files.deleteIfExists(checkpointFile);
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			con.createStatement().executeUpdate("update ticket set PRICE = 0");
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(checkpointFile);
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Benchmark
+	public long repriceAll() throws Exception {
+		return billingService.reprice(checkpointFile).getRepricedTickets();
+	}
+}
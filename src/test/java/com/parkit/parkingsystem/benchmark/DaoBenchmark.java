@@ -0,0 +1,115 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * DAO round trips. Runs on embedded H2 by default, "-p database=mysql" runs
+ * them against the MySQL test database. With statementCacheSize=0 every DAO
+ * call prepares its statements again, as before the pool kept them; the
+ * number of statements the database prepared per operation is printed at the
+ * end of each run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoBenchmark {
+
+	@Param({ "embedded" })
+	public String database;
+
+	@Param({ "0", "64" })
+	public int statementCacheSize;
+
+	private DataBaseConfig dataBaseConfig;
+	private ParkingSpotDAO parkingSpotDAO;
+	private TicketDAO ticketDAO;
+	private long vehicleCount;
+	private long operations;
+
+	@Setup
+	public void setUp() throws Exception {
+		System.setProperty("parkingsystem.pool.statementCacheSize", Integer.toString(statementCacheSize));
+		if ("mysql".equals(database)) {
+			dataBaseConfig = new DataBaseTestConfig();
+			new DataBasePrepareService().clearDataBaseEntries();
+		} else {
+			EmbeddedDataBaseConfig embeddedDataBaseConfig = new EmbeddedDataBaseConfig("daoBenchmark");
+			embeddedDataBaseConfig.createSchema(3, 2);
+			dataBaseConfig = embeddedDataBaseConfig;
+		}
+		parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		// measure the ticket table, not the in-memory open ticket cache
+		ticketDAO.useOpenTicketCache = false;
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		ConnectionPool pool = dataBaseConfig.getConnectionPool();
+		System.out.printf("%nstatementCacheSize=%d: %.2f statement(s) prepared per operation, %d cache hit(s)%n",
+				statementCacheSize, (double) pool.getPreparedStatements() / operations, pool.getStatementCacheHits());
+		if ("mysql".equals(database)) {
+			new DataBasePrepareService().clearDataBaseEntries();
+		}
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Benchmark
+	public Ticket ticketRoundTrip() {
+		operations++;
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+		ticket.setVehicleRegNumber("V" + (vehicleCount++ % 1_000_000));
+		ticket.setInTime(LocalDateTime.now().minusHours(1));
+		ticketDAO.saveTicket(ticket);
+
+		Ticket openTicket = ticketDAO.getOpenTicket(ticket.getVehicleRegNumber());
+		openTicket.setOutTime(LocalDateTime.now());
+		openTicket.setPrice(1.5);
+		ticketDAO.updateTicket(openTicket);
+		return ticketDAO.getLatestTicket(ticket.getVehicleRegNumber());
+	}
+
+	@Benchmark
+	public boolean parkingSpotRoundTrip() {
+		operations++;
+		int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR);
+		return parkingSpotDAO.updateParking(new ParkingSpot(parkingNumber, ParkingType.CAR, true));
+	}
+
+	@Benchmark
+	public int nextAvailableSlot() {
+		operations++;
+		return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+	}
+}
@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.util.PricesUtil;
+
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FareCalculatorBenchmark {
+
+	private FareCalculatorService fareCalculatorService;
+	private Ticket carTicket;
+	private Ticket bikeTicket;
+	private double rawPrice;
+	private long inEpochMillis;
+	private long outEpochMillis;
+
+	@Setup
+	public void setUp() {
+		fareCalculatorService = new FareCalculatorService();
+		LocalDateTime inTime = LocalDateTime.of(2022, 9, 1, 8, 12, 31);
+		carTicket = ticket(ParkingType.CAR, inTime, inTime.plusMinutes(137));
+		bikeTicket = ticket(ParkingType.BIKE, inTime, inTime.plusMinutes(45));
+		rawPrice = 3.4249999;
+		inEpochMillis = inTime.toEpochSecond(ZoneOffset.UTC) * 1000;
+		outEpochMillis = inEpochMillis + 137 * 60_000;
+	}
+
+	@Benchmark
+	public double calculateFareCar() {
+		fareCalculatorService.calculateFare(carTicket);
+		return carTicket.getPrice();
+	}
+
+	@Benchmark
+	public double calculateFareBike() {
+		fareCalculatorService.calculateFare(bikeTicket);
+		return bikeTicket.getPrice();
+	}
+
+	@Benchmark
+	public long calculateFareCentsCar() {
+		return fareCalculatorService.calculateFareCents(ParkingType.CAR, inEpochMillis, outEpochMillis);
+	}
+
+	/**
+	 * The former double path: Duration, hours as double, then rounding.
+	 */
+	@Benchmark
+	public double doubleHoursFareCar() {
+		Duration duration = Duration.between(carTicket.getInTime(), carTicket.getOutTime());
+		double durationInHours = duration.toMillis() / (60.0 * 60.0 * 1000.0);
+		return PricesUtil.roundToPrice(durationInHours * Fare.CAR_RATE_PER_HOUR);
+	}
+
+	@Benchmark
+	public double roundToPrice() {
+		return PricesUtil.roundToPrice(rawPrice);
+	}
+
+	private static Ticket ticket(ParkingType parkingType, LocalDateTime inTime, LocalDateTime outTime) {
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+		ticket.setVehicleRegNumber("ABCDEF");
+		ticket.setInTime(inTime);
+		ticket.setOutTime(outTime);
+		return ticket;
+	}
+}
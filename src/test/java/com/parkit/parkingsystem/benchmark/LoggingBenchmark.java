@@ -0,0 +1,100 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.event.OccupancyEventRing;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.ParkingService;
+
+/**
+ * Entry and exit on an embedded H2 database, with the display board and audit
+ * logs of the occupancy events, logged to a file in target:
+ * <ul>
+ * <li>before: synchronous loggers at debug with the caller's line number, every
+ * connection and statement logged, as with the old log4j.properties</li>
+ * <li>asyncSampled: the shipped async configuration with DataBaseConfig at
+ * debug, one connection or statement in 100 logged</li>
+ * <li>asyncDefault: the shipped async configuration as is</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LoggingBenchmark {
+
+	private static final String SYNC_LOGGERS = "-Dlog4j2.contextSelector="
+			+ "org.apache.logging.log4j.core.selector.ClassLoaderContextSelector";
+	private static final LocalDateTime START = LocalDateTime.of(2022, 9, 1, 8, 0);
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private OccupancyEventRing occupancyEvents;
+	private ParkingService parkingService;
+	private long vehicleCount;
+
+	@Setup
+	public void setUp() throws Exception {
+		System.out.println();
+		System.out.println("Logger context: " + LogManager.getContext(false).getClass().getSimpleName());
+		dataBaseConfig = new EmbeddedDataBaseConfig("loggingBenchmark");
+		dataBaseConfig.createSchema(100, 100);
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		parkingService = new ParkingService(parkingSpotDAO, ticketDAO);
+		occupancyEvents = OccupancyEventRing.startDefault(parkingSpotDAO);
+		parkingService.setOccupancyEvents(occupancyEvents);
+	}
+
+	@TearDown
+	public void tearDown() {
+		occupancyEvents.close();
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { SYNC_LOGGERS, "-Dlog4j2.configurationFile=log4j2-benchmark-before.properties",
+			"-Dparkingsystem.log.sampleRate=1" })
+	public void before() {
+		enterAndExit();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Dlog4j2.configurationFile=log4j2-benchmark-after.properties",
+			"-Dbenchmark.dataBaseConfigLevel=debug" })
+	public void asyncSampled() {
+		enterAndExit();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-benchmark-after.properties")
+	public void asyncDefault() {
+		enterAndExit();
+	}
+
+	private void enterAndExit() {
+		String vehicleRegNumber = "V" + (vehicleCount++ % 1_000_000);
+		LocalDateTime time = START.plusMinutes(vehicleCount);
+		parkingService.enter(vehicleRegNumber, ParkingType.CAR, time);
+		parkingService.exit(vehicleRegNumber, time.plusMinutes(45));
+	}
+}
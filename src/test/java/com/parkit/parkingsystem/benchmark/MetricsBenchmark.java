@@ -0,0 +1,57 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.metrics.MetricsRegistry;
+import com.parkit.parkingsystem.metrics.Timer;
+
+/**
+ * Cost of timing an operation: the two nanoTime reads alone, then with the
+ * latency recorded, by one thread and by 8 threads sharing the timer as the
+ * gates do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+	private final Timer timer = new MetricsRegistry().timer("benchmark", "Benchmark");
+
+	@Benchmark
+	public long nanoTimeOnly() {
+		long start = System.nanoTime();
+		return System.nanoTime() - start;
+	}
+
+	@Benchmark
+	@Threads(8)
+	public long nanoTimeOnlyContended() {
+		long start = System.nanoTime();
+		return System.nanoTime() - start;
+	}
+
+	@Benchmark
+	public void recordSince() {
+		timer.recordSince(System.nanoTime());
+	}
+
+	@Benchmark
+	@Threads(8)
+	public void recordSinceContended() {
+		timer.recordSince(System.nanoTime());
+	}
+}
@@ -0,0 +1,78 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.event.OccupancyAnalyticsHandler;
+import com.parkit.parkingsystem.event.OccupancyEvent;
+import com.parkit.parkingsystem.event.OccupancyMetricsHandler;
+import com.parkit.parkingsystem.event.OccupancyEventRing;
+
+/**
+ * Occupancy event publication from 4 gate threads, with 1, 3 or 8 consumers
+ * counting the events or bucketing them for the analytics: events published
+ * per second and publish latency. The events each consumer read and missed are
+ * printed after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class OccupancyEventBenchmark {
+
+	@Param({ "1", "3", "8" })
+	public int consumers;
+
+	@Param({ "metrics", "analytics" })
+	public String handler;
+
+	private OccupancyEventRing ring;
+
+	@Setup
+	public void setUp() {
+		ring = new OccupancyEventRing();
+		for (int i = 0; i < consumers; i++) {
+			ring.addHandler("consumer" + i,
+					"analytics".equals(handler) ? new OccupancyAnalyticsHandler() : new OccupancyMetricsHandler());
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void printConsumers() {
+		StringBuilder line = new StringBuilder("published " + ring.getPublished());
+		for (OccupancyEventRing.Consumer consumer : ring.getConsumers()) {
+			line.append(", ").append(consumer.getName()).append(" read ").append(consumer.getProcessed())
+					.append(" missed ").append(consumer.getDropped());
+		}
+		System.out.println(line);
+	}
+
+	@TearDown
+	public void tearDown() {
+		ring.close();
+	}
+
+	@Benchmark
+	public long publish() {
+		return ring.publish(OccupancyEvent.Type.VEHICLE_ENTERED, 1, "AB-123-CD", 42, ParkingType.CAR, 0,
+				System.currentTimeMillis(), 0, 0);
+	}
+}
@@ -0,0 +1,58 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openjdk.jol.info.GraphLayout;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OpenTicketCache;
+import com.parkit.parkingsystem.dao.SpotAvailabilityIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Retained heap of the open tickets and spot availability, measured with JOL,
+ * against the same state held as Ticket and ParkingSpot objects. Run with
+ * {@code mvn -B -q test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.parkit.parkingsystem.benchmark.OpenTicketFootprint}
+ * and enough heap for the object graphs, e.g. MAVEN_OPTS=-Xmx4g.
+ */
+public class OpenTicketFootprint {
+
+	public static void main(String[] args) {
+		System.out.printf("%10s %22s %22s %22s %22s%n", "vehicles", "ticket objects", "OpenTicketCache",
+				"spot objects", "SpotAvailabilityIndex");
+		for (int vehicles : new int[] { 10_000, 100_000, 1_000_000 }) {
+			LocalDateTime inTime = LocalDateTime.of(2022, 9, 1, 8, 0);
+			Map<String, Ticket> ticketObjects = new ConcurrentHashMap<>();
+			OpenTicketCache openTicketCache = new OpenTicketCache(0);
+			List<ParkingSpot> parkingSpots = new ArrayList<>();
+			for (int i = 1; i <= vehicles; i++) {
+				// registration numbers and times as read from the DB, one object each
+				String vehicleRegNumber = "AB-" + i;
+				Ticket ticket = new Ticket();
+				ticket.setId(i);
+				ticket.setParkingSpot(new ParkingSpot(i, ParkingType.CAR, false));
+				ticket.setVehicleRegNumber(vehicleRegNumber);
+				ticket.setInTime(inTime.plusSeconds(i));
+				ticketObjects.put(vehicleRegNumber, ticket);
+				openTicketCache.put(ticket);
+				parkingSpots.add(new ParkingSpot(i, (i % 5 == 0) ? ParkingType.BIKE : ParkingType.CAR, i % 3 == 0));
+			}
+			SpotAvailabilityIndex availabilityIndex = new SpotAvailabilityIndex(parkingSpots);
+
+			System.out.printf("%10d %22s %22s %22s %22s%n", vehicles, footprint(ticketObjects, vehicles),
+					footprint(openTicketCache, vehicles), footprint(parkingSpots, vehicles),
+					footprint(availabilityIndex, vehicles));
+		}
+	}
+
+	private static String footprint(Object root, int vehicles) {
+		long bytes = GraphLayout.parseInstance(root).totalSize();
+		return String.format("%,d B (%d B each)", bytes, bytes / vehicles);
+	}
+}
@@ -0,0 +1,137 @@
+package com.parkit.parkingsystem.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+
+/**
+ * Vehicle entry and exit through the console shell, with stub-only mocked DAOs
+ * (service overhead only) and with DAOs on an embedded H2 database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParkingServiceBenchmark {
+
+	private PrintStream console;
+
+	private InteractiveShell mockedEntryShell;
+	private InteractiveShell mockedExitShell;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private InteractiveShell embeddedShell;
+	private FixedInput embeddedInput;
+	private long vehicleCount;
+
+	@Setup
+	public void setUp() throws Exception {
+		// the shell prints to the console on each vehicle
+		console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+
+		ParkingSpotDAO entrySpotDAO = mock(ParkingSpotDAO.class, withSettings().stubOnly());
+		TicketDAO entryTicketDAO = mock(TicketDAO.class, withSettings().stubOnly());
+		when(entrySpotDAO.claimNextAvailableSlot(any(ParkingType.class))).thenReturn(1);
+		when(entryTicketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+		mockedEntryShell = new InteractiveShell(new FixedInput("ABCDEF"), new ParkingService(entrySpotDAO, entryTicketDAO));
+
+		ParkingSpotDAO exitSpotDAO = mock(ParkingSpotDAO.class, withSettings().stubOnly());
+		TicketDAO exitTicketDAO = mock(TicketDAO.class, withSettings().stubOnly());
+		when(exitTicketDAO.getOpenTicket(anyString())).thenAnswer(invocation -> {
+			Ticket ticket = new Ticket();
+			ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+			ticket.setVehicleRegNumber(invocation.getArgument(0));
+			ticket.setInTime(LocalDateTime.now().minusMinutes(95));
+			return ticket;
+		});
+		when(exitTicketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
+		when(exitSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
+		mockedExitShell = new InteractiveShell(new FixedInput("ABCDEF"), new ParkingService(exitSpotDAO, exitTicketDAO));
+
+		dataBaseConfig = new EmbeddedDataBaseConfig("parkingServiceBenchmark");
+		dataBaseConfig.createSchema(100, 100);
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		embeddedInput = new FixedInput("");
+		embeddedShell = new InteractiveShell(embeddedInput, new ParkingService(parkingSpotDAO, ticketDAO));
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.setOut(console);
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Benchmark
+	public void mockedProcessIncomingVehicle() {
+		mockedEntryShell.processIncomingVehicle();
+	}
+
+	@Benchmark
+	public void mockedProcessExitingVehicle() {
+		mockedExitShell.processExitingVehicle();
+	}
+
+	@Benchmark
+	public void embeddedDataBaseEntryAndExit() {
+		embeddedInput.vehicleRegNumber = "V" + (vehicleCount++ % 1_000_000);
+		embeddedShell.processIncomingVehicle();
+		embeddedShell.processExitingVehicle();
+	}
+
+	static class FixedInput extends InputReaderUtil {
+		String vehicleRegNumber;
+
+		FixedInput(String vehicleRegNumber) {
+			this.vehicleRegNumber = vehicleRegNumber;
+		}
+
+		@Override
+		public int readSelection() {
+			return 1;
+		}
+
+		@Override
+		public String readVehicleRegistrationNumber() {
+			return vehicleRegNumber;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.SpotProvisioningService;
+
+/**
+ * Importing a layout file into an empty parking table on embedded H2, then
+ * again into the table it filled, availability index reload included. Time
+ * per run; spots/s is spots divided by the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class SpotProvisioningBenchmark {
+
+	@Param({ "100000", "1000000" })
+	public int spots;
+
+	@Param({ "1", "1000" })
+	public int batchSize;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private SpotProvisioningService provisioningService;
+	private Path layout;
+
+	@Setup
+	public void setUp() throws Exception {
+		layout = Files.createTempFile("layout", ".csv");
+		try (BufferedWriter writer = Files.newBufferedWriter(layout, StandardCharsets.UTF_8)) {
+			writer.write("lot,level,number,type,zone\n");
+			for (int number = 1; number <= spots; number++) {
+				writer.write((number % 20) + "," + (number % 8) + "," + number + "," + (number % 10 == 0 ? "BIKE" : "CAR")
+						+ "," + (number % 4) + "\n");
+			}
+		}
+		dataBaseConfig = new EmbeddedDataBaseConfig("spotProvisioningBenchmark");
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		provisioningService = new SpotProvisioningService(parkingSpotDAO);
+		provisioningService.setBatchSize(batchSize);
+	}
+
+	@Setup(Level.Iteration)
+	public void emptyParkingTable() throws Exception {
+		dataBaseConfig.createSchema(0, 0);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		dataBaseConfig.closeConnectionPool();
+		Files.deleteIfExists(layout);
+	}
+
+	@Benchmark
+	public long importLayout() throws Exception {
+		return provisioningService.importLayout(layout);
+	}
+
+	@Benchmark
+	public long importLayoutAgain() throws Exception {
+		provisioningService.importLayout(layout);
+		return provisioningService.importLayout(layout);
+	}
+}
@@ -0,0 +1,81 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Tariff;
+import com.parkit.parkingsystem.model.TariffRule;
+
+/**
+ * Pricing a mix of tickets over lots, 0 lots being the flat default tariff (2
+ * rules) and every other lot adding 10 rules: day and night rates, free
+ * minutes, a daily cap and a duration tier for each vehicle type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TariffBenchmark {
+
+	private static final int TICKETS = 1024;
+
+	@Param({ "0", "13", "100" })
+	public int lots;
+
+	private Tariff tariff;
+	private final int[] ticketLots = new int[TICKETS];
+	private final ParkingType[] ticketTypes = new ParkingType[TICKETS];
+	private final long[] inEpochMillis = new long[TICKETS];
+	private final long[] outEpochMillis = new long[TICKETS];
+	private int next;
+
+	@Setup
+	public void setUp() {
+		List<TariffRule> rules = new ArrayList<>();
+		rules.add(TariffRule.hourlyRate(0, ParkingType.CAR, 0, 1440, 150));
+		rules.add(TariffRule.hourlyRate(0, ParkingType.BIKE, 0, 1440, 100));
+		for (int lot = 1; lot <= lots; lot++) {
+			for (ParkingType parkingType : ParkingType.values()) {
+				rules.add(TariffRule.hourlyRate(lot, parkingType, 0, 1440, 100 + lot));
+				rules.add(TariffRule.hourlyRate(lot, parkingType, 22 * 60, 7 * 60, 50));
+				rules.add(TariffRule.freeMinutes(lot, parkingType, 30));
+				rules.add(TariffRule.dailyCap(lot, parkingType, 1500));
+				rules.add(TariffRule.durationTier(lot, parkingType, 3 * 60, 80));
+			}
+		}
+		tariff = Tariff.compile(rules);
+
+		Random random = new Random(42);
+		long start = 1_662_019_200_000L;
+		for (int i = 0; i < TICKETS; i++) {
+			ticketLots[i] = random.nextInt(lots + 1);
+			ticketTypes[i] = ParkingType.values()[random.nextInt(ParkingType.values().length)];
+			inEpochMillis[i] = start + random.nextInt(30 * 24 * 60) * 60_000L;
+			// mostly a few hours, some over a day
+			outEpochMillis[i] = inEpochMillis[i] + random.nextInt(i % 8 == 0 ? 72 * 60 : 6 * 60) * 60_000L;
+		}
+	}
+
+	@Benchmark
+	public long priceCents() {
+		int i = next++ & (TICKETS - 1);
+		return tariff.priceCents(ticketLots[i], ticketTypes[i], inEpochMillis[i], outEpochMillis[i]);
+	}
+}
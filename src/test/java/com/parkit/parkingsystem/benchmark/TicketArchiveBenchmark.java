@@ -0,0 +1,110 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.TicketArchivalService;
+
+/**
+ * Gate-side ticket queries on embedded H2 over a ticket history of 100k to 1M
+ * closed tickets, left in the ticket table or moved to the ticket archive.
+ * With the history archived, the scores should not depend on its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class TicketArchiveBenchmark {
+
+	private static final LocalDateTime CUTOFF = LocalDateTime.of(2022, 1, 1, 0, 0);
+
+	@Param({ "100000", "1000000" })
+	public int history;
+
+	@Param({ "false", "true" })
+	public boolean archived;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private TicketDAO ticketDAO;
+	private long vehicleCount;
+
+	@Setup
+	public void setUp() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("ticketArchiveBenchmark");
+		dataBaseConfig.createSchema(3, 2);
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement(
+					"insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,3,?,?)");
+			LocalDateTime inTime = CUTOFF.minusSeconds(history * 60L + 3600);
+			for (int i = 0; i < history; i++) {
+				ps.setInt(1, i % 5 + 1);
+				ps.setString(2, "V" + (i % 100_000));
+				ps.setTimestamp(3, Timestamp.valueOf(inTime.plusSeconds(i * 60L)));
+				ps.setTimestamp(4, Timestamp.valueOf(inTime.plusSeconds(i * 60L + 1800)));
+				ps.addBatch();
+				if (i % 10_000 == 9_999) {
+					ps.executeBatch();
+				}
+			}
+			ps.executeBatch();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		// measure the ticket table, not the in-memory open ticket cache
+		ticketDAO.useOpenTicketCache = false;
+		if (archived) {
+			new TicketArchivalService(ticketDAO).archive(CUTOFF);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	/**
+	 * An entry and an exit of a vehicle of the history, as the gates query
+	 * the ticket table.
+	 */
+	@Benchmark
+	public Ticket ticketRoundTrip() {
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+		ticket.setVehicleRegNumber("V" + (vehicleCount++ % 100_000));
+		ticket.setInTime(LocalDateTime.now().minusHours(1));
+		ticketDAO.saveTicket(ticket);
+
+		Ticket openTicket = ticketDAO.getOpenTicket(ticket.getVehicleRegNumber());
+		openTicket.setOutTime(LocalDateTime.now());
+		openTicket.setPrice(1.5);
+		ticketDAO.updateTicket(openTicket);
+		return ticketDAO.getLatestTicket(ticket.getVehicleRegNumber());
+	}
+}
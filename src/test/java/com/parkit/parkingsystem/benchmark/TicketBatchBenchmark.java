@@ -0,0 +1,94 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+/**
+ * Ticket insert and update (one parking visit) from 64 concurrent gates, with
+ * write-behind batches of batchSize tickets, batchSize 0 writing each ticket
+ * on its own. Runs on embedded H2 by default, "-p database=mysql" shows the
+ * commit cost of a real database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class TicketBatchBenchmark {
+
+	@Param({ "0", "1", "16", "128" })
+	public int batchSize;
+
+	@Param({ "embedded" })
+	public String database;
+
+	private DataBaseConfig dataBaseConfig;
+	private TicketDAO ticketDAO;
+	private final AtomicLong vehicleCount = new AtomicLong();
+
+	@Setup
+	public void setUp() throws Exception {
+		if ("mysql".equals(database)) {
+			dataBaseConfig = new DataBaseTestConfig();
+			new DataBasePrepareService().clearDataBaseEntries();
+		} else {
+			EmbeddedDataBaseConfig embeddedDataBaseConfig = new EmbeddedDataBaseConfig("ticketBatchBenchmark");
+			embeddedDataBaseConfig.createSchema(3, 2);
+			dataBaseConfig = embeddedDataBaseConfig;
+		}
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		ticketDAO.useOpenTicketCache = false;
+		if (batchSize > 0) {
+			ticketDAO.startWriteBehind(batchSize, 5, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		ticketDAO.stopWriteBehind();
+		if ("mysql".equals(database)) {
+			new DataBasePrepareService().clearDataBaseEntries();
+		}
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Benchmark
+	public boolean visit() {
+		Ticket ticket = new Ticket();
+		ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+		ticket.setVehicleRegNumber("V" + (vehicleCount.incrementAndGet() % 1_000_000));
+		ticket.setInTime(LocalDateTime.now().minusHours(1));
+		ticketDAO.saveTicket(ticket);
+
+		ticket.setOutTime(LocalDateTime.now());
+		ticket.setPrice(1.5);
+		return ticketDAO.updateTicket(ticket);
+	}
+}
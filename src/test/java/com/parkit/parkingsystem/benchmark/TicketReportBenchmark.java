@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.service.TicketReportService;
+
+/**
+ * A month of reports over 1M tickets on embedded H2 with 1, 2, 4 and 8
+ * workers. Tickets per second is 1M divided by the score; it should grow with
+ * the workers up to the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class TicketReportBenchmark {
+
+	private static final LocalDateTime FROM = LocalDateTime.of(2022, 9, 1, 0, 0);
+	private static final int TICKETS = 1_000_000;
+
+	@Param({ "1", "2", "4", "8" })
+	public int workers;
+
+	private EmbeddedDataBaseConfig dataBaseConfig;
+	private TicketReportService reportService;
+
+	@Setup
+	public void setUp() throws Exception {
+		dataBaseConfig = new EmbeddedDataBaseConfig("ticketReportBenchmark");
+		dataBaseConfig.createSchema(3, 2);
+		Connection con = dataBaseConfig.getConnection();
+		try {
+			PreparedStatement ps = con.prepareStatement(
+					"insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,3,?,?)");
+			// a ticket every 2.6 seconds over the month
+			long stepMillis = 30L * 24 * 3_600_000 / TICKETS;
+			for (int i = 0; i < TICKETS; i++) {
+				LocalDateTime inTime = FROM.plusNanos(i * stepMillis * 1_000_000);
+				ps.setInt(1, i % 5 + 1);
+				ps.setString(2, "V" + (i % 100_000));
+				ps.setTimestamp(3, Timestamp.valueOf(inTime));
+				ps.setTimestamp(4, Timestamp.valueOf(inTime.plusMinutes(i % 300)));
+				ps.addBatch();
+				if (i % 10_000 == 9_999) {
+					ps.executeBatch();
+				}
+			}
+			ps.executeBatch();
+			ps.close();
+		} finally {
+			dataBaseConfig.closeConnection(con);
+		}
+		ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+		parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+		TicketDAO ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseConfig;
+		reportService = new TicketReportService(parkingSpotDAO, ticketDAO);
+		reportService.setWorkers(workers);
+	}
+
+	@TearDown
+	public void tearDown() {
+		dataBaseConfig.closeConnectionPool();
+	}
+
+	@Benchmark
+	public TicketReportService.Report monthlyReport() throws Exception {
+		return reportService.generate(FROM, FROM.plusMonths(1));
+	}
+}
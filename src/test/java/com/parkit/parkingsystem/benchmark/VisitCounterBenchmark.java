@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.parkit.parkingsystem.dao.VisitCounter;
+
+/**
+ * Visit count lookup of a random known vehicle, with the visits of 10k to 4M
+ * vehicles loaded. The exit path pays this once per vehicle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+public class VisitCounterBenchmark {
+
+	private static final int LOOKUPS = 4096;
+
+	@Param({ "10000", "1000000", "4000000" })
+	public int vehicles;
+
+	private VisitCounter visitCounter;
+	private final String[] vehicleRegNumbers = new String[LOOKUPS];
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		int next;
+	}
+
+	@Setup
+	public void setUp() {
+		visitCounter = new VisitCounter(vehicles);
+		for (int i = 0; i < vehicles; i++) {
+			visitCounter.add(vehicleRegNumber(i), i % 9 + 1);
+		}
+		Random random = new Random(42);
+		for (int i = 0; i < LOOKUPS; i++) {
+			vehicleRegNumbers[i] = vehicleRegNumber(random.nextInt(vehicles));
+		}
+	}
+
+	@Benchmark
+	public int getVisits(Cursor cursor) {
+		return visitCounter.getVisits(vehicleRegNumbers[cursor.next++ & (LOOKUPS - 1)]);
+	}
+
+	private static String vehicleRegNumber(int i) {
+		return "AB" + i;
+	}
+}
@@ -25,6 +25,7 @@ import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.InteractiveShell;
 import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 
@@ -56,6 +57,8 @@ public class ParkingDataBaseIT {
 		Mockito.lenient().when(inputReaderUtil.readSelection()).thenReturn(1);
 		Mockito.lenient().when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
 		dataBasePrepareService.clearDataBaseEntries();
+		parkingSpotDAO.reloadAvailabilityIndex();
+		ticketDAO.reloadOpenTickets();
 	}
 
 	@AfterAll
@@ -89,7 +92,7 @@ public class ParkingDataBaseIT {
 
 	public void testParkingAVehicle() {
 
-		ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+		InteractiveShell shell = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
 
 		ParkingType parkingType = null;
 		switch (inputReaderUtil.readSelection()) {
@@ -108,7 +111,7 @@ public class ParkingDataBaseIT {
 		// before, it means that the place has been occupied.
 		int nextAvailableParkingPlace = parkingSpotDAO.getNextAvailableSlot(parkingType);
 
-		parkingService.processIncomingVehicle();
+		shell.processIncomingVehicle();
 
 		// check that a ticket is actualy saved in DB and Parking table is updated with
 		// availability
@@ -134,19 +137,19 @@ public class ParkingDataBaseIT {
 	@Tag("BoundTest")
 	public void testNotExistingVehicleType() {
 		when(inputReaderUtil.readSelection()).thenReturn(500);
-		ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+		InteractiveShell shell = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
 
-		assertThrows(Exception.class, () -> parkingService.processIncomingVehicle());
+		assertThrows(Exception.class, () -> shell.processIncomingVehicle());
 	}
 
 	@Test
 	public void testParkingLotExit() {
 
-		ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+		InteractiveShell shell = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
 
-		parkingService.processIncomingVehicle(LocalDateTime.now().minusMinutes(5));
+		shell.processIncomingVehicle(LocalDateTime.now().minusMinutes(5));
 
-		parkingService.processExitingVehicle(LocalDateTime.now());
+		shell.processExitingVehicle(LocalDateTime.now());
 
 		// check that the fare generated and out time are populated correctly in
 		// the database
@@ -169,20 +172,20 @@ public class ParkingDataBaseIT {
 	@Test
 	@Tag("BoundTest")
 	public void testVehicleNotPresentInTheParkingExit() {
-		ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
-		assertThrows(RuntimeException.class, () -> parkingService.processExitingVehicle());
+		InteractiveShell shell = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
+		assertThrows(RuntimeException.class, () -> shell.processExitingVehicle());
 	}
 
 	@Test
 	@Tag("BoundTest")
 	public void testParkingACarThatIsAlreadyInTheParking() {
 		// 1 - Vehicle enters
-		ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
-		parkingService.processIncomingVehicle();
+		InteractiveShell shell = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
+		shell.processIncomingVehicle();
 
 		// 2 - Vehicle enters again
-		ParkingService parkingService2 = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
-		assertThrows(RuntimeException.class, () -> parkingService2.processIncomingVehicle());
+		InteractiveShell shell2 = new InteractiveShell(inputReaderUtil, new ParkingService(parkingSpotDAO, ticketDAO));
+		assertThrows(RuntimeException.class, () -> shell2.processIncomingVehicle());
 
 	}
 
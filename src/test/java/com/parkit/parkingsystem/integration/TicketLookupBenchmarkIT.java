@@ -0,0 +1,135 @@
+package com.parkit.parkingsystem.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.integration.service.DataBasePrepareService;
+
+/**
+ * Measures open/latest ticket lookups while the ticket history grows, to 100k
+ * tickets by default as it runs with every build. Larger histories are opt-in,
+ * e.g. -Dbenchmark.ticketHistorySizes=10000,100000,1000000,10000000; the test
+ * database is emptied afterwards.
+ */
+public class TicketLookupBenchmarkIT {
+
+	private static final int VEHICLES = 10_000;
+	private static final int OPEN_TICKETS = 100;
+	private static final int LOOKUPS = 2_000;
+
+	private static DataBaseTestConfig dataBaseTestConfig = new DataBaseTestConfig();
+	private static DataBasePrepareService dataBasePrepareService = new DataBasePrepareService();
+	private static TicketDAO ticketDAO;
+
+	@BeforeAll
+	static void setUp() {
+		ticketDAO = new TicketDAO();
+		ticketDAO.dataBaseConfig = dataBaseTestConfig;
+		ticketDAO.useOpenTicketCache = false;
+		dataBasePrepareService.clearDataBaseEntries();
+	}
+
+	@AfterAll
+	static void tearDown() {
+		dataBasePrepareService.clearDataBaseEntries();
+	}
+
+	@Test
+	public void lookupLatencyDoesNotGrowWithHistory() throws Exception {
+		String[] sizes = System.getProperty("benchmark.ticketHistorySizes", "10000,100000")
+				.split(",");
+		double firstMedian = -1;
+		double lastMedian = -1;
+		int rows = 0;
+		for (String size : sizes) {
+			rows = growHistory(rows, Integer.parseInt(size.trim()));
+			double[] openLatencies = measure(true);
+			double[] latestLatencies = measure(false);
+			System.out.printf("%,12d tickets: getOpenTicket p50=%.3f ms p99=%.3f ms, getLatestTicket p50=%.3f ms p99=%.3f ms%n",
+					rows, percentile(openLatencies, 50), percentile(openLatencies, 99),
+					percentile(latestLatencies, 50), percentile(latestLatencies, 99));
+			lastMedian = percentile(latestLatencies, 50);
+			if (firstMedian < 0) {
+				firstMedian = lastMedian;
+			}
+		}
+		// flat within noise: a sort or scan over the history would grow by orders of magnitude
+		assertThat(lastMedian).isLessThan(firstMedian * 3 + 1);
+	}
+
+	private int growHistory(int rows, int target) throws Exception {
+		Connection con = dataBaseTestConfig.getConnection();
+		try {
+			if (rows == 0) {
+				LocalDateTime now = LocalDateTime.now();
+				PreparedStatement ps = con.prepareStatement(
+						"insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+				for (int i = 0; i < VEHICLES; i++) {
+					ps.setInt(1, 1 + i % 5);
+					ps.setString(2, plate(i));
+					ps.setDouble(3, 1.5);
+					ps.setObject(4, now.minusMinutes(i));
+					ps.setObject(5, i < OPEN_TICKETS ? null : now.minusMinutes(i).plusHours(1));
+					ps.addBatch();
+				}
+				ps.executeBatch();
+				ps.close();
+				rows = VEHICLES;
+			}
+			// older, closed copies of the existing history, grown server side
+			Statement statement = con.createStatement();
+			int generation = 1;
+			while (rows < target) {
+				int copied = statement.executeUpdate("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME)"
+						+ " select PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME - interval " + (rows / VEHICLES + generation)
+						+ " day, coalesce(OUT_TIME, IN_TIME + interval 1 hour) - interval " + (rows / VEHICLES + generation)
+						+ " day from ticket limit " + Math.min(rows, target - rows));
+				rows += copied;
+				generation++;
+			}
+			statement.execute("analyze table ticket");
+			statement.close();
+		} finally {
+			dataBaseTestConfig.closeConnection(con);
+		}
+		return rows;
+	}
+
+	private double[] measure(boolean openTicket) {
+		Random random = new Random(42);
+		double[] latencies = new double[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			// a mix of vehicles inside the parking and regular customers who left
+			String vehicleRegNumber = plate(i % 2 == 0 ? random.nextInt(OPEN_TICKETS) : random.nextInt(VEHICLES));
+			long start = System.nanoTime();
+			if (openTicket) {
+				ticketDAO.getOpenTicket(vehicleRegNumber);
+			} else {
+				ticketDAO.getLatestTicket(vehicleRegNumber);
+			}
+			latencies[i] = (System.nanoTime() - start) / 1_000_000.0;
+		}
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+	private static double percentile(double[] sortedLatencies, int percentile) {
+		return sortedLatencies[Math.min(sortedLatencies.length - 1, sortedLatencies.length * percentile / 100)];
+	}
+
+	private static String plate(int vehicle) {
+		return String.format("AB%05d", vehicle);
+	}
+}
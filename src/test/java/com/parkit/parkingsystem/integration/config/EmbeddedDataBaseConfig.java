@@ -0,0 +1,131 @@
+package com.parkit.parkingsystem.integration.config;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+import com.parkit.parkingsystem.config.ConnectionPoolSettings;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+
+/**
+ * In-memory H2 database in MySQL mode with the schema of Data.sql, for tests
+ * and benchmarks that need a real DB without a MySQL server.
+ */
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    private final String name;
+    // null for an in-memory database
+    private final Path directory;
+
+    public EmbeddedDataBaseConfig(String name) {
+        this(name, null);
+    }
+
+    /**
+     * H2 database in files of the directory, that outlives the JVM, for tests
+     * that stop a process and open its database again. Commits are written
+     * right away, so that killing the process does not lose them.
+     */
+    public EmbeddedDataBaseConfig(String name, Path directory) {
+        this.name = name;
+        this.directory = directory;
+    }
+
+    @Override
+    protected String getDriverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    protected String getUrl() {
+        if (directory != null) {
+            return "jdbc:h2:file:" + directory.resolve(name).toAbsolutePath() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;WRITE_DELAY=0";
+        }
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    protected String getUser() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+
+    @Override
+    protected ConnectionPoolSettings getConnectionPoolSettings() {
+        ConnectionPoolSettings settings = ConnectionPoolSettings.fromSystemProperties();
+        settings.setMinSize(0);
+        settings.setMaxSize(128);
+        return settings;
+    }
+
+    public void createSchema(int carSpots, int bikeSpots) throws Exception {
+        createSchema(1, 1, 1, carSpots, bikeSpots);
+    }
+
+    /**
+     * Numbers the spots from 1, lot by lot, level by level, zone by zone, car spots first.
+     */
+    public void createSchema(int lots, int levels, int zones, int carSpotsPerZone, int bikeSpotsPerZone)
+            throws Exception {
+        Connection con = getConnection();
+        try {
+            Statement statement = con.createStatement();
+            statement.execute("drop table if exists ticket");
+            statement.execute("drop table if exists ticket_archive");
+            statement.execute("drop table if exists parking");
+            statement.execute("drop table if exists tariff");
+            statement.execute("drop sequence if exists ticket_id");
+            statement.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL,"
+                    + " TYPE varchar(10) NOT NULL, LOT int NOT NULL DEFAULT 0, LEVEL int NOT NULL DEFAULT 0,"
+                    + " ZONE int NOT NULL DEFAULT 0)");
+            // not AUTO_INCREMENT: in MySQL mode, H2 hands out the same identity to concurrent inserts
+            statement.execute("create sequence ticket_id");
+            statement.execute("create table ticket(ID int DEFAULT NEXT VALUE FOR ticket_id PRIMARY KEY,"
+                    + " PARKING_NUMBER int NOT NULL,"
+                    + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE decimal(10,2), IN_TIME DATETIME NOT NULL,"
+                    + " OUT_TIME DATETIME, FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))");
+            statement.execute("create index TICKET_VEHICLE_OUT_IN on ticket(VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME)");
+            // not partitioned as in Data.sql, H2 has no partitions
+            statement.execute("create table ticket_archive(ID int NOT NULL, PARKING_NUMBER int NOT NULL,"
+                    + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE decimal(10,2), IN_TIME DATETIME NOT NULL,"
+                    + " OUT_TIME DATETIME NOT NULL, PRIMARY KEY (ID, IN_TIME))");
+            statement.execute("create index TICKET_ARCHIVE_VEHICLE_OUT on ticket_archive(VEHICLE_REG_NUMBER, OUT_TIME)");
+            statement.execute("create index PARKING_TYPE_AVAILABLE_NUMBER on parking(TYPE, AVAILABLE, PARKING_NUMBER)");
+            statement.execute("create index PARKING_LOT_TYPE_AVAILABLE_LEVEL on parking(LOT, TYPE, AVAILABLE, LEVEL, ZONE,"
+                    + " PARKING_NUMBER)");
+            statement.execute("create table tariff(ID int PRIMARY KEY AUTO_INCREMENT, LOT int NOT NULL DEFAULT 0,"
+                    + " TYPE varchar(10) NOT NULL, RULE varchar(20) NOT NULL, START_MINUTE int NOT NULL DEFAULT 0,"
+                    + " END_MINUTE int NOT NULL DEFAULT 0, AMOUNT int NOT NULL)");
+            statement.execute("insert into tariff(TYPE,RULE,START_MINUTE,END_MINUTE,AMOUNT) values"
+                    + "('CAR','HOURLY_RATE',0,1440,150),('BIKE','HOURLY_RATE',0,1440,100)");
+            statement.close();
+
+            PreparedStatement ps = con.prepareStatement(
+                    "insert into parking(PARKING_NUMBER,AVAILABLE,TYPE,LOT,LEVEL,ZONE) values(?,true,?,?,?,?)");
+            int parkingNumber = 0;
+            for (int lot = 0; lot < lots; lot++) {
+                for (int level = 0; level < levels; level++) {
+                    for (int zone = 0; zone < zones; zone++) {
+                        for (int i = 0; i < carSpotsPerZone + bikeSpotsPerZone; i++) {
+                            ps.setInt(1, ++parkingNumber);
+                            ps.setString(2, i < carSpotsPerZone ? "CAR" : "BIKE");
+                            ps.setInt(3, lot);
+                            ps.setInt(4, level);
+                            ps.setInt(5, zone);
+                            ps.addBatch();
+                        }
+                    }
+                }
+                ps.executeBatch();
+            }
+            ps.close();
+        } finally {
+            closeConnection(con);
+        }
+    }
+}